@@ -0,0 +1,103 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cache holding the records of a busy network: insertion of an announcement, lookups by entry and by name, type and class, and the replacement done when
+ * a record is refreshed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    /**
+     * Number of devices whose records are cached.
+     */
+    @Param({ "100", "1000" })
+    public int               devices;
+
+    private DNSCache         _cache;
+
+    private List<DNSRecord>  _records;
+
+    private List<DNSRecord>  _refreshed;
+
+    private int              _next;
+
+    @Setup
+    public void setup() throws IOException {
+        _cache = new DNSCache();
+        _records = new ArrayList<DNSRecord>();
+        for (byte[] packet : Packets.storm(devices)) {
+            _records.addAll(new DNSIncoming(Packets.received(packet)).getAllAnswers());
+        }
+        for (DNSRecord record : _records) {
+            _cache.addDNSEntry(record);
+        }
+        // The same records announced again, as equal but distinct instances
+        _refreshed = new ArrayList<DNSRecord>(_records.size());
+        for (byte[] packet : Packets.storm(devices)) {
+            _refreshed.addAll(new DNSIncoming(Packets.received(packet)).getAllAnswers());
+        }
+    }
+
+    private int next() {
+        final int index = _next;
+        _next = (index + 1 < _records.size() ? index + 1 : 0);
+        return index;
+    }
+
+    @Benchmark
+    public DNSEntry getDNSEntry() {
+        return _cache.getDNSEntry(_refreshed.get(this.next()));
+    }
+
+    @Benchmark
+    public void getDNSEntryList(Blackhole blackhole) {
+        final DNSRecord record = _records.get(this.next());
+        blackhole.consume(_cache.getDNSEntryList(record.getName()));
+        blackhole.consume(_cache.getDNSEntryList(record.getName(), DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_ANY));
+    }
+
+    @Benchmark
+    public boolean replaceDNSEntry() {
+        final int index = this.next();
+        final DNSRecord existing = _records.get(index);
+        final DNSRecord refreshed = _refreshed.get(index);
+        _records.set(index, refreshed);
+        _refreshed.set(index, existing);
+        return _cache.replaceDNSEntry(refreshed, existing);
+    }
+
+    @Benchmark
+    public boolean removeAndAddDNSEntry() {
+        final DNSRecord record = _records.get(this.next());
+        _cache.removeDNSEntry(record);
+        return _cache.addDNSEntry(record);
+    }
+
+}
@@ -0,0 +1,78 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.impl.constants.DNSConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding of outgoing messages: a device announcement with name compression, and a browse query carrying known answers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    @Param({ "APPLE_TV", "CHROMECAST", "PRINTER" })
+    public Packets.Device                     device;
+
+    @Param({ "40" })
+    public int                                knownAnswers;
+
+    private List<DNSRecord>                   _announce;
+
+    private Collection<? extends DNSQuestion> _questions;
+
+    private List<DNSRecord>                   _known;
+
+    @Setup
+    public void setup() throws IOException {
+        // Decoded once so the records are the ones a responder holds, not rebuilt on every invocation
+        _announce = new DNSIncoming(Packets.received(Packets.announce(device, 1))).getAllAnswers();
+        final DNSIncoming query = new DNSIncoming(Packets.received(Packets.knownAnswerQuery(knownAnswers)));
+        _questions = query.getQuestions();
+        _known = query.getAllAnswers();
+    }
+
+    @Benchmark
+    public byte[] encodeAnnounce() throws IOException {
+        final long now = System.currentTimeMillis();
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, true, DNSConstants.MAX_MSG_ABSOLUTE);
+        for (DNSRecord record : _announce) {
+            out.addAnswer(record, now);
+        }
+        return out.data();
+    }
+
+    @Benchmark
+    public byte[] encodeKnownAnswerQuery() throws IOException {
+        final long now = System.currentTimeMillis();
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY, true, DNSConstants.MAX_MSG_ABSOLUTE);
+        for (DNSQuestion question : _questions) {
+            out.addQuestion(question);
+        }
+        for (DNSRecord record : _known) {
+            out.addAnswer(record, now);
+        }
+        return out.data();
+    }
+
+}
@@ -0,0 +1,124 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceInfo;
+import javax.jmdns.ServiceListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JmDNS instance on a {@link MulticastBus} fed with packets in memory, from the decoding to the cache, the listeners and the responder.<br/>
+ * The packets go through {@link SocketListener#process(DatagramPacket)} exactly as when received, without waiting on the network, so the scores are packets
+ * per second. Run with <code>-prof gc</code> for the allocations per packet. Responses to queries go out on the bus, which has no other instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JmDNSImplBenchmark {
+
+    private static final int STORM = 300;
+
+    /**
+     * Whether the application browses the announced types, adding the listener dispatch to the cost of each response.
+     */
+    @Param({ "false", "true" })
+    public boolean               browse;
+
+    private MulticastBus         _bus;
+
+    private JmDNSImpl            _dns;
+
+    private SocketListener       _listener;
+
+    private List<DatagramPacket> _storm;
+
+    private DatagramPacket       _query;
+
+    @Setup
+    public void setup() throws IOException {
+        _bus = new MulticastBus(1, 0L);
+        _dns = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), "benchmark", _bus.newTransport());
+        // Never started, the packets are handed to it directly
+        _listener = new SocketListener(_dns, "Benchmark");
+        _storm = new ArrayList<DatagramPacket>(STORM);
+        for (byte[] packet : Packets.storm(STORM)) {
+            _storm.add(Packets.received(packet));
+        }
+        _query = Packets.received(Packets.knownAnswerQuery(40));
+        _dns.registerService(ServiceInfo.create(Packets.AIRPLAY, "Benchmark", 7000, 0, 0, Packets.appleTvText(0)));
+        _dns.registerService(ServiceInfo.create(Packets.RAOP, "5855CA1A0000@Benchmark", 7000, 0, 0, Packets.raopText()));
+        if (browse) {
+            final ServiceListener listener = new ServiceListener() {
+                @Override
+                public void serviceAdded(ServiceEvent event) {
+                    // Nothing to do
+                }
+
+                @Override
+                public void serviceRemoved(ServiceEvent event) {
+                    // Nothing to do
+                }
+
+                @Override
+                public void serviceResolved(ServiceEvent event) {
+                    // Nothing to do
+                }
+            };
+            for (String type : new String[] { Packets.AIRPLAY, Packets.RAOP, Packets.GOOGLECAST, Packets.IPP }) {
+                _dns.addServiceListener(type, listener);
+            }
+        }
+    }
+
+    /**
+     * Each iteration starts with the devices unknown, the first pass over the storm adds them and the next ones refresh them.
+     */
+    @Setup(Level.Iteration)
+    public void clearCache() {
+        _dns.getCache().clear();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        _dns.close();
+        _bus.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORM)
+    public void announceStorm() {
+        for (DatagramPacket packet : _storm) {
+            _listener.process(packet);
+        }
+    }
+
+    @Benchmark
+    public void knownAnswerQuery() {
+        _listener.process(_query);
+    }
+
+}
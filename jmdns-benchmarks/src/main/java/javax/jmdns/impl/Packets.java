@@ -0,0 +1,235 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+import javax.jmdns.impl.util.ByteWrangler;
+
+/**
+ * mDNS packets as sent by common devices.<br/>
+ * The record sets and TXT properties follow what Apple TVs, Chromecasts and network printers announce, the names and addresses vary with the device number so
+ * that a storm of announcements is not absorbed by the cache. <code>a_record_before_srv.bin</code> is a packet captured on a real network.
+ */
+final class Packets {
+
+    static final String AIRPLAY    = "_airplay._tcp.local.";
+
+    static final String RAOP       = "_raop._tcp.local.";
+
+    static final String GOOGLECAST = "_googlecast._tcp.local.";
+
+    static final String IPP        = "_ipp._tcp.local.";
+
+    private Packets() {
+        super();
+    }
+
+    /**
+     * Kinds of device announcing their services.
+     */
+    enum Device {
+        APPLE_TV, CHROMECAST, PRINTER
+    }
+
+    /**
+     * Returns the announcement of a device: PTR, SRV, TXT and address records in one response.
+     *
+     * @param device
+     *            kind of device
+     * @param number
+     *            device number, makes the names and addresses unique
+     * @return encoded packet
+     */
+    static byte[] announce(Device device, int number) throws IOException {
+        final long now = System.currentTimeMillis();
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, true, DNSConstants.MAX_MSG_ABSOLUTE);
+        final String host;
+        switch (device) {
+            case APPLE_TV:
+                host = "Apple-TV-" + number + ".local.";
+                final String room = "Living Room " + number;
+                addService(out, AIRPLAY, room, 7000, host, appleTvText(number), now);
+                addService(out, RAOP, String.format(Locale.ROOT, "5855CA1A%04X@%s", Integer.valueOf(number), room), 7000, host, raopText(), now);
+                break;
+            case CHROMECAST:
+                host = String.format(Locale.ROOT, "a1b2c3d4-%04x-5e6f-7a8b-9c0d1e2f3a4b.local.", Integer.valueOf(number));
+                addService(out, GOOGLECAST, String.format(Locale.ROOT, "Chromecast-%032x", Integer.valueOf(number)), 8009, host, chromecastText(number), now);
+                break;
+            case PRINTER:
+            default:
+                host = "NPI" + Integer.toHexString(0xA0000 + number).toUpperCase(Locale.ROOT) + ".local.";
+                addService(out, IPP, "HP LaserJet MFP M428fdw (" + number + ")", 631, host, printerText(number), now);
+                break;
+        }
+        out.addAnswer(new DNSRecord.IPv4Address(host, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, new byte[] { 10, 0, (byte) (number >> 8), (byte) number }), now);
+        out.addAnswer(new DNSRecord.IPv6Address(host, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, InetAddress.getByName("fe80::1c2b:3aff:fe4d:" + Integer.toHexString(number & 0xFFFF))), now);
+        return out.data();
+    }
+
+    private static void addService(DNSOutgoing out, String type, String name, int port, String host, Map<String, String> text, long now) throws IOException {
+        final String qualifiedName = name + "." + type;
+        out.addAnswer(new DNSRecord.Pointer(type, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, qualifiedName), now);
+        out.addAnswer(new DNSRecord.Service(qualifiedName, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 0, 0, port, host), now);
+        out.addAnswer(new DNSRecord.Text(qualifiedName, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, ByteWrangler.textFromProperties(text)), now);
+    }
+
+    /**
+     * Returns announcements of devices of every kind, one packet per device.
+     *
+     * @param count
+     *            number of devices
+     * @return encoded packets
+     */
+    static List<byte[]> storm(int count) throws IOException {
+        final List<byte[]> packets = new ArrayList<byte[]>(count);
+        final Device[] devices = Device.values();
+        for (int i = 0; i < count; i++) {
+            packets.add(announce(devices[i % devices.length], i));
+        }
+        return packets;
+    }
+
+    /**
+     * Returns a browse query for the AirPlay and RAOP services carrying the services already known, as a Mac browsing a busy network sends it.
+     *
+     * @param knownAnswers
+     *            number of known answers
+     * @return encoded packet
+     */
+    static byte[] knownAnswerQuery(int knownAnswers) throws IOException {
+        final long now = System.currentTimeMillis();
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY, true, DNSConstants.MAX_MSG_ABSOLUTE);
+        out.addQuestion(DNSQuestion.newQuestion(AIRPLAY, DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN, false));
+        out.addQuestion(DNSQuestion.newQuestion(RAOP, DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN, false));
+        for (int i = 0; i < knownAnswers; i++) {
+            final String type = ((i & 1) == 0 ? AIRPLAY : RAOP);
+            out.addAnswer(new DNSRecord.Pointer(type, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Speaker " + i + "." + type), now);
+        }
+        return out.data();
+    }
+
+    /**
+     * @return a response captured on a network, with the address records before the SRV records
+     */
+    static byte[] captured() throws IOException {
+        final InputStream in = Packets.class.getResourceAsStream("a_record_before_srv.bin");
+        if (in == null) {
+            throw new IOException("a_record_before_srv.bin not found");
+        }
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(1500);
+            final byte[] buffer = new byte[1500];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Wraps a packet as received from a device on the local network.
+     */
+    static DatagramPacket received(byte[] data) throws IOException {
+        final DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByAddress(new byte[] { 10, 0, 0, 99 }), DNSConstants.MDNS_PORT);
+        return packet;
+    }
+
+    static Map<String, String> appleTvText(int number) {
+        final Map<String, String> text = new LinkedHashMap<String, String>();
+        text.put("acl", "0");
+        text.put("btaddr", "00:00:00:00:00:00");
+        text.put("deviceid", String.format(Locale.ROOT, "58:55:CA:1A:%02X:%02X", Integer.valueOf((number >> 8) & 0xFF), Integer.valueOf(number & 0xFF)));
+        text.put("features", "0x4A7FDFD5,0xBC157FDE");
+        text.put("flags", "0x18644");
+        text.put("gid", "9F2A6C4E-1D3B-4C5A-8E7F-0A1B2C3D4E5F");
+        text.put("igl", "1");
+        text.put("gcgl", "1");
+        text.put("model", "AppleTV11,1");
+        text.put("protovers", "1.1");
+        text.put("pi", "3e4f5a6b-7c8d-9e0f-1a2b-3c4d5e6f7a8b");
+        text.put("psi", "0F1E2D3C-4B5A-6978-8796-A5B4C3D2E1F0");
+        text.put("pk", "e4a1c7b25c8f0d3e96b7a0f1c2d3e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b9c0d1");
+        text.put("srcvers", "770.8.1");
+        text.put("osvers", "17.4");
+        text.put("vv", "2");
+        return text;
+    }
+
+    static Map<String, String> raopText() {
+        final Map<String, String> text = new LinkedHashMap<String, String>();
+        text.put("cn", "0,1,2,3");
+        text.put("da", "true");
+        text.put("et", "0,3,5");
+        text.put("ft", "0x4A7FDFD5,0xBC157FDE");
+        text.put("sf", "0x18644");
+        text.put("md", "0,1,2");
+        text.put("am", "AppleTV11,1");
+        text.put("pk", "e4a1c7b25c8f0d3e96b7a0f1c2d3e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b9c0d1");
+        text.put("tp", "UDP");
+        text.put("vn", "65537");
+        text.put("vs", "770.8.1");
+        text.put("ov", "17.4");
+        text.put("vv", "2");
+        return text;
+    }
+
+    static Map<String, String> chromecastText(int number) {
+        final Map<String, String> text = new LinkedHashMap<String, String>();
+        text.put("id", String.format(Locale.ROOT, "%032x", Integer.valueOf(number)));
+        text.put("cd", "6C1D4F7E2A9B3C5D8E0F1A2B3C4D5E6F");
+        text.put("rm", "");
+        text.put("ve", "05");
+        text.put("md", "Chromecast");
+        text.put("ic", "/setup/icon.png");
+        text.put("fn", "Living Room TV " + number);
+        text.put("ca", "201221");
+        text.put("st", "0");
+        text.put("bs", "FA8FCA3B5D7E");
+        text.put("nf", "1");
+        text.put("rs", "");
+        return text;
+    }
+
+    static Map<String, String> printerText(int number) {
+        final Map<String, String> text = new LinkedHashMap<String, String>();
+        text.put("txtvers", "1");
+        text.put("qtotal", "1");
+        text.put("rp", "ipp/print");
+        text.put("ty", "HP LaserJet MFP M428fdw");
+        text.put("adminurl", "http://NPI" + Integer.toHexString(0xA0000 + number).toUpperCase(Locale.ROOT) + ".local./#hId-pgAirPrint");
+        text.put("note", "Second floor");
+        text.put("priority", "10");
+        text.put("product", "(HP LaserJet MFP M428fdw)");
+        text.put("pdl", "application/octet-stream,application/pdf,application/postscript,image/jpeg,image/urf,image/pwg-raster,application/PCLm");
+        text.put("UUID", String.format(Locale.ROOT, "564e4333-4a30-3830-3839-%012x", Integer.valueOf(number)));
+        text.put("URF", "V1.4,CP99,W8,OB10,PQ3-4-5,ADOBERGB24,DEVRGB24,DEVW8,SRGB24,DM1,IS1,MT1-2-3-5-12,RS300-600");
+        text.put("Color", "F");
+        text.put("Duplex", "T");
+        text.put("Scan", "T");
+        text.put("Fax", "T");
+        text.put("TLS", "1.3");
+        text.put("mopria-certified", "2.0");
+        text.put("kind", "document,envelope,label,postcard");
+        text.put("PaperMax", "legal-A4");
+        text.put("usb_MFG", "HP");
+        text.put("usb_MDL", "HP LaserJet MFP M428fdw");
+        text.put("usb_CMD", "PJL,PCL,PCLXL,PWGRaster,POSTSCRIPT,PDF,URF");
+        return text;
+    }
+
+}
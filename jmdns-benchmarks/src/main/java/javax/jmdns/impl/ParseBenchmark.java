@@ -0,0 +1,100 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding of received packets: announcements, the captured response and known-answer queries, plus the wire code lookups and the known-answer
+ * suppression check done on every answer of a response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "APPLE_TV", "CHROMECAST", "PRINTER" })
+    public Packets.Device   device;
+
+    @Param({ "40" })
+    public int              knownAnswers;
+
+    private byte[]          _announce;
+
+    private byte[]          _captured;
+
+    private byte[]          _query;
+
+    private DNSIncoming     _parsedQuery;
+
+    private List<DNSRecord> _candidates;
+
+    @Setup
+    public void setup() throws IOException {
+        _announce = Packets.announce(device, 1);
+        _captured = Packets.captured();
+        _query = Packets.knownAnswerQuery(knownAnswers);
+        _parsedQuery = new DNSIncoming(Packets.received(_query));
+        // Half of the candidate answers are in the known-answer list of the query
+        _candidates = new DNSIncoming(Packets.received(Packets.knownAnswerQuery(2 * knownAnswers))).getAllAnswers();
+    }
+
+    @Benchmark
+    public DNSIncoming parseAnnounce() throws IOException {
+        return new DNSIncoming(new DatagramPacket(_announce, _announce.length));
+    }
+
+    @Benchmark
+    public DNSIncoming parseCaptured() throws IOException {
+        return new DNSIncoming(new DatagramPacket(_captured, _captured.length));
+    }
+
+    @Benchmark
+    public DNSIncoming parseKnownAnswerQuery() throws IOException {
+        return new DNSIncoming(new DatagramPacket(_query, _query.length));
+    }
+
+    @Benchmark
+    public void lookupWireCodes(Blackhole blackhole) {
+        for (int index = 0; index < 256; index++) {
+            blackhole.consume(DNSRecordType.typeForIndex(index));
+        }
+        blackhole.consume(DNSRecordClass.classForIndex(1));
+        blackhole.consume(DNSRecordClass.classForIndex(0x8001));
+        blackhole.consume(DNSRecordClass.classForIndex(255));
+    }
+
+    @Benchmark
+    public int knownAnswerSuppression() {
+        final KnownAnswers known = _parsedQuery.getKnownAnswers();
+        int suppressed = 0;
+        for (DNSRecord candidate : _candidates) {
+            if (known.suppresses(candidate)) {
+                suppressed++;
+            }
+        }
+        return suppressed;
+    }
+
+}
@@ -0,0 +1,75 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.ServiceInfo.Fields;
+import javax.jmdns.impl.util.ByteWrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of the qualified service names and of the TXT records of the devices, done for every service seen on the network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+
+    private Map<String, String> _printer;
+
+    private byte[]              _printerText;
+
+    private byte[]              _appleTvText;
+
+    @Setup
+    public void setup() {
+        _printer = Packets.printerText(1);
+        _printerText = ByteWrangler.textFromProperties(_printer);
+        _appleTvText = ByteWrangler.textFromProperties(Packets.appleTvText(1));
+    }
+
+    @Benchmark
+    public Map<Fields, String> decodeQualifiedName() {
+        return ServiceTypeDecoder.decodeQualifiedNameMapForType("Living Room 1." + Packets.AIRPLAY);
+    }
+
+    @Benchmark
+    public Map<Fields, String> decodeServiceInfoName() {
+        return ServiceTypeDecoder.decodeQualifiedNameMap(Packets.IPP, "HP LaserJet MFP M428fdw (1)", "");
+    }
+
+    @Benchmark
+    public Map<String, byte[]> readPrinterText() throws Exception {
+        final Map<String, byte[]> properties = new HashMap<String, byte[]>();
+        ByteWrangler.readProperties(properties, _printerText);
+        return properties;
+    }
+
+    @Benchmark
+    public Map<String, byte[]> readAppleTvText() throws Exception {
+        final Map<String, byte[]> properties = new HashMap<String, byte[]>();
+        ByteWrangler.readProperties(properties, _appleTvText);
+        return properties;
+    }
+
+    @Benchmark
+    public byte[] writePrinterText() {
+        return ByteWrangler.textFromProperties(_printer);
+    }
+
+}
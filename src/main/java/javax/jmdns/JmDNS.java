@@ -11,6 +11,7 @@ import java.net.InetAddress;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 import javax.jmdns.impl.JmDNSImpl;
 
@@ -258,6 +259,34 @@ public abstract class JmDNS implements Closeable {
      */
     public abstract ServiceInfo getServiceInfo(String type, String name, boolean persistent, long timeout);
 
+    /**
+     * Get service information without blocking. The future completes as soon as the information is received, right away if it is cached.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code> .
+     * @param name
+     *            unqualified service name, such as <code>foobar</code> .
+     * @return a future completed with the service information, or with <code>null</code> if it cannot be obtained within the default timeout
+     * @see #getServiceInfo(String, String)
+     */
+    public abstract CompletableFuture<ServiceInfo> resolveServiceInfoAsync(String type, String name);
+
+    /**
+     * Get service information without blocking. The future completes as soon as the information is received, right away if it is cached.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code> .
+     * @param name
+     *            unqualified service name, such as <code>foobar</code> .
+     * @param persistent
+     *            if <code>true</code> ServiceListener.resolveService will be called whenever new new information is received.
+     * @param timeout
+     *            timeout in milliseconds. Typical timeout should be 5s.
+     * @return a future completed with the service information, or with <code>null</code> if it cannot be obtained within the timeout
+     * @see #getServiceInfo(String, String, boolean, long)
+     */
+    public abstract CompletableFuture<ServiceInfo> resolveServiceInfoAsync(String type, String name, boolean persistent, long timeout);
+
     /**
      * Request service information. The information about the service is requested and the ServiceListener.resolveService method is called as soon as it is available.
      * <p/>
@@ -348,6 +377,31 @@ public abstract class JmDNS implements Closeable {
      */
     public abstract void removeServiceListener(String type, ServiceListener listener);
 
+    /**
+     * Returns a publisher of the events of a service type, delivering events only as its subscribers request them. The pending events of each subscriber are
+     * held up to the listener queue size, set by the <code>net.mdns.listenerQueueSize</code> system property, keeping the latest event per service.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code>.
+     * @return service event publisher
+     * @see #getServiceEventPublisher(String, ServiceEventFlow.Overflow, int)
+     */
+    public abstract ServiceEventFlow.Publisher getServiceEventPublisher(String type);
+
+    /**
+     * Returns a publisher of the events of a service type, delivering events only as its subscribers request them. Like {@link #addServiceListener(String,
+     * ServiceListener)} subscribing starts the discovery of the type and replays the cached services. Subscriptions complete when this instance closes.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code>.
+     * @param overflow
+     *            what to do with the events of a subscriber falling behind
+     * @param capacity
+     *            number of events held for each subscriber
+     * @return service event publisher
+     */
+    public abstract ServiceEventFlow.Publisher getServiceEventPublisher(String type, ServiceEventFlow.Overflow overflow, int capacity);
+
     /**
      * Register a service. The service is registered for access by other jmdns clients. The name of the service may be changed to make it unique.<br>
      * Note that the given {@code ServiceInfo} is bound to this {@code JmDNS} instance, and should not be reused for any other {@linkplain #registerService(ServiceInfo)}.
@@ -359,6 +413,16 @@ public abstract class JmDNS implements Closeable {
      */
     public abstract void registerService(ServiceInfo info) throws IOException;
 
+    /**
+     * Register a service without blocking.
+     *
+     * @param info
+     *            service info to register
+     * @return a future completed once the service is announced, or completed exceptionally if the service cannot be registered or is canceled before
+     * @see #registerService(ServiceInfo)
+     */
+    public abstract CompletableFuture<Void> registerServiceAsync(ServiceInfo info);
+
     /**
      * Unregister a service. The service should have been registered.
      * <p>
@@ -380,6 +444,30 @@ public abstract class JmDNS implements Closeable {
      */
     public abstract void unregisterAllServices();
 
+    /**
+     * Register several services at once. The services are probed and announced together, sharing packets, instead of one after the other. The names of the
+     * services may be changed to make them unique.<br>
+     * As with {@linkplain #registerService(ServiceInfo)}, each {@code ServiceInfo} is bound to this {@code JmDNS} instance.
+     *
+     * @param infos
+     *            service infos to register
+     * @return a future completed once all the services are announced. It completes exceptionally with a {@link java.util.concurrent.CancellationException} if
+     *         a service is unregistered or the instance closed before that.
+     * @exception IOException
+     *                if there is an error in the underlying protocol, such as a TCP error.
+     */
+    public abstract CompletableFuture<Void> registerServices(Collection<ServiceInfo> infos) throws IOException;
+
+    /**
+     * Unregister several services at once. The goodbye packets of the services are sent together.<br>
+     * Unlike {@linkplain #unregisterService(ServiceInfo)} this does not wait for the goodbye packets to be sent.
+     *
+     * @param infos
+     *            service infos to remove
+     * @return a future completed once all the services are canceled and removed
+     */
+    public abstract CompletableFuture<Void> unregisterServices(Collection<ServiceInfo> infos);
+
     /**
      * Register a service type. If this service type was not already known, all service listeners will be notified of the new service type.
      * <p>
@@ -420,6 +508,28 @@ public abstract class JmDNS implements Closeable {
      */
     public abstract ServiceInfo[] list(String type, long timeout);
 
+    /**
+     * Returns a list of service infos of the specified type without blocking.
+     *
+     * @param type
+     *            Service type name, such as <code>_http._tcp.local.</code>.
+     * @return a future completed with the service instances
+     * @see #list(String)
+     */
+    public abstract CompletableFuture<ServiceInfo[]> listAsync(String type);
+
+    /**
+     * Returns a list of service infos of the specified type without blocking. Like {@link #list(String, long)} the first listing of a type collects the
+     * answers for the whole timeout, later ones complete as soon as all the known services are resolved.
+     *
+     * @param type
+     *            Service type name, such as <code>_http._tcp.local.</code>.
+     * @param timeout
+     *            timeout in milliseconds. Typical timeout should be 6s.
+     * @return a future completed with the service instances
+     */
+    public abstract CompletableFuture<ServiceInfo[]> listAsync(String type, long timeout);
+
     /**
      * Returns a list of service infos of the specified type sorted by subtype. Any service that do not register a subtype is listed in the empty subtype section.
      *
@@ -456,4 +566,11 @@ public abstract class JmDNS implements Closeable {
      */
     public abstract Delegate setDelegate(Delegate value);
 
+    /**
+     * Returns the protocol and cache counters of this instance.
+     *
+     * @return metrics of this instance
+     */
+    public abstract JmDNSMetrics getMetrics();
+
 }
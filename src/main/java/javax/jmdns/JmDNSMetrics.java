@@ -0,0 +1,153 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Protocol and cache counters of a JmDNS instance, cheap enough to be always on.<br/>
+ * Counters only grow from the creation of the instance, gauges are read when asked for. Set the <code>net.mdns.jmx</code> system property to also expose the
+ * metrics of each instance as an MBean named <code>javax.jmdns:type=JmDNS,name=&lt;name&gt;,address=&lt;address&gt;</code>.
+ *
+ * @see JmDNS#getMetrics()
+ * @see JmmDNS#getMetrics()
+ */
+public interface JmDNSMetrics {
+
+    /**
+     * A metric, keyed by its name in {@link JmDNSMetrics#snapshot()} and in JMX.
+     */
+    public enum Metric {
+        /**
+         * Queries received.
+         */
+        PACKETS_IN_QUERY("packets.in.query", false),
+        /**
+         * Responses received.
+         */
+        PACKETS_IN_RESPONSE("packets.in.response", false),
+        /**
+         * Received messages with an error response code, ignored.
+         */
+        PACKETS_IN_ERROR("packets.in.error", false),
+        /**
+         * Received packets that could not be parsed.
+         */
+        PACKETS_IN_MALFORMED("packets.in.malformed", false),
+        /**
+         * Received messages dropped because too many were waiting to be handled.
+         */
+        PACKETS_IN_DROPPED("packets.in.dropped", false),
+        /**
+         * Queries sent.
+         */
+        PACKETS_OUT_QUERY("packets.out.query", false),
+        /**
+         * Responses sent.
+         */
+        PACKETS_OUT_RESPONSE("packets.out.response", false),
+        /**
+         * Records in the cache.
+         */
+        CACHE_SIZE("cache.size", true),
+        /**
+         * Lookups of a record found in the cache.
+         */
+        CACHE_HITS("cache.hits", false),
+        /**
+         * Lookups of a record missing from the cache.
+         */
+        CACHE_MISSES("cache.misses", false),
+        /**
+         * Records cut short by a goodbye or flushed by a cache-flush announcement.
+         */
+        CACHE_EVICTIONS("cache.evictions", false),
+        /**
+         * Records removed by the record reaper once their time to live ran out, evicted records included.
+         */
+        CACHE_EXPIRATIONS("cache.expirations", false),
+        /**
+         * Queries answered right away, this instance being the only one able to answer.
+         */
+        RESPONDER_DELAY_NONE("responder.delay.0ms", false),
+        /**
+         * Queries answered after 1 to 40 ms.
+         */
+        RESPONDER_DELAY_40MS("responder.delay.1to40ms", false),
+        /**
+         * Queries answered after 41 to 80 ms.
+         */
+        RESPONDER_DELAY_80MS("responder.delay.41to80ms", false),
+        /**
+         * Queries answered after more than 80 ms.
+         */
+        RESPONDER_DELAY_OVER_80MS("responder.delay.over80ms", false),
+        /**
+         * Sum of the delays of all the answered queries, in milliseconds.
+         */
+        RESPONDER_DELAY_TOTAL("responder.delay.totalms", false),
+        /**
+         * Answers left out because the query already listed them as known answers.
+         */
+        RESPONDER_SUPPRESSED("responder.suppressed", false),
+        /**
+         * Conflicts with our host name or services sending us probing again.
+         */
+        PROBE_CONFLICTS("probe.conflicts", false),
+        /**
+         * Restarts of the instance after a network error.
+         */
+        RECOVERIES("recoveries", false),
+        /**
+         * Events waiting to be delivered to the listeners.
+         */
+        LISTENERS_QUEUED("listeners.queued", true),
+        /**
+         * Messages waiting in the outgoing queue.
+         */
+        OUTGOING_QUEUED("outgoing.queued", true);
+
+        private final String  _key;
+
+        private final boolean _gauge;
+
+        private Metric(String key, boolean gauge) {
+            _key = key;
+            _gauge = gauge;
+        }
+
+        /**
+         * @return name of the metric
+         */
+        public String getKey() {
+            return _key;
+        }
+
+        /**
+         * @return <code>true</code> for a value read when asked for, <code>false</code> for a counter
+         */
+        public boolean isGauge() {
+            return _gauge;
+        }
+
+    }
+
+    /**
+     * @param metric
+     *            metric to read
+     * @return current value of the metric
+     */
+    public long get(Metric metric);
+
+    /**
+     * @return current value of every metric, keyed by name in the order of {@link Metric}
+     */
+    default Map<String, Long> snapshot() {
+        final Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+        for (Metric metric : Metric.values()) {
+            snapshot.put(metric.getKey(), Long.valueOf(this.get(metric)));
+        }
+        return snapshot;
+    }
+
+}
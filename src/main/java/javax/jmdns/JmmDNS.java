@@ -6,7 +6,10 @@ package javax.jmdns;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.jmdns.impl.JmmDNSImpl;
@@ -161,6 +164,15 @@ public interface JmmDNS extends Closeable {
      */
     public abstract JmDNS[] getDNS();
 
+    /**
+     * Return the network interfaces on which a service was seen.
+     *
+     * @param info
+     *            service info
+     * @return list of network interfaces, empty if the service is not cached
+     */
+    public abstract NetworkInterface[] getNetworkInterfaces(ServiceInfo info);
+
     /**
      * Get service information. If the information is not cached, the method will block until updated information is received on all DNS.
      * <p/>
@@ -225,6 +237,22 @@ public interface JmmDNS extends Closeable {
      */
     public abstract ServiceInfo[] getServiceInfos(String type, String name, boolean persistent, long timeout);
 
+    /**
+     * Get service information on all the interfaces without blocking.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code> .
+     * @param name
+     *            unqualified service name, such as <code>foobar</code> .
+     * @param persistent
+     *            if <code>true</code> ServiceListener.resolveService will be called whenever new new information is received.
+     * @param timeout
+     *            timeout in milliseconds. Typical timeout should be 5s.
+     * @return a future completed with the services resolved on any interface within the timeout
+     * @see javax.jmdns.JmDNS#resolveServiceInfoAsync(String, String, boolean, long)
+     */
+    public abstract CompletableFuture<ServiceInfo[]> resolveServiceInfosAsync(String type, String name, boolean persistent, long timeout);
+
     /**
      * Request service information. The information about the service is requested and the ServiceListener.resolveService method is called as soon as it is available.
      *
@@ -318,6 +346,33 @@ public interface JmmDNS extends Closeable {
      */
     public abstract void removeServiceListener(String type, ServiceListener listener);
 
+    /**
+     * Returns a publisher of the events of a service type on all the interfaces, delivering events only as its subscribers request them. The pending events of
+     * each subscriber are held up to the listener queue size, set by the <code>net.mdns.listenerQueueSize</code> system property, keeping the latest event per
+     * service.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code>.
+     * @return service event publisher
+     * @see #getServiceEventPublisher(String, ServiceEventFlow.Overflow, int)
+     */
+    public abstract ServiceEventFlow.Publisher getServiceEventPublisher(String type);
+
+    /**
+     * Returns a publisher of the events of a service type on all the interfaces, delivering events only as its subscribers request them. Subscriptions
+     * complete when this instance closes.
+     *
+     * @param type
+     *            full qualified service type, such as <code>_http._tcp.local.</code>.
+     * @param overflow
+     *            what to do with the events of a subscriber falling behind
+     * @param capacity
+     *            number of events held for each subscriber
+     * @return service event publisher
+     * @see javax.jmdns.JmDNS#getServiceEventPublisher(String, ServiceEventFlow.Overflow, int)
+     */
+    public abstract ServiceEventFlow.Publisher getServiceEventPublisher(String type, ServiceEventFlow.Overflow overflow, int capacity);
+
     /**
      * Register a service. The service is registered for access by other jmdns clients. The name of the service may be changed to make it unique.<br>
      * <b>Note</b> the Service info is cloned for each network interface.
@@ -329,6 +384,16 @@ public interface JmmDNS extends Closeable {
      */
     public abstract void registerService(ServiceInfo info) throws IOException;
 
+    /**
+     * Register a service on all the interfaces without blocking.
+     *
+     * @param info
+     *            service info to register
+     * @return a future completed once the service is announced on all the interfaces
+     * @see javax.jmdns.JmDNS#registerServiceAsync(ServiceInfo)
+     */
+    public abstract CompletableFuture<Void> registerServiceAsync(ServiceInfo info);
+
     /**
      * Unregister a service. The service should have been registered.
      *
@@ -345,6 +410,28 @@ public interface JmmDNS extends Closeable {
      */
     public abstract void unregisterAllServices();
 
+    /**
+     * Register several services at once on all the interfaces.
+     *
+     * @param infos
+     *            service infos to register
+     * @return a future completed once all the services are announced on all the interfaces
+     * @exception IOException
+     *                if there is an error in the underlying protocol, such as a TCP error.
+     * @see javax.jmdns.JmDNS#registerServices(Collection)
+     */
+    public abstract CompletableFuture<Void> registerServices(Collection<ServiceInfo> infos) throws IOException;
+
+    /**
+     * Unregister several services at once from all the interfaces.
+     *
+     * @param infos
+     *            service infos to remove
+     * @return a future completed once all the services are removed from all the interfaces
+     * @see javax.jmdns.JmDNS#unregisterServices(Collection)
+     */
+    public abstract CompletableFuture<Void> unregisterServices(Collection<ServiceInfo> infos);
+
     /**
      * Register a service type. If this service type was not already known, all service listeners will be notified of the new service type. Service types are automatically registered as they are discovered.
      *
@@ -376,6 +463,18 @@ public interface JmmDNS extends Closeable {
      */
     public abstract ServiceInfo[] list(String type, long timeout);
 
+    /**
+     * Returns a list of service infos of the specified type on all the interfaces without blocking.
+     *
+     * @param type
+     *            Service type name, such as <code>_http._tcp.local.</code>.
+     * @param timeout
+     *            timeout in milliseconds. Typical timeout should be 6s.
+     * @return a future completed with the service instances
+     * @see javax.jmdns.JmDNS#listAsync(String, long)
+     */
+    public abstract CompletableFuture<ServiceInfo[]> listAsync(String type, long timeout);
+
     /**
      * Returns a list of service infos of the specified type sorted by subtype. Any service that do not register a subtype is listed in the empty subtype section.
      *
@@ -421,4 +520,12 @@ public interface JmmDNS extends Closeable {
      */
     public abstract NetworkTopologyListener[] networkListeners();
 
+    /**
+     * Returns the protocol and cache counters of all the interfaces together. A cache shared by the interfaces is only counted once.
+     *
+     * @return metrics summed over the JmDNS instances
+     * @see javax.jmdns.JmDNS#getMetrics()
+     */
+    public abstract JmDNSMetrics getMetrics();
+
 }
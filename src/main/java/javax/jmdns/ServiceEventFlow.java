@@ -0,0 +1,129 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns;
+
+/**
+ * Demand driven streams of service events.<br/>
+ * The interfaces mirror <code>java.util.concurrent.Flow</code>, which needs Java 9, so they can be bridged to it or to any Reactive Streams library. Unlike
+ * {@link ServiceListener} callbacks, events are only delivered as the subscriber requests them, and the events a slow subscriber has not requested yet are
+ * held in a bounded buffer handled according to an {@link Overflow} policy.
+ *
+ * @see JmDNS#getServiceEventPublisher(String, Overflow, int)
+ */
+public final class ServiceEventFlow {
+
+    private ServiceEventFlow() {
+        super();
+    }
+
+    /**
+     * Kind of service event, matching the {@link ServiceListener} methods.
+     */
+    public enum Kind {
+        /**
+         * {@link ServiceListener#serviceAdded(ServiceEvent)}
+         */
+        ADDED,
+        /**
+         * {@link ServiceListener#serviceRemoved(ServiceEvent)}
+         */
+        REMOVED,
+        /**
+         * {@link ServiceListener#serviceResolved(ServiceEvent)}
+         */
+        RESOLVED
+    }
+
+    /**
+     * What to do with the events a subscriber has not requested yet once its buffer is full.
+     */
+    public enum Overflow {
+        /**
+         * Only the latest pending event of each kind is kept for a service, and a removal discards the pending resolution of the service. When the buffer is
+         * still full the oldest event is dropped.
+         */
+        LATEST_PER_SERVICE,
+        /**
+         * Every event is kept until the buffer is full, then the oldest event is dropped.
+         */
+        DROP_OLDEST,
+        /**
+         * Every event is kept. A subscriber falling behind by more than the buffer fails with an {@link IllegalStateException}.
+         */
+        BUFFER
+    }
+
+    /**
+     * Source of service events for a service type.
+     */
+    public interface Publisher {
+
+        /**
+         * Adds a subscriber. The subscriber receives a {@link Subscription} through {@link Subscriber#onSubscribe(Subscription)} and no event until it
+         * requests some.
+         *
+         * @param subscriber
+         *            subscriber
+         */
+        void subscribe(Subscriber subscriber);
+
+    }
+
+    /**
+     * Receiver of service events. Calls are never concurrent.
+     */
+    public interface Subscriber {
+
+        /**
+         * Called once, before any other call.
+         *
+         * @param subscription
+         *            subscription used to request events or cancel
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called for each requested event.
+         *
+         * @param kind
+         *            kind of event
+         * @param event
+         *            service event
+         */
+        void onNext(Kind kind, ServiceEvent event);
+
+        /**
+         * Called once when the subscription fails, no call follows.
+         *
+         * @param throwable
+         *            failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once when the publisher closes, no call follows.
+         */
+        void onComplete();
+
+    }
+
+    /**
+     * Link between a publisher and a subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests more events. A non positive number fails the subscription.
+         *
+         * @param n
+         *            number of additional events, {@link Long#MAX_VALUE} for no limit
+         */
+        void request(long n);
+
+        /**
+         * Stops the events. Pending events are discarded.
+         */
+        void cancel();
+
+    }
+
+}
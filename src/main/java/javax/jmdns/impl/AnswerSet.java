@@ -0,0 +1,103 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+/**
+ * Answer records built and encoded ahead of time for a registered service or for the local host.<br/>
+ * Answer sets are immutable, they are replaced when the service or host changes. They are indexed on the lower case question names they answer and on the
+ * record type, so answering a query takes a lookup and writing the answers mostly byte copies.
+ */
+final class AnswerSet {
+
+    private final Set<String>     _names;
+
+    private final List<DNSRecord> _records;
+
+    private final String          _hostName;
+
+    /**
+     * @param names
+     *            names of the questions answered by the set
+     * @param records
+     *            answer records, they get encoded
+     * @param hostName
+     *            name of the host the records point to
+     */
+    AnswerSet(Collection<String> names, Collection<DNSRecord> records, String hostName) {
+        super();
+        final Set<String> lowerCaseNames = new HashSet<String>();
+        for (String name : names) {
+            lowerCaseNames.add(name.toLowerCase());
+        }
+        final List<DNSRecord> encodedRecords = new ArrayList<DNSRecord>(records.size());
+        for (DNSRecord record : records) {
+            encodedRecords.add(record.encode());
+        }
+        _names = Collections.unmodifiableSet(lowerCaseNames);
+        _records = Collections.unmodifiableList(encodedRecords);
+        _hostName = hostName;
+    }
+
+    /**
+     * @param name
+     *            question name
+     * @return <code>true</code> if the set answers questions for the name
+     */
+    boolean answers(String name) {
+        return _names.contains(name.toLowerCase());
+    }
+
+    /**
+     * @return the host name the records were built for
+     */
+    String getHostName() {
+        return _hostName;
+    }
+
+    /**
+     * @return all the records
+     */
+    List<DNSRecord> getRecords() {
+        return _records;
+    }
+
+    /**
+     * @param type
+     *            record type
+     * @return the first record of the type, or <code>null</code> if none
+     */
+    DNSRecord getRecord(DNSRecordType type) {
+        for (DNSRecord record : _records) {
+            if (record.getRecordType() == type) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the records matching the class of the question.
+     *
+     * @param recordClass
+     *            question class
+     * @param answers
+     *            answers to add to
+     */
+    void addAnswers(DNSRecordClass recordClass, Collection<DNSRecord> answers) {
+        for (DNSRecord record : _records) {
+            if (record.matchRecordClass(recordClass)) {
+                answers.add(record);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jmdns.impl.constants.DNSConstants;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file holding the records of a cache, so an instance can start with the cache it had when it was last closed.<br/>
+ * The records are kept in the DNS wire format, as the answers of messages of up to {@link DNSConstants#MAX_MSG_ABSOLUTE} bytes which compress their names.
+ * Each message is preceded by the creation time of its records, and the records are written with their original TTL, so a record read back expires when it
+ * would have expired had the instance never stopped:
+ *
+ * <pre>
+ * int    magic "JmDC"
+ * byte   version
+ * long   time of the snapshot
+ * then for each message
+ * short  number of records
+ * long   creation time of each record, in the order of the message
+ * short  length of the message
+ * byte[] message
+ * and a number of records of 0 at the end.
+ * </pre>
+ */
+class CacheSnapshot {
+    private static Logger     logger  = LoggerFactory.getLogger(CacheSnapshot.class);
+
+    static final int          MAGIC   = 0x4A6D4443;
+
+    static final int          VERSION = 1;
+
+    private final File        _file;
+
+    /**
+     * @param file
+     *            file the snapshot is saved to
+     */
+    CacheSnapshot(File file) {
+        super();
+        _file = file;
+    }
+
+    /**
+     * Returns the snapshot of an instance in a directory, named after the name and the address of the instance.
+     *
+     * @param directory
+     *            directory of the snapshots
+     * @param name
+     *            name of the instance
+     * @param address
+     *            address of the instance
+     * @return snapshot of the instance
+     */
+    static CacheSnapshot forInstance(File directory, String name, InetAddress address) {
+        final String fileName = name + "-" + (address != null ? address.getHostAddress() : "any");
+        return new CacheSnapshot(new File(directory, fileName.replaceAll("[^A-Za-z0-9._-]", "_") + ".cache"));
+    }
+
+    /**
+     * @return file the snapshot is saved to
+     */
+    File getFile() {
+        return _file;
+    }
+
+    /**
+     * Saves records, replacing the previous snapshot at once so a crash while saving leaves the previous snapshot in place. Expired records are left out.
+     *
+     * @param records
+     *            records to save
+     * @param now
+     *            time of the snapshot
+     * @exception IOException
+     */
+    synchronized void save(Collection<? extends DNSRecord> records, long now) throws IOException {
+        final File directory = _file.getAbsoluteFile().getParentFile();
+        if ((directory != null) && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the directory of the cache snapshot: " + directory);
+        }
+        final File temporary = new File(directory, _file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            write(records, now, out);
+        }
+        try {
+            Files.move(temporary.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException exception) {
+            Files.move(temporary.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Loads the records that have not expired yet.
+     *
+     * @param now
+     *            current time
+     * @return records of the snapshot with their creation time, empty if there is no snapshot
+     * @exception IOException
+     *                if the snapshot cannot be read
+     */
+    synchronized List<DNSRecord> load(long now) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file)))) {
+            return read(in, now);
+        } catch (FileNotFoundException exception) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Writes records in the snapshot format. Expired records are left out.
+     *
+     * @param records
+     *            records to write
+     * @param now
+     *            time of the snapshot
+     * @param out
+     *            stream to write to
+     * @exception IOException
+     */
+    static void write(Collection<? extends DNSRecord> records, long now, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(now);
+        DNSOutgoing message = newMessage();
+        final List<DNSRecord> written = new ArrayList<DNSRecord>();
+        for (DNSRecord record : records) {
+            if (record.isExpired(now)) {
+                continue;
+            }
+            if (!addRecord(message, record)) {
+                if (!written.isEmpty()) {
+                    writeMessage(message, written, out);
+                    message = newMessage();
+                    written.clear();
+                }
+                if (!addRecord(message, record)) {
+                    logger.debug("write() record too large for a snapshot: {}", record);
+                    continue;
+                }
+            }
+            written.add(record);
+        }
+        if (!written.isEmpty()) {
+            writeMessage(message, written, out);
+        }
+        out.writeShort(0);
+    }
+
+    private static DNSOutgoing newMessage() {
+        return new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, true, DNSConstants.MAX_MSG_ABSOLUTE);
+    }
+
+    /**
+     * @return <code>false</code> if the message is full
+     */
+    private static boolean addRecord(DNSOutgoing message, DNSRecord record) {
+        try {
+            // Encoded as of its creation, the record keeps its original TTL
+            message.addAnswer(record, record.getCreated());
+            return true;
+        } catch (IOException full) {
+            return false;
+        }
+    }
+
+    private static void writeMessage(DNSOutgoing message, List<DNSRecord> records, DataOutputStream out) throws IOException {
+        out.writeShort(records.size());
+        for (DNSRecord record : records) {
+            out.writeLong(record.getCreated());
+        }
+        final byte[] data = message.data();
+        out.writeShort(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Reads records in the snapshot format. Expired records are left out.
+     *
+     * @param in
+     *            stream to read from
+     * @param now
+     *            current time
+     * @return records with their creation time
+     * @exception IOException
+     *                if the stream is not a snapshot
+     */
+    static List<DNSRecord> read(DataInputStream in, long now) throws IOException {
+        if ((in.readInt() != MAGIC) || (in.readByte() != VERSION)) {
+            throw new IOException("Not a cache snapshot");
+        }
+        final long time = in.readLong();
+        logger.debug("read() cache snapshot of {} ms ago", now - time);
+        final List<DNSRecord> records = new ArrayList<DNSRecord>();
+        int count;
+        while ((count = in.readUnsignedShort()) > 0) {
+            final long[] created = new long[count];
+            for (int i = 0; i < count; i++) {
+                created[i] = in.readLong();
+            }
+            final byte[] data = new byte[in.readUnsignedShort()];
+            in.readFully(data);
+            final List<DNSRecord> answers = new DNSIncoming(new DatagramPacket(data, data.length)).getAllAnswers();
+            if (answers.size() != count) {
+                logger.warn("read() skipping {} records of the cache snapshot, {} were decoded", count, answers.size());
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                final DNSRecord record = answers.get(i);
+                // A clock set back would make the record live longer than its TTL
+                record.setCreated(Math.min(created[i], now));
+                if (!record.isExpired(now)) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheSnapshot[" + _file + "]";
+    }
+
+}
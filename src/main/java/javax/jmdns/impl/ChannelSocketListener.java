@@ -0,0 +1,187 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.JmDNSMetrics;
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.util.NamedThreadFactory;
+
+/**
+ * Listen for multicast packets on a {@link DatagramChannel}.<br/>
+ * This thread only pulls packets into a ring of direct buffers, decoding them is left to a pool of decoder threads. The decoded messages are handled one at a
+ * time by a single dispatcher thread, as the handling of queries and responses assumes a single receive thread. All the packets from one source go through
+ * the same decoder, so they are handled in the order they were received. When the dispatcher falls behind by more than the queue size the further messages
+ * are dropped and counted, as a packet the socket cannot take in is lost anyway.
+ */
+class ChannelSocketListener extends SocketListener {
+
+    private final DatagramChannel           _channel;
+
+    /**
+     * Buffers ready to receive a packet. A buffer goes back into the ring as soon as a decoder has copied the packet out of it.
+     */
+    private final BlockingQueue<ByteBuffer> _freeBuffers;
+
+    private final ExecutorService[]         _decoders;
+
+    private final ExecutorService           _dispatcher;
+
+    /**
+     * @param jmDNSImpl
+     * @param channel
+     *            channel joined to the multicast group
+     * @param bufferCount
+     *            number of receive buffers
+     * @param decoderCount
+     *            number of decoder threads
+     * @param queueSize
+     *            maximum number of decoded messages waiting for the dispatcher
+     */
+    ChannelSocketListener(JmDNSImpl jmDNSImpl, DatagramChannel channel, int bufferCount, int decoderCount, int queueSize) {
+        super(jmDNSImpl, "ChannelSocketListener");
+        _channel = channel;
+        _freeBuffers = new ArrayBlockingQueue<ByteBuffer>(Math.max(1, bufferCount));
+        while (_freeBuffers.remainingCapacity() > 0) {
+            _freeBuffers.add(ByteBuffer.allocateDirect(DNSConstants.MAX_MSG_ABSOLUTE));
+        }
+        _decoders = new ExecutorService[Math.max(1, decoderCount)];
+        for (int i = 0; i < _decoders.length; i++) {
+            _decoders[i] = Executors.newSingleThreadExecutor(new NamedThreadFactory(this.getName() + ".Decoder-" + i));
+        }
+        _dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new NamedThreadFactory(this.getName() + ".Dispatcher"));
+    }
+
+    @Override
+    public void run() {
+        final JmDNSImpl dns = this.getDns();
+        try {
+            while (!dns.isCanceling() && !dns.isCanceled()) {
+                final ByteBuffer buffer = _freeBuffers.take();
+                buffer.clear();
+                final SocketAddress source;
+                try {
+                    source = _channel.receive(buffer);
+                } catch (IOException e) {
+                    _freeBuffers.offer(buffer);
+                    throw e;
+                }
+                if (dns.isCanceling() || dns.isCanceled() || dns.isClosing() || dns.isClosed()) {
+                    _freeBuffers.offer(buffer);
+                    break;
+                }
+                if (!(source instanceof InetSocketAddress)) {
+                    _freeBuffers.offer(buffer);
+                    continue;
+                }
+                buffer.flip();
+                try {
+                    this.decoderFor(source).execute(new Decoder(buffer, (InetSocketAddress) source));
+                } catch (RejectedExecutionException e) {
+                    _freeBuffers.offer(buffer);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn(this.getName() + ".run() interrupted ", e);
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!dns.isCanceling() && !dns.isCanceled() && !dns.isClosing() && !dns.isClosed()) {
+                logger.warn(this.getName() + ".run() exception ", e);
+                dns.recover();
+            }
+        } finally {
+            for (ExecutorService decoder : _decoders) {
+                decoder.shutdown();
+            }
+            _dispatcher.shutdown();
+        }
+        logger.trace("{}.run() exiting.", this.getName());
+    }
+
+    private ExecutorService decoderFor(SocketAddress source) {
+        return _decoders[(source.hashCode() & Integer.MAX_VALUE) % _decoders.length];
+    }
+
+    /**
+     * Copies a received packet out of its ring buffer, decodes it and hands the message to the dispatcher.
+     */
+    private final class Decoder implements Runnable {
+
+        private final ByteBuffer        _buffer;
+
+        private final InetSocketAddress _source;
+
+        Decoder(ByteBuffer buffer, InetSocketAddress source) {
+            super();
+            _buffer = buffer;
+            _source = source;
+        }
+
+        @Override
+        public void run() {
+            // The incoming message keeps a reference to the packet data, so it gets its own copy.
+            final byte[] data = new byte[_buffer.remaining()];
+            _buffer.get(data);
+            _freeBuffers.offer(_buffer);
+            final DatagramPacket packet = new DatagramPacket(data, data.length, _source);
+            final DNSIncoming msg;
+            try {
+                msg = ChannelSocketListener.this.decode(packet);
+            } catch (RuntimeException e) {
+                logger.warn(ChannelSocketListener.this.getName() + ".run() exception ", e);
+                return;
+            }
+            if (msg != null) {
+                try {
+                    _dispatcher.execute(new Dispatcher(msg, packet));
+                } catch (RejectedExecutionException e) {
+                    // Dropped, either closing or the dispatcher is behind
+                    if (!_dispatcher.isShutdown()) {
+                        ChannelSocketListener.this.getDns().getMetrics().increment(JmDNSMetrics.Metric.PACKETS_IN_DROPPED);
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Handles a decoded message on the dispatcher thread.
+     */
+    private final class Dispatcher implements Runnable {
+
+        private final DNSIncoming    _msg;
+
+        private final DatagramPacket _packet;
+
+        Dispatcher(DNSIncoming msg, DatagramPacket packet) {
+            super();
+            _msg = msg;
+            _packet = packet;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ChannelSocketListener.this.dispatch(_msg, _packet);
+            } catch (RuntimeException e) {
+                logger.warn(ChannelSocketListener.this.getName() + ".run() exception ", e);
+            }
+        }
+
+    }
+
+}
@@ -4,13 +4,22 @@
 
 package javax.jmdns.impl;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import javax.jmdns.impl.constants.DNSRecordClass;
 import javax.jmdns.impl.constants.DNSRecordType;
@@ -21,7 +30,9 @@ import org.slf4j.LoggerFactory;
 /**
  * A table of DNS entries. This is a map table which can handle multiple entries with the same name.
  * <p/>
- * Storing multiple entries with the same name is implemented using a linked list. This is hidden from the user and can change in later implementation.
+ * Storing multiple entries with the same name is implemented using a copy on write list which is further indexed by record type and record class. This is hidden from the user and can change in later implementation.
+ * <p/>
+ * Lookups never lock nor copy: they work on an immutable snapshot of the entries stored under a name. Writers for a given name are serialized on that name's list.
  * <p/>
  * Here's how to iterate over all entries:
  *
@@ -49,6 +60,40 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
 
     private static final long   serialVersionUID    = 3024739453186759259L;
 
+    /**
+     * Receives the earliest deadline of the expiry index whenever a record is scheduled ahead of all others.
+     */
+    public static interface ExpiryListener {
+
+        /**
+         * A record was scheduled before any other record of the cache.
+         *
+         * @param deadline
+         *            time in milliseconds at which the record reaper should run
+         */
+        public void nextDeadlineChanged(long deadline);
+
+    }
+
+    /**
+     * Expiry index: a min-heap of the time at which each record needs to be refreshed or removed. Nodes of removed or rescheduled records are left in the heap and skipped when they surface.
+     */
+    private final transient PriorityQueue<Deadline>     _deadlines          = new PriorityQueue<Deadline>();
+
+    /**
+     * The live node of each scheduled record, guarded by {@link #_deadlines}.
+     */
+    private final transient Map<DNSRecord, Deadline>    _scheduled          = new IdentityHashMap<DNSRecord, Deadline>();
+
+    private transient volatile ExpiryListener           _expiryListener;
+
+    /**
+     * Lookups of a single entry that found it, and that did not.
+     */
+    private final transient LongAdder                   _hits               = new LongAdder();
+
+    private final transient LongAdder                   _misses             = new LongAdder();
+
     /**
      *
      */
@@ -86,6 +131,195 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
         return new DNSCache(this);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> put(String key, List<DNSEntry> value) {
+        final DNSEntryList entryList = (value != null ? new DNSEntryList(value) : null);
+        final List<DNSEntry> previous = super.put(key, entryList);
+        if (previous != null) {
+            for (DNSEntry entry : previous) {
+                this.unscheduleDNSEntry(entry);
+            }
+        }
+        this.scheduleDNSEntries(entryList);
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> putIfAbsent(String key, List<DNSEntry> value) {
+        final DNSEntryList entryList = (value != null ? new DNSEntryList(value) : null);
+        final List<DNSEntry> previous = super.putIfAbsent(key, entryList);
+        if (previous == null) {
+            this.scheduleDNSEntries(entryList);
+        }
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAll(Map<? extends String, ? extends List<DNSEntry>> map) {
+        for (Map.Entry<? extends String, ? extends List<DNSEntry>> entry : map.entrySet()) {
+            this.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DNSEntry> remove(Object key) {
+        final List<DNSEntry> previous = super.remove(key);
+        this.replaced(previous, null);
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (super.remove(key, value)) {
+            this.replaced(this.asEntryList(value), null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> replace(String key, List<DNSEntry> value) {
+        final DNSEntryList entryList = new DNSEntryList(value);
+        final List<DNSEntry> previous = super.replace(key, entryList);
+        if (previous != null) {
+            this.replaced(previous, entryList);
+        }
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public boolean replace(String key, List<DNSEntry> oldValue, List<DNSEntry> newValue) {
+        final DNSEntryList entryList = new DNSEntryList(newValue);
+        if (super.replace(key, oldValue, entryList)) {
+            this.replaced(oldValue, entryList);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super List<DNSEntry>, ? extends List<DNSEntry>> function) {
+        for (Map.Entry<String, List<DNSEntry>> entry : this.entrySet()) {
+            this.replace(entry.getKey(), entry.getValue(), function.apply(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The computed value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> compute(String key, BiFunction<? super String, ? super List<DNSEntry>, ? extends List<DNSEntry>> remappingFunction) {
+        final EntryListRemapping remapping = new EntryListRemapping(remappingFunction);
+        final List<DNSEntry> value = super.compute(key, remapping);
+        this.replaced(remapping._previous, value);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The computed value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> computeIfAbsent(String key, final Function<? super String, ? extends List<DNSEntry>> mappingFunction) {
+        return this.compute(key, new BiFunction<String, List<DNSEntry>, List<DNSEntry>>() {
+            @Override
+            public List<DNSEntry> apply(String k, List<DNSEntry> value) {
+                return (value != null ? value : mappingFunction.apply(k));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The computed value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> computeIfPresent(String key, final BiFunction<? super String, ? super List<DNSEntry>, ? extends List<DNSEntry>> remappingFunction) {
+        return this.compute(key, new BiFunction<String, List<DNSEntry>, List<DNSEntry>>() {
+            @Override
+            public List<DNSEntry> apply(String k, List<DNSEntry> value) {
+                return (value != null ? remappingFunction.apply(k, value) : null);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The merged value is copied into the indexed list representation used by this cache.
+     * </p>
+     */
+    @Override
+    public List<DNSEntry> merge(String key, final List<DNSEntry> value, final BiFunction<? super List<DNSEntry>, ? super List<DNSEntry>, ? extends List<DNSEntry>> remappingFunction) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        return this.compute(key, new BiFunction<String, List<DNSEntry>, List<DNSEntry>>() {
+            @Override
+            public List<DNSEntry> apply(String k, List<DNSEntry> oldValue) {
+                return (oldValue != null ? remappingFunction.apply(oldValue, value) : value);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        synchronized (_deadlines) {
+            _deadlines.clear();
+            _scheduled.clear();
+        }
+    }
+
     // ====================================================================
 
     /**
@@ -105,24 +339,23 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
 
     /**
      * Iterate only over items with matching name. Returns an list of DNSEntry or null. To retrieve all entries, one must iterate over this linked list.
+     * <p>
+     * The returned collection is an immutable snapshot of the entries at the time of the call.
+     * </p>
      *
      * @param name
      * @return list of DNSEntries
      */
     public Collection<? extends DNSEntry> getDNSEntryList(String name) {
-        Collection<? extends DNSEntry> entryList = this._getDNSEntryList(name);
+        DNSEntryList entryList = this._getDNSEntryList(name);
         if (entryList != null) {
-            synchronized (entryList) {
-                entryList = new ArrayList<DNSEntry>(entryList);
-            }
-        } else {
-            entryList = Collections.emptyList();
+            return entryList.snapshot().entries();
         }
-        return entryList;
+        return Collections.emptyList();
     }
 
-    private Collection<? extends DNSEntry> _getDNSEntryList(String name) {
-        return this.get(name != null ? name.toLowerCase() : null);
+    private DNSEntryList _getDNSEntryList(String name) {
+        return (DNSEntryList) this.get(name != null ? name.toLowerCase() : null);
     }
 
     /**
@@ -134,17 +367,18 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
     public DNSEntry getDNSEntry(DNSEntry dnsEntry) {
         DNSEntry result = null;
         if (dnsEntry != null) {
-            Collection<? extends DNSEntry> entryList = this._getDNSEntryList(dnsEntry.getKey());
+            DNSEntryList entryList = (DNSEntryList) this.get(dnsEntry.getKey());
             if (entryList != null) {
-                synchronized (entryList) {
-                    for (DNSEntry testDNSEntry : entryList) {
-                        if (testDNSEntry.isSameEntry(dnsEntry)) {
-                            result = testDNSEntry;
-                            break;
-                        }
+                List<DNSEntry> candidates = entryList.snapshot().entries(dnsEntry.getRecordType(), dnsEntry.getRecordClass());
+                for (int i = 0, n = candidates.size(); i < n; i++) {
+                    DNSEntry testDNSEntry = candidates.get(i);
+                    if (testDNSEntry.isSameEntry(dnsEntry)) {
+                        result = testDNSEntry;
+                        break;
                     }
                 }
             }
+            (result != null ? _hits : _misses).increment();
         }
         return result;
     }
@@ -159,22 +393,47 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
      */
     public DNSEntry getDNSEntry(String name, DNSRecordType type, DNSRecordClass recordClass) {
         DNSEntry result = null;
-        Collection<? extends DNSEntry> entryList = this._getDNSEntryList(name);
+        DNSEntryList entryList = this._getDNSEntryList(name);
         if (entryList != null) {
-            synchronized (entryList) {
-                for (DNSEntry testDNSEntry : entryList) {
-                    if (testDNSEntry.matchRecordType(type) && testDNSEntry.matchRecordClass(recordClass)) {
-                        result = testDNSEntry;
-                        break;
-                    }
-                }
+            List<DNSEntry> candidates = entryList.snapshot().entries(type, recordClass);
+            if (!candidates.isEmpty()) {
+                result = candidates.get(0);
             }
         }
+        (result != null ? _hits : _misses).increment();
         return result;
     }
 
+    /**
+     * @return number of entries in the table, all names together
+     */
+    public int getEntryCount() {
+        int count = 0;
+        for (List<DNSEntry> entryList : this.values()) {
+            count += entryList.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of lookups of a single entry that found it
+     */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /**
+     * @return number of lookups of a single entry that did not find it
+     */
+    public long getMissCount() {
+        return _misses.sum();
+    }
+
     /**
      * Get all matching DNS entries from the table.
+     * <p>
+     * The returned collection is an immutable snapshot of the entries at the time of the call.
+     * </p>
      *
      * @param name
      * @param type
@@ -182,21 +441,11 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
      * @return list of entries
      */
     public Collection<? extends DNSEntry> getDNSEntryList(String name, DNSRecordType type, DNSRecordClass recordClass) {
-        Collection<? extends DNSEntry> entryList = this._getDNSEntryList(name);
+        DNSEntryList entryList = this._getDNSEntryList(name);
         if (entryList != null) {
-            synchronized (entryList) {
-                entryList = new ArrayList<DNSEntry>(entryList);
-                for (Iterator<? extends DNSEntry> i = entryList.iterator(); i.hasNext();) {
-                    DNSEntry testDNSEntry = i.next();
-                    if (!testDNSEntry.matchRecordType(type) || (!testDNSEntry.matchRecordClass(recordClass))) {
-                        i.remove();
-                    }
-                }
-            }
-        } else {
-            entryList = Collections.emptyList();
+            return entryList.snapshot().entries(type, recordClass);
         }
-        return entryList;
+        return Collections.emptyList();
     }
 
     /**
@@ -208,16 +457,19 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
     public boolean addDNSEntry(final DNSEntry dnsEntry) {
         boolean result = false;
         if (dnsEntry != null) {
-            List<DNSEntry> entryList = this.get(dnsEntry.getKey());
-            if (entryList == null) {
-                this.putIfAbsent(dnsEntry.getKey(), new ArrayList<DNSEntry>(3));
-                entryList = this.get(dnsEntry.getKey());
-            }
-            synchronized (entryList) {
-                entryList.add(dnsEntry);
+            final String key = dnsEntry.getKey();
+            while (!result) {
+                DNSEntryList entryList = this.getOrCreateDNSEntryList(key);
+                synchronized (entryList) {
+                    // The list may have been dropped from the map by a concurrent removal of its last entry
+                    if (this.get(key) == entryList) {
+                        entryList.add(dnsEntry);
+                        // This is probably not very informative
+                        result = true;
+                    }
+                }
             }
-            // This is probably not very informative
-            result = true;
+            this.scheduleDNSEntry(dnsEntry);
         }
         return result;
     }
@@ -229,20 +481,21 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
      * @return true if the entry was removed
      */
     public boolean removeDNSEntry(DNSEntry dnsEntry) {
-        boolean result = false;
+        DNSEntry removed = null;
         if (dnsEntry != null) {
-            List<DNSEntry> entryList = this.get(dnsEntry.getKey());
+            DNSEntryList entryList = (DNSEntryList) this.get(dnsEntry.getKey());
             if (entryList != null) {
                 synchronized (entryList) {
-                    result = entryList.remove(dnsEntry);
+                    removed = entryList.removeEntry(dnsEntry);
+                    /* Remove from DNS cache when no records remain with this key */
+                    if ((removed != null) && entryList.isEmpty()) {
+                        this.remove(dnsEntry.getKey(), entryList);
+                    }
                 }
             }
-            /* Remove from DNS cache when no records remain with this key */
-            if (result && entryList.isEmpty()) {
-                this.remove(dnsEntry.getKey());
-            }
+            this.unscheduleDNSEntry(removed);
         }
-        return result;
+        return removed != null;
     }
 
     /**
@@ -256,19 +509,192 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
     public boolean replaceDNSEntry(DNSEntry newDNSEntry, DNSEntry existingDNSEntry) {
         boolean result = false;
         if ((newDNSEntry != null) && (existingDNSEntry != null) && (newDNSEntry.getKey().equals(existingDNSEntry.getKey()))) {
-            List<DNSEntry> entryList = this.get(newDNSEntry.getKey());
+            final String key = newDNSEntry.getKey();
+            DNSEntry replaced = null;
+            while (!result) {
+                DNSEntryList entryList = this.getOrCreateDNSEntryList(key);
+                synchronized (entryList) {
+                    if (this.get(key) == entryList) {
+                        replaced = entryList.replace(newDNSEntry, existingDNSEntry);
+                        // This is probably not very informative
+                        result = true;
+                    }
+                }
+            }
+            this.unscheduleDNSEntry(replaced);
+            this.scheduleDNSEntry(newDNSEntry);
+        }
+        return result;
+    }
+
+    private DNSEntryList getOrCreateDNSEntryList(String key) {
+        DNSEntryList entryList = (DNSEntryList) this.get(key);
+        if (entryList == null) {
+            final DNSEntryList newEntryList = new DNSEntryList(null);
+            entryList = (DNSEntryList) super.putIfAbsent(key, newEntryList);
             if (entryList == null) {
-                this.putIfAbsent(newDNSEntry.getKey(), new ArrayList<DNSEntry>(3));
-                entryList = this.get(newDNSEntry.getKey());
+                entryList = newEntryList;
             }
-            synchronized (entryList) {
-                entryList.remove(existingDNSEntry);
-                entryList.add(newDNSEntry);
+        }
+        return entryList;
+    }
+
+    // ====================================================================
+    // Expiry index
+
+    /**
+     * Sets the listener notified when a record has to be looked at before any other record of the cache.
+     *
+     * @param listener
+     *            expiry listener or <code>null</code>
+     */
+    public void setExpiryListener(ExpiryListener listener) {
+        _expiryListener = listener;
+    }
+
+    /**
+     * Stops notifying the listener, unless another listener has been set since.
+     *
+     * @param listener
+     *            expiry listener
+     */
+    public void removeExpiryListener(ExpiryListener listener) {
+        if (_expiryListener == listener) {
+            _expiryListener = null;
+        }
+    }
+
+    /**
+     * Returns the earliest time at which a record of the cache needs to be refreshed or removed.
+     *
+     * @return time in milliseconds or {@link Long#MAX_VALUE} if nothing is scheduled
+     */
+    public long getNextDeadline() {
+        synchronized (_deadlines) {
+            final Deadline head = _deadlines.peek();
+            return (head != null ? head.getTime() : Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Removes from the expiry index and returns all records which need to be refreshed or have expired at the given time.
+     * <p>
+     * Records whose TTL was extended since they were scheduled are silently moved to their new deadline. The caller must call {@link #rescheduleDNSEntry(DNSEntry)} for every returned record which stays in the cache.
+     * </p>
+     *
+     * @param now
+     *            current time
+     * @return records due at <code>now</code>
+     */
+    public List<DNSRecord> pollDueDNSEntries(long now) {
+        List<DNSRecord> due = null;
+        synchronized (_deadlines) {
+            Deadline head;
+            while (((head = _deadlines.peek()) != null) && (head.getTime() <= now)) {
+                _deadlines.poll();
+                final DNSRecord record = head.getRecord();
+                if (_scheduled.get(record) != head) {
+                    // Removed or rescheduled since
+                    continue;
+                }
+                final long time = record.getNextReaperTime();
+                if (time > now) {
+                    final Deadline deadline = new Deadline(record, time);
+                    _scheduled.put(record, deadline);
+                    _deadlines.add(deadline);
+                } else {
+                    _scheduled.remove(record);
+                    if (due == null) {
+                        due = new ArrayList<DNSRecord>();
+                    }
+                    due.add(record);
+                }
+            }
+        }
+        return (due != null ? due : Collections.<DNSRecord> emptyList());
+    }
+
+    /**
+     * Updates the expiry index after the TTL of a cached record was changed, or after a record returned by {@link #pollDueDNSEntries(long)} was processed. This does nothing if the entry is no longer in the cache.
+     *
+     * @param dnsEntry
+     */
+    public void rescheduleDNSEntry(DNSEntry dnsEntry) {
+        if (dnsEntry != null) {
+            final DNSEntryList entryList = (DNSEntryList) this.get(dnsEntry.getKey());
+            if ((entryList != null) && entryList.snapshot().containsIdentical(dnsEntry)) {
+                this.scheduleDNSEntry(dnsEntry);
+            }
+        }
+    }
+
+    /**
+     * Moves the expiry index from the entries of the list that was mapped to a name to the entries of the list now mapped to it.
+     */
+    private void replaced(List<DNSEntry> previous, List<DNSEntry> current) {
+        if (previous == current) {
+            return;
+        }
+        if (previous != null) {
+            for (DNSEntry entry : previous) {
+                this.unscheduleDNSEntry(entry);
+            }
+        }
+        this.scheduleDNSEntries((DNSEntryList) current);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DNSEntry> asEntryList(Object value) {
+        return (value instanceof List ? (List<DNSEntry>) value : null);
+    }
+
+    private void scheduleDNSEntries(DNSEntryList entryList) {
+        if (entryList != null) {
+            for (DNSEntry entry : entryList) {
+                this.scheduleDNSEntry(entry);
+            }
+        }
+    }
+
+    private void scheduleDNSEntry(DNSEntry dnsEntry) {
+        if (!(dnsEntry instanceof DNSRecord)) {
+            return;
+        }
+        final DNSRecord record = (DNSRecord) dnsEntry;
+        final Deadline deadline = new Deadline(record, record.getNextReaperTime());
+        boolean first;
+        synchronized (_deadlines) {
+            final Deadline scheduled = _scheduled.get(record);
+            if ((scheduled != null) && (scheduled.getTime() == deadline.getTime())) {
+                // A refresh with the same TTL keeps its deadline
+                return;
+            }
+            _scheduled.put(record, deadline);
+            _deadlines.add(deadline);
+            if ((scheduled != null) && (_deadlines.size() > 2 * _scheduled.size() + 64)) {
+                // Too many stale nodes, rebuild the heap from the live ones
+                _deadlines.clear();
+                _deadlines.addAll(_scheduled.values());
+            }
+            first = (_deadlines.peek() == deadline);
+        }
+        final ExpiryListener listener = _expiryListener;
+        if (first && (listener != null)) {
+            listener.nextDeadlineChanged(deadline.getTime());
+        }
+    }
+
+    private void unscheduleDNSEntry(DNSEntry dnsEntry) {
+        if (!(dnsEntry instanceof DNSRecord)) {
+            return;
+        }
+        synchronized (_deadlines) {
+            if ((_scheduled.remove(dnsEntry) != null) && (_deadlines.size() > 2 * _scheduled.size() + 64)) {
+                // Too many stale nodes, rebuild the heap from the live ones
+                _deadlines.clear();
+                _deadlines.addAll(_scheduled.values());
             }
-            // This is probably not very informative
-            result = true;
         }
-        return result;
     }
 
     /**
@@ -282,10 +708,8 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
             sb.append("\n\n\t\tname '").append(entry.getKey()).append('\'');
             final List<DNSEntry> entryList = entry.getValue();
             if ((entryList != null) && (!entryList.isEmpty())) {
-                synchronized (entryList) {
-                    for (DNSEntry dnsEntry : entryList) {
-                        sb.append("\n\t\t\t").append(dnsEntry.toString());
-                    }
+                for (DNSEntry dnsEntry : entryList) {
+                    sb.append("\n\t\t\t").append(dnsEntry.toString());
                 }
             } else {
                 sb.append(" : no entries");
@@ -305,4 +729,312 @@ public class DNSCache extends ConcurrentHashMap<String, List<DNSEntry>> {
         logger.trace("Cached DNSEntries: {}", toString());
     }
 
+    /**
+     * Copies the values returned by a remapping function into the indexed list representation, and remembers the value they replace.
+     */
+    private static final class EntryListRemapping implements BiFunction<String, List<DNSEntry>, List<DNSEntry>> {
+
+        private final BiFunction<? super String, ? super List<DNSEntry>, ? extends List<DNSEntry>> _function;
+
+        List<DNSEntry>                                                                         _previous;
+
+        EntryListRemapping(BiFunction<? super String, ? super List<DNSEntry>, ? extends List<DNSEntry>> function) {
+            super();
+            _function = function;
+        }
+
+        @Override
+        public List<DNSEntry> apply(String key, List<DNSEntry> value) {
+            _previous = value;
+            final List<DNSEntry> computed = _function.apply(key, value);
+            if ((computed == null) || (computed == value)) {
+                return computed;
+            }
+            return new DNSEntryList(computed);
+        }
+
+    }
+
+    /**
+     * The entries stored under a single key.
+     * <p>
+     * Writers hold the monitor of the list and publish a new immutable {@link Snapshot}, readers only pick up the current snapshot so they never block, copy or filter.
+     * </p>
+     */
+    private static final class DNSEntryList extends AbstractList<DNSEntry> implements RandomAccess {
+
+        private volatile Snapshot _snapshot;
+
+        DNSEntryList(Collection<? extends DNSEntry> entries) {
+            super();
+            Snapshot snapshot = Snapshot.EMPTY;
+            if (entries != null) {
+                for (DNSEntry entry : entries) {
+                    snapshot = snapshot.add(entry);
+                }
+            }
+            _snapshot = snapshot;
+        }
+
+        Snapshot snapshot() {
+            return _snapshot;
+        }
+
+        @Override
+        public DNSEntry get(int index) {
+            return _snapshot.entries().get(index);
+        }
+
+        @Override
+        public int size() {
+            return _snapshot.entries().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return _snapshot.entries().isEmpty();
+        }
+
+        @Override
+        public Iterator<DNSEntry> iterator() {
+            return _snapshot.entries().iterator();
+        }
+
+        @Override
+        public synchronized boolean add(DNSEntry entry) {
+            _snapshot = _snapshot.add(entry);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object entry) {
+            return this.removeEntry(entry) != null;
+        }
+
+        /**
+         * @return the entry actually removed from the list or <code>null</code> if none was equal to <code>entry</code>
+         */
+        synchronized DNSEntry removeEntry(Object entry) {
+            final int index = _snapshot.indexOf(entry);
+            if (index < 0) {
+                return null;
+            }
+            final DNSEntry removed = _snapshot.get(index);
+            _snapshot = _snapshot.remove(index);
+            return removed;
+        }
+
+        /**
+         * @return the entry actually replaced or <code>null</code> if none was equal to <code>existingEntry</code>
+         */
+        synchronized DNSEntry replace(DNSEntry newEntry, DNSEntry existingEntry) {
+            final DNSEntry removed = this.removeEntry(existingEntry);
+            _snapshot = _snapshot.add(newEntry);
+            return removed;
+        }
+
+        @Override
+        public synchronized void clear() {
+            _snapshot = Snapshot.EMPTY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * Immutable view of the entries of a key, indexed by record type and record class.
+     */
+    private static final class Snapshot {
+
+        static final Snapshot                          EMPTY = new Snapshot(new DNSEntry[0], new EnumMap<DNSRecordType, TypeSlot>(DNSRecordType.class));
+
+        private final DNSEntry[]                       _entries;
+
+        private final List<DNSEntry>                   _entryList;
+
+        private final EnumMap<DNSRecordType, TypeSlot> _types;
+
+        private Snapshot(DNSEntry[] entries, EnumMap<DNSRecordType, TypeSlot> types) {
+            super();
+            _entries = entries;
+            _entryList = Collections.unmodifiableList(Arrays.asList(entries));
+            _types = types;
+        }
+
+        List<DNSEntry> entries() {
+            return _entryList;
+        }
+
+        boolean containsIdentical(DNSEntry entry) {
+            final List<DNSEntry> candidates = this.entries(entry.getRecordType(), entry.getRecordClass());
+            for (int i = 0, n = candidates.size(); i < n; i++) {
+                if (candidates.get(i) == entry) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<DNSEntry> entries(DNSRecordType type, DNSRecordClass recordClass) {
+            final TypeSlot slot = _types.get(type);
+            if (slot == null) {
+                return Collections.emptyList();
+            }
+            return slot.entries(recordClass);
+        }
+
+        Snapshot add(DNSEntry entry) {
+            final DNSEntry[] entries = Arrays.copyOf(_entries, _entries.length + 1);
+            entries[_entries.length] = entry;
+            final EnumMap<DNSRecordType, TypeSlot> types = _types.clone();
+            final TypeSlot slot = types.get(entry.getRecordType());
+            types.put(entry.getRecordType(), (slot != null ? slot : TypeSlot.EMPTY).add(entry));
+            return new Snapshot(entries, types);
+        }
+
+        /**
+         * @return index of the entry, or -1 if it is not in the snapshot
+         */
+        int indexOf(Object entry) {
+            for (int i = 0; i < _entries.length; i++) {
+                if (entry.equals(_entries[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        DNSEntry get(int index) {
+            return _entries[index];
+        }
+
+        Snapshot remove(int index) {
+            final DNSEntry removed = _entries[index];
+            final DNSEntry[] entries = new DNSEntry[_entries.length - 1];
+            System.arraycopy(_entries, 0, entries, 0, index);
+            System.arraycopy(_entries, index + 1, entries, index, entries.length - index);
+            final EnumMap<DNSRecordType, TypeSlot> types = _types.clone();
+            final TypeSlot slot = types.get(removed.getRecordType()).remove(removed);
+            if (slot != null) {
+                types.put(removed.getRecordType(), slot);
+            } else {
+                types.remove(removed.getRecordType());
+            }
+            return new Snapshot(entries, types);
+        }
+    }
+
+    /**
+     * Immutable entries of a single record type, with a pre-filtered list for each record class present.
+     * <p>
+     * Entries of class {@link DNSRecordClass#CLASS_ANY} match every class, so they are part of every per class list.
+     * </p>
+     */
+    private static final class TypeSlot {
+
+        static final TypeSlot                                 EMPTY = new TypeSlot(new DNSEntry[0]);
+
+        private final DNSEntry[]                              _entries;
+
+        private final List<DNSEntry>                          _entryList;
+
+        private final List<DNSEntry>                          _anyClassList;
+
+        private final EnumMap<DNSRecordClass, List<DNSEntry>> _classes;
+
+        private TypeSlot(DNSEntry[] entries) {
+            super();
+            _entries = entries;
+            _entryList = Collections.unmodifiableList(Arrays.asList(entries));
+            _classes = new EnumMap<DNSRecordClass, List<DNSEntry>>(DNSRecordClass.class);
+            final List<DNSEntry> anyClass = new ArrayList<DNSEntry>(1);
+            for (DNSEntry entry : entries) {
+                final DNSRecordClass recordClass = entry.getRecordClass();
+                if (recordClass == DNSRecordClass.CLASS_ANY) {
+                    anyClass.add(entry);
+                } else if (!_classes.containsKey(recordClass)) {
+                    final List<DNSEntry> matching = new ArrayList<DNSEntry>(entries.length);
+                    for (DNSEntry candidate : entries) {
+                        if (candidate.matchRecordClass(recordClass)) {
+                            matching.add(candidate);
+                        }
+                    }
+                    _classes.put(recordClass, (matching.size() == entries.length ? _entryList : Collections.unmodifiableList(matching)));
+                }
+            }
+            _anyClassList = (anyClass.isEmpty() ? Collections.<DNSEntry> emptyList() : Collections.unmodifiableList(anyClass));
+        }
+
+        List<DNSEntry> entries(DNSRecordClass recordClass) {
+            if (recordClass == DNSRecordClass.CLASS_ANY) {
+                return _entryList;
+            }
+            final List<DNSEntry> entries = _classes.get(recordClass);
+            return (entries != null ? entries : _anyClassList);
+        }
+
+        TypeSlot add(DNSEntry entry) {
+            final DNSEntry[] entries = Arrays.copyOf(_entries, _entries.length + 1);
+            entries[_entries.length] = entry;
+            return new TypeSlot(entries);
+        }
+
+        /**
+         * @return the new slot or <code>null</code> if the slot became empty
+         */
+        TypeSlot remove(DNSEntry entry) {
+            if (_entries.length <= 1) {
+                return null;
+            }
+            final DNSEntry[] entries = new DNSEntry[_entries.length - 1];
+            int j = 0;
+            boolean removed = false;
+            for (DNSEntry candidate : _entries) {
+                if (!removed && candidate == entry) {
+                    removed = true;
+                } else if (j < entries.length) {
+                    entries[j++] = candidate;
+                }
+            }
+            return new TypeSlot(entries);
+        }
+    }
+
+    /**
+     * Node of the expiry index.
+     */
+    private static final class Deadline implements Comparable<Deadline> {
+
+        private final DNSRecord _record;
+
+        private final long      _time;
+
+        Deadline(DNSRecord record, long time) {
+            super();
+            _record = record;
+            _time = time;
+        }
+
+        DNSRecord getRecord() {
+            return _record;
+        }
+
+        long getTime() {
+            return _time;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            return (_time < other._time ? -1 : (_time == other._time ? 0 : 1));
+        }
+    }
+
 }
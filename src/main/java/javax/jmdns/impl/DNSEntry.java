@@ -8,7 +8,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
 import java.util.Map;
 
 import javax.jmdns.ServiceInfo.Fields;
@@ -45,33 +44,11 @@ public abstract class DNSEntry {
         _recordType = recordType;
         _dnsClass = recordClass;
         _unique = unique;
-        _qualifiedNameMap = ServiceTypeDecoder.decodeQualifiedNameMapForType(this.getName());
-        String domain = _qualifiedNameMap.get(Fields.Domain);
-        String protocol = _qualifiedNameMap.get(Fields.Protocol);
-        String application = _qualifiedNameMap.get(Fields.Application);
-        String instance = _qualifiedNameMap.get(Fields.Instance).toLowerCase();
-        _type = buildType(application, protocol, domain);
-        _key = ((instance.length() > 0 ? instance + "." : "") + _type).toLowerCase();
-    }
-
-    private String buildType(String application, String protocol, String domain) {
-        if (application == null) {
-            application = "";
-        }
-
-        if (protocol == null) {
-            protocol = "";
-        }
-
-        if (domain == null) {
-            domain = "";
-        }
-
-        String type = (!application.isEmpty() ? "_" + application + "." : "") + (!protocol.isEmpty() ? "_" + protocol + "." : "") + (!domain.isEmpty() ? domain + "." : "");
-        if (!type.endsWith(".")) {
-            type += ".";
-        }
-        return type;
+        // Entries with the same name share the decoded fields, the map is unmodifiable.
+        ServiceTypeDecoder.DecodedName decodedName = ServiceTypeDecoder.decode(this.getName());
+        _qualifiedNameMap = decodedName.getQualifiedNameMap();
+        _type = decodedName.getType();
+        _key = decodedName.getKey();
     }
 
     /*
@@ -185,7 +162,7 @@ public abstract class DNSEntry {
     }
 
     public Map<Fields, String> getQualifiedNameMap() {
-        return Collections.unmodifiableMap(_qualifiedNameMap);
+        return _qualifiedNameMap;
     }
 
     public boolean isServicesDiscoveryMetaQuery() {
@@ -12,6 +12,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -108,9 +110,35 @@ public final class DNSIncoming extends DNSMessage {
             return (pos < count) ? (buf[pos] & 0xff) : -1;
         }
 
+        /**
+         * @return offset of the next byte to be read
+         */
+        int getPosition() {
+            return pos;
+        }
+
+        /**
+         * Skips forward to the given offset.
+         *
+         * @param offset
+         *            offset of the next byte to be read
+         */
+        void skipTo(int offset) {
+            pos = Math.min(Math.max(offset, pos), count);
+        }
+
         public String readName() {
-            Map<Integer, StringBuilder> names = new HashMap<Integer, StringBuilder>();
+            return this.readName(pos);
+        }
+
+        /**
+         * Reads a name. Compression pointers must point before <code>limit</code>, which guarantees that resolving them terminates.
+         */
+        private String readName(int limit) {
             final StringBuilder sb = new StringBuilder();
+            // offset in the message and in the name of every label, so that all suffixes can be registered for later compression pointers
+            int[] labels = new int[16];
+            int labelCount = 0;
             boolean finished = false;
             while (!finished) {
                 int len = this.readUnsignedByte();
@@ -120,17 +148,21 @@ public final class DNSIncoming extends DNSMessage {
                 }
                 switch (DNSLabel.labelForByte(len)) {
                     case Standard:
-                        int offset = pos - 1;
-                        String label = this.readUTF(len) + ".";
-                        sb.append(label);
-                        for (StringBuilder previousLabel : names.values()) {
-                            previousLabel.append(label);
+                        if (2 * labelCount == labels.length) {
+                            labels = Arrays.copyOf(labels, 2 * labels.length);
                         }
-                        names.put(Integer.valueOf(offset), new StringBuilder(label));
+                        labels[2 * labelCount] = pos - 1;
+                        labels[2 * labelCount + 1] = sb.length();
+                        labelCount++;
+                        sb.append(this.readUTF(len)).append('.');
                         break;
                     case Compressed:
                         int index = (DNSLabel.labelValue(len) << 8) | this.readUnsignedByte();
                         String compressedLabel = _names.get(Integer.valueOf(index));
+                        if ((compressedLabel == null) && (index < limit)) {
+                            // The name was not read yet, for example because its record was skipped.
+                            compressedLabel = this.readNameAt(index);
+                        }
                         if (compressedLabel == null) {
                             logger.warn("Bad domain name: possible circular name detected. Bad offset: 0x{} at 0x{}",
                                     Integer.toHexString(index),
@@ -139,9 +171,6 @@ public final class DNSIncoming extends DNSMessage {
                             compressedLabel = "";
                         }
                         sb.append(compressedLabel);
-                        for (StringBuilder previousLabel : names.values()) {
-                            previousLabel.append(compressedLabel);
-                        }
                         finished = true;
                         break;
                     case Extended:
@@ -153,11 +182,21 @@ public final class DNSIncoming extends DNSMessage {
                         logger.warn("Unsupported DNS label type: '{}'", Integer.toHexString(len & 0xC0) );
                 }
             }
-            for (final Map.Entry<Integer, StringBuilder> entry : names.entrySet()) {
-                final Integer index = entry.getKey();
-                _names.put(index, entry.getValue().toString());
+            final String name = sb.toString();
+            for (int i = 0; i < labelCount; i++) {
+                _names.put(Integer.valueOf(labels[2 * i]), name.substring(labels[2 * i + 1]));
+            }
+            return name;
+        }
+
+        private String readNameAt(int offset) {
+            final int position = pos;
+            try {
+                pos = offset;
+                return this.readName(offset);
+            } finally {
+                pos = position;
             }
-            return sb.toString();
         }
 
         public String readNonNameString() {
@@ -175,6 +214,31 @@ public final class DNSIncoming extends DNSMessage {
 
     private int                      _senderUDPPayload;
 
+    private final DNSRecordHeader    _recordHeader;
+
+    private final RecordFilter       _recordFilter;
+
+    private int                      _numberOfSkippedRecords;
+
+    /**
+     * Known answers of a query, built on first use.
+     */
+    private KnownAnswers             _knownAnswers;
+
+    /**
+     * Decides which records of an incoming message are materialized. Records that are not accepted are skipped without being decoded.
+     */
+    interface RecordFilter {
+
+        /**
+         * @param header
+         *            header of the record, only valid for the duration of the call
+         * @return <code>true</code> if the record should be materialized
+         */
+        boolean accept(DNSRecordHeader header);
+
+    }
+
     /**
      * Parse a message from a datagram packet.
      *
@@ -182,12 +246,26 @@ public final class DNSIncoming extends DNSMessage {
      * @exception IOException
      */
     public DNSIncoming(DatagramPacket packet) throws IOException {
+        this(packet, null);
+    }
+
+    /**
+     * Parse a message from a datagram packet, only materializing the records accepted by the filter.
+     *
+     * @param packet
+     * @param filter
+     *            record filter, <code>null</code> to materialize all records
+     * @exception IOException
+     */
+    DNSIncoming(DatagramPacket packet, RecordFilter filter) throws IOException {
         super(0, 0, packet.getPort() == DNSConstants.MDNS_PORT);
         this._packet = packet;
         InetAddress source = packet.getAddress();
         this._messageInputStream = new MessageInputStream(packet.getData(), packet.getLength());
         this._receivedTime = System.currentTimeMillis();
         this._senderUDPPayload = DNSConstants.MAX_MSG_TYPICAL;
+        this._recordFilter = filter;
+        this._recordHeader = (filter != null ? new DNSRecordHeader(ByteBuffer.wrap(packet.getData(), 0, packet.getLength())) : null);
 
         try {
             this.setId(_messageInputStream.readUnsignedShort());
@@ -213,6 +291,7 @@ public final class DNSIncoming extends DNSMessage {
             if ((numQuestions * 5 + (numAnswers + numAuthorities + numAdditionals) * 11) > packet.getLength()) {
                 throw new IOException("questions:" + numQuestions + " answers:" + numAnswers + " authorities:" + numAuthorities + " additionals:" + numAdditionals);
             }
+            this.ensureCapacity(numQuestions, numAnswers, numAuthorities, numAdditionals);
 
             // parse questions
             if (numQuestions > 0) {
@@ -224,7 +303,7 @@ public final class DNSIncoming extends DNSMessage {
             // parse answers
             if (numAnswers > 0) {
                 for (int i = 0; i < numAnswers; i++) {
-                    DNSRecord rec = this.readAnswer(source);
+                    DNSRecord rec = this.readFilteredAnswer(source);
                     if (rec != null) {
                         // Add a record, if we were able to create one.
                         _answers.add(rec);
@@ -234,7 +313,7 @@ public final class DNSIncoming extends DNSMessage {
 
             if (numAuthorities > 0) {
                 for (int i = 0; i < numAuthorities; i++) {
-                    DNSRecord rec = this.readAnswer(source);
+                    DNSRecord rec = this.readFilteredAnswer(source);
                     if (rec != null) {
                         // Add a record, if we were able to create one.
                         _authoritativeAnswers.add(rec);
@@ -244,7 +323,7 @@ public final class DNSIncoming extends DNSMessage {
 
             if (numAdditionals > 0) {
                 for (int i = 0; i < numAdditionals; i++) {
-                    DNSRecord rec = this.readAnswer(source);
+                    DNSRecord rec = this.readFilteredAnswer(source);
                     if (rec != null) {
                         // Add a record, if we were able to create one.
                         _additionals.add(rec);
@@ -271,10 +350,13 @@ public final class DNSIncoming extends DNSMessage {
     }
 
     private DNSIncoming(int flags, int id, boolean multicast, DatagramPacket packet, long receivedTime) {
-        super(flags, id, multicast);
+        // Clones are answered by the responder while the continuations of a truncated query are appended
+        super(flags, id, multicast, true);
         this._packet = packet;
         this._messageInputStream = new MessageInputStream(packet.getData(), packet.getLength());
         this._receivedTime = receivedTime;
+        this._recordHeader = null;
+        this._recordFilter = null;
     }
 
     /*
@@ -304,6 +386,18 @@ public final class DNSIncoming extends DNSMessage {
         return DNSQuestion.newQuestion(domain, type, recordClass, unique);
     }
 
+    private DNSRecord readFilteredAnswer(InetAddress source) {
+        if (_recordFilter != null) {
+            int next = _recordHeader.readAt(_messageInputStream.getPosition());
+            if ((next > 0) && !_recordFilter.accept(_recordHeader)) {
+                _messageInputStream.skipTo(next);
+                _numberOfSkippedRecords++;
+                return null;
+            }
+        }
+        return this.readAnswer(source);
+    }
+
     private DNSRecord readAnswer(InetAddress source) {
         String domain = _messageInputStream.readName();
         DNSRecordType type = DNSRecordType.typeForIndex(_messageInputStream.readUnsignedShort());
@@ -583,19 +677,49 @@ public final class DNSIncoming extends DNSMessage {
      */
     void append(DNSIncoming that) {
         if (this.isQuery() && this.isTruncated() && that.isQuery()) {
-            this._questions.addAll(that.getQuestions());
-            this._answers.addAll(that.getAnswers());
-            this._authoritativeAnswers.addAll(that.getAuthorities());
-            this._additionals.addAll(that.getAdditionals());
+            synchronized (this) {
+                this._questions.addAll(that.getQuestions());
+                this._answers.addAll(that.getAnswers());
+                this._authoritativeAnswers.addAll(that.getAuthorities());
+                this._additionals.addAll(that.getAdditionals());
+                if (_knownAnswers != null) {
+                    _knownAnswers.addAll(that.getAnswers(), true);
+                    _knownAnswers.addAll(that.getAuthorities(), false);
+                    _knownAnswers.addAll(that.getAdditionals(), false);
+                }
+            }
         } else {
             throw new IllegalArgumentException();
         }
     }
 
+    /**
+     * Returns the known answers of this message, including the ones appended from the continuations of a truncated query.
+     *
+     * @return hashed known answers
+     */
+    public synchronized KnownAnswers getKnownAnswers() {
+        if (_knownAnswers == null) {
+            final KnownAnswers knownAnswers = new KnownAnswers(_answers.size() + _authoritativeAnswers.size() + _additionals.size());
+            knownAnswers.addAll(this.getAnswers(), true);
+            knownAnswers.addAll(this.getAuthorities(), false);
+            knownAnswers.addAll(this.getAdditionals(), false);
+            _knownAnswers = knownAnswers;
+        }
+        return _knownAnswers;
+    }
+
     public int elapseSinceArrival() {
         return (int) (System.currentTimeMillis() - _receivedTime);
     }
 
+    /**
+     * @return number of records skipped because the record filter did not accept them
+     */
+    public int getNumberOfSkippedRecords() {
+        return _numberOfSkippedRecords;
+    }
+
     /**
      * This will return the default UDP payload except if an OPT record was found with a different size.
      *
@@ -4,6 +4,8 @@
 
 package javax.jmdns.impl;
 
+import java.util.Collection;
+
 // REMIND: Listener should follow Java idiom for listener or have a different
 // name.
 
@@ -25,4 +27,13 @@ interface DNSListener {
      *            DNS record
      */
     void updateRecord(DNSCache dnsCache, long now, DNSEntry record);
+
+    /**
+     * Returns the names of the records this listener is interested in. Listeners returning <code>null</code> get every record.
+     *
+     * @return record names, or <code>null</code> for all records
+     */
+    default Collection<String> getRecordNames() {
+        return null;
+    }
 }
@@ -0,0 +1,180 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jmdns.impl.constants.DNSRecordType;
+
+/**
+ * Registry of the {@link DNSListener}s of a JmDNS instance, indexed on the lower case record names they listen to.<br/>
+ * A record only reaches the listeners registered under its name, plus the listeners that do not name their records and get everything. Pointer records are
+ * routed on the name they point to. Listeners whose names can change have to be re-keyed after an update.
+ */
+class DNSListenerIndex {
+
+    /**
+     * Current names of each listener, <code>null</code> for listeners getting every record. Listeners are told apart by identity as equal service infos may be
+     * resolved concurrently.
+     */
+    private final Map<DNSListener, Set<String>>   _names   = new IdentityHashMap<DNSListener, Set<String>>();
+
+    private final Map<String, List<DNSListener>> _byName  = new HashMap<String, List<DNSListener>>();
+
+    private final List<DNSListener>              _unnamed = new ArrayList<DNSListener>();
+
+    DNSListenerIndex() {
+        super();
+    }
+
+    /**
+     * Adds a listener. Adding a listener twice has no effect.
+     *
+     * @param listener
+     *            listener to add
+     */
+    synchronized void add(DNSListener listener) {
+        if (!_names.containsKey(listener)) {
+            this.index(listener, namesOf(listener));
+        }
+    }
+
+    /**
+     * Removes the listener, or if it is not registered a listener equal to it.
+     *
+     * @param listener
+     *            listener to remove
+     */
+    synchronized void remove(DNSListener listener) {
+        DNSListener registered = (_names.containsKey(listener) ? listener : null);
+        if (registered == null) {
+            final Set<String> names = namesOf(listener);
+            final Collection<DNSListener> candidates = (names != null ? this.listenersNamed(names) : _names.keySet());
+            for (DNSListener candidate : candidates) {
+                if (candidate.equals(listener)) {
+                    registered = candidate;
+                    break;
+                }
+            }
+        }
+        if (registered != null) {
+            this.unindex(registered, _names.remove(registered));
+        }
+    }
+
+    /**
+     * Moves the listener to the names it currently listens to.
+     *
+     * @param listener
+     *            registered listener
+     */
+    synchronized void rekey(DNSListener listener) {
+        if (!_names.containsKey(listener)) {
+            return;
+        }
+        final Set<String> oldNames = _names.get(listener);
+        final Set<String> newNames = namesOf(listener);
+        if ((oldNames == null) ? (newNames != null) : !oldNames.equals(newNames)) {
+            this.unindex(listener, oldNames);
+            this.index(listener, newNames);
+        }
+    }
+
+    /**
+     * @param record
+     *            DNS record
+     * @return the listeners interested in the record
+     */
+    synchronized List<DNSListener> listenersFor(DNSRecord record) {
+        final String name = (DNSRecordType.TYPE_PTR.equals(record.getRecordType()) ? ((DNSRecord.Pointer) record).getAlias() : record.getName());
+        final List<DNSListener> named = (name != null ? _byName.get(name.toLowerCase()) : null);
+        if ((named == null) && _unnamed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<DNSListener> listeners = new ArrayList<DNSListener>((named != null ? named.size() : 0) + _unnamed.size());
+        if (named != null) {
+            listeners.addAll(named);
+        }
+        listeners.addAll(_unnamed);
+        return listeners;
+    }
+
+    /**
+     * @return all the registered listeners
+     */
+    synchronized List<DNSListener> getListeners() {
+        return new ArrayList<DNSListener>(_names.keySet());
+    }
+
+    private static Set<String> namesOf(DNSListener listener) {
+        final Collection<String> names = listener.getRecordNames();
+        if (names == null) {
+            return null;
+        }
+        final Set<String> lowerCaseNames = new HashSet<String>(names.size() * 2);
+        for (String name : names) {
+            lowerCaseNames.add(name.toLowerCase());
+        }
+        return lowerCaseNames;
+    }
+
+    private void index(DNSListener listener, Set<String> names) {
+        _names.put(listener, names);
+        if (names == null) {
+            _unnamed.add(listener);
+            return;
+        }
+        for (String name : names) {
+            List<DNSListener> listeners = _byName.get(name);
+            if (listeners == null) {
+                listeners = new ArrayList<DNSListener>(1);
+                _byName.put(name, listeners);
+            }
+            listeners.add(listener);
+        }
+    }
+
+    private void unindex(DNSListener listener, Set<String> names) {
+        if (names == null) {
+            removeIdentical(_unnamed, listener);
+            return;
+        }
+        for (String name : names) {
+            final List<DNSListener> listeners = _byName.get(name);
+            if (listeners != null) {
+                removeIdentical(listeners, listener);
+                if (listeners.isEmpty()) {
+                    _byName.remove(name);
+                }
+            }
+        }
+    }
+
+    private Collection<DNSListener> listenersNamed(Set<String> names) {
+        final List<DNSListener> listeners = new ArrayList<DNSListener>();
+        for (String name : names) {
+            final List<DNSListener> named = _byName.get(name);
+            if (named != null) {
+                listeners.addAll(named);
+            }
+        }
+        return listeners;
+    }
+
+    private static void removeIdentical(List<DNSListener> listeners, DNSListener listener) {
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i) == listener) {
+                listeners.remove(i);
+                return;
+            }
+        }
+    }
+
+}
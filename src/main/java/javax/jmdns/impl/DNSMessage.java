@@ -5,9 +5,8 @@ package javax.jmdns.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.jmdns.impl.constants.DNSConstants;
 
@@ -39,6 +38,11 @@ public abstract class DNSMessage {
 
     private int                       _flags;
 
+    /**
+     * <code>true</code> if the sections may be read by one thread while another one appends to them.
+     */
+    private final boolean             _shared;
+
     protected final List<DNSQuestion> _questions;
 
     protected final List<DNSRecord>   _answers;
@@ -48,19 +52,51 @@ public abstract class DNSMessage {
     protected final List<DNSRecord>   _additionals;
 
     /**
+     * Creates a message built or parsed by a single thread.
+     *
      * @param flags
      * @param id
      * @param multicast
      */
     protected DNSMessage(int flags, int id, boolean multicast) {
+        this(flags, id, multicast, false);
+    }
+
+    /**
+     * @param flags
+     * @param id
+     * @param multicast
+     * @param shared
+     *            <code>true</code> if the sections may be read by one thread while another one appends to them, <code>false</code> for plain array
+     *            backed sections
+     */
+    protected DNSMessage(int flags, int id, boolean multicast, boolean shared) {
         super();
         _flags = flags;
         _id = id;
         _multicast = multicast;
-        _questions = Collections.synchronizedList(new LinkedList<DNSQuestion>());
-        _answers = Collections.synchronizedList(new LinkedList<DNSRecord>());
-        _authoritativeAnswers = Collections.synchronizedList(new LinkedList<DNSRecord>());
-        _additionals = Collections.synchronizedList(new LinkedList<DNSRecord>());
+        _shared = shared;
+        _questions = (shared ? new CopyOnWriteArrayList<DNSQuestion>() : new ArrayList<DNSQuestion>());
+        _answers = (shared ? new CopyOnWriteArrayList<DNSRecord>() : new ArrayList<DNSRecord>());
+        _authoritativeAnswers = (shared ? new CopyOnWriteArrayList<DNSRecord>() : new ArrayList<DNSRecord>());
+        _additionals = (shared ? new CopyOnWriteArrayList<DNSRecord>() : new ArrayList<DNSRecord>());
+    }
+
+    /**
+     * Sizes the sections of a message being parsed for the number of entries announced in its header, so they are allocated once.
+     *
+     * @param questions
+     * @param answers
+     * @param authorities
+     * @param additionals
+     */
+    protected void ensureCapacity(int questions, int answers, int authorities, int additionals) {
+        if (!_shared) {
+            ((ArrayList<DNSQuestion>) _questions).ensureCapacity(questions);
+            ((ArrayList<DNSRecord>) _answers).ensureCapacity(answers);
+            ((ArrayList<DNSRecord>) _authoritativeAnswers).ensureCapacity(authorities);
+            ((ArrayList<DNSRecord>) _additionals).ensureCapacity(additionals);
+        }
     }
 
     // public DatagramPacket getPacket() {
@@ -4,11 +4,16 @@
 
 package javax.jmdns.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.jmdns.impl.constants.DNSConstants;
 import javax.jmdns.impl.constants.DNSRecordClass;
@@ -20,31 +25,38 @@ import javax.jmdns.impl.constants.DNSRecordClass;
  */
 public final class DNSOutgoing extends DNSMessage {
 
-    public static class MessageOutputStream extends ByteArrayOutputStream {
+    /**
+     * Writes the wire format of questions and records straight into the message buffer.
+     */
+    public static class MessageOutputStream {
         private final DNSOutgoing _out;
 
-        private final int _offset;
+        private final ByteBuffer _buffer;
 
         /**
-         * Creates a new message stream, with a buffer capacity of the specified size, in bytes.
+         * Creates a new message stream writing at the current position of the buffer. The buffer holds the whole message, so its positions are the offsets used
+         * for name compression.
          *
-         * @param size
-         *            the initial size.
-         * @exception IllegalArgumentException
-         *                if size is negative.
+         * @param buffer
+         *            message buffer
+         * @param out
+         *            message being written
          */
-        MessageOutputStream(int size, DNSOutgoing out) {
-            this(size, out, 0);
+        MessageOutputStream(ByteBuffer buffer, DNSOutgoing out) {
+            super();
+            _buffer = buffer;
+            _out = out;
         }
 
-        MessageOutputStream(int size, DNSOutgoing out, int offset) {
-            super(size);
-            _out = out;
-            _offset = offset;
+        /**
+         * @return number of bytes written in the message so far
+         */
+        public int size() {
+            return _buffer.position();
         }
 
         void writeByte(int value) {
-            this.write(value & 0xFF);
+            _buffer.put((byte) value);
         }
 
         void writeBytes(String str, int off, int len) {
@@ -60,19 +72,15 @@ public final class DNSOutgoing extends DNSMessage {
         }
 
         void writeBytes(byte data[], int off, int len) {
-            for (int i = 0; i < len; i++) {
-                writeByte(data[off + i]);
-            }
+            _buffer.put(data, off, len);
         }
 
         void writeShort(int value) {
-            writeByte(value >> 8);
-            writeByte(value);
+            _buffer.putShort((short) value);
         }
 
         void writeInt(int value) {
-            writeShort(value >> 16);
-            writeShort(value);
+            _buffer.putInt(value);
         }
 
         void writeUTF(String str, int off, int len) {
@@ -134,7 +142,7 @@ public final class DNSOutgoing extends DNSMessage {
                         writeByte(val & 0xFF);
                         return;
                     }
-                    _out._names.put(aName, Integer.valueOf(this.size() + _offset));
+                    _out._names.put(aName, Integer.valueOf(this.size()));
                     writeUTF(label, 0, label.length());
                 } else {
                     writeUTF(label, 0, label.length());
@@ -146,7 +154,7 @@ public final class DNSOutgoing extends DNSMessage {
             }
         }
 
-        private static int indexOfSeparator(String aName) {
+        static int indexOfSeparator(String aName) {
             int offset = 0;
             int n = 0;
 
@@ -162,6 +170,29 @@ public final class DNSOutgoing extends DNSMessage {
             }
         }
 
+        /**
+         * Writes a name encoded ahead of time, compressed the same way as {@link #writeName(String)}.
+         *
+         * @param name
+         *            encoded name
+         */
+        void writeName(EncodedName name) {
+            for (int i = 0; i < name.size(); i++) {
+                if (USE_DOMAIN_NAME_COMPRESSION) {
+                    final Integer offset = _out._names.get(name.suffix(i));
+                    if (offset != null) {
+                        final int val = offset.intValue();
+                        writeByte((val >> 8) | 0xC0);
+                        writeByte(val & 0xFF);
+                        return;
+                    }
+                    _out._names.put(name.suffix(i), Integer.valueOf(this.size()));
+                }
+                writeBytes(name.label(i));
+            }
+            writeByte(0);
+        }
+
         void writeQuestion(DNSQuestion question) {
             writeName(question.getName());
             writeShort(question.getRecordType().indexValue());
@@ -169,22 +200,79 @@ public final class DNSOutgoing extends DNSMessage {
         }
 
         void writeRecord(DNSRecord rec, long now) {
-            writeName(rec.getName());
+            final EncodedName encodedName = rec.getEncodedName();
+            if (encodedName != null) {
+                writeName(encodedName);
+            } else {
+                writeName(rec.getName());
+            }
             writeShort(rec.getRecordType().indexValue());
             writeShort(rec.getRecordClass().indexValue() | ((rec.isUnique() && _out.isMulticast()) ? DNSRecordClass.CLASS_UNIQUE : 0));
             writeInt((now == 0) ? rec.getTTL() : rec.getRemainingTTL(now));
 
-            // We need to take into account the 2 size bytes
-            MessageOutputStream record = new MessageOutputStream(512, _out, _offset + this.size() + 2);
-            rec.write(record);
-            byte[] byteArray = record.toByteArray();
+            // Reserve the 2 size bytes and patch them once the record data is written
+            int lengthPosition = _buffer.position();
+            writeShort(0);
+            final byte[] encodedData = rec.getEncodedData();
+            if (encodedData != null) {
+                writeBytes(encodedData);
+            } else {
+                rec.write(this);
+            }
+            _buffer.putShort(lengthPosition, (short) (_buffer.position() - lengthPosition - 2));
+        }
+
+    }
+
+    /**
+     * Bounded pool of message buffers. Each {@link JmDNSImpl} owns one so that the messages it sends are encoded without allocating.
+     */
+    public static final class BufferPool {
+
+        private final int                       _bufferSize;
 
-            writeShort(byteArray.length);
-            write(byteArray, 0, byteArray.length);
+        private final BlockingQueue<ByteBuffer> _buffers;
+
+        /**
+         * @param bufferSize
+         *            size of the pooled buffers, larger messages get a dedicated buffer
+         * @param maxPooledBuffers
+         *            maximum number of idle buffers kept
+         */
+        public BufferPool(int bufferSize, int maxPooledBuffers) {
+            super();
+            _bufferSize = bufferSize;
+            _buffers = new ArrayBlockingQueue<ByteBuffer>(maxPooledBuffers);
+        }
+
+        ByteBuffer acquire(int size) {
+            if (size > _bufferSize) {
+                return ByteBuffer.allocate(size);
+            }
+            final ByteBuffer buffer = _buffers.poll();
+            if (buffer != null) {
+                buffer.clear();
+                return buffer;
+            }
+            return ByteBuffer.allocate(_bufferSize);
+        }
+
+        void release(ByteBuffer buffer) {
+            if (buffer.capacity() == _bufferSize) {
+                _buffers.offer(buffer);
+            }
         }
 
     }
 
+    private static final int QUESTIONS = 0;
+
+    private static final int ANSWERS = 1;
+
+    private static final int AUTHORITIES = 2;
+
+    private static final int ADDITIONALS = 3;
+
     /**
      * This can be used to turn off domain name compression. This was helpful for tracking problems interacting with other mdns implementations.
      */
@@ -194,13 +282,21 @@ public final class DNSOutgoing extends DNSMessage {
 
     private int _maxUDPPayload;
 
-    private final MessageOutputStream _questionsBytes;
+    private final BufferPool _bufferPool;
 
-    private final MessageOutputStream _answersBytes;
+    /**
+     * The encoded message, acquired on the first write. Records are appended as they are added so the message is normally complete once the header is filled.
+     */
+    private ByteBuffer _buffer;
+
+    private MessageOutputStream _stream;
 
-    private final MessageOutputStream _authoritativeAnswersBytes;
+    /**
+     * Last section written to. If a record is added to an earlier section the buffer is no longer in wire order and gets re-encoded before sending.
+     */
+    private int _lastSection;
 
-    private final MessageOutputStream _additionalsAnswersBytes;
+    private boolean _inOrder;
 
     private final static int HEADER_SIZE = 12;
 
@@ -234,13 +330,25 @@ public final class DNSOutgoing extends DNSMessage {
      *            The sender's UDP payload size is the number of bytes of the largest UDP payload that can be reassembled and delivered in the sender's network stack.
      */
     public DNSOutgoing(int flags, boolean multicast, int senderUDPPayload) {
+        this(flags, multicast, senderUDPPayload, null);
+    }
+
+    /**
+     * Create an outgoing query or response encoded into a pooled buffer.
+     *
+     * @param flags
+     * @param multicast
+     * @param senderUDPPayload
+     *            The sender's UDP payload size is the number of bytes of the largest UDP payload that can be reassembled and delivered in the sender's network stack.
+     * @param bufferPool
+     *            pool the message buffer is taken from, <code>null</code> to allocate it
+     */
+    public DNSOutgoing(int flags, boolean multicast, int senderUDPPayload, BufferPool bufferPool) {
         super(flags, 0, multicast);
         _names = new HashMap<String, Integer>();
         _maxUDPPayload = (senderUDPPayload > 0 ? senderUDPPayload : DNSConstants.MAX_MSG_TYPICAL);
-        _questionsBytes = new MessageOutputStream(senderUDPPayload, this);
-        _answersBytes = new MessageOutputStream(senderUDPPayload, this);
-        _authoritativeAnswersBytes = new MessageOutputStream(senderUDPPayload, this);
-        _additionalsAnswersBytes = new MessageOutputStream(senderUDPPayload, this);
+        _bufferPool = bufferPool;
+        _inOrder = true;
     }
 
     /**
@@ -268,7 +376,7 @@ public final class DNSOutgoing extends DNSMessage {
      * @return available space
      */
     public int availableSpace() {
-        return _maxUDPPayload - HEADER_SIZE - _questionsBytes.size() - _answersBytes.size() - _authoritativeAnswersBytes.size() - _additionalsAnswersBytes.size();
+        return _maxUDPPayload - (_buffer != null ? _buffer.position() : HEADER_SIZE);
     }
 
     /**
@@ -278,16 +386,8 @@ public final class DNSOutgoing extends DNSMessage {
      * @exception IOException
      */
     public void addQuestion(DNSQuestion rec) throws IOException {
-        MessageOutputStream record = new MessageOutputStream(512, this);
-        record.writeQuestion(rec);
-        byte[] byteArray = record.toByteArray();
-        record.close();
-        if (byteArray.length < this.availableSpace()) {
-            _questions.add(rec);
-            _questionsBytes.write(byteArray, 0, byteArray.length);
-        } else {
-            throw new IOException("message full");
-        }
+        this.write(QUESTIONS, rec, null, 0);
+        _questions.add(rec);
     }
 
     /**
@@ -295,12 +395,15 @@ public final class DNSOutgoing extends DNSMessage {
      *
      * @param in
      * @param rec
+     * @return <code>false</code> if a known answer of the incoming message suppressed the answer
      * @exception IOException
      */
-    public void addAnswer(DNSIncoming in, DNSRecord rec) throws IOException {
-        if ((in == null) || !rec.suppressedBy(in)) {
-            this.addAnswer(rec, 0);
+    public boolean addAnswer(DNSIncoming in, DNSRecord rec) throws IOException {
+        if ((in != null) && rec.suppressedBy(in)) {
+            return false;
         }
+        this.addAnswer(rec, 0);
+        return true;
     }
 
     /**
@@ -313,16 +416,8 @@ public final class DNSOutgoing extends DNSMessage {
     public void addAnswer(DNSRecord rec, long now) throws IOException {
         if (rec != null) {
             if ((now == 0) || !rec.isExpired(now)) {
-                MessageOutputStream record = new MessageOutputStream(512, this);
-                record.writeRecord(rec, now);
-                byte[] byteArray = record.toByteArray();
-                record.close();
-                if (byteArray.length < this.availableSpace()) {
-                    _answers.add(rec);
-                    _answersBytes.write(byteArray, 0, byteArray.length);
-                } else {
-                    throw new IOException("message full");
-                }
+                this.write(ANSWERS, null, rec, now);
+                _answers.add(rec);
             }
         }
     }
@@ -334,16 +429,8 @@ public final class DNSOutgoing extends DNSMessage {
      * @exception IOException
      */
     public void addAuthorativeAnswer(DNSRecord rec) throws IOException {
-        MessageOutputStream record = new MessageOutputStream(512, this);
-        record.writeRecord(rec, 0);
-        byte[] byteArray = record.toByteArray();
-        record.close();
-        if (byteArray.length < this.availableSpace()) {
-            _authoritativeAnswers.add(rec);
-            _authoritativeAnswersBytes.write(byteArray, 0, byteArray.length);
-        } else {
-            throw new IOException("message full");
-        }
+        this.write(AUTHORITIES, null, rec, 0);
+        _authoritativeAnswers.add(rec);
     }
 
     /**
@@ -354,50 +441,169 @@ public final class DNSOutgoing extends DNSMessage {
      * @exception IOException
      */
     public void addAdditionalAnswer(DNSIncoming in, DNSRecord rec) throws IOException {
-        MessageOutputStream record = new MessageOutputStream(512, this);
-        record.writeRecord(rec, 0);
-        byte[] byteArray = record.toByteArray();
-        record.close();
-        if (byteArray.length < this.availableSpace()) {
-            _additionals.add(rec);
-            _additionalsAnswersBytes.write(byteArray, 0, byteArray.length);
-        } else {
+        this.write(ADDITIONALS, null, rec, 0);
+        _additionals.add(rec);
+    }
+
+    /**
+     * Appends a question or a record to the message buffer. If it does not fit the buffer and the compression names are rolled back.
+     *
+     * @exception IOException
+     *                if the message is full
+     */
+    private void write(int section, DNSQuestion question, DNSRecord rec, long now) throws IOException {
+        if (_buffer == null) {
+            this.acquireBuffer();
+        }
+        final int mark = _buffer.position();
+        try {
+            if (question != null) {
+                _stream.writeQuestion(question);
+            } else {
+                _stream.writeRecord(rec, (now != 0 ? now : System.currentTimeMillis()));
+            }
+        } catch (BufferOverflowException exception) {
+            // Handled below
+            _buffer.position(_buffer.limit());
+        }
+        if (_buffer.position() >= _maxUDPPayload) {
+            _buffer.position(mark);
+            for (Iterator<Integer> i = _names.values().iterator(); i.hasNext();) {
+                if (i.next().intValue() >= mark) {
+                    i.remove();
+                }
+            }
             throw new IOException("message full");
         }
+        if (section < _lastSection) {
+            _inOrder = false;
+        } else {
+            _lastSection = section;
+        }
+    }
+
+    private void acquireBuffer() {
+        _buffer = (_bufferPool != null ? _bufferPool.acquire(_maxUDPPayload) : ByteBuffer.allocate(_maxUDPPayload));
+        _buffer.limit(Math.min(_buffer.capacity(), _maxUDPPayload));
+        _buffer.position(HEADER_SIZE);
+        _stream = new MessageOutputStream(_buffer, this);
+        _names.clear();
+        _lastSection = QUESTIONS;
+        _inOrder = true;
     }
 
     /**
-     * Builds the final message buffer to be send and returns it.
+     * Completes the message and returns it. The buffer is positioned at the start of the message and limited to its end. It stays valid until the message is
+     * {@link #release() released}.
      *
-     * @return bytes to send.
+     * @return message buffer
      */
-    public byte[] data() {
-        long now = System.currentTimeMillis(); // System.currentTimeMillis()
-        _names.clear();
+    ByteBuffer buffer() {
+        if ((_buffer == null) || !_inOrder) {
+            // Nothing was written yet, the buffer was released, or records were added out of order.
+            if (_buffer == null) {
+                this.acquireBuffer();
+            } else {
+                _buffer.position(HEADER_SIZE);
+                _names.clear();
+            }
+            _buffer.limit(Math.min(_buffer.capacity(), _maxUDPPayload));
+            long now = System.currentTimeMillis();
+            // In section order the compression may differ, what no longer fits is left out and the message marked as truncated
+            boolean full = this.rewriteQuestions(false);
+            full = this.rewriteRecords(_answers, now, full);
+            full = this.rewriteRecords(_authoritativeAnswers, now, full);
+            full = this.rewriteRecords(_additionals, now, full);
+            if (full) {
+                this.setFlags(this.getFlags() | DNSConstants.FLAGS_TC);
+            }
+            _lastSection = ADDITIONALS;
+            _inOrder = true;
+        }
+        _buffer.putShort(0, (short) (_multicast ? 0 : this.getId()));
+        _buffer.putShort(2, (short) this.getFlags());
+        _buffer.putShort(4, (short) this.getNumberOfQuestions());
+        _buffer.putShort(6, (short) this.getNumberOfAnswers());
+        _buffer.putShort(8, (short) this.getNumberOfAuthorities());
+        _buffer.putShort(10, (short) this.getNumberOfAdditionals());
+
+        final ByteBuffer message = _buffer.duplicate();
+        message.flip();
+        return message;
+    }
 
-        MessageOutputStream message = new MessageOutputStream(_maxUDPPayload, this);
-        message.writeShort(_multicast ? 0 : this.getId());
-        message.writeShort(this.getFlags());
-        message.writeShort(this.getNumberOfQuestions());
-        message.writeShort(this.getNumberOfAnswers());
-        message.writeShort(this.getNumberOfAuthorities());
-        message.writeShort(this.getNumberOfAdditionals());
-        for (DNSQuestion question : _questions) {
-            message.writeQuestion(question);
-        }
-        for (DNSRecord record : _answers) {
-            message.writeRecord(record, now);
+    /**
+     * Writes the questions again, dropping those which no longer fit.
+     *
+     * @param full
+     *            <code>true</code> if the message is already full
+     * @return <code>true</code> if the message is full
+     */
+    private boolean rewriteQuestions(boolean full) {
+        for (int i = 0; i < _questions.size(); i++) {
+            if (!full) {
+                final int mark = _buffer.position();
+                try {
+                    _stream.writeQuestion(_questions.get(i));
+                    continue;
+                } catch (BufferOverflowException exception) {
+                    _buffer.position(mark);
+                    full = true;
+                }
+            }
+            _questions.subList(i, _questions.size()).clear();
         }
-        for (DNSRecord record : _authoritativeAnswers) {
-            message.writeRecord(record, now);
+        return full;
+    }
+
+    /**
+     * Writes the records of a section again, dropping those which no longer fit.
+     *
+     * @param records
+     *            records of the section
+     * @param now
+     * @param full
+     *            <code>true</code> if the message is already full
+     * @return <code>true</code> if the message is full
+     */
+    private boolean rewriteRecords(List<DNSRecord> records, long now, boolean full) {
+        for (int i = 0; i < records.size(); i++) {
+            if (!full) {
+                final int mark = _buffer.position();
+                try {
+                    _stream.writeRecord(records.get(i), now);
+                    continue;
+                } catch (BufferOverflowException exception) {
+                    _buffer.position(mark);
+                    full = true;
+                }
+            }
+            records.subList(i, records.size()).clear();
         }
-        for (DNSRecord record : _additionals) {
-            message.writeRecord(record, now);
+        return full;
+    }
+
+    /**
+     * Returns the message buffer to its pool. The message is encoded again if it is needed afterwards.
+     */
+    void release() {
+        final ByteBuffer buffer = _buffer;
+        _buffer = null;
+        _stream = null;
+        if ((buffer != null) && (_bufferPool != null)) {
+            _bufferPool.release(buffer);
         }
-        byte[] result = message.toByteArray();
-        try {
-            message.close();
-        } catch (IOException exception) {}
+    }
+
+    /**
+     * Builds the final message buffer to be send and returns it.
+     *
+     * @return bytes to send.
+     */
+    public byte[] data() {
+        final ByteBuffer message = this.buffer();
+        final byte[] result = new byte[message.remaining()];
+        message.get(result);
         return result;
     }
 
@@ -9,7 +9,6 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.jmdns.ServiceInfo;
 import javax.jmdns.ServiceInfo.Fields;
 import javax.jmdns.impl.JmDNSImpl.ServiceTypeEntry;
 import javax.jmdns.impl.constants.DNSConstants;
@@ -34,7 +33,7 @@ public class DNSQuestion extends DNSEntry {
 
         @Override
         public void addAnswers(JmDNSImpl jmDNSImpl, Set<DNSRecord> answers) {
-            DNSRecord answer = jmDNSImpl.getLocalHost().getDNSAddressRecord(this.getRecordType(), DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL);
+            DNSRecord answer = jmDNSImpl.getLocalHost().getAnswerSet(DNSRecordClass.UNIQUE).getRecord(DNSRecordType.TYPE_A);
             if (answer != null) {
                 answers.add(answer);
             }
@@ -58,7 +57,7 @@ public class DNSQuestion extends DNSEntry {
 
         @Override
         public void addAnswers(JmDNSImpl jmDNSImpl, Set<DNSRecord> answers) {
-            DNSRecord answer = jmDNSImpl.getLocalHost().getDNSAddressRecord(this.getRecordType(), DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL);
+            DNSRecord answer = jmDNSImpl.getLocalHost().getAnswerSet(DNSRecordClass.UNIQUE).getRecord(DNSRecordType.TYPE_AAAA);
             if (answer != null) {
                 answers.add(answer);
             }
@@ -92,9 +91,7 @@ public class DNSQuestion extends DNSEntry {
         @Override
         public void addAnswers(JmDNSImpl jmDNSImpl, Set<DNSRecord> answers) {
             // find matching services
-            for (ServiceInfo serviceInfo : jmDNSImpl.getServices().values()) {
-                this.addAnswersForServiceInfo(jmDNSImpl, answers, (ServiceInfoImpl) serviceInfo);
-            }
+            this.addAnswersForServices(jmDNSImpl, answers);
             if (this.isServicesDiscoveryMetaQuery()) {
                 for (final ServiceTypeEntry typeEntry : jmDNSImpl.getServiceTypes().values()) {
                     answers.add(new DNSRecord.Pointer("_services._dns-sd._udp.local.", DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE, DNSConstants.DNS_TTL, typeEntry.getType()));
@@ -133,7 +130,7 @@ public class DNSQuestion extends DNSEntry {
             String loname = this.getName().toLowerCase();
             if (jmDNSImpl.getLocalHost().getName().equalsIgnoreCase(loname)) {
                 // type = DNSConstants.TYPE_A;
-                answers.addAll(jmDNSImpl.getLocalHost().answers(this.getRecordClass(), this.isUnique(), DNSConstants.DNS_TTL));
+                jmDNSImpl.getLocalHost().getAnswerSet(this.isUnique()).addAnswers(this.getRecordClass(), answers);
                 return;
             }
             // Service type request
@@ -194,7 +191,7 @@ public class DNSQuestion extends DNSEntry {
             String loname = this.getName().toLowerCase();
             if (jmDNSImpl.getLocalHost().getName().equalsIgnoreCase(loname)) {
                 // type = DNSConstants.TYPE_A;
-                answers.addAll(jmDNSImpl.getLocalHost().answers(this.getRecordClass(), this.isUnique(), DNSConstants.DNS_TTL));
+                jmDNSImpl.getLocalHost().getAnswerSet(this.isUnique()).addAnswers(this.getRecordClass(), answers);
                 return;
             }
             // Service type request
@@ -204,9 +201,7 @@ public class DNSQuestion extends DNSEntry {
                 return;
             }
 
-            for (ServiceInfo serviceInfo : jmDNSImpl.getServices().values()) {
-                this.addAnswersForServiceInfo(jmDNSImpl, answers, (ServiceInfoImpl) serviceInfo);
-            }
+            this.addAnswersForServices(jmDNSImpl, answers);
         }
 
         @Override
@@ -276,11 +271,27 @@ public class DNSQuestion extends DNSEntry {
         // By default we do nothing
     }
 
+    /**
+     * Adds the answers of the registered services named by the question: the service with the question name, and the services of the type or subtype.
+     *
+     * @param jmDNSImpl
+     *            DNS holding the records
+     * @param answers
+     *            List of previous answer to append.
+     */
+    protected void addAnswersForServices(JmDNSImpl jmDNSImpl, Set<DNSRecord> answers) {
+        this.addAnswersForServiceInfo(jmDNSImpl, answers, (ServiceInfoImpl) jmDNSImpl.getServices().get(this.getName().toLowerCase()));
+        for (ServiceInfoImpl info : jmDNSImpl.getServicesOfType(this.getName())) {
+            this.addAnswersForServiceInfo(jmDNSImpl, answers, info);
+        }
+    }
+
     protected void addAnswersForServiceInfo(JmDNSImpl jmDNSImpl, Set<DNSRecord> answers, ServiceInfoImpl info) {
         if ((info != null) && info.isAnnounced()) {
-            if (this.getName().equalsIgnoreCase(info.getQualifiedName()) || this.getName().equalsIgnoreCase(info.getType()) || this.getName().equalsIgnoreCase(info.getTypeWithSubtype())) {
-                answers.addAll(jmDNSImpl.getLocalHost().answers(this.getRecordClass(), DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL));
-                answers.addAll(info.answers(this.getRecordClass(), DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL, jmDNSImpl.getLocalHost()));
+            final AnswerSet answerSet = info.getAnswerSet(jmDNSImpl.getLocalHost());
+            if (answerSet.answers(this.getName())) {
+                jmDNSImpl.getLocalHost().getAnswerSet(DNSRecordClass.UNIQUE).addAnswers(this.getRecordClass(), answers);
+                answerSet.addAnswers(this.getRecordClass(), answers);
             }
             logger.debug("{} DNSQuestion({}).addAnswersForServiceInfo(): info: {}\n{}", jmDNSImpl.getName(), this.getName(), info, answers);
         }
@@ -11,6 +11,8 @@ import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -46,6 +48,16 @@ public abstract class DNSRecord extends DNSEntry {
      */
     private InetAddress   _source;
 
+    /**
+     * Name encoded ahead of time, see {@link #encode()}.
+     */
+    private EncodedName   _encodedName;
+
+    /**
+     * Data encoded ahead of time, see {@link #encode()}.
+     */
+    private byte[]        _encodedData;
+
     /**
      * Create a DNSRecord with a name, type, class, and ttl.
      */
@@ -71,6 +83,16 @@ public abstract class DNSRecord extends DNSEntry {
      */
     abstract boolean sameValue(DNSRecord other);
 
+    /**
+     * Hash code of the value of this record, consistent with {@link #sameValue(DNSRecord)}. Records of the same name, type and class with different values
+     * should get different hash codes.
+     *
+     * @return hash code of the value
+     */
+    int valueHashCode() {
+        return 0;
+    }
+
     /**
      * True if this record has the same type as some other record.
      */
@@ -102,12 +124,7 @@ public abstract class DNSRecord extends DNSEntry {
      */
     boolean suppressedBy(DNSIncoming msg) {
         try {
-            for (DNSRecord answer : msg.getAllAnswers()) {
-                if (suppressedBy(answer)) {
-                    return true;
-                }
-            }
-            return false;
+            return msg.getKnownAnswers().suppresses(this);
         } catch (ArrayIndexOutOfBoundsException e) {
             logger.warn("suppressedBy() message " + msg + " exception ", e);
             // msg.print(true);
@@ -134,9 +151,19 @@ public abstract class DNSRecord extends DNSEntry {
     }
 
     /**
-     * Get the remaining TTL for this record.
+     * Get the time at which the record reaper has to look at this record again. This is when the record should be refreshed or, once the refresh percentage reached 100%, when it expires.
+     */
+    long getNextReaperTime() {
+        return getExpirationTime(_isStaleAndShouldBeRefreshedPercentage);
+    }
+
+    /**
+     * Get the remaining TTL for this record. Records encoded ahead of time are our own answers, they keep their full TTL.
      */
     int getRemainingTTL(long now) {
+        if (_encodedName != null) {
+            return _ttl;
+        }
         return (int) Math.max(0, (getExpirationTime(100) - now) / 1000);
     }
 
@@ -201,6 +228,42 @@ public abstract class DNSRecord extends DNSEntry {
      */
     abstract void write(MessageOutputStream out);
 
+    /**
+     * Encodes this record ahead of time so that writing it into a message is mostly a byte copy. Only records which are sent over and over again, like the
+     * answers for our own services, are worth it. An encoded record must not be changed any more.
+     *
+     * @return this record
+     */
+    DNSRecord encode() {
+        _encodedName = EncodedName.of(this.getName());
+        this.encodeData();
+        return this;
+    }
+
+    /**
+     * Encodes the data of this record ahead of time. Records holding names in their data encode them separately, so they are still compressed as part of the
+     * message.
+     */
+    void encodeData() {
+        final ByteBuffer buffer = ByteBuffer.allocate(DNSConstants.MAX_MSG_ABSOLUTE);
+        this.write(new MessageOutputStream(buffer, new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE)));
+        _encodedData = Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * @return the name encoded ahead of time, or <code>null</code> if the record was not encoded
+     */
+    EncodedName getEncodedName() {
+        return _encodedName;
+    }
+
+    /**
+     * @return the data encoded ahead of time, or <code>null</code> if the data has to be written
+     */
+    byte[] getEncodedData() {
+        return _encodedData;
+    }
+
     public static class IPv4Address extends Address {
 
         IPv4Address(String name, DNSRecordClass recordClass, boolean unique, int ttl, InetAddress addr) {
@@ -338,6 +401,11 @@ public abstract class DNSRecord extends DNSEntry {
             }
         }
 
+        @Override
+        int valueHashCode() {
+            return (this.getAddress() != null ? this.getAddress().hashCode() : 0);
+        }
+
         @Override
         public boolean isSingleValued() {
             return false;
@@ -383,7 +451,7 @@ public abstract class DNSRecord extends DNSEntry {
                     if (dns.isProbing() && comparison > 0) {
                         // We lost the tie-break. We have to choose a different name.
                         dns.getLocalHost().incrementHostName();
-                        dns.getCache().clear();
+                        dns.clearCache();
                         for (ServiceInfo serviceInfo : dns.getServices().values()) {
                             ServiceInfoImpl info = (ServiceInfoImpl) serviceInfo;
                             info.revertState();
@@ -406,7 +474,7 @@ public abstract class DNSRecord extends DNSEntry {
 
                 if (dns.isProbing()) {
                     dns.getLocalHost().incrementHostName();
-                    dns.getCache().clear();
+                    dns.clearCache();
                     for (ServiceInfo serviceInfo : dns.getServices().values()) {
                         ServiceInfoImpl info = (ServiceInfoImpl) serviceInfo;
                         info.revertState();
@@ -466,6 +534,8 @@ public abstract class DNSRecord extends DNSEntry {
         // private static Logger logger = LoggerFactory.getLogger(Pointer.class);
         private final String _alias;
 
+        private EncodedName  _encodedAlias;
+
         public Pointer(String name, DNSRecordClass recordClass, boolean unique, int ttl, String alias) {
             super(name, DNSRecordType.TYPE_PTR, recordClass, unique, ttl);
             this._alias = alias;
@@ -482,7 +552,16 @@ public abstract class DNSRecord extends DNSEntry {
 
         @Override
         void write(MessageOutputStream out) {
-            out.writeName(_alias);
+            if (_encodedAlias != null) {
+                out.writeName(_encodedAlias);
+            } else {
+                out.writeName(_alias);
+            }
+        }
+
+        @Override
+        void encodeData() {
+            _encodedAlias = EncodedName.of(_alias);
         }
 
         @Override
@@ -497,6 +576,11 @@ public abstract class DNSRecord extends DNSEntry {
             return _alias.equals(pointer._alias);
         }
 
+        @Override
+        int valueHashCode() {
+            return (_alias != null ? _alias.hashCode() : 0);
+        }
+
         @Override
         public boolean isSingleValued() {
             return false;
@@ -594,6 +678,11 @@ public abstract class DNSRecord extends DNSEntry {
             out.writeBytes(_text, 0, _text.length);
         }
 
+        @Override
+        void encodeData() {
+            // The text is written as it is
+        }
+
         @Override
         boolean sameValue(DNSRecord other) {
             if (!(other instanceof Text)) {
@@ -614,6 +703,11 @@ public abstract class DNSRecord extends DNSEntry {
             return true;
         }
 
+        @Override
+        int valueHashCode() {
+            return Arrays.hashCode(_text);
+        }
+
         @Override
         public boolean isSingleValued() {
             return true;
@@ -695,6 +789,8 @@ public abstract class DNSRecord extends DNSEntry {
         private final int     _port;
         private final String  _server;
 
+        private EncodedName   _encodedServer;
+
         public Service(String name, DNSRecordClass recordClass, boolean unique, int ttl, int priority, int weight, int port, String server) {
             super(name, DNSRecordType.TYPE_SRV, recordClass, unique, ttl);
             this._priority = priority;
@@ -708,7 +804,9 @@ public abstract class DNSRecord extends DNSEntry {
             out.writeShort(_priority);
             out.writeShort(_weight);
             out.writeShort(_port);
-            if (DNSIncoming.USE_DOMAIN_NAME_FORMAT_FOR_SRV_TARGET) {
+            if (_encodedServer != null) {
+                out.writeName(_encodedServer);
+            } else if (DNSIncoming.USE_DOMAIN_NAME_FORMAT_FOR_SRV_TARGET) {
                 out.writeName(_server);
             } else {
                 // [PJYF Nov 13 2010] Do we still need this? This looks really bad. All label are supposed to start by a length.
@@ -720,6 +818,15 @@ public abstract class DNSRecord extends DNSEntry {
             }
         }
 
+        @Override
+        void encodeData() {
+            if (DNSIncoming.USE_DOMAIN_NAME_FORMAT_FOR_SRV_TARGET) {
+                _encodedServer = EncodedName.of(_server);
+            } else {
+                super.encodeData();
+            }
+        }
+
         @Override
         protected void toByteArray(DataOutputStream dout) throws IOException {
             super.toByteArray(dout);
@@ -767,6 +874,11 @@ public abstract class DNSRecord extends DNSEntry {
             return (_priority == s._priority) && (_weight == s._weight) && (_port == s._port) && _server.equals(s._server);
         }
 
+        @Override
+        int valueHashCode() {
+            return ((_priority * 31 + _weight) * 31 + _port) * 31 + (_server != null ? _server.hashCode() : 0);
+        }
+
         @Override
         public boolean isSingleValued() {
             return true;
@@ -1084,4 +1196,11 @@ public abstract class DNSRecord extends DNSEntry {
         return this._created;
     }
 
+    /**
+     * Sets the creation time of a record read back from a cache snapshot, its TTL runs from that time.
+     */
+    void setCreated(long created) {
+        this._created = created;
+    }
+
 }
@@ -0,0 +1,321 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.nio.ByteBuffer;
+
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+/**
+ * Flyweight view over the header of a resource record inside a raw DNS message.<br/>
+ * A single instance is positioned on each record of the message in turn with {@link #readAt(int)}. It exposes the owner name offset, type, class, TTL and the
+ * location of the rdata straight from the buffer, without decoding names or allocating, so that {@link DNSIncoming} can decide whether a record is worth
+ * materializing as a {@link DNSRecord}.
+ * <p>
+ * All offsets are relative to the start of the message, which is the position of the buffer when the header is created. The buffer position is never
+ * modified.
+ * </p>
+ */
+final class DNSRecordHeader {
+
+    /**
+     * Maximum number of compression pointers followed while scanning a name. Anything above is considered a circular name.
+     */
+    private static final int MAX_POINTER_HOPS = 64;
+
+    private final ByteBuffer _buffer;
+
+    private final int        _base;
+
+    private final int        _length;
+
+    private int              _nameOffset;
+
+    private int              _type;
+
+    private int              _recordClassIndex;
+
+    private int              _ttl;
+
+    private int              _rdataOffset;
+
+    private int              _rdataLength;
+
+    /**
+     * @param buffer
+     *            buffer holding the message between its position and its limit
+     */
+    DNSRecordHeader(ByteBuffer buffer) {
+        super();
+        _buffer = buffer;
+        _base = buffer.position();
+        _length = buffer.remaining();
+    }
+
+    /**
+     * Position this header on the record starting at the given offset.
+     *
+     * @param offset
+     *            offset of the record owner name
+     * @return offset of the first byte following the record, or -1 if the record does not fit in the message
+     */
+    int readAt(int offset) {
+        final int end = this.skipName(offset);
+        if ((end < 0) || (end + 10 > _length)) {
+            return -1;
+        }
+        _nameOffset = offset;
+        _type = this.unsignedShort(end);
+        _recordClassIndex = this.unsignedShort(end + 2);
+        _ttl = _buffer.getInt(_base + end + 4);
+        _rdataLength = this.unsignedShort(end + 8);
+        _rdataOffset = end + 10;
+        final int next = _rdataOffset + _rdataLength;
+        return (next <= _length ? next : -1);
+    }
+
+    /**
+     * @return offset of the record owner name
+     */
+    int getNameOffset() {
+        return _nameOffset;
+    }
+
+    /**
+     * @return raw record type
+     */
+    int getType() {
+        return _type;
+    }
+
+    /**
+     * @return record type
+     */
+    DNSRecordType getRecordType() {
+        return DNSRecordType.typeForIndex(_type);
+    }
+
+    /**
+     * @return raw record class, including the unique bit
+     */
+    int getRecordClassIndex() {
+        return _recordClassIndex;
+    }
+
+    /**
+     * @return record class
+     */
+    DNSRecordClass getRecordClass() {
+        return DNSRecordClass.classForIndex(_recordClassIndex);
+    }
+
+    /**
+     * @return <code>true</code> if the cache flush bit is set
+     */
+    boolean isUnique() {
+        return (_recordClassIndex & DNSRecordClass.CLASS_UNIQUE) != 0;
+    }
+
+    /**
+     * @return time to live in seconds
+     */
+    int getTTL() {
+        return _ttl;
+    }
+
+    /**
+     * @return offset of the rdata
+     */
+    int getRDataOffset() {
+        return _rdataOffset;
+    }
+
+    /**
+     * @return length of the rdata
+     */
+    int getRDataLength() {
+        return _rdataLength;
+    }
+
+    /**
+     * Returns a read only slice of the message covering the rdata. Unlike the other accessors this allocates the slice.
+     *
+     * @return rdata slice
+     */
+    ByteBuffer getRData() {
+        final ByteBuffer rdata = _buffer.asReadOnlyBuffer();
+        rdata.limit(_base + _rdataOffset + _rdataLength);
+        rdata.position(_base + _rdataOffset);
+        return rdata.slice();
+    }
+
+    /**
+     * Returns a hash of the service type the record owner name belongs to, i.e. the labels starting with the one preceding the <code>_tcp</code> or
+     * <code>_udp</code> label. The hash is case insensitive and identical to {@link #serviceTypeHash(CharSequence)} for the textual name.
+     *
+     * @return service type hash, or 0 if the name does not belong to a service type or cannot be hashed reliably
+     */
+    int getServiceTypeHash() {
+        int position = _nameOffset;
+        int previousLabel = -1;
+        int hops = 0;
+        while (position < _length) {
+            final int len = this.unsignedByte(position);
+            if (len == 0) {
+                return 0;
+            }
+            switch (len & 0xC0) {
+                case 0x00:
+                    if ((previousLabel >= 0) && this.isProtocolLabel(position, len)) {
+                        return this.hashName(previousLabel);
+                    }
+                    previousLabel = position;
+                    position += 1 + len;
+                    break;
+                case 0xC0:
+                    if ((++hops > MAX_POINTER_HOPS) || (position + 1 >= _length)) {
+                        return 0;
+                    }
+                    position = ((len & 0x3F) << 8) | this.unsignedByte(position + 1);
+                    break;
+                default:
+                    return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Computes the service type hash of a textual name, see {@link #getServiceTypeHash()}.
+     *
+     * @param name
+     *            fully qualified name or service type
+     * @return service type hash, or 0 if the name does not belong to a service type or cannot be hashed reliably
+     */
+    static int serviceTypeHash(CharSequence name) {
+        final int length = name.length();
+        int previousLabel = -1;
+        int label = 0;
+        while (label < length) {
+            int end = label;
+            while ((end < length) && (name.charAt(end) != '.')) {
+                end++;
+            }
+            if ((previousLabel >= 0) && isProtocolLabel(name, label, end)) {
+                int hash = 0;
+                for (int index = previousLabel; index < length; index++) {
+                    final char c = name.charAt(index);
+                    if (c >= 0x80) {
+                        return 0;
+                    }
+                    hash = 31 * hash + toLowerCase(c);
+                }
+                if (name.charAt(length - 1) != '.') {
+                    hash = 31 * hash + '.';
+                }
+                return (hash != 0 ? hash : 1);
+            }
+            previousLabel = label;
+            label = end + 1;
+        }
+        return 0;
+    }
+
+    private int hashName(int position) {
+        int hash = 0;
+        int hops = 0;
+        while (position < _length) {
+            final int len = this.unsignedByte(position);
+            if (len == 0) {
+                return (hash != 0 ? hash : 1);
+            }
+            switch (len & 0xC0) {
+                case 0x00:
+                    if (position + len >= _length) {
+                        return 0;
+                    }
+                    for (int index = position + 1; index <= position + len; index++) {
+                        final int c = this.unsignedByte(index);
+                        if (c >= 0x80) {
+                            return 0;
+                        }
+                        hash = 31 * hash + toLowerCase(c);
+                    }
+                    hash = 31 * hash + '.';
+                    position += 1 + len;
+                    break;
+                case 0xC0:
+                    if ((++hops > MAX_POINTER_HOPS) || (position + 1 >= _length)) {
+                        return 0;
+                    }
+                    position = ((len & 0x3F) << 8) | this.unsignedByte(position + 1);
+                    break;
+                default:
+                    return 0;
+            }
+        }
+        return 0;
+    }
+
+    private boolean isProtocolLabel(int position, int len) {
+        if ((len != 4) || (position + len >= _length) || (this.unsignedByte(position + 1) != '_')) {
+            return false;
+        }
+        final int c1 = toLowerCase(this.unsignedByte(position + 2));
+        final int c2 = toLowerCase(this.unsignedByte(position + 3));
+        final int c3 = toLowerCase(this.unsignedByte(position + 4));
+        return ((c1 == 't') && (c2 == 'c') && (c3 == 'p')) || ((c1 == 'u') && (c2 == 'd') && (c3 == 'p'));
+    }
+
+    private static boolean isProtocolLabel(CharSequence name, int start, int end) {
+        if ((end - start != 4) || (name.charAt(start) != '_')) {
+            return false;
+        }
+        final int c1 = toLowerCase(name.charAt(start + 1));
+        final int c2 = toLowerCase(name.charAt(start + 2));
+        final int c3 = toLowerCase(name.charAt(start + 3));
+        return ((c1 == 't') && (c2 == 'c') && (c3 == 'p')) || ((c1 == 'u') && (c2 == 'd') && (c3 == 'p'));
+    }
+
+    private static int toLowerCase(int c) {
+        return ((c >= 'A') && (c <= 'Z') ? c + ('a' - 'A') : c);
+    }
+
+    /**
+     * Skips the name starting at the given offset without decoding it.
+     *
+     * @param offset
+     *            offset of the name
+     * @return offset of the first byte following the name, or -1 if the name does not fit in the message
+     */
+    private int skipName(int offset) {
+        int position = offset;
+        while (position < _length) {
+            final int len = this.unsignedByte(position);
+            if (len == 0) {
+                return position + 1;
+            }
+            switch (len & 0xC0) {
+                case 0x00:
+                    position += 1 + len;
+                    break;
+                case 0xC0:
+                    return (position + 2 <= _length ? position + 2 : -1);
+                default:
+                    // Extended and unknown labels are skipped one byte at a time, like DNSIncoming does.
+                    position++;
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    private int unsignedByte(int offset) {
+        return _buffer.get(_base + offset) & 0xFF;
+    }
+
+    private int unsignedShort(int offset) {
+        return _buffer.getShort(_base + offset) & 0xFFFF;
+    }
+
+}
@@ -4,11 +4,13 @@ package javax.jmdns.impl;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -103,28 +105,50 @@ public interface DNSStatefulObject {
 
     }
 
-    public static class DefaultImplementation extends ReentrantLock implements DNSStatefulObject {
-        private static Logger                    logger           = LoggerFactory.getLogger(DefaultImplementation.class);
+    /**
+     * Default state machine. The state and the associated task form an immutable snapshot which is swapped with a compare and set, so checking the state never
+     * blocks.
+     */
+    public static class DefaultImplementation implements DNSStatefulObject {
+        private static Logger                    logger = LoggerFactory.getLogger(DefaultImplementation.class);
 
-        private static final long                serialVersionUID = -3264781576883412227L;
+        /**
+         * State and associated task at a point in time.
+         */
+        private static final class Snapshot {
 
-        private volatile JmDNSImpl               _dns;
+            final DNSState _state;
+
+            final DNSTask  _task;
+
+            Snapshot(DNSState state, DNSTask task) {
+                super();
+                _state = state;
+                _task = task;
+            }
+
+        }
 
-        protected volatile DNSTask               _task;
+        private volatile JmDNSImpl               _dns;
 
-        protected volatile DNSState              _state;
+        private final AtomicReference<Snapshot>  _snapshot;
 
         private final DNSStatefulObjectSemaphore _announcing;
 
         private final DNSStatefulObjectSemaphore _canceling;
 
+        private final AtomicReference<CompletableFuture<Void>> _announced;
+
+        private final AtomicReference<CompletableFuture<Void>> _canceled;
+
         public DefaultImplementation() {
             super();
             _dns = null;
-            _task = null;
-            _state = DNSState.PROBING_1;
+            _snapshot = new AtomicReference<Snapshot>(new Snapshot(DNSState.PROBING_1, null));
             _announcing = new DNSStatefulObjectSemaphore("Announce");
             _canceling = new DNSStatefulObjectSemaphore("Cancel");
+            _announced = new AtomicReference<CompletableFuture<Void>>();
+            _canceled = new AtomicReference<CompletableFuture<Void>>();
         }
 
         /**
@@ -143,93 +167,206 @@ public interface DNSStatefulObject {
          * {@inheritDoc}
          */
         @Override
-        public void associateWithTask(DNSTask task, DNSState state) {
-            if (this._task == null && this._state == state) {
-                this.lock();
-                try {
-                    if (this._task == null && this._state == state) {
-                        this.setTask(task);
-                    }
-                } finally {
-                    this.unlock();
+        public DNSState getState() {
+            return _snapshot.get()._state;
+        }
+
+        /**
+         * @return the associated task, or <code>null</code> if none
+         */
+        protected DNSTask getTask() {
+            return _snapshot.get()._task;
+        }
+
+        /**
+         * Associates the task whatever the current state and owner.
+         *
+         * @param task
+         *            the task to set
+         */
+        protected void setTask(DNSTask task) {
+            Snapshot snapshot = _snapshot.get();
+            while (!this.swap(snapshot, snapshot._state, task)) {
+                snapshot = _snapshot.get();
+            }
+        }
+
+        /**
+         * Sets the state whatever the current state and owner, and notifies the threads waiting for it.
+         *
+         * @param state
+         *            the state to set
+         */
+        protected void setState(DNSState state) {
+            Snapshot snapshot = _snapshot.get();
+            while (!this.swap(snapshot, state, snapshot._task)) {
+                snapshot = _snapshot.get();
+            }
+        }
+
+        /**
+         * Swaps the snapshot if it has not changed, and signals the threads waiting for the new state.
+         *
+         * @return <code>true</code> if the snapshot was swapped
+         */
+        private boolean swap(Snapshot expected, DNSState state, DNSTask task) {
+            if (!_snapshot.compareAndSet(expected, new Snapshot(state, task))) {
+                return false;
+            }
+            if (state.isAnnounced()) {
+                _announcing.signalEvent();
+            }
+            if (state.isCanceled()) {
+                _canceling.signalEvent();
+                // clear any waiting announcing
+                _announcing.signalEvent();
+            }
+            this.completeFutures(state);
+            return true;
+        }
+
+        private void completeFutures(DNSState state) {
+            if (state.isAnnounced()) {
+                complete(_announced, null);
+            } else if (willCancel(state) || willClose(state)) {
+                complete(_announced, new CancellationException("Canceled before being announced"));
+            }
+            if (state.isCanceled() || state.isClosed()) {
+                complete(_canceled, null);
+            }
+        }
+
+        private static void complete(AtomicReference<CompletableFuture<Void>> pending, Throwable failure) {
+            final CompletableFuture<Void> future = pending.getAndSet(null);
+            if (future != null) {
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(null);
                 }
             }
         }
 
+        private CompletableFuture<Void> pending(AtomicReference<CompletableFuture<Void>> pending) {
+            CompletableFuture<Void> future = pending.get();
+            while (future == null) {
+                pending.compareAndSet(null, new CompletableFuture<Void>());
+                future = pending.get();
+            }
+            // The state may have moved on before the future was published
+            this.completeFutures(this.getState());
+            return future;
+        }
+
         /**
-         * {@inheritDoc}
+         * Non blocking counterpart of {@link #waitForAnnounced(long)}.
+         *
+         * @return a future completed once the object is announced, or completed exceptionally with a {@link CancellationException} if it is canceled or closed
+         *         first
          */
-        @Override
-        public void removeAssociationWithTask(DNSTask task) {
-            if (this._task == task) {
-                this.lock();
-                try {
-                    if (this._task == task) {
-                        this.setTask(null);
-                    }
-                } finally {
-                    this.unlock();
+        public CompletableFuture<Void> whenAnnounced() {
+            return this.pending(_announced);
+        }
+
+        /**
+         * Non blocking counterpart of {@link #waitForCanceled(long)}.
+         *
+         * @return a future completed once the object is canceled or closed
+         */
+        public CompletableFuture<Void> whenCanceled() {
+            return this.pending(_canceled);
+        }
+
+        /**
+         * Sets the state if the object is in the expected state and not associated with a task.
+         *
+         * @param expected
+         *            expected state
+         * @param state
+         *            new state
+         * @return <code>true</code> if the state was set
+         */
+        protected boolean compareAndSetState(DNSState expected, DNSState state) {
+            Snapshot snapshot = _snapshot.get();
+            while ((snapshot._state == expected) && (snapshot._task == null)) {
+                if (this.swap(snapshot, state, null)) {
+                    return true;
                 }
+                snapshot = _snapshot.get();
             }
+            return false;
         }
 
         /**
-         * {@inheritDoc}
+         * Removes the association with whatever task owns the object.
          */
-        @Override
-        public boolean isAssociatedWithTask(DNSTask task, DNSState state) {
-            this.lock();
-            try {
-                return this._task == task && this._state == state;
-            } finally {
-                this.unlock();
+        protected void releaseTask() {
+            Snapshot snapshot = _snapshot.get();
+            while ((snapshot._task != null) && !this.swap(snapshot, snapshot._state, null)) {
+                snapshot = _snapshot.get();
             }
+            this.taskReleased();
         }
 
-        protected void setTask(DNSTask task) {
-            this._task = task;
+        /**
+         * Called once the object is no longer associated with a task. Subclasses can start a new task from here.
+         */
+        protected void taskReleased() {
+            // Nothing by default
         }
 
         /**
-         * @param state
-         *            the state to set
+         * {@inheritDoc}
          */
-        protected void setState(DNSState state) {
-            this.lock();
-            try {
-                this._state = state;
-                if (this.isAnnounced()) {
-                    _announcing.signalEvent();
+        @Override
+        public void associateWithTask(DNSTask task, DNSState state) {
+            Snapshot snapshot = _snapshot.get();
+            while ((snapshot._task == null) && (snapshot._state == state)) {
+                if (this.swap(snapshot, state, task)) {
+                    return;
                 }
-                if (this.isCanceled()) {
-                    _canceling.signalEvent();
-                    // clear any waiting announcing
-                    _announcing.signalEvent();
+                snapshot = _snapshot.get();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void removeAssociationWithTask(DNSTask task) {
+            Snapshot snapshot = _snapshot.get();
+            while (snapshot._task == task) {
+                if (this.swap(snapshot, snapshot._state, null)) {
+                    this.taskReleased();
+                    return;
                 }
-            } finally {
-                this.unlock();
+                snapshot = _snapshot.get();
             }
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isAssociatedWithTask(DNSTask task, DNSState state) {
+            final Snapshot snapshot = _snapshot.get();
+            return snapshot._task == task && snapshot._state == state;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public boolean advanceState(DNSTask task) {
-            boolean result = true;
-            if (this._task == task) {
-                this.lock();
-                try {
-                    if (this._task == task) {
-                        this.setState(this._state.advance());
-                    } else {
-                        logger.warn("Trying to advance state whhen not the owner. owner: {} perpetrator: {}", this._task, task);
-                    }
-                } finally {
-                    this.unlock();
+            Snapshot snapshot = _snapshot.get();
+            while (snapshot._task == task) {
+                if (this.swap(snapshot, snapshot._state.advance(), task)) {
+                    return true;
                 }
+                snapshot = _snapshot.get();
             }
-            return result;
+            logger.warn("Trying to advance state when not the owner. owner: {} perpetrator: {}", snapshot._task, task);
+            return true;
         }
 
         /**
@@ -237,19 +374,15 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean revertState() {
-            boolean result = true;
-            if (!this.willCancel()) {
-                this.lock();
-                try {
-                    if (!this.willCancel()) {
-                        this.setState(this._state.revert());
-                        this.setTask(null);
-                    }
-                } finally {
-                    this.unlock();
+            Snapshot snapshot = _snapshot.get();
+            while (!willCancel(snapshot._state)) {
+                if (this.swap(snapshot, snapshot._state.revert(), null)) {
+                    this.taskReleased();
+                    break;
                 }
+                snapshot = _snapshot.get();
             }
-            return result;
+            return true;
         }
 
         /**
@@ -257,20 +390,15 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean cancelState() {
-            boolean result = false;
-            if (!this.willCancel()) {
-                this.lock();
-                try {
-                    if (!this.willCancel()) {
-                        this.setState(DNSState.CANCELING_1);
-                        this.setTask(null);
-                        result = true;
-                    }
-                } finally {
-                    this.unlock();
+            Snapshot snapshot = _snapshot.get();
+            while (!willCancel(snapshot._state)) {
+                if (this.swap(snapshot, DNSState.CANCELING_1, null)) {
+                    this.taskReleased();
+                    return true;
                 }
+                snapshot = _snapshot.get();
             }
-            return result;
+            return false;
         }
 
         /**
@@ -278,20 +406,15 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean closeState() {
-            boolean result = false;
-            if (!this.willClose()) {
-                this.lock();
-                try {
-                    if (!this.willClose()) {
-                        this.setState(DNSState.CLOSING);
-                        this.setTask(null);
-                        result = true;
-                    }
-                } finally {
-                    this.unlock();
+            Snapshot snapshot = _snapshot.get();
+            while (!willClose(snapshot._state)) {
+                if (this.swap(snapshot, DNSState.CLOSING, null)) {
+                    this.taskReleased();
+                    return true;
                 }
+                snapshot = _snapshot.get();
             }
-            return result;
+            return false;
         }
 
         /**
@@ -299,15 +422,12 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean recoverState() {
-            boolean result = false;
-            this.lock();
-            try {
-                this.setState(DNSState.PROBING_1);
-                this.setTask(null);
-            } finally {
-                this.unlock();
+            Snapshot snapshot = _snapshot.get();
+            while (!this.swap(snapshot, DNSState.PROBING_1, null)) {
+                snapshot = _snapshot.get();
             }
-            return result;
+            this.taskReleased();
+            return false;
         }
 
         /**
@@ -315,7 +435,7 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isProbing() {
-            return this._state.isProbing();
+            return this.getState().isProbing();
         }
 
         /**
@@ -323,7 +443,7 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isAnnouncing() {
-            return this._state.isAnnouncing();
+            return this.getState().isAnnouncing();
         }
 
         /**
@@ -331,7 +451,7 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isAnnounced() {
-            return this._state.isAnnounced();
+            return this.getState().isAnnounced();
         }
 
         /**
@@ -339,7 +459,7 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isCanceling() {
-            return this._state.isCanceling();
+            return this.getState().isCanceling();
         }
 
         /**
@@ -347,7 +467,7 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isCanceled() {
-            return this._state.isCanceled();
+            return this.getState().isCanceled();
         }
 
         /**
@@ -355,7 +475,7 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isClosing() {
-            return this._state.isClosing();
+            return this.getState().isClosing();
         }
 
         /**
@@ -363,15 +483,23 @@ public interface DNSStatefulObject {
          */
         @Override
         public boolean isClosed() {
-            return this._state.isClosed();
+            return this.getState().isClosed();
+        }
+
+        private static boolean willCancel(DNSState state) {
+            return state.isCanceled() || state.isCanceling();
+        }
+
+        private static boolean willClose(DNSState state) {
+            return state.isClosed() || state.isClosing();
         }
 
         private boolean willCancel() {
-            return this._state.isCanceled() || this._state.isCanceling();
+            return willCancel(this.getState());
         }
 
         private boolean willClose() {
-            return this._state.isClosed() || this._state.isClosing();
+            return willClose(this.getState());
         }
 
         /**
@@ -419,10 +547,11 @@ public interface DNSStatefulObject {
          */
         @Override
         public String toString() {
+            final Snapshot snapshot = _snapshot.get();
             try {
-                return (_dns != null ? "DNS: " + _dns.getName() + " [" + _dns.getInetAddress() + "]" : "NO DNS") + " state: " + _state + " task: " + _task;
+                return (_dns != null ? "DNS: " + _dns.getName() + " [" + _dns.getInetAddress() + "]" : "NO DNS") + " state: " + snapshot._state + " task: " + snapshot._task;
             } catch (IOException exception) {
-                return (_dns != null ? "DNS: " + _dns.getName() : "NO DNS") + " state: " + _state + " task: " + _task;
+                return (_dns != null ? "DNS: " + _dns.getName() : "NO DNS") + " state: " + snapshot._state + " task: " + snapshot._task;
             }
         }
 
@@ -453,6 +582,13 @@ public interface DNSStatefulObject {
      */
     public void removeAssociationWithTask(DNSTask task);
 
+    /**
+     * Returns the current state of this object.
+     *
+     * @return current state
+     */
+    public DNSState getState();
+
     /**
      * Checks if this object is associated with the task and in the same state.
      *
@@ -9,8 +9,12 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.tasks.CacheSnapshotter;
+import javax.jmdns.impl.tasks.DNSTaskScheduler;
 import javax.jmdns.impl.tasks.RecordReaper;
 import javax.jmdns.impl.tasks.Responder;
 import javax.jmdns.impl.tasks.resolver.ServiceInfoResolver;
@@ -20,6 +24,8 @@ import javax.jmdns.impl.tasks.state.Announcer;
 import javax.jmdns.impl.tasks.state.Canceler;
 import javax.jmdns.impl.tasks.state.Prober;
 import javax.jmdns.impl.tasks.state.Renewer;
+import javax.jmdns.impl.tasks.state.StateScheduler;
+import javax.jmdns.impl.util.NamedThreadFactory;
 
 /**
  * This class is used by JmDNS to start the various task required to run the DNS discovery. This interface is only there in order to support MANET modifications.
@@ -99,7 +105,10 @@ public interface DNSTaskStarter {
             if (delegate != null) {
                 instance = delegate.newDNSTaskStarter(jmDNSImpl);
             }
-            return (instance != null ? instance : new DNSTaskStarterImpl(jmDNSImpl));
+            if (instance == null) {
+                instance = (DNSConstants.TASK_TIMERS ? new DNSTaskStarterImpl(jmDNSImpl) : new SharedExecutorStarterImpl(jmDNSImpl));
+            }
+            return instance;
         }
 
         /**
@@ -146,19 +155,203 @@ public interface DNSTaskStarter {
 
     }
 
-    public static final class DNSTaskStarterImpl implements DNSTaskStarter {
+    /**
+     * Starts the tasks on a general and a state {@link DNSTaskScheduler}.
+     */
+    public static abstract class AbstractDNSTaskStarter implements DNSTaskStarter {
+
+        protected final JmDNSImpl      _jmDNSImpl;
+
+        private final DNSTaskScheduler _scheduler;
+
+        private final DNSTaskScheduler _stateScheduler;
+
+        /**
+         * Runs all the state steps of the instance, unless {@link DNSConstants#STATE_TASK_PER_STEP} is set.
+         */
+        private final StateScheduler   _states;
+
+        /**
+         * @param jmDNSImpl
+         *            jmDNS instance
+         * @param scheduler
+         *            scheduler for the responders, resolvers and the reaper
+         * @param stateScheduler
+         *            scheduler for the probers, announcers, renewers and cancelers
+         */
+        protected AbstractDNSTaskStarter(JmDNSImpl jmDNSImpl, DNSTaskScheduler scheduler, DNSTaskScheduler stateScheduler) {
+            super();
+            _jmDNSImpl = jmDNSImpl;
+            _scheduler = scheduler;
+            _stateScheduler = stateScheduler;
+            if (DNSConstants.STATE_TASK_PER_STEP) {
+                _states = null;
+            } else {
+                _states = new StateScheduler(jmDNSImpl);
+                _states.start(stateScheduler);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#purgeTimer()
+         */
+        @Override
+        public void purgeTimer() {
+            _scheduler.purge();
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#purgeStateTimer()
+         */
+        @Override
+        public void purgeStateTimer() {
+            _stateScheduler.purge();
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#cancelTimer()
+         */
+        @Override
+        public void cancelTimer() {
+            _scheduler.cancel();
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#cancelStateTimer()
+         */
+        @Override
+        public void cancelStateTimer() {
+            if (_states != null) {
+                _states.cancel();
+            }
+            _stateScheduler.cancel();
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startProber()
+         */
+        @Override
+        public void startProber() {
+            if (_states != null) {
+                _states.startProbing();
+            } else {
+                new Prober(_jmDNSImpl).start(_stateScheduler);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startAnnouncer()
+         */
+        @Override
+        public void startAnnouncer() {
+            if (_states != null) {
+                _states.requestScan();
+            } else {
+                new Announcer(_jmDNSImpl).start(_stateScheduler);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startRenewer()
+         */
+        @Override
+        public void startRenewer() {
+            if (_states != null) {
+                _states.requestScan();
+            } else {
+                new Renewer(_jmDNSImpl).start(_stateScheduler);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startCanceler()
+         */
+        @Override
+        public void startCanceler() {
+            if (_states != null) {
+                _states.requestScan();
+            } else {
+                new Canceler(_jmDNSImpl).start(_stateScheduler);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startReaper()
+         */
+        @Override
+        public void startReaper() {
+            new RecordReaper(_jmDNSImpl).start(_scheduler);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startCacheSnapshotter()
+         */
+        @Override
+        public void startCacheSnapshotter() {
+            new CacheSnapshotter(_jmDNSImpl).start(_scheduler);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startServiceInfoResolver(javax.jmdns.impl.ServiceInfoImpl)
+         */
+        @Override
+        public void startServiceInfoResolver(ServiceInfoImpl info) {
+            new ServiceInfoResolver(_jmDNSImpl, info).start(_scheduler);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startTypeResolver()
+         */
+        @Override
+        public void startTypeResolver() {
+            new TypeResolver(_jmDNSImpl).start(_scheduler);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startServiceResolver(java.lang.String)
+         */
+        @Override
+        public void startServiceResolver(String type) {
+            new ServiceResolver(_jmDNSImpl, type).start(_scheduler);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.DNSTaskStarter#startResponder(javax.jmdns.impl.DNSIncoming, int)
+         */
+        @Override
+        public void startResponder(DNSIncoming in, InetAddress addr, int port) {
+            new Responder(_jmDNSImpl, in, addr, port).start(_scheduler);
+        }
+    }
 
-        private final JmDNSImpl _jmDNSImpl;
+    /**
+     * Runs the tasks of each JmDNS instance on two dedicated timers.
+     */
+    public static final class DNSTaskStarterImpl extends AbstractDNSTaskStarter {
 
         /**
          * The timer is used to dispatch all outgoing messages of JmDNS. It is also used to dispatch maintenance tasks for the DNS cache.
          */
-        private final Timer     _timer;
+        private final Timer _timer;
 
         /**
          * The timer is used to dispatch maintenance tasks for the DNS cache.
          */
-        private final Timer     _stateTimer;
+        private final Timer _stateTimer;
 
         public static class StarterTimer extends Timer {
 
@@ -272,128 +465,40 @@ public interface DNSTaskStarter {
         }
 
         public DNSTaskStarterImpl(JmDNSImpl jmDNSImpl) {
-            super();
-            _jmDNSImpl = jmDNSImpl;
-            _timer = new StarterTimer("JmDNS(" + _jmDNSImpl.getName() + ").Timer", true);
-            _stateTimer = new StarterTimer("JmDNS(" + _jmDNSImpl.getName() + ").State.Timer", false);
-        }
-
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#purgeTimer()
-         */
-        @Override
-        public void purgeTimer() {
-            _timer.purge();
-        }
-
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#purgeStateTimer()
-         */
-        @Override
-        public void purgeStateTimer() {
-            _stateTimer.purge();
-        }
-
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#cancelTimer()
-         */
-        @Override
-        public void cancelTimer() {
-            _timer.cancel();
-        }
-
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#cancelStateTimer()
-         */
-        @Override
-        public void cancelStateTimer() {
-            _stateTimer.cancel();
+            this(jmDNSImpl, new StarterTimer("JmDNS(" + jmDNSImpl.getName() + ").Timer", true), new StarterTimer("JmDNS(" + jmDNSImpl.getName() + ").State.Timer", false));
         }
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startProber()
-         */
-        @Override
-        public void startProber() {
-            new Prober(_jmDNSImpl).start(_stateTimer);
+        private DNSTaskStarterImpl(JmDNSImpl jmDNSImpl, Timer timer, Timer stateTimer) {
+            super(jmDNSImpl, DNSTaskScheduler.forTimer(timer), DNSTaskScheduler.forTimer(stateTimer));
+            _timer = timer;
+            _stateTimer = stateTimer;
         }
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startAnnouncer()
-         */
-        @Override
-        public void startAnnouncer() {
-            new Announcer(_jmDNSImpl).start(_stateTimer);
-        }
+    }
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startRenewer()
-         */
-        @Override
-        public void startRenewer() {
-            new Renewer(_jmDNSImpl).start(_stateTimer);
-        }
+    /**
+     * Runs the tasks of all the JmDNS instances on one executor with a fixed number of threads, so adding interfaces does not add threads.
+     *
+     * @see DNSConstants#TASK_THREADS
+     */
+    public static final class SharedExecutorStarterImpl extends AbstractDNSTaskStarter {
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startCanceler()
-         */
-        @Override
-        public void startCanceler() {
-            new Canceler(_jmDNSImpl).start(_stateTimer);
-        }
+        private static final class SharedExecutor {
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startReaper()
-         */
-        @Override
-        public void startReaper() {
-            new RecordReaper(_jmDNSImpl).start(_timer);
-        }
+            static final ScheduledThreadPoolExecutor INSTANCE = newExecutor();
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startServiceInfoResolver(javax.jmdns.impl.ServiceInfoImpl)
-         */
-        @Override
-        public void startServiceInfoResolver(ServiceInfoImpl info) {
-            new ServiceInfoResolver(_jmDNSImpl, info).start(_timer);
-        }
+            private static ScheduledThreadPoolExecutor newExecutor() {
+                final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, DNSConstants.TASK_THREADS), new NamedThreadFactory("JmDNS.Tasks", true));
+                executor.setRemoveOnCancelPolicy(true);
+                return executor;
+            }
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startTypeResolver()
-         */
-        @Override
-        public void startTypeResolver() {
-            new TypeResolver(_jmDNSImpl).start(_timer);
         }
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startServiceResolver(java.lang.String)
-         */
-        @Override
-        public void startServiceResolver(String type) {
-            new ServiceResolver(_jmDNSImpl, type).start(_timer);
+        public SharedExecutorStarterImpl(JmDNSImpl jmDNSImpl) {
+            super(jmDNSImpl, DNSTaskScheduler.forExecutor(SharedExecutor.INSTANCE), DNSTaskScheduler.forExecutor(SharedExecutor.INSTANCE));
         }
 
-        /*
-         * (non-Javadoc)
-         * @see javax.jmdns.impl.DNSTaskStarter#startResponder(javax.jmdns.impl.DNSIncoming, int)
-         */
-        @Override
-        public void startResponder(DNSIncoming in, InetAddress addr, int port) {
-            new Responder(_jmDNSImpl, in, addr, port).start(_timer);
-        }
     }
 
     /**
@@ -441,6 +546,11 @@ public interface DNSTaskStarter {
      */
     public void startReaper();
 
+    /**
+     * Start a new task saving the cache snapshot periodically
+     */
+    public void startCacheSnapshotter();
+
     /**
      * Start a new service info resolver task
      *
@@ -0,0 +1,110 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Domain name split into its encoded labels ahead of time.<br/>
+ * Writing an encoded name copies the label bytes instead of splitting and encoding the name again. The suffixes are the ones
+ * {@link DNSOutgoing.MessageOutputStream#writeName(String)} uses for name compression, so encoded names and plain names compress against each other.
+ */
+final class EncodedName {
+
+    /**
+     * Name remaining in front of each label, used as compression key.
+     */
+    private final String[] _suffixes;
+
+    /**
+     * Length prefixed labels.
+     */
+    private final byte[][] _labels;
+
+    private EncodedName(String[] suffixes, byte[][] labels) {
+        super();
+        _suffixes = suffixes;
+        _labels = labels;
+    }
+
+    /**
+     * @param name
+     *            domain name
+     * @return the encoded name
+     */
+    static EncodedName of(String name) {
+        final List<String> suffixes = new ArrayList<String>();
+        final List<byte[]> labels = new ArrayList<byte[]>();
+        String aName = name;
+        while (true) {
+            int n = DNSOutgoing.MessageOutputStream.indexOfSeparator(aName);
+            if (n < 0) {
+                n = aName.length();
+            }
+            if (n <= 0) {
+                break;
+            }
+            suffixes.add(aName);
+            labels.add(encodeLabel(aName.substring(0, n).replace("\\.", ".")));
+            aName = aName.substring(n);
+            if (aName.startsWith(".")) {
+                aName = aName.substring(1);
+            }
+        }
+        return new EncodedName(suffixes.toArray(new String[suffixes.size()]), labels.toArray(new byte[labels.size()][]));
+    }
+
+    /**
+     * Encodes a label the way {@link DNSOutgoing.MessageOutputStream#writeUTF(String, int, int)} does.
+     */
+    private static byte[] encodeLabel(String label) {
+        int utflen = 0;
+        for (int i = 0; i < label.length(); i++) {
+            final int ch = label.charAt(i);
+            utflen += ((ch >= 0x0001) && (ch <= 0x007F)) ? 1 : (ch > 0x07FF ? 3 : 2);
+        }
+        final byte[] bytes = new byte[utflen + 1];
+        int index = 0;
+        bytes[index++] = (byte) utflen;
+        for (int i = 0; i < label.length(); i++) {
+            final int ch = label.charAt(i);
+            if ((ch >= 0x0001) && (ch <= 0x007F)) {
+                bytes[index++] = (byte) ch;
+            } else if (ch > 0x07FF) {
+                bytes[index++] = (byte) (0xE0 | ((ch >> 12) & 0x0F));
+                bytes[index++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                bytes[index++] = (byte) (0x80 | ((ch >> 0) & 0x3F));
+            } else {
+                bytes[index++] = (byte) (0xC0 | ((ch >> 6) & 0x1F));
+                bytes[index++] = (byte) (0x80 | ((ch >> 0) & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return number of labels
+     */
+    int size() {
+        return _labels.length;
+    }
+
+    /**
+     * @param index
+     *            label index
+     * @return name from the label on, the compression key
+     */
+    String suffix(int index) {
+        return _suffixes[index];
+    }
+
+    /**
+     * @param index
+     *            label index
+     * @return length prefixed label
+     */
+    byte[] label(int index) {
+        return _labels[index];
+    }
+
+}
@@ -13,6 +13,7 @@ import java.net.NetworkInterface;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,12 +41,17 @@ public class HostInfo implements DNSStatefulObject {
 
     private final HostInfoState _state;
 
+    /**
+     * Address answers with the cache flush bit set and without, dropped when the host name changes.
+     */
+    private volatile AnswerSet  _uniqueAnswerSet;
+
+    private volatile AnswerSet  _sharedAnswerSet;
+
     private final static int    _labelLengthLimit = 0x3F;
 
     private final static class HostInfoState extends DNSStatefulObject.DefaultImplementation {
 
-        private static final long serialVersionUID = -8191476803620402088L;
-
         /**
          * @param dns
          */
@@ -175,6 +181,8 @@ public class HostInfo implements DNSStatefulObject {
 
     synchronized String incrementHostName() {
         _name = NameRegister.Factory.getRegistry().incrementName(this.getInetAddress(), _name, NameRegister.NameType.HOST);
+        _uniqueAnswerSet = null;
+        _sharedAnswerSet = null;
         return _name;
     }
 
@@ -290,6 +298,27 @@ public class HostInfo implements DNSStatefulObject {
         return list;
     }
 
+    /**
+     * Returns the records of {@link #answers(DNSRecordClass, boolean, int)} for responses, built and encoded once.
+     *
+     * @param unique
+     *            <code>true</code> for records with the cache flush bit set
+     * @return the answer set
+     */
+    AnswerSet getAnswerSet(boolean unique) {
+        AnswerSet answerSet = (unique ? _uniqueAnswerSet : _sharedAnswerSet);
+        final String name = this.getName();
+        if ((answerSet == null) || !answerSet.getHostName().equals(name)) {
+            answerSet = new AnswerSet(Collections.singleton(name), this.answers(DNSRecordClass.CLASS_IN, unique, DNSConstants.DNS_TTL), name);
+            if (unique) {
+                _uniqueAnswerSet = answerSet;
+            } else {
+                _sharedAnswerSet = answerSet;
+            }
+        }
+        return answerSet;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -330,6 +359,14 @@ public class HostInfo implements DNSStatefulObject {
         this._state.associateWithTask(task, state);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DNSState getState() {
+        return this._state.getState();
+    }
+
     /**
      * {@inheritDoc}
      */
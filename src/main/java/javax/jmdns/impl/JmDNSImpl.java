@@ -4,6 +4,7 @@
 
 package javax.jmdns.impl;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.Inet4Address;
@@ -11,14 +12,17 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
-import java.net.SocketAddress;
-import java.net.SocketException;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EventListener;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,16 +30,21 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jmdns.JmDNS;
+import javax.jmdns.JmDNSMetrics;
 import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceEventFlow;
 import javax.jmdns.ServiceInfo;
 import javax.jmdns.ServiceInfo.Fields;
 import javax.jmdns.ServiceListener;
@@ -48,7 +57,8 @@ import javax.jmdns.impl.constants.DNSRecordType;
 import javax.jmdns.impl.constants.DNSState;
 import javax.jmdns.impl.tasks.DNSTask;
 import javax.jmdns.impl.tasks.RecordReaper;
-import javax.jmdns.impl.util.NamedThreadFactory;
+import javax.jmdns.impl.util.FutureTimeouts;
+import javax.jmdns.impl.util.VirtualThreads;
 
 // REMIND: multiple IP addresses
 
@@ -69,14 +79,14 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      */
     private volatile InetAddress     _group;
     /**
-     * This is our multicast socket.
+     * Carries our messages to and from the multicast group.
      */
-    private volatile MulticastSocket _socket;
+    private final Transport          _transport;
 
     /**
-     * Holds instances of JmDNS.DNSListener. Must by a synchronized collection, because it is updated from concurrent threads.
+     * Holds instances of JmDNS.DNSListener, indexed on the names of the records they listen to.
      */
-    private final List<DNSListener> _listeners;
+    private final DNSListenerIndex _listeners;
 
     /**
      * Holds instances of ServiceListener's. Keys are Strings holding a fully qualified service type. Values are LinkedList's of ServiceListener's.
@@ -88,16 +98,41 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      */
     private final Set<ServiceTypeListenerStatus> _typeListeners;
 
+    /**
+     * Service event publishers, completed on close.
+     */
+    private final Set<ServiceEventPublisher> _publishers;
+
     /**
      * Cache for DNSEntry's.
      */
     private final DNSCache _cache;
 
+    /**
+     * Protocol and cache counters.
+     */
+    private final MetricsRegistry _metrics;
+
+    /**
+     * Snapshot the cache is restored from on start and saved to, <code>null</code> unless {@link DNSConstants#CACHE_SNAPSHOT_DIR} is set.
+     */
+    private final CacheSnapshot _cacheSnapshot;
+
     /**
      * This hashtable holds the services that have been registered. Keys are instances of String which hold an all lower-case version of the fully qualified service name. Values are instances of ServiceInfo.
      */
     private final ConcurrentMap<String, ServiceInfo> _services;
 
+    /**
+     * The registered services indexed on their lower-case type and subtype, kept in step with {@link #_services}.
+     */
+    private final ServiceTypeIndex _servicesByType;
+
+    /**
+     * The futures returned by {@link #unregisterServices(Collection)} which are not completed yet, completed on close.
+     */
+    private final Set<CompletableFuture<Void>> _pendingUnregistrations;
+
     /**
      * This hashtable holds the service types that have been registered or that have been received in an incoming datagram.<br/>
      * Keys are instances of String which hold an all lower-case version of the fully qualified service type.<br/>
@@ -308,8 +343,6 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      */
     private HostInfo _localHost;
 
-    private Thread _incomingListener;
-
     /**
      * Throttle count. This is used to count the overall number of probes sent by JmDNS. When the last throttle increment happened .
      */
@@ -320,7 +353,18 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      */
     private long _lastThrottleIncrement;
 
-    private final ExecutorService _executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("JmDNS"));
+    /**
+     * Worker pool delivering the events queued in the listener mailboxes of all the JmDNS instances, so adding interfaces does not add threads.
+     *
+     * @see DNSConstants#LISTENER_THREADS
+     */
+    private static final class ListenerExecutor {
+
+        static final ExecutorService INSTANCE = VirtualThreads.newFixedThreadPool(Math.max(1, DNSConstants.LISTENER_THREADS), "JmDNS.Listeners", true);
+
+    }
+
+    private final Executor _executor = ListenerExecutor.INSTANCE;
 
     //
     // 2009-09-16 ldeck: adding docbug patch with slight ammendments
@@ -359,6 +403,21 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      */
     private final ConcurrentMap<String, ServiceCollector> _serviceCollectors;
 
+    /**
+     * Filter applied to incoming messages so that records of service types nobody here listens for are not materialized.
+     */
+    private final RecordInterestFilter _recordFilter = new RecordInterestFilter();
+
+    /**
+     * Buffers the outgoing messages are encoded into. They are returned to the pool once the message is sent.
+     */
+    private final DNSOutgoing.BufferPool _bufferPool = new DNSOutgoing.BufferPool(DNSConstants.MAX_MSG_ABSOLUTE, DNSConstants.MESSAGE_BUFFER_POOL_SIZE);
+
+    /**
+     * Queue of the outgoing messages, aggregated and sent by a single writer thread.
+     */
+    private final OutgoingQueue _outgoingQueue;
+
     private final String _name;
 
     /**
@@ -410,22 +469,68 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      * @exception IOException
      */
     public JmDNSImpl(InetAddress address, String name, long threadSleepDurationMs) throws IOException {
+        this(address, name, threadSleepDurationMs, new NetworkTransport(), new DNSCache(100));
+    }
+
+    /**
+     * Create an instance of JmDNS sending and receiving through a transport, for example a {@link MulticastBus} connecting instances in the same JVM.
+     *
+     * @param address
+     *            IP address to bind to.
+     * @param name
+     *            name of the newly created JmDNS
+     * @param transport
+     *            transport of the messages, used by this instance only
+     * @exception IOException
+     */
+    public JmDNSImpl(InetAddress address, String name, Transport transport) throws IOException {
+        this(address, name, 0L, transport, new DNSCache(100));
+    }
+
+    /**
+     * Create an instance of JmDNS sending and receiving through a transport and caching into a cache shared with other instances.
+     *
+     * @param address
+     *            IP address to bind to.
+     * @param name
+     *            name of the newly created JmDNS
+     * @param transport
+     *            transport of the messages, usually on a shared channel
+     * @param cache
+     *            shared cache
+     * @exception IOException
+     */
+    JmDNSImpl(InetAddress address, String name, Transport transport, SharedDNSCache cache) throws IOException {
+        this(address, name, 0L, transport, cache);
+    }
+
+    private JmDNSImpl(InetAddress address, String name, long threadSleepDurationMs, Transport transport, DNSCache cache) throws IOException {
         super();
         logger.debug("JmDNS instance created");
 
-        _cache = new DNSCache(100);
+        _cache = cache;
+        _transport = transport;
+        _metrics = new MetricsRegistry(this);
 
-        _listeners = Collections.synchronizedList(new ArrayList<DNSListener>());
+        _listeners = new DNSListenerIndex();
         _serviceListeners = new ConcurrentHashMap<String, List<ServiceListenerStatus>>();
         _typeListeners = Collections.synchronizedSet(new HashSet<ServiceTypeListenerStatus>());
+        _publishers = ConcurrentHashMap.newKeySet();
         _serviceCollectors = new ConcurrentHashMap<String, ServiceCollector>();
 
         _services = new ConcurrentHashMap<String, ServiceInfo>(20);
+        _pendingUnregistrations = ConcurrentHashMap.newKeySet();
+        _servicesByType = new ServiceTypeIndex();
         _serviceTypes = new ConcurrentHashMap<String, ServiceTypeEntry>(20);
 
         _localHost = HostInfo.newHostInfo(address, this, name);
         _name = (name != null ? name : _localHost.getName());
         _threadSleepDurationMs = threadSleepDurationMs;
+        _outgoingQueue = new OutgoingQueue(_name, _bufferPool, DNSConstants.SEND_AGGREGATION_WINDOW, this::sendNow, this::recover);
+        if (_cache instanceof SharedDNSCache) {
+            ((SharedDNSCache) _cache).addMember(this);
+        }
+        _cacheSnapshot = (DNSConstants.CACHE_SNAPSHOT_DIR != null ? CacheSnapshot.forInstance(new File(DNSConstants.CACHE_SNAPSHOT_DIR), _name, _localHost.getInetAddress()) : null);
 
         // _cancelerTimer = new Timer("JmDNS.cancelerTimer");
 
@@ -441,12 +546,21 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         this.start(this.getServices().values());
 
         this.startReaper();
+
+        if (_cacheSnapshot != null) {
+            this.restoreCache(_cacheSnapshot);
+            this.startCacheSnapshotter();
+        }
+
+        if (DNSConstants.JMX_METRICS) {
+            _metrics.registerMBean();
+        }
     }
 
     private void start(Collection<? extends ServiceInfo> serviceInfos) {
-        if (_incomingListener == null) {
-            _incomingListener = new SocketListener(this);
-            _incomingListener.start();
+        _transport.start();
+        if (DNSConstants.SEND_AGGREGATION_WINDOW > 0) {
+            _outgoingQueue.start();
         }
         this.startProber();
         for (ServiceInfo info : serviceInfos) {
@@ -459,80 +573,17 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
     }
 
     private void openMulticastSocket(HostInfo hostInfo) throws IOException {
-        if (_group == null) {
-            if (hostInfo.getInetAddress() instanceof Inet6Address) {
-                _group = InetAddress.getByName(DNSConstants.MDNS_GROUP_IPV6);
-            } else {
-                _group = InetAddress.getByName(DNSConstants.MDNS_GROUP);
-            }
-        }
-        if (_socket != null) {
-            this.closeMulticastSocket();
-        }
-        // SocketAddress address = new InetSocketAddress((hostInfo != null ? hostInfo.getInetAddress() : null), DNSConstants.MDNS_PORT);
-        // System.out.println("Socket Address: " + address);
-        // try {
-        // _socket = new MulticastSocket(address);
-        // } catch (Exception exception) {
-        // logger.warn("openMulticastSocket() Open socket exception Address: " + address + ", ", exception);
-        // // The most likely cause is a duplicate address lets open without specifying the address
-        // _socket = new MulticastSocket(DNSConstants.MDNS_PORT);
-        // }
-        _socket = new MulticastSocket(DNSConstants.MDNS_PORT);
-        if ((hostInfo != null) && (hostInfo.getInterface() != null)) {
-            final SocketAddress multicastAddr = new InetSocketAddress(_group, DNSConstants.MDNS_PORT);
-            _socket.setNetworkInterface(hostInfo.getInterface());
-
-            logger.trace("Trying to joinGroup({}, {})", multicastAddr, hostInfo.getInterface());
-
-            // this joinGroup() might be less surprisingly so this is the default
-            _socket.joinGroup(multicastAddr, hostInfo.getInterface());
-        } else {
-            logger.trace("Trying to joinGroup({})", _group);
-            _socket.joinGroup(_group);
-        }
-
-        _socket.setTimeToLive(255);
+        _transport.open(this);
+        _group = _transport.getGroup();
     }
 
     private void closeMulticastSocket() {
         // jP: 20010-01-18. See below. We'll need this monitor...
         // assert (Thread.holdsLock(this));
         logger.debug("closeMulticastSocket()");
-        if (_socket != null) {
-            // close socket
-            try {
-                try {
-                    _socket.leaveGroup(_group);
-                } catch (SocketException exception) {
-                    //
-                }
-                _socket.close();
-                // jP: 20010-01-18. It isn't safe to join() on the listener
-                // thread - it attempts to lock the IoLock object, and deadlock
-                // ensues. Per issue #2933183, changed this to wait on the JmDNS
-                // monitor, checking on each notify (or timeout) that the
-                // listener thread has stopped.
-                //
-                while (_incomingListener != null && _incomingListener.isAlive()) {
-                    synchronized (this) {
-                        try {
-                            if (_incomingListener != null && _incomingListener.isAlive()) {
-                                // wait time is arbitrary, we're really expecting notification.
-                                logger.debug("closeMulticastSocket(): waiting for jmDNS monitor");
-                                this.wait(1000);
-                            }
-                        } catch (InterruptedException ignored) {
-                            // Ignored
-                        }
-                    }
-                }
-                _incomingListener = null;
-            } catch (final Exception exception) {
-                logger.warn("closeMulticastSocket() Close socket exception ", exception);
-            }
-            _socket = null;
-        }
+        // send what is still queued while the socket is open
+        _outgoingQueue.stop(DNSConstants.CLOSE_TIMEOUT);
+        _transport.close();
     }
 
     // State machine
@@ -600,6 +651,14 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         this._localHost.removeAssociationWithTask(task);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DNSState getState() {
+        return this._localHost.getState();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -689,6 +748,236 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         return _cache;
     }
 
+    /**
+     * Empties the cache. A shared cache only forgets what was received on the interface of this instance.
+     */
+    void clearCache() {
+        if (_cache instanceof SharedDNSCache) {
+            ((SharedDNSCache) _cache).clear(this.getLocalHost().getInterface());
+        } else {
+            _cache.clear();
+        }
+    }
+
+    /**
+     * Adds the records of a cache snapshot that are not cached yet. The records keep the creation time they had, and the service types and services they
+     * describe are queried right away to refresh them.
+     *
+     * @param snapshot
+     *            snapshot to restore
+     */
+    void restoreCache(CacheSnapshot snapshot) {
+        final List<DNSRecord> records;
+        try {
+            records = snapshot.load(System.currentTimeMillis());
+        } catch (IOException exception) {
+            logger.warn("{}.restoreCache() cannot read {}", this.getName(), snapshot, exception);
+            return;
+        }
+        // The type resolvers only ask for pointers, the service, text and address records are refreshed by resolving each service. The resolvers start
+        // before the records are cached, otherwise they would find their service already resolved and never query it.
+        for (DNSRecord record : records) {
+            if ((record instanceof DNSRecord.Service) && (this.getCache().getDNSEntry(record) == null)) {
+                final ServiceInfoImpl info = new ServiceInfoImpl(record.getQualifiedNameMap(), 0, 0, 0, false, (byte[]) null);
+                info.setServer(((DNSRecord.Service) record).getServer());
+                this.startServiceInfoResolver(info);
+            }
+        }
+        final Map<String, String> types = new HashMap<String, String>();
+        for (DNSRecord record : records) {
+            if (this.getCache().getDNSEntry(record) == null) {
+                this.getCache().addDNSEntry(record);
+            }
+            this.addSource(record);
+            if (DNSRecordType.TYPE_PTR.equals(record.getRecordType()) && !record.isServicesDiscoveryMetaQuery() && !record.isDomainDiscoveryQuery() && !record.isReverseLookup()) {
+                types.put(record.getKey(), record.getName());
+            }
+        }
+        logger.debug("{}.restoreCache() {} records of {} service types restored from {}", this.getName(), records.size(), types.size(), snapshot);
+        for (String type : types.values()) {
+            this.startServiceResolver(type);
+        }
+    }
+
+    /**
+     * Saves the records this instance received to a cache snapshot.
+     *
+     * @param snapshot
+     *            snapshot to save to
+     */
+    void saveCache(CacheSnapshot snapshot) {
+        final InetAddress self = this.getLocalHost().getInetAddress();
+        final NetworkInterface networkInterface = this.getLocalHost().getInterface();
+        final List<DNSRecord> records = new ArrayList<DNSRecord>();
+        for (DNSEntry entry : this.getCache().allValues()) {
+            if (!(entry instanceof DNSRecord)) {
+                continue;
+            }
+            final DNSRecord record = (DNSRecord) entry;
+            // Our own records are announced again on start, a shared cache only saves what was received on our interface
+            if (((self != null) && self.equals(record.getRecordSource()))
+                    || ((_cache instanceof SharedDNSCache) && !((SharedDNSCache) _cache).getSources(record).contains(networkInterface))) {
+                continue;
+            }
+            records.add(record);
+        }
+        try {
+            snapshot.save(records, System.currentTimeMillis());
+        } catch (IOException exception) {
+            logger.warn("{}.saveCache() cannot write {}", this.getName(), snapshot, exception);
+        }
+    }
+
+    /**
+     * Saves the cache snapshot, when cache snapshots are enabled.
+     *
+     * @see DNSConstants#CACHE_SNAPSHOT_DIR
+     */
+    public void saveCacheSnapshot() {
+        if (_cacheSnapshot != null) {
+            this.saveCache(_cacheSnapshot);
+        }
+    }
+
+    /**
+     * Records that a cached entry was received on the interface of this instance, when the cache is shared.
+     *
+     * @return <code>true</code> if the entry had only been received on other interfaces so far
+     */
+    private boolean addSource(DNSEntry entry) {
+        return (_cache instanceof SharedDNSCache) && ((SharedDNSCache) _cache).addSource(entry, this.getLocalHost().getInterface());
+    }
+
+    /**
+     * Returns the instances whose listeners learned of a cached record. With a shared cache these are the instances the record was received by.
+     */
+    private Collection<JmDNSImpl> getRecordOwners(DNSRecord record) {
+        if (_cache instanceof SharedDNSCache) {
+            final Collection<JmDNSImpl> owners = ((SharedDNSCache) _cache).getMembers(record);
+            if (!owners.isEmpty()) {
+                return owners;
+            }
+        }
+        return Collections.singleton(this);
+    }
+
+    /**
+     * Records that a cached entry is no longer announced on the interface of this instance.
+     *
+     * @return <code>true</code> if no other interface has the entry
+     */
+    private boolean removeSource(DNSEntry entry) {
+        return !(_cache instanceof SharedDNSCache) || ((SharedDNSCache) _cache).removeSource(entry, this.getLocalHost().getInterface());
+    }
+
+    /**
+     * Return the pool of buffers outgoing messages are encoded into.
+     *
+     * @return message buffer pool
+     */
+    public DNSOutgoing.BufferPool getBufferPool() {
+        return _bufferPool;
+    }
+
+    /**
+     * @return number of messages waiting to be sent
+     */
+    public int getOutgoingQueueDepth() {
+        return _outgoingQueue.getQueueDepth();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MetricsRegistry getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * @return average number of packets sent each time the outgoing queue is flushed
+     */
+    public double getPacketsPerFlush() {
+        return _outgoingQueue.getPacketsPerFlush();
+    }
+
+    /**
+     * @return number of packets sent by the last flush of the outgoing queue
+     */
+    public int getLastFlushPacketCount() {
+        return _outgoingQueue.getLastFlushPacketCount();
+    }
+
+    /**
+     * @param listener
+     *            service or service type listener
+     * @return number of events waiting to be delivered to the listener, 0 if the listener is not registered
+     */
+    public int getListenerBacklog(EventListener listener) {
+        final ListenerMailbox mailbox = this.getListenerMailbox(listener);
+        return (mailbox != null ? mailbox.getBacklog() : 0);
+    }
+
+    /**
+     * @param listener
+     *            service or service type listener
+     * @return number of events dropped because the listener could not keep up, 0 if the listener is not registered
+     */
+    public long getListenerDroppedCount(EventListener listener) {
+        final ListenerMailbox mailbox = this.getListenerMailbox(listener);
+        return (mailbox != null ? mailbox.getDroppedCount() : 0);
+    }
+
+    /**
+     * @param listener
+     *            service or service type listener
+     * @return number of events superseded by a later event before reaching the listener, 0 if the listener is not registered
+     */
+    public long getListenerCoalescedCount(EventListener listener) {
+        final ListenerMailbox mailbox = this.getListenerMailbox(listener);
+        return (mailbox != null ? mailbox.getCoalescedCount() : 0);
+    }
+
+    /**
+     * @return number of events waiting to be delivered, all listeners together
+     */
+    public int getListenerBacklog() {
+        int backlog = 0;
+        for (List<ServiceListenerStatus> list : _serviceListeners.values()) {
+            synchronized (list) {
+                for (ServiceListenerStatus status : list) {
+                    backlog += status.getMailbox().getBacklog();
+                }
+            }
+        }
+        synchronized (_typeListeners) {
+            for (ServiceTypeListenerStatus status : _typeListeners) {
+                backlog += status.getMailbox().getBacklog();
+            }
+        }
+        return backlog;
+    }
+
+    private ListenerMailbox getListenerMailbox(EventListener listener) {
+        for (List<ServiceListenerStatus> list : _serviceListeners.values()) {
+            synchronized (list) {
+                for (ServiceListenerStatus status : list) {
+                    if (status.getListener().equals(listener)) {
+                        return status.getMailbox();
+                    }
+                }
+            }
+        }
+        synchronized (_typeListeners) {
+            for (ServiceTypeListenerStatus status : _typeListeners) {
+                if (status.getListener().equals(listener)) {
+                    return status.getMailbox();
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -728,7 +1017,8 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
     @Override
     @Deprecated
     public InetAddress getInterface() throws IOException {
-        return _socket.getInterface();
+        final MulticastSocket ms = this.getSocket();
+        return (ms != null ? ms.getInterface() : this.getLocalHost().getInetAddress());
     }
 
     /**
@@ -765,6 +1055,28 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         return (info.hasData() ? info : null);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ServiceInfo> resolveServiceInfoAsync(String type, String name) {
+        return this.resolveServiceInfoAsync(type, name, false, DNSConstants.SERVICE_INFO_TIMEOUT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ServiceInfo> resolveServiceInfoAsync(String type, String name, boolean persistent, long timeout) {
+        final ServiceInfoImpl info = this.resolveServiceInfo(type, name, "", persistent);
+        return FutureTimeouts.completeAfter(info.whenResolved(), timeout, new Supplier<ServiceInfo>() {
+            @Override
+            public ServiceInfo get() {
+                return (info.hasData() ? info : null);
+            }
+        });
+    }
+
     ServiceInfoImpl resolveServiceInfo(String type, String name, String subtype, boolean persistent) {
         this.cleanCache();
         String loType = type.toLowerCase();
@@ -800,6 +1112,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                         cachedInfo = new ServiceInfoImpl(map, cachedServiceEntryInfo.getPort(), cachedServiceEntryInfo.getWeight(), cachedServiceEntryInfo.getPriority(), persistent, (byte[]) null);
                         srvBytes = cachedServiceEntryInfo.getTextBytes();
                         server = cachedServiceEntryInfo.getServer();
+                        cachedInfo.setServer(server);
                     }
                 }
                 for (DNSEntry addressEntry : this.getCache().getDNSEntryList(server, DNSRecordType.TYPE_A, DNSRecordClass.CLASS_ANY)) {
@@ -904,13 +1217,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                     listCopy = new ArrayList<ServiceListenerStatus>(list);
                 }
                 for (final ServiceListenerStatus listener : listCopy) {
-                    _executor.submit(new Runnable() {
-                        /** {@inheritDoc} */
-                        @Override
-                        public void run() {
-                            listener.serviceResolved(localEvent);
-                        }
-                    });
+                    listener.post(ListenerMailbox.Kind.RESOLVED, localEvent);
                 }
             }
         }
@@ -922,6 +1229,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
     @Override
     public void addServiceTypeListener(ServiceTypeListener listener) throws IOException {
         ServiceTypeListenerStatus status = new ServiceTypeListenerStatus(listener, ListenerStatus.ASYNCHRONOUS);
+        status.openMailbox(_executor, DNSConstants.LISTENER_QUEUE_SIZE);
         _typeListeners.add(status);
 
         // report cached service types
@@ -951,6 +1259,14 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
 
     private void addServiceListener(String type, ServiceListener listener, boolean synch) {
         ServiceListenerStatus status = new ServiceListenerStatus(listener, synch);
+        status.openMailbox(_executor, DNSConstants.LISTENER_QUEUE_SIZE);
+        this.addServiceListener(type, status);
+    }
+
+    /**
+     * Adds the listener of a status, its events are delivered on the posting thread unless the status has a mailbox.
+     */
+    private void addServiceListener(String type, ServiceListenerStatus status) {
         final String loType = type.toLowerCase();
         List<ServiceListenerStatus> list = _serviceListeners.get(loType);
         if (list == null) {
@@ -969,6 +1285,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                 }
             }
         }
+        _recordFilter.invalidate();
         // report cached service types
         final List<ServiceEvent> serviceEvents = new ArrayList<ServiceEvent>();
         Collection<DNSEntry> dnsEntryLits = this.getCache().allValues();
@@ -990,6 +1307,44 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         this.startServiceResolver(type);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceEventFlow.Publisher getServiceEventPublisher(String type) {
+        return this.getServiceEventPublisher(type, ServiceEventFlow.Overflow.LATEST_PER_SERVICE, DNSConstants.LISTENER_QUEUE_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceEventFlow.Publisher getServiceEventPublisher(String type, ServiceEventFlow.Overflow overflow, int capacity) {
+        final ServiceEventPublisher publisher = new ServiceEventPublisher(new ServiceEventPublisher.Source() {
+            @Override
+            public void addServiceListener(String serviceType, ServiceListener listener) {
+                // The subscription mailbox takes the events, no need for a listener mailbox in front of it
+                JmDNSImpl.this.addServiceListener(serviceType, new ServiceListenerStatus(listener, ListenerStatus.SYNCHRONOUS));
+            }
+
+            @Override
+            public void removeServiceListener(String serviceType, ServiceListener listener) {
+                JmDNSImpl.this.removeServiceListener(serviceType, listener);
+            }
+
+            @Override
+            public void addPublisher(ServiceEventPublisher publisher) {
+                _publishers.add(publisher);
+            }
+
+            @Override
+            public void removePublisher(ServiceEventPublisher publisher) {
+                _publishers.remove(publisher);
+            }
+        }, type, _executor, overflow, capacity);
+        return publisher;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1005,6 +1360,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                     _serviceListeners.remove(loType, list);
                 }
             }
+            _recordFilter.invalidate();
         }
     }
 
@@ -1017,7 +1373,69 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             throw new IllegalStateException("This DNS is closed.");
         }
         final ServiceInfoImpl info = (ServiceInfoImpl) infoAbstract;
+        this.checkRegistration(info);
 
+        this.registerServiceType(info.getTypeWithSubtype());
+        this.addService(info);
+
+        this.startProber();
+
+        logger.debug("registerService() JmDNS registered service as {}", info);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> registerServiceAsync(ServiceInfo info) {
+        try {
+            return this.registerServices(Collections.singletonList(info));
+        } catch (IOException | RuntimeException exception) {
+            final CompletableFuture<Void> failed = new CompletableFuture<Void>();
+            failed.completeExceptionally(exception);
+            return failed;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> registerServices(Collection<ServiceInfo> infos) throws IOException {
+        if (this.isClosing() || this.isClosed()) {
+            throw new IllegalStateException("This DNS is closed.");
+        }
+        // Check them all first so a bad one does not leave the batch half registered
+        final Set<ServiceInfo> batch = Collections.newSetFromMap(new IdentityHashMap<ServiceInfo, Boolean>());
+        final Set<String> keys = new HashSet<String>();
+        final Set<String> types = new HashSet<String>();
+        for (ServiceInfo info : infos) {
+            this.checkRegistration((ServiceInfoImpl) info);
+            if (!batch.add(info) || !keys.add(info.getKey())) {
+                throw new IllegalStateException("A service information can only be registered once: " + info.getKey());
+            }
+            types.add(info.getTypeWithSubtype());
+        }
+        for (String type : types) {
+            this.registerServiceType(type);
+        }
+
+        final CompletableFuture<?>[] announced = new CompletableFuture<?>[infos.size()];
+        int index = 0;
+        for (ServiceInfo infoAbstract : infos) {
+            final ServiceInfoImpl info = (ServiceInfoImpl) infoAbstract;
+            this.addService(info);
+            announced[index++] = info.whenAnnounced();
+        }
+
+        // One probe for the whole batch
+        this.startProber();
+
+        logger.debug("registerServices() JmDNS registered {} services", Integer.valueOf(infos.size()));
+        return CompletableFuture.allOf(announced);
+    }
+
+    private void checkRegistration(ServiceInfoImpl info) {
         if (info.getDns() != null) {
             if (info.getDns() != this) {
                 throw new IllegalStateException("A service information can only be registered with a single instance of JmDNS.");
@@ -1025,9 +1443,13 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                 throw new IllegalStateException("A service information can only be registered once.");
             }
         }
-        info.setDns(this);
+    }
 
-        this.registerServiceType(info.getTypeWithSubtype());
+    /**
+     * Binds the service to this instance and adds it to the registered services under a unique name. The caller starts the probing.
+     */
+    private void addService(ServiceInfoImpl info) {
+        info.setDns(this);
 
         // bind the service to this address
         info.recoverState();
@@ -1039,10 +1461,8 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         while (_services.putIfAbsent(info.getKey(), info) != null) {
             this.makeServiceNameUnique(info);
         }
-
-        this.startProber();
-
-        logger.debug("registerService() JmDNS registered service as {}", info);
+        _servicesByType.add(info);
+        _recordFilter.invalidate();
     }
 
     /**
@@ -1057,13 +1477,63 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             this.startCanceler();
             info.waitForCanceled(DNSConstants.CLOSE_TIMEOUT);
 
-            _services.remove(info.getKey(), info);
+            if (_services.remove(info.getKey(), info)) {
+                _servicesByType.remove(info);
+            }
+            _recordFilter.invalidate();
             logger.debug("unregisterService() JmDNS {} unregistered service as {}", this.getName(), info);
         } else {
             logger.warn("{} removing unregistered service info: {}", this.getName(), infoAbstract.getKey());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> unregisterServices(Collection<ServiceInfo> infos) {
+        final List<CompletableFuture<Void>> canceled = new ArrayList<CompletableFuture<Void>>(infos.size());
+        for (ServiceInfo infoAbstract : infos) {
+            final ServiceInfoImpl info = (ServiceInfoImpl) _services.get(infoAbstract.getKey());
+            if (info != null) {
+                info.cancelState();
+                // Bounded like unregisterService(), the goodbye may never go out if the instance closes meanwhile
+                final CompletableFuture<Void> done = new CompletableFuture<Void>();
+                _pendingUnregistrations.add(done);
+                info.whenCanceled().thenRun(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.complete(null);
+                    }
+                });
+                FutureTimeouts.completeAfter(done, DNSConstants.CLOSE_TIMEOUT, new Supplier<Void>() {
+                    @Override
+                    public Void get() {
+                        return null;
+                    }
+                });
+                canceled.add(done.thenRun(new Runnable() {
+                    @Override
+                    public void run() {
+                        _pendingUnregistrations.remove(done);
+                        if (_services.remove(info.getKey(), info)) {
+                            _servicesByType.remove(info);
+                        }
+                        _recordFilter.invalidate();
+                        logger.debug("unregisterServices() JmDNS {} unregistered service as {}", JmDNSImpl.this.getName(), info);
+                    }
+                }));
+            } else {
+                logger.warn("{} removing unregistered service info: {}", this.getName(), infoAbstract.getKey());
+            }
+        }
+
+        // One goodbye for the whole batch
+        this.startCanceler();
+
+        return CompletableFuture.allOf(canceled.toArray(new CompletableFuture<?>[canceled.size()]));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1088,9 +1558,12 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
 
                 logger.debug("Wait for service info cancel: {}", info);
                 infoImpl.waitForCanceled(DNSConstants.CLOSE_TIMEOUT);
-                _services.remove(name, info);
+                if (_services.remove(name, info)) {
+                    _servicesByType.remove(infoImpl);
+                }
             }
         }
+        _recordFilter.invalidate();
 
     }
 
@@ -1121,13 +1594,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                 final ServiceTypeListenerStatus[] list = _typeListeners.toArray(new ServiceTypeListenerStatus[_typeListeners.size()]);
                 final ServiceEvent event = new ServiceEventImpl(this, name, "", null);
                 for (final ServiceTypeListenerStatus status : list) {
-                    _executor.submit(new Runnable() {
-                        /** {@inheritDoc} */
-                        @Override
-                        public void run() {
-                            status.serviceTypeAdded(event);
-                        }
-                    });
+                    status.post(ListenerMailbox.Kind.TYPE_ADDED, event);
                 }
             }
         }
@@ -1141,13 +1608,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                         final ServiceTypeListenerStatus[] list = _typeListeners.toArray(new ServiceTypeListenerStatus[_typeListeners.size()]);
                         final ServiceEvent event = new ServiceEventImpl(this, "_" + subtype + "._sub." + name, "", null);
                         for (final ServiceTypeListenerStatus status : list) {
-                            _executor.submit(new Runnable() {
-                                /** {@inheritDoc} */
-                                @Override
-                                public void run() {
-                                    status.subTypeForServiceTypeAdded(event);
-                                }
-                            });
+                            status.post(ListenerMailbox.Kind.SUBTYPE_ADDED, event);
                         }
                     }
                 }
@@ -1212,6 +1673,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
 
         // add the new listener
         _listeners.add(listener);
+        _recordFilter.invalidate();
 
         // report existing matched records
 
@@ -1221,6 +1683,8 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                     listener.updateRecord(this.getCache(), now, dnsEntry);
                 }
             }
+            // A cached SRV record may have given the listener its server
+            _listeners.rekey(listener);
         }
     }
 
@@ -1232,6 +1696,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      */
     public void removeListener(DNSListener listener) {
         _listeners.remove(listener);
+        _recordFilter.invalidate();
     }
 
     /**
@@ -1266,12 +1731,13 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         
         // We do not want to block the entire DNS while we are updating the record for each listener (service info)
         {
-            List<DNSListener> listenerList = null;
-            synchronized (_listeners) {
-                listenerList = new ArrayList<DNSListener>(_listeners);
-            }
-            for (DNSListener listener : listenerList) {
+            final boolean service = DNSRecordType.TYPE_SRV.equals(rec.getRecordType());
+            for (DNSListener listener : _listeners.listenersFor(rec)) {
                 listener.updateRecord(this.getCache(), now, rec);
+                if (service) {
+                    // The SRV record may have moved the listener to another server
+                    _listeners.rekey(listener);
+                }
             }
         }
 
@@ -1321,13 +1787,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                             if (listener.isSynchronous()) {
                                 listener.serviceAdded(localEvent);
                             } else {
-                                _executor.submit(new Runnable() {
-                                    /** {@inheritDoc} */
-                                    @Override
-                                    public void run() {
-                                        listener.serviceAdded(localEvent);
-                                    }
-                                });
+                                listener.post(ListenerMailbox.Kind.ADDED, localEvent);
                             }
                         }
                         break;
@@ -1336,13 +1796,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                             if (listener.isSynchronous()) {
                                 listener.serviceRemoved(localEvent);
                             } else {
-                                _executor.submit(new Runnable() {
-                                    /** {@inheritDoc} */
-                                    @Override
-                                    public void run() {
-                                        listener.serviceRemoved(localEvent);
-                                    }
-                                });
+                                listener.post(ListenerMailbox.Kind.REMOVED, localEvent);
                             }
                         }
                         break;
@@ -1383,29 +1837,38 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             //     3. same record class
             //     4. record is older than 1 second.
             if (unique) {
-                for (DNSEntry entry : this.getCache().getDNSEntryList(newRecord.getKey())) {
-                    if (    newRecord.getRecordType().equals(entry.getRecordType()) &&
-                            newRecord.getRecordClass().equals(entry.getRecordClass()) &&
-                            isOlderThanOneSecond( (DNSRecord)entry, now )                            
+                for (DNSEntry entry : this.getCache().getDNSEntryList(newRecord.getKey(), newRecord.getRecordType(), newRecord.getRecordClass())) {
+                    if (    newRecord.getRecordClass().equals(entry.getRecordClass()) &&
+                            isOlderThanOneSecond( (DNSRecord)entry, now ) &&
+                            this.removeSource(entry)
                     ) {
                         logger.trace("setWillExpireSoon() on: {}", entry);
                         // this set ttl to 1 second,
-                        ((DNSRecord) entry).setWillExpireSoon(now);  
+                        ((DNSRecord) entry).setWillExpireSoon(now);
+                        this.getCache().rescheduleDNSEntry(entry);
+                        _metrics.increment(JmDNSMetrics.Metric.CACHE_EVICTIONS);
                     }
                 }
             }
             if (cachedRecord != null) {
                 if (expired) {
-                    // if the record has a 0 ttl that means we have a cancel record we need to delay the removal by 1s
-                    if (newRecord.getTTL() == 0) {
+                    if (!this.removeSource(cachedRecord)) {
+                        // Still announced on another interface
+                        cacheOperation = Operation.Noop;
+                        logger.trace("Record is expired on this interface only:\n\t{}", cachedRecord);
+                    } else if (newRecord.getTTL() == 0) {
+                        // if the record has a 0 ttl that means we have a cancel record we need to delay the removal by 1s
                         cacheOperation = Operation.Noop;
                         logger.trace("Record is expired - setWillExpireSoon() on:\n\t{}", cachedRecord);
                         cachedRecord.setWillExpireSoon(now);
+                        this.getCache().rescheduleDNSEntry(cachedRecord);
+                        _metrics.increment(JmDNSMetrics.Metric.CACHE_EVICTIONS);
                         // the actual record will be disposed of by the record reaper.
                     } else {
                         cacheOperation = Operation.Remove;
                         logger.trace("Record is expired - removeDNSEntry() on:\n\t{}", cachedRecord);
                         this.getCache().removeDNSEntry(cachedRecord);
+                        _metrics.increment(JmDNSMetrics.Metric.CACHE_EVICTIONS);
                     }
                 } else {
                     // If the record content has changed we need to inform our listeners.
@@ -1419,15 +1882,22 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                             cacheOperation = Operation.Update;
                             logger.trace("Record (singleValued) has changed - replaceDNSEntry() on:\n\t{}\n\t{}", newRecord, cachedRecord);
                             this.getCache().replaceDNSEntry(newRecord, cachedRecord);
+                            this.addSource(newRecord);
                         } else {
                             // Address record can have more than one value on multi-homed machines
                             cacheOperation = Operation.Add;
                             logger.trace("Record (multiValue) has changed - addDNSEntry on:\n\t{}", newRecord);
                             this.getCache().addDNSEntry(newRecord);
+                            this.addSource(newRecord);
                         }
                     } else {
                         cachedRecord.resetTTL(newRecord);
+                        this.getCache().rescheduleDNSEntry(cachedRecord);
                         newRecord = cachedRecord;
+                        if (this.addSource(cachedRecord)) {
+                            // Cached from another interface, the listeners of this instance have not seen it yet
+                            cacheOperation = Operation.Add;
+                        }
                     }
                 }
             } else {
@@ -1435,6 +1905,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                     cacheOperation = Operation.Add;
                     logger.trace("Record not cached - addDNSEntry on:\n\t{}", newRecord);
                     this.getCache().addDNSEntry(newRecord);
+                    this.addSource(newRecord);
                 }
             }
         }
@@ -1498,6 +1969,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         }
 
         if (hostConflictDetected || serviceConflictDetected) {
+            _metrics.increment(JmDNSMetrics.Metric.PROBE_CONFLICTS);
             this.startProber();
         }
     }
@@ -1584,6 +2056,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         }
 
         if (conflictDetected) {
+            _metrics.increment(JmDNSMetrics.Metric.PROBE_CONFLICTS);
             this.startProber();
         }
     }
@@ -1613,28 +2086,45 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
     public DNSOutgoing addAnswer(DNSIncoming in, InetAddress addr, int port, DNSOutgoing out, DNSRecord rec) throws IOException {
         DNSOutgoing newOut = out;
         if (newOut == null) {
-            newOut = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, false, in.getSenderUDPPayload());
+            newOut = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, false, in.getSenderUDPPayload(), _bufferPool);
         }
+        boolean added;
         try {
-            newOut.addAnswer(in, rec);
+            added = newOut.addAnswer(in, rec);
         } catch (final IOException e) {
             newOut.setFlags(newOut.getFlags() | DNSConstants.FLAGS_TC);
             newOut.setId(in.getId());
             send(newOut);
 
-            newOut = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, false, in.getSenderUDPPayload());
-            newOut.addAnswer(in, rec);
+            newOut = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, false, in.getSenderUDPPayload(), _bufferPool);
+            added = newOut.addAnswer(in, rec);
+        }
+        if (!added) {
+            _metrics.increment(JmDNSMetrics.Metric.RESPONDER_SUPPRESSED);
         }
         return newOut;
     }
 
     /**
-     * Send an outgoing multicast DNS message.
+     * Send an outgoing multicast DNS message.<br/>
+     * The message is handed to the outgoing queue, which may aggregate it with other responses. It is sent directly if the queue is not running.
      *
      * @param out
      * @exception IOException
      */
     public void send(DNSOutgoing out) throws IOException {
+        if (!out.isEmpty() && !_outgoingQueue.offer(out)) {
+            this.sendNow(out);
+        }
+    }
+
+    /**
+     * Writes an outgoing message to the socket and releases its buffer.
+     *
+     * @param out
+     * @exception IOException
+     */
+    void sendNow(DNSOutgoing out) throws IOException {
         if (!out.isEmpty()) {
             final InetAddress addr;
             final int port;
@@ -1647,22 +2137,23 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                 port = DNSConstants.MDNS_PORT;
             }
 
-            byte[] message = out.data();
-            final DatagramPacket packet = new DatagramPacket(message, message.length, addr, port);
+            try {
+                final ByteBuffer message = out.buffer();
 
-            if (logger.isTraceEnabled()) {
-                try {
-                    final DNSIncoming msg = new DNSIncoming(packet);
-//                    if (logger.isTraceEnabled()) {
-                        logger.trace("send({}) JmDNS out:{}", this.getName(), msg.print(true));
-//                    }
-                } catch (final IOException e) {
-                    logger.debug("{}.send({}) - JmDNS can not parse what it sends!!!", getClass().toString(), this.getName(), e);
+                if (logger.isTraceEnabled()) {
+                    try {
+                        final DNSIncoming msg = new DNSIncoming(new DatagramPacket(message.array(), message.arrayOffset() + message.position(), message.remaining(), addr, port));
+//                        if (logger.isTraceEnabled()) {
+                            logger.trace("send({}) JmDNS out:{}", this.getName(), msg.print(true));
+//                        }
+                    } catch (final IOException e) {
+                        logger.debug("{}.send({}) - JmDNS can not parse what it sends!!!", getClass().toString(), this.getName(), e);
+                    }
                 }
-            }
-            final MulticastSocket ms = _socket;
-            if (ms != null && !ms.isClosed()) {
-                ms.send(packet);
+                _transport.send(message, new InetSocketAddress(addr, port));
+                _metrics.increment(out.isQuery() ? JmDNSMetrics.Metric.PACKETS_OUT_QUERY : JmDNSMetrics.Metric.PACKETS_OUT_RESPONSE);
+            } finally {
+                out.release();
             }
         }
     }
@@ -1748,6 +2239,15 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         DNSTaskStarter.Factory.getInstance().getStarter(this.getDns()).startReaper();
     }
 
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.impl.DNSTaskStarter#startCacheSnapshotter()
+     */
+    @Override
+    public void startCacheSnapshotter() {
+        DNSTaskStarter.Factory.getInstance().getStarter(this.getDns()).startCacheSnapshotter();
+    }
+
     /*
      * (non-Javadoc)
      * @see javax.jmdns.impl.DNSTaskStarter#startServiceInfoResolver(javax.jmdns.impl.ServiceInfoImpl)
@@ -1820,6 +2320,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             // Stop JmDNS
             // This protects against recursive calls
             if (this.cancelState()) {
+                _metrics.increment(JmDNSMetrics.Metric.RECOVERIES);
                 final String newThreadName = this.getName() + ".recover()";
                 logger.debug("{} thread {}", newThreadName, Thread.currentThread().getName());
                 Thread recover = new Thread(newThreadName) {
@@ -1862,7 +2363,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         this.closeMulticastSocket();
 
         //
-        this.getCache().clear();
+        this.clearCache();
         logger.debug("{}.recover() All is clean", this.getName());
 
         if (this.isCanceled()) {
@@ -1897,7 +2398,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
      *
      * <p>
      * Implementation note:<br />
-     * This method is called by the {@link RecordReaper} every {@link DNSConstants#RECORD_REAPER_INTERVAL} milliseconds.
+     * This method is called by the {@link RecordReaper} whenever the next record of the cache is due. Only the records taken from the expiry index of the {@link DNSCache} are visited.
      * </p>
      * @see DNSRecord
      * @see RecordReaper
@@ -1907,13 +2408,16 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
 
         final long now = System.currentTimeMillis();
         final Set<String> staleServiceTypesForRefresh = new HashSet<String>();
-        for (final DNSEntry entry : this.getCache().allValues()) {
+        for (final DNSRecord record : this.getCache().pollDueDNSEntries(now)) {
             try {
-                final DNSRecord record = (DNSRecord) entry;
                 if (record.isExpired(now)) {
-                    this.updateRecord(now, record, Operation.Remove);
-                    logger.trace("Removing DNSEntry from cache: {}", entry);
-                    this.getCache().removeDNSEntry(record);
+                    for (JmDNSImpl dns : this.getRecordOwners(record)) {
+                        dns.updateRecord(now, record, Operation.Remove);
+                    }
+                    logger.trace("Removing DNSEntry from cache: {}", record);
+                    if (this.getCache().removeDNSEntry(record)) {
+                        _metrics.increment(JmDNSMetrics.Metric.CACHE_EXPIRATIONS);
+                    }
                 } else if (record.isStaleAndShouldBeRefreshed(now)) {
                     record.incrementRefreshPercentage();
                     String type = record.getServiceInfo().getType().toLowerCase();
@@ -1924,8 +2428,11 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                     }
                 }
             } catch (Exception exception) {
-                logger.warn("{}.Error while reaping records: {}", this.getName(), entry, exception);
+                logger.warn("{}.Error while reaping records: {}", this.getName(), record, exception);
                 logger.warn(this.toString());
+            } finally {
+                // Schedule the next refresh or the expiration of records which are still cached
+                this.getCache().rescheduleDNSEntry(record);
             }
         }
     }
@@ -1950,9 +2457,16 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             logger.debug("Canceling the timer");
             this.cancelTimer();
 
+            // Save the cache before our services say goodbye
+            this.saveCacheSnapshot();
+
             // Cancel all services
             this.unregisterAllServices();
+            for (CompletableFuture<Void> pending : _pendingUnregistrations) {
+                pending.complete(null);
+            }
             this.disposeServiceCollectors();
+            this.completePublishers();
 
             logger.debug("Wait for JmDNS cancel: {}", this);
 
@@ -1962,12 +2476,15 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             logger.debug("Canceling the state timer");
             this.cancelStateTimer();
 
-            // Stop the executor
-            _executor.shutdown();
-
             // close socket
             this.closeMulticastSocket();
 
+            if (_cache instanceof SharedDNSCache) {
+                ((SharedDNSCache) _cache).removeMember(this);
+            }
+
+            _metrics.unregisterMBean();
+
             // remove the shutdown hook
             if (_shutdown != null) {
                 Runtime.getRuntime().removeShutdownHook(_shutdown);
@@ -2059,25 +2576,49 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         // instance for each service type which increases network traffic a
         // little.
 
-        String loType = type.toLowerCase();
-
-        boolean newCollectorCreated = false;
         if (this.isCanceling() || this.isCanceled()) {
             return new ServiceInfo[0];
         }
 
+        final ServiceCollector collector = this.getServiceCollector(type);
+
+        // At this stage the collector should never be null but it keeps findbugs happy.
+        return (collector != null ? collector.list(timeout) : new ServiceInfo[0]);
+    }
+
+    private ServiceCollector getServiceCollector(String type) {
+        String loType = type.toLowerCase();
+
         ServiceCollector collector = _serviceCollectors.get(loType);
         if (collector == null) {
-            newCollectorCreated = _serviceCollectors.putIfAbsent(loType, new ServiceCollector(type)) == null;
+            boolean newCollectorCreated = _serviceCollectors.putIfAbsent(loType, new ServiceCollector(type)) == null;
             collector = _serviceCollectors.get(loType);
             if (newCollectorCreated) {
                 this.addServiceListener(type, collector, ListenerStatus.SYNCHRONOUS);
             }
         }
         logger.debug("{}-collector: {}", this.getName(), collector);
+        return collector;
+    }
 
-        // At this stage the collector should never be null but it keeps findbugs happy.
-        return (collector != null ? collector.list(timeout) : new ServiceInfo[0]);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ServiceInfo[]> listAsync(String type) {
+        return this.listAsync(type, DNSConstants.SERVICE_INFO_TIMEOUT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ServiceInfo[]> listAsync(String type, long timeout) {
+        this.cleanCache();
+        if (this.isCanceling() || this.isCanceled()) {
+            return CompletableFuture.completedFuture(new ServiceInfo[0]);
+        }
+        return this.getServiceCollector(type).listAsync(timeout);
     }
 
     /**
@@ -2112,6 +2653,16 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         return result;
     }
 
+    /**
+     * Completes the subscriptions of all the publishers created by calls to method <code>getServiceEventPublisher(type)</code>.
+     */
+    private void completePublishers() {
+        for (final ServiceEventPublisher publisher : _publishers) {
+            publisher.complete();
+        }
+        _publishers.clear();
+    }
+
     /**
      * This method disposes all ServiceCollector instances which have been created by calls to method <code>list(type)</code>.
      *
@@ -2129,6 +2680,96 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         }
     }
 
+    /**
+     * Returns the filter deciding which records of incoming messages are materialized.
+     *
+     * @return record filter
+     */
+    DNSIncoming.RecordFilter getRecordFilter() {
+        return _recordFilter;
+    }
+
+    /**
+     * Accepts records whose name does not belong to a service type, and records of the service types this instance browses, resolves or publishes. Everything
+     * is accepted while a service type listener is registered, as those want to hear about every type on the network. The answers to the DNS-SD meta-query
+     * are always accepted, they fill the service types of this instance. Pointers to the instances of other types are skipped, they no longer add their type.<br/>
+     * The interesting types are kept as a sorted array of {@link DNSRecordHeader#serviceTypeHash(CharSequence)} values, rebuilt lazily after each change.
+     */
+    private final class RecordInterestFilter implements DNSIncoming.RecordFilter {
+
+        /**
+         * Hash of the names under <code>_dns-sd._udp.local.</code>, the meta-query and the domain enumeration.
+         */
+        private final int                      _dnsSdHash  = DNSRecordHeader.serviceTypeHash("_services._dns-sd._udp.local.");
+
+        private final AtomicInteger            _generation = new AtomicInteger();
+
+        private volatile ServiceTypeInterest   _interest;
+
+        RecordInterestFilter() {
+            super();
+        }
+
+        /**
+         * Must be called after any change to the listeners or services.
+         */
+        void invalidate() {
+            _generation.incrementAndGet();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean accept(DNSRecordHeader header) {
+            if (!_typeListeners.isEmpty()) {
+                return true;
+            }
+            final int hash = header.getServiceTypeHash();
+            return (hash == 0) || (hash == _dnsSdHash) || (Arrays.binarySearch(this.serviceTypeHashes(), hash) >= 0);
+        }
+
+        private int[] serviceTypeHashes() {
+            final int generation = _generation.get();
+            ServiceTypeInterest interest = _interest;
+            if ((interest == null) || (interest._generation != generation)) {
+                final Set<String> types = new HashSet<String>(_serviceListeners.keySet());
+                for (final ServiceInfo info : _services.values()) {
+                    types.add(info.getType());
+                }
+                for (final DNSListener listener : _listeners.getListeners()) {
+                    if (listener instanceof ServiceInfoImpl) {
+                        types.add(((ServiceInfoImpl) listener).getType());
+                    }
+                }
+                final int[] hashes = new int[types.size()];
+                int index = 0;
+                for (final String type : types) {
+                    hashes[index++] = DNSRecordHeader.serviceTypeHash(type);
+                }
+                Arrays.sort(hashes);
+                interest = new ServiceTypeInterest(generation, hashes);
+                _interest = interest;
+            }
+            return interest._hashes;
+        }
+
+    }
+
+    private static final class ServiceTypeInterest {
+
+        final int   _generation;
+
+        final int[] _hashes;
+
+        ServiceTypeInterest(int generation, int[] hashes) {
+            super();
+            _generation = generation;
+            _hashes = hashes;
+        }
+
+    }
+
     /**
      * Instances of ServiceCollector are used internally to speed up the performance of method <code>list(type)</code>.
      *
@@ -2157,12 +2798,18 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
          */
         private volatile boolean _needToWaitForInfos;
 
+        /**
+         * Asynchronous listings waiting for the collected services to be resolved.
+         */
+        private final List<CompletableFuture<ServiceInfo[]>> _waiting;
+
         public ServiceCollector(String type) {
             super();
             _infos = new ConcurrentHashMap<String, ServiceInfo>();
             _events = new ConcurrentHashMap<String, ServiceEvent>();
             _type = type;
             _needToWaitForInfos = true;
+            _waiting = new ArrayList<CompletableFuture<ServiceInfo[]>>();
         }
 
         /**
@@ -2186,6 +2833,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                         _events.put(event.getName(), event);
                     }
                 }
+                this.completeWaiting();
             }
         }
 
@@ -2200,6 +2848,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             synchronized (this) {
                 _infos.remove(event.getName());
                 _events.remove(event.getName());
+                this.completeWaiting();
             }
         }
 
@@ -2214,7 +2863,60 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
             synchronized (this) {
                 _infos.put(event.getName(), event.getInfo());
                 _events.remove(event.getName());
+                this.completeWaiting();
+            }
+        }
+
+        private boolean isSettled() {
+            return _events.isEmpty() && !_infos.isEmpty();
+        }
+
+        private ServiceInfo[] infos() {
+            return _infos.values().toArray(new ServiceInfo[_infos.size()]);
+        }
+
+        /**
+         * Completes the waiting listings once all the collected services are resolved. Called with the collector locked.
+         */
+        private void completeWaiting() {
+            if (!_waiting.isEmpty() && this.isSettled()) {
+                final ServiceInfo[] infos = this.infos();
+                for (CompletableFuture<ServiceInfo[]> future : _waiting) {
+                    future.complete(infos);
+                }
+                _waiting.clear();
+            }
+        }
+
+        /**
+         * Non blocking counterpart of {@link #list(long)}. The first listing collects for the whole timeout, later ones complete as soon as the collected
+         * services are resolved, or with whatever was collected on timeout.
+         *
+         * @param timeout
+         *            timeout if the info list is empty.
+         * @return a future completed with the service infos
+         */
+        public CompletableFuture<ServiceInfo[]> listAsync(long timeout) {
+            final CompletableFuture<ServiceInfo[]> future = new CompletableFuture<ServiceInfo[]>();
+            synchronized (this) {
+                if (!_needToWaitForInfos) {
+                    if (this.isSettled()) {
+                        future.complete(this.infos());
+                        return future;
+                    }
+                    _waiting.add(future);
+                }
             }
+            return FutureTimeouts.completeAfter(future, timeout, new Supplier<ServiceInfo[]>() {
+                @Override
+                public ServiceInfo[] get() {
+                    synchronized (ServiceCollector.this) {
+                        _waiting.remove(future);
+                        _needToWaitForInfos = false;
+                        return ServiceCollector.this.infos();
+                    }
+                }
+            });
         }
 
         /**
@@ -2242,7 +2944,7 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
                 }
             }
             _needToWaitForInfos = false;
-            return _infos.values().toArray(new ServiceInfo[_infos.size()]);
+            return this.infos();
         }
 
         /**
@@ -2293,6 +2995,17 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         return _services;
     }
 
+    /**
+     * Returns the registered services of a type without scanning all the services.
+     *
+     * @param type
+     *            fully qualified service type or subtype, in any case
+     * @return the registered services of the type
+     */
+    List<ServiceInfoImpl> getServicesOfType(String type) {
+        return _servicesByType.servicesOfType(type);
+    }
+
     public void setLastThrottleIncrement(long lastThrottleIncrement) {
         this._lastThrottleIncrement = lastThrottleIncrement;
     }
@@ -2337,8 +3050,18 @@ public class JmDNSImpl extends JmDNS implements DNSStatefulObject, DNSTaskStarte
         return _serviceTypes;
     }
 
+    /**
+     * @return multicast socket, <code>null</code> when the messages go through a channel or another transport
+     */
     public MulticastSocket getSocket() {
-        return _socket;
+        return (_transport instanceof NetworkTransport ? ((NetworkTransport) _transport).getSocket() : null);
+    }
+
+    /**
+     * @return transport of the messages
+     */
+    Transport getTransport() {
+        return _transport;
     }
 
     public InetAddress getGroup() {
@@ -4,44 +4,60 @@
 package javax.jmdns.impl;
 
 import java.io.IOException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jmdns.JmDNS;
+import javax.jmdns.JmDNSMetrics;
 import javax.jmdns.JmmDNS;
 import javax.jmdns.NetworkTopologyDiscovery;
 import javax.jmdns.NetworkTopologyEvent;
 import javax.jmdns.NetworkTopologyListener;
+import javax.jmdns.ServiceEventFlow;
 import javax.jmdns.ServiceInfo;
 import javax.jmdns.ServiceListener;
 import javax.jmdns.ServiceTypeListener;
 import javax.jmdns.impl.constants.DNSConstants;
-import javax.jmdns.impl.util.NamedThreadFactory;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+import javax.jmdns.impl.util.VirtualThreads;
 
 /**
  * This class enable multihoming mDNS. It will open a mDNS per IP address of the machine.
+ * <p>
+ * By default each mDNS has its own socket and cache. With a shared channel, all the mDNS receive and send through one channel per protocol family and cache
+ * into one cache, which remembers on which interfaces each record was seen.
+ * </p>
  *
  * @author C&eacute;drik Lime, Pierre Frisch
  */
@@ -75,6 +91,11 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
      */
     private final Set<ServiceTypeListener>                     _typeListeners;
 
+    /**
+     * Service event publishers, completed on close.
+     */
+    private final Set<ServiceEventPublisher>                   _publishers;
+
     private final ExecutorService                              _listenerExecutor;
 
     private final ExecutorService                              _jmDNSExecutor;
@@ -85,19 +106,40 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
 
     private final AtomicBoolean                                _closed;
 
+    /**
+     * Cache of all the mDNS when they share a channel, <code>null</code> otherwise.
+     */
+    private final SharedDNSCache                               _sharedCache;
+
+    /**
+     * Channels shared by the mDNS, by protocol family.
+     */
+    private final Map<StandardProtocolFamily, MulticastGroupChannel> _groupChannels;
+
     /**
      *
      */
     public JmmDNSImpl() {
+        this(DNSConstants.SHARED_CHANNEL);
+    }
+
+    /**
+     * @param sharedChannel
+     *            <code>true</code> to run all the mDNS on one channel per protocol family and one cache
+     */
+    public JmmDNSImpl(boolean sharedChannel) {
         super();
+        _sharedCache = (sharedChannel ? new SharedDNSCache(100) : null);
+        _groupChannels = new EnumMap<StandardProtocolFamily, MulticastGroupChannel>(StandardProtocolFamily.class);
         _networkListeners = Collections.synchronizedSet(new HashSet<NetworkTopologyListener>());
         _knownMDNS = new ConcurrentHashMap<InetAddress, JmDNS>();
         _services = new ConcurrentHashMap<String, ServiceInfo>(20);
-        _listenerExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("JmmDNS Listeners"));
-        _jmDNSExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("JmmDNS"));
+        _listenerExecutor = Executors.newSingleThreadExecutor(VirtualThreads.threadFactory("JmmDNS Listeners"));
+        _jmDNSExecutor = VirtualThreads.newCachedThreadPool("JmmDNS");
         _timer = new Timer("Multihomed mDNS.Timer", true);
         _serviceListeners = new ConcurrentHashMap<String, List<ServiceListener>>();
         _typeListeners = Collections.synchronizedSet(new HashSet<ServiceTypeListener>());
+        _publishers = ConcurrentHashMap.newKeySet();
         _serviceTypes = Collections.synchronizedSet(new HashSet<String>());
         (new NetworkChecker(this, NetworkTopologyDiscovery.Factory.getInstance())).start(_timer);
         _isClosing = new AtomicBoolean(false);
@@ -113,10 +155,14 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
         if (_isClosing.compareAndSet(false, true)) {
             logger.debug("Cancelling JmmDNS: {}", this);
             _timer.cancel();
+            for (ServiceEventPublisher publisher : _publishers) {
+                publisher.complete();
+            }
+            _publishers.clear();
             _listenerExecutor.shutdown();
             _jmDNSExecutor.shutdown();
             // We need to cancel all the DNS
-            ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("JmmDNS.close"));
+            ExecutorService executor = VirtualThreads.newCachedThreadPool("JmmDNS.close");
             try {
                 for (final JmDNS mDNS : this.getDNS()) {
                     executor.submit(new Runnable() {
@@ -141,6 +187,12 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
             } catch (InterruptedException exception) {
                 logger.warn("Exception ", exception);
             }
+            synchronized (_groupChannels) {
+                for (MulticastGroupChannel channel : _groupChannels.values()) {
+                    channel.close();
+                }
+                _groupChannels.clear();
+            }
             _knownMDNS.clear();
             _services.clear();
             _serviceListeners.clear();
@@ -201,6 +253,28 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#getNetworkInterfaces(javax.jmdns.ServiceInfo)
+     */
+    @Override
+    public NetworkInterface[] getNetworkInterfaces(ServiceInfo info) {
+        final Set<NetworkInterface> result = new HashSet<NetworkInterface>();
+        if (_sharedCache != null) {
+            result.addAll(_sharedCache.getSources(_sharedCache.getDNSEntry(info.getQualifiedName(), DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_ANY)));
+        } else {
+            for (JmDNS mDNS : this.getDNS()) {
+                if (mDNS instanceof JmDNSImpl) {
+                    final JmDNSImpl dns = (JmDNSImpl) mDNS;
+                    if ((dns.getCache().getDNSEntry(info.getQualifiedName(), DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_ANY) != null) && (dns.getLocalHost().getInterface() != null)) {
+                        result.add(dns.getLocalHost().getInterface());
+                    }
+                }
+            }
+        }
+        return result.toArray(new NetworkInterface[result.size()]);
+    }
+
     /*
      * (non-Javadoc)
      * @see javax.jmdns.JmmDNS#getInterfaces()
@@ -248,54 +322,63 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
      */
     @Override
     public ServiceInfo[] getServiceInfos(final String type, final String name, final boolean persistent, final long timeout) {
-        // We need to run this in parallel to respect the timeout.
-        final JmDNS[] dnsArray = this.getDNS();
-        final Set<ServiceInfo> result = new HashSet<ServiceInfo>(dnsArray.length);
-        if (dnsArray.length > 0) {
-            List<Callable<ServiceInfo>> tasks = new ArrayList<Callable<ServiceInfo>>(dnsArray.length);
-            for (final JmDNS mDNS : dnsArray) {
-                tasks.add(new Callable<ServiceInfo>() {
-
-                    @Override
-                    public ServiceInfo call() throws Exception {
-                        return mDNS.getServiceInfo(type, name, persistent, timeout);
-                    }
-
-                });
-            }
+        return this.await(this.resolveServiceInfosAsync(type, name, persistent, timeout), timeout);
+    }
 
-            ExecutorService executor = Executors.newFixedThreadPool(tasks.size(), new NamedThreadFactory("JmmDNS.getServiceInfos"));
-            try {
-                List<Future<ServiceInfo>> results = Collections.emptyList();
-                try {
-                    results = executor.invokeAll(tasks, timeout + 100, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException exception) {
-                    logger.debug("Interrupted ", exception);
-                    Thread.currentThread().interrupt();
-                    // Will terminate next loop early.
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#resolveServiceInfosAsync(java.lang.String, java.lang.String, boolean, long)
+     */
+    @Override
+    public CompletableFuture<ServiceInfo[]> resolveServiceInfosAsync(String type, String name, boolean persistent, long timeout) {
+        final JmDNS[] dnsArray = this.getDNS();
+        final List<CompletableFuture<ServiceInfo[]>> results = new ArrayList<CompletableFuture<ServiceInfo[]>>(dnsArray.length);
+        for (final JmDNS mDNS : dnsArray) {
+            results.add(mDNS.resolveServiceInfoAsync(type, name, persistent, timeout).thenApply(new Function<ServiceInfo, ServiceInfo[]>() {
+                @Override
+                public ServiceInfo[] apply(ServiceInfo info) {
+                    return (info != null ? new ServiceInfo[] { info } : new ServiceInfo[0]);
                 }
+            }));
+        }
+        return union(results);
+    }
 
-                for (Future<ServiceInfo> future : results) {
-                    if (future.isCancelled()) {
-                        continue;
-                    }
+    /**
+     * Merges the services found on each interface, interfaces failing are skipped.
+     */
+    private static CompletableFuture<ServiceInfo[]> union(final List<CompletableFuture<ServiceInfo[]>> results) {
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).handle(new BiFunction<Void, Throwable, ServiceInfo[]>() {
+            @Override
+            public ServiceInfo[] apply(Void ignored, Throwable failure) {
+                final Set<ServiceInfo> result = new HashSet<ServiceInfo>();
+                for (CompletableFuture<ServiceInfo[]> future : results) {
                     try {
-                        ServiceInfo info = future.get();
-                        if (info != null) {
-                            result.add(info);
-                        }
-                    } catch (InterruptedException exception) {
-                        logger.debug("Interrupted ", exception);
-                        Thread.currentThread().interrupt();
-                    } catch (ExecutionException exception) {
-                        logger.warn("Exception ", exception);
+                        result.addAll(Arrays.asList(future.join()));
+                    } catch (CompletionException exception) {
+                        logger.warn("Exception ", exception.getCause());
                     }
                 }
-            } finally {
-                executor.shutdown();
+                return result.toArray(new ServiceInfo[result.size()]);
             }
+        });
+    }
+
+    /**
+     * Waits for a listing a bit longer than its timeout, the interfaces complete their part of the listing on timeout.
+     */
+    private ServiceInfo[] await(CompletableFuture<ServiceInfo[]> result, long timeout) {
+        try {
+            return result.get(timeout + 100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            logger.debug("Interrupted ", exception);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            logger.warn("Exception ", exception);
+        } catch (TimeoutException exception) {
+            logger.debug("Timeout ", exception);
         }
-        return result.toArray(new ServiceInfo[result.size()]);
+        return new ServiceInfo[0];
     }
 
     /*
@@ -331,17 +414,9 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
      */
     @Override
     public void requestServiceInfo(final String type, final String name, final boolean persistent, final long timeout) {
-        // We need to run this in parallel to respect the timeout.
+        // The resolution runs on the interfaces own tasks, nothing needs to wait here.
         for (final JmDNS mDNS : this.getDNS()) {
-            _jmDNSExecutor.submit(new Runnable() {
-                /**
-                 * {@inheritDoc}
-                 */
-                @Override
-                public void run() {
-                    mDNS.requestServiceInfo(type, name, persistent, timeout);
-                }
-            });
+            mDNS.resolveServiceInfoAsync(type, name, persistent, timeout);
         }
     }
 
@@ -393,6 +468,46 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#getServiceEventPublisher(java.lang.String)
+     */
+    @Override
+    public ServiceEventFlow.Publisher getServiceEventPublisher(String type) {
+        return this.getServiceEventPublisher(type, ServiceEventFlow.Overflow.LATEST_PER_SERVICE, DNSConstants.LISTENER_QUEUE_SIZE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#getServiceEventPublisher(java.lang.String, javax.jmdns.ServiceEventFlow.Overflow, int)
+     */
+    @Override
+    public ServiceEventFlow.Publisher getServiceEventPublisher(String type, ServiceEventFlow.Overflow overflow, int capacity) {
+        final ServiceEventPublisher publisher = new ServiceEventPublisher(new ServiceEventPublisher.Source() {
+            @Override
+            public void addServiceListener(String serviceType, ServiceListener listener) {
+                // Also follows the interfaces added later
+                JmmDNSImpl.this.addServiceListener(serviceType, listener);
+            }
+
+            @Override
+            public void removeServiceListener(String serviceType, ServiceListener listener) {
+                JmmDNSImpl.this.removeServiceListener(serviceType, listener);
+            }
+
+            @Override
+            public void addPublisher(ServiceEventPublisher publisher) {
+                _publishers.add(publisher);
+            }
+
+            @Override
+            public void removePublisher(ServiceEventPublisher publisher) {
+                _publishers.remove(publisher);
+            }
+        }, type, _jmDNSExecutor, overflow, capacity);
+        return publisher;
+    }
+
     /*
      * (non-Javadoc)
      * @see javax.jmdns.JmmDNS#removeServiceListener(java.lang.String, javax.jmdns.ServiceListener)
@@ -485,6 +600,69 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#registerServiceAsync(javax.jmdns.ServiceInfo)
+     */
+    @Override
+    public CompletableFuture<Void> registerServiceAsync(ServiceInfo info) {
+        try {
+            return this.registerServices(Collections.singletonList(info));
+        } catch (IOException | RuntimeException exception) {
+            final CompletableFuture<Void> failed = new CompletableFuture<Void>();
+            failed.completeExceptionally(exception);
+            return failed;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#registerServices(java.util.Collection)
+     */
+    @Override
+    public CompletableFuture<Void> registerServices(Collection<ServiceInfo> infos) throws IOException {
+        // We need to get the list out of the synchronized block to prevent dead locks
+        final JmDNS[] dnsArray = this.getDNS();
+        final CompletableFuture<?>[] announced = new CompletableFuture<?>[dnsArray.length];
+        synchronized (_services) {
+            for (int i = 0; i < dnsArray.length; i++) {
+                final List<ServiceInfo> clones = new ArrayList<ServiceInfo>(infos.size());
+                for (ServiceInfo info : infos) {
+                    clones.add(info.clone());
+                }
+                announced[i] = dnsArray[i].registerServices(clones);
+            }
+            for (ServiceInfo info : infos) {
+                ((ServiceInfoImpl) info).setDelegate(this);
+                _services.put(info.getQualifiedName(), info);
+            }
+        }
+        return CompletableFuture.allOf(announced);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#unregisterServices(java.util.Collection)
+     */
+    @Override
+    public CompletableFuture<Void> unregisterServices(Collection<ServiceInfo> infos) {
+        // We need to get the list out of the synchronized block to prevent dead locks
+        final JmDNS[] dnsArray = this.getDNS();
+        final CompletableFuture<?>[] canceled = new CompletableFuture<?>[dnsArray.length];
+        synchronized (_services) {
+            for (ServiceInfo info : infos) {
+                _services.remove(info.getQualifiedName());
+            }
+            for (int i = 0; i < dnsArray.length; i++) {
+                canceled[i] = dnsArray[i].unregisterServices(infos);
+            }
+            for (ServiceInfo info : infos) {
+                ((ServiceInfoImpl) info).setDelegate(null);
+            }
+        }
+        return CompletableFuture.allOf(canceled);
+    }
+
     /*
      * (non-Javadoc)
      * @see javax.jmdns.JmmDNS#registerServiceType(java.lang.String)
@@ -512,49 +690,21 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
      */
     @Override
     public ServiceInfo[] list(final String type, final long timeout) {
-        final JmDNS[] dnsArray = this.getDNS();
-        // We need to run this in parallel to respect the timeout.
-        final Set<ServiceInfo> result = new HashSet<ServiceInfo>(dnsArray.length * 5);
-        if (dnsArray.length > 0) {
-            List<Callable<List<ServiceInfo>>> tasks = new ArrayList<Callable<List<ServiceInfo>>>(dnsArray.length);
-            for (final JmDNS mDNS : dnsArray) {
-                tasks.add(new Callable<List<ServiceInfo>>() {
-                    @Override
-                    public List<ServiceInfo> call() throws Exception {
-                        return Arrays.asList(mDNS.list(type, timeout));
-                    }
-                });
-            }
-
-            ExecutorService executor = Executors.newFixedThreadPool(tasks.size(), new NamedThreadFactory("JmmDNS.list"));
-            try {
-                List<Future<List<ServiceInfo>>> results = Collections.emptyList();
-                try {
-                    results = executor.invokeAll(tasks, timeout + 100, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException exception) {
-                    logger.debug("Interrupted ", exception);
-                    Thread.currentThread().interrupt();
-                    // Will terminate next loop early.
-                }
+        return this.await(this.listAsync(type, timeout), timeout);
+    }
 
-                for (Future<List<ServiceInfo>> future : results) {
-                    if (future.isCancelled()) {
-                        continue;
-                    }
-                    try {
-                        result.addAll(future.get());
-                    } catch (InterruptedException exception) {
-                        logger.debug("Interrupted ", exception);
-                        Thread.currentThread().interrupt();
-                    } catch (ExecutionException exception) {
-                        logger.warn("Exception ", exception);
-                    }
-                }
-            } finally {
-                executor.shutdown();
-            }
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#listAsync(java.lang.String, long)
+     */
+    @Override
+    public CompletableFuture<ServiceInfo[]> listAsync(String type, long timeout) {
+        final JmDNS[] dnsArray = this.getDNS();
+        final List<CompletableFuture<ServiceInfo[]>> results = new ArrayList<CompletableFuture<ServiceInfo[]>>(dnsArray.length);
+        for (final JmDNS mDNS : dnsArray) {
+            results.add(mDNS.listAsync(type, timeout));
         }
-        return result.toArray(new ServiceInfo[result.size()]);
+        return union(results);
     }
 
     /*
@@ -618,6 +768,41 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
         return _networkListeners.toArray(new NetworkTopologyListener[_networkListeners.size()]);
     }
 
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.JmmDNS#getMetrics()
+     */
+    @Override
+    public JmDNSMetrics getMetrics() {
+        return new JmDNSMetrics() {
+            @Override
+            public long get(Metric metric) {
+                final JmDNS[] dnsArray = JmmDNSImpl.this.getDNS();
+                long value = 0;
+                switch (metric) {
+                    case CACHE_SIZE:
+                    case CACHE_HITS:
+                    case CACHE_MISSES:
+                        // The instances may share their cache
+                        final Set<DNSCache> caches = Collections.newSetFromMap(new IdentityHashMap<DNSCache, Boolean>());
+                        for (JmDNS mDNS : dnsArray) {
+                            final DNSCache cache = ((JmDNSImpl) mDNS).getCache();
+                            if (caches.add(cache)) {
+                                value += (metric == Metric.CACHE_SIZE ? cache.getEntryCount() : metric == Metric.CACHE_HITS ? cache.getHitCount() : cache.getMissCount());
+                            }
+                        }
+                        break;
+                    default:
+                        for (JmDNS mDNS : dnsArray) {
+                            value += mDNS.getMetrics().get(metric);
+                        }
+                        break;
+                }
+                return value;
+            }
+        };
+    }
+
     /*
      * (non-Javadoc)
      * @see javax.jmdns.NetworkTopologyListener#inetAddressAdded(javax.jmdns.NetworkTopologyEvent)
@@ -784,7 +969,25 @@ public class JmmDNSImpl implements JmmDNS, NetworkTopologyListener, ServiceInfoI
 
     protected JmDNS createJmDnsInstance(InetAddress address) throws IOException
     {
+        if (_sharedCache != null) {
+            return new JmDNSImpl(address, null, this.getGroupChannel(address).newTransport(), _sharedCache);
+        }
         return JmDNS.create(address);
     }
 
+    /**
+     * Returns the channel shared by the mDNS of the protocol family of the address, opening it on first use.
+     */
+    private MulticastGroupChannel getGroupChannel(InetAddress address) throws IOException {
+        final StandardProtocolFamily family = (address instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+        synchronized (_groupChannels) {
+            MulticastGroupChannel channel = _groupChannels.get(family);
+            if ((channel == null) || !channel.isOpen()) {
+                channel = MulticastGroupChannel.open(family);
+                _groupChannels.put(family, channel);
+            }
+            return channel;
+        }
+    }
+
 }
@@ -0,0 +1,119 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashed set of the known answers of a query, see RFC 6762 section 7.1.<br/>
+ * The set is built once per query, so checking whether an answer is suppressed does not depend on the number of known answers. Records are hashed on their
+ * name, type, class and value.
+ */
+public final class KnownAnswers {
+
+    private final Map<Key, Known> _known;
+
+    /**
+     * @param expectedSize
+     *            expected number of known answers
+     */
+    KnownAnswers(int expectedSize) {
+        super();
+        _known = new HashMap<Key, Known>(Math.max(16, expectedSize * 4 / 3 + 1));
+    }
+
+    /**
+     * Adds known answers.
+     *
+     * @param records
+     *            known answers
+     * @param answerSection
+     *            <code>true</code> if the records come from the answer section of the query
+     */
+    synchronized void addAll(Collection<? extends DNSRecord> records, boolean answerSection) {
+        for (DNSRecord record : records) {
+            final Key key = new Key(record);
+            Known known = _known.get(key);
+            if (known == null) {
+                known = new Known();
+                _known.put(key, known);
+            }
+            known._maxTTL = Math.max(known._maxTTL, record.getTTL());
+            if (answerSection) {
+                known._staleTime = Math.min(known._staleTime, record.getExpirationTime(50));
+            }
+        }
+    }
+
+    /**
+     * Same as {@link DNSRecord#suppressedBy(DNSRecord)} for all known answers: the record is suppressed if an equal known answer has more than half its TTL.
+     *
+     * @param record
+     *            answer
+     * @return <code>true</code> if the record need not be sent
+     */
+    public synchronized boolean suppresses(DNSRecord record) {
+        final Known known = _known.get(new Key(record));
+        return (known != null) && (known._maxTTL > record.getTTL() / 2);
+    }
+
+    /**
+     * @param record
+     *            answer
+     * @param now
+     *            current time
+     * @return <code>true</code> if the answer section holds an equal known answer which is stale
+     */
+    public synchronized boolean isStale(DNSRecord record, long now) {
+        final Known known = _known.get(new Key(record));
+        return (known != null) && (known._staleTime <= now);
+    }
+
+    /**
+     * @return number of distinct known answers
+     */
+    public synchronized int size() {
+        return _known.size();
+    }
+
+    private static final class Known {
+
+        int  _maxTTL    = Integer.MIN_VALUE;
+
+        long _staleTime = Long.MAX_VALUE;
+
+        Known() {
+            super();
+        }
+
+    }
+
+    /**
+     * Wraps a record to include its value in the hash code. Records sharing a name, like the pointers of a browse response, would all collide otherwise.
+     */
+    private static final class Key {
+
+        private final DNSRecord _record;
+
+        private final int       _hash;
+
+        Key(DNSRecord record) {
+            super();
+            _record = record;
+            _hash = record.hashCode() * 31 + record.valueHashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Key) && (((Key) obj)._hash == _hash) && _record.equals(((Key) obj)._record);
+        }
+
+    }
+
+}
@@ -0,0 +1,406 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceEventFlow.Overflow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ordered queue of the events waiting to be delivered to one listener.<br/>
+ * Mailboxes share a pool of worker threads, at most one worker delivers the events of a mailbox at any time so each listener sees its events in order while a
+ * slow listener only delays itself. Superseded events are coalesced: an event replaces the last pending event for the same service if both are of the same
+ * kind, and a removal discards a pending resolution of the same service. When the mailbox is full new events are dropped.
+ * <p/>
+ * Mailboxes of {@link javax.jmdns.ServiceEventFlow} subscriptions only deliver the events requested by the subscriber and handle a full mailbox according to
+ * their {@link Overflow} policy. They end with a terminal call instead of the events still pending.
+ */
+class ListenerMailbox implements Runnable {
+    private static Logger logger = LoggerFactory.getLogger(ListenerMailbox.class);
+
+    /**
+     * Kind of event.
+     */
+    enum Kind {
+        /**
+         * {@link javax.jmdns.ServiceListener#serviceAdded(ServiceEvent)}
+         */
+        ADDED,
+        /**
+         * {@link javax.jmdns.ServiceListener#serviceRemoved(ServiceEvent)}
+         */
+        REMOVED,
+        /**
+         * {@link javax.jmdns.ServiceListener#serviceResolved(ServiceEvent)}
+         */
+        RESOLVED,
+        /**
+         * {@link javax.jmdns.ServiceTypeListener#serviceTypeAdded(ServiceEvent)}
+         */
+        TYPE_ADDED,
+        /**
+         * {@link javax.jmdns.ServiceTypeListener#subTypeForServiceTypeAdded(ServiceEvent)}
+         */
+        SUBTYPE_ADDED
+    }
+
+    /**
+     * Receives the events of a mailbox.
+     */
+    interface Recipient {
+
+        /**
+         * Delivers an event to the listener.
+         *
+         * @param kind
+         *            kind of event
+         * @param event
+         *            event
+         */
+        void deliver(Kind kind, ServiceEvent event);
+
+    }
+
+    /**
+     * Number of events delivered before the worker is handed over to the other mailboxes.
+     */
+    private static final int           BATCH_SIZE = 32;
+
+    private final Recipient            _recipient;
+
+    private final Executor             _executor;
+
+    private final int                  _capacity;
+
+    /**
+     * Overflow policy of a subscription, <code>null</code> for a listener.
+     */
+    private final Overflow             _overflow;
+
+    private final Queue<Envelope>      _queue     = new ArrayDeque<Envelope>();
+
+    /**
+     * Last pending event of each service.
+     */
+    private final Map<String, Envelope> _last     = new HashMap<String, Envelope>();
+
+    private int                        _backlog;
+
+    private boolean                    _scheduled;
+
+    /**
+     * Number of events the recipient is ready for, {@link Long#MAX_VALUE} for no limit.
+     */
+    private long                       _demand;
+
+    /**
+     * Pending terminal call, run instead of the remaining events.
+     */
+    private Runnable                   _terminal;
+
+    private boolean                    _terminated;
+
+    private long                       _delivered;
+
+    private long                       _coalesced;
+
+    private long                       _dropped;
+
+    /**
+     * @param recipient
+     *            receives the events
+     * @param executor
+     *            worker pool shared between mailboxes
+     * @param capacity
+     *            maximum number of pending events
+     */
+    ListenerMailbox(Recipient recipient, Executor executor, int capacity) {
+        this(recipient, executor, capacity, null);
+    }
+
+    /**
+     * @param recipient
+     *            receives the events
+     * @param executor
+     *            worker pool shared between mailboxes
+     * @param capacity
+     *            maximum number of pending events
+     * @param overflow
+     *            overflow policy of a subscription, the mailbox then waits for {@link #request(long)} before delivering. <code>null</code> for a listener.
+     */
+    ListenerMailbox(Recipient recipient, Executor executor, int capacity, Overflow overflow) {
+        super();
+        _recipient = recipient;
+        _executor = executor;
+        _capacity = Math.max(1, capacity);
+        _overflow = overflow;
+        _demand = (overflow != null ? 0 : Long.MAX_VALUE);
+    }
+
+    private boolean coalesces() {
+        return (_overflow == null) || (_overflow == Overflow.LATEST_PER_SERVICE);
+    }
+
+    /**
+     * Queues an event for delivery.
+     *
+     * @param key
+     *            key of the service the event is about
+     * @param kind
+     *            kind of event
+     * @param event
+     *            event
+     * @return <code>false</code> if the event was dropped because the mailbox is full or terminated
+     */
+    boolean post(String key, Kind kind, ServiceEvent event) {
+        synchronized (this) {
+            if (_terminated || (_terminal != null)) {
+                return false;
+            }
+            final Envelope last = (this.coalesces() ? _last.get(key) : null);
+            if (last != null) {
+                if (last._kind == kind) {
+                    last._event = event;
+                    _coalesced++;
+                    return true;
+                }
+                if ((kind == Kind.REMOVED) && (last._kind == Kind.RESOLVED)) {
+                    last._discarded = true;
+                    _last.remove(key);
+                    _backlog--;
+                    _coalesced++;
+                }
+            }
+            if ((_backlog >= _capacity) && !this.dropOldest()) {
+                _dropped++;
+                logger.debug("Listener mailbox full, dropping {} event: {}", kind, event);
+                return false;
+            }
+            final Envelope envelope = new Envelope(key, kind, event);
+            _queue.add(envelope);
+            if (this.coalesces()) {
+                _last.put(key, envelope);
+            }
+            _backlog++;
+            if (_scheduled || (_demand == 0)) {
+                return true;
+            }
+            _scheduled = true;
+        }
+        this.schedule();
+        return true;
+    }
+
+    /**
+     * Makes room for a new event if the overflow policy drops the oldest one. Called with the mailbox locked.
+     */
+    private boolean dropOldest() {
+        if ((_overflow != Overflow.LATEST_PER_SERVICE) && (_overflow != Overflow.DROP_OLDEST)) {
+            return false;
+        }
+        Envelope oldest = _queue.poll();
+        while ((oldest != null) && oldest._discarded) {
+            oldest = _queue.poll();
+        }
+        if (oldest == null) {
+            return false;
+        }
+        if (_last.get(oldest._key) == oldest) {
+            _last.remove(oldest._key);
+        }
+        _backlog--;
+        _dropped++;
+        logger.debug("Listener mailbox full, dropping oldest {} event: {}", oldest._kind, oldest._event);
+        return true;
+    }
+
+    /**
+     * Allows more events to be delivered.
+     *
+     * @param n
+     *            number of additional events, positive
+     */
+    void request(long n) {
+        synchronized (this) {
+            _demand = (n >= Long.MAX_VALUE - _demand ? Long.MAX_VALUE : _demand + n);
+            if (_scheduled || _terminated || (_backlog == 0)) {
+                return;
+            }
+            _scheduled = true;
+        }
+        this.schedule();
+    }
+
+    /**
+     * Discards the pending events and runs the terminal call on the worker, after the event being delivered if any. Nothing is delivered afterwards.
+     *
+     * @param terminal
+     *            terminal call
+     */
+    void terminate(Runnable terminal) {
+        synchronized (this) {
+            if (_terminated || (_terminal != null)) {
+                return;
+            }
+            _terminal = terminal;
+            _queue.clear();
+            _last.clear();
+            _backlog = 0;
+            if (_scheduled) {
+                return;
+            }
+            _scheduled = true;
+        }
+        this.schedule();
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Envelope envelope;
+            final ServiceEvent event;
+            final Runnable terminal;
+            synchronized (this) {
+                terminal = _terminal;
+                if (terminal != null) {
+                    _terminal = null;
+                    _terminated = true;
+                    _scheduled = false;
+                }
+            }
+            if (terminal != null) {
+                try {
+                    terminal.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Listener exception on terminal call", e);
+                }
+                return;
+            }
+            synchronized (this) {
+                if (_demand == 0) {
+                    _scheduled = false;
+                    return;
+                }
+                Envelope next = _queue.poll();
+                while ((next != null) && next._discarded) {
+                    next = _queue.poll();
+                }
+                if (next == null) {
+                    _scheduled = false;
+                    return;
+                }
+                envelope = next;
+                event = envelope._event;
+                if (_last.get(envelope._key) == envelope) {
+                    _last.remove(envelope._key);
+                }
+                _backlog--;
+                if (_demand != Long.MAX_VALUE) {
+                    _demand--;
+                }
+            }
+            try {
+                _recipient.deliver(envelope._kind, event);
+            } catch (RuntimeException e) {
+                logger.warn("Listener exception on " + envelope._kind + " event: " + event, e);
+            }
+            synchronized (this) {
+                _delivered++;
+            }
+        }
+        synchronized (this) {
+            if (_terminal == null) {
+                if (_backlog == 0) {
+                    _queue.clear();
+                }
+                if ((_backlog == 0) || (_demand == 0)) {
+                    _scheduled = false;
+                    return;
+                }
+            }
+        }
+        // Let the other mailboxes have a go
+        this.schedule();
+    }
+
+    private void schedule() {
+        try {
+            _executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            // The pool has been shut down
+            synchronized (this) {
+                _dropped += _backlog;
+                _queue.clear();
+                _last.clear();
+                _backlog = 0;
+                _scheduled = false;
+                _terminal = null;
+            }
+        }
+    }
+
+    /**
+     * @return number of events waiting to be delivered
+     */
+    synchronized int getBacklog() {
+        return _backlog;
+    }
+
+    /**
+     * @return number of events delivered
+     */
+    synchronized long getDeliveredCount() {
+        return _delivered;
+    }
+
+    /**
+     * @return number of events merged into or discarded by a later event
+     */
+    synchronized long getCoalescedCount() {
+        return _coalesced;
+    }
+
+    /**
+     * @return number of events dropped because the mailbox was full or the worker pool shut down
+     */
+    synchronized long getDroppedCount() {
+        return _dropped;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return "[Mailbox backlog: " + _backlog + " delivered: " + _delivered + " coalesced: " + _coalesced + " dropped: " + _dropped + "]";
+    }
+
+    private static final class Envelope {
+
+        final String     _key;
+
+        final Kind       _kind;
+
+        ServiceEvent     _event;
+
+        boolean          _discarded;
+
+        Envelope(String key, Kind kind, ServiceEvent event) {
+            super();
+            _key = key;
+            _kind = kind;
+            _event = event;
+        }
+
+    }
+
+}
@@ -6,6 +6,7 @@ package javax.jmdns.impl;
 import java.util.EventListener;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -115,6 +116,39 @@ public class ListenerStatus<T extends EventListener> {
             }
         }
 
+        /**
+         * Delivers the event through the mailbox of the listener, or right away if it has none.
+         *
+         * @param kind
+         *            {@link ListenerMailbox.Kind#ADDED}, {@link ListenerMailbox.Kind#REMOVED} or {@link ListenerMailbox.Kind#RESOLVED}
+         * @param event
+         *            The ServiceEvent providing the name and fully qualified type of the service.
+         */
+        void post(ListenerMailbox.Kind kind, ServiceEvent event) {
+            this.post(event.getName() + "." + event.getType(), kind, event);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.ListenerStatus#deliver(javax.jmdns.impl.ListenerMailbox.Kind, javax.jmdns.ServiceEvent)
+         */
+        @Override
+        void deliver(ListenerMailbox.Kind kind, ServiceEvent event) {
+            switch (kind) {
+                case ADDED:
+                    this.serviceAdded(event);
+                    break;
+                case REMOVED:
+                    this.serviceRemoved(event);
+                    break;
+                case RESOLVED:
+                    this.serviceResolved(event);
+                    break;
+                default:
+                    break;
+            }
+        }
+
         private static final boolean _sameInfo(ServiceInfo info, ServiceInfo lastInfo) {
             if (info == null) return false;
             if (lastInfo == null) return false;
@@ -203,6 +237,36 @@ public class ListenerStatus<T extends EventListener> {
             }
         }
 
+        /**
+         * Delivers the event through the mailbox of the listener, or right away if it has none.
+         *
+         * @param kind
+         *            {@link ListenerMailbox.Kind#TYPE_ADDED} or {@link ListenerMailbox.Kind#SUBTYPE_ADDED}
+         * @param event
+         *            The service event providing the fully qualified type of the service.
+         */
+        void post(ListenerMailbox.Kind kind, ServiceEvent event) {
+            this.post(event.getType(), kind, event);
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see javax.jmdns.impl.ListenerStatus#deliver(javax.jmdns.impl.ListenerMailbox.Kind, javax.jmdns.ServiceEvent)
+         */
+        @Override
+        void deliver(ListenerMailbox.Kind kind, ServiceEvent event) {
+            switch (kind) {
+                case TYPE_ADDED:
+                    this.serviceTypeAdded(event);
+                    break;
+                case SUBTYPE_ADDED:
+                    this.subTypeForServiceTypeAdded(event);
+                    break;
+                default:
+                    break;
+            }
+        }
+
         /*
          * (non-Javadoc)
          * @see java.lang.Object#toString()
@@ -234,6 +298,8 @@ public class ListenerStatus<T extends EventListener> {
 
     private final boolean       _synch;
 
+    private volatile ListenerMailbox _mailbox;
+
     /**
      * @param listener
      *            listener being tracked.
@@ -262,6 +328,56 @@ public class ListenerStatus<T extends EventListener> {
         return _synch;
     }
 
+    /**
+     * Opens the mailbox through which the events posted to this listener are delivered.
+     *
+     * @param executor
+     *            worker pool shared between mailboxes
+     * @param capacity
+     *            maximum number of pending events
+     */
+    void openMailbox(Executor executor, int capacity) {
+        _mailbox = new ListenerMailbox(this::deliver, executor, capacity);
+    }
+
+    /**
+     * @return the mailbox of the listener, or <code>null</code> if events are delivered right away
+     */
+    ListenerMailbox getMailbox() {
+        return _mailbox;
+    }
+
+    /**
+     * Delivers the event through the mailbox of the listener, or right away if it has none.
+     *
+     * @param key
+     *            key of the service the event is about
+     * @param kind
+     *            kind of event
+     * @param event
+     *            event
+     */
+    void post(String key, ListenerMailbox.Kind kind, ServiceEvent event) {
+        final ListenerMailbox mailbox = _mailbox;
+        if (mailbox != null) {
+            mailbox.post(key, kind, event);
+        } else {
+            this.deliver(kind, event);
+        }
+    }
+
+    /**
+     * Calls the listener.
+     *
+     * @param kind
+     *            kind of event
+     * @param event
+     *            event
+     */
+    void deliver(ListenerMailbox.Kind kind, ServiceEvent event) {
+        // Subclasses know how to call their listener
+    }
+
     /*
      * (non-Javadoc)
      * @see java.lang.Object#hashCode()
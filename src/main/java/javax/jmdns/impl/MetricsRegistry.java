@@ -0,0 +1,212 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.jmdns.JmDNSMetrics;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metrics of a JmDNS instance. Counters are lock free adders incremented where the events happen, gauges and the cache counters, which belong to a cache
+ * possibly shared between instances, are read when asked for.
+ */
+public class MetricsRegistry implements JmDNSMetrics {
+    private static Logger          logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private final JmDNSImpl        _dns;
+
+    private final LongAdder[]      _counters;
+
+    private volatile ObjectName    _objectName;
+
+    /**
+     * @param dns
+     *            instance the metrics are about
+     */
+    public MetricsRegistry(JmDNSImpl dns) {
+        super();
+        _dns = dns;
+        _counters = new LongAdder[Metric.values().length];
+        for (int i = 0; i < _counters.length; i++) {
+            _counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param metric
+     *            counter to increment
+     */
+    public void increment(Metric metric) {
+        _counters[metric.ordinal()].increment();
+    }
+
+    /**
+     * @param metric
+     *            counter to add to
+     * @param value
+     *            amount to add
+     */
+    public void add(Metric metric, long value) {
+        _counters[metric.ordinal()].add(value);
+    }
+
+    /**
+     * Counts a query answered by the responder in the bucket of its delay.
+     *
+     * @param delay
+     *            milliseconds between the reception of the query and the answer
+     */
+    public void recordResponseDelay(long delay) {
+        if (delay <= 0) {
+            this.increment(Metric.RESPONDER_DELAY_NONE);
+        } else if (delay <= 40) {
+            this.increment(Metric.RESPONDER_DELAY_40MS);
+        } else if (delay <= 80) {
+            this.increment(Metric.RESPONDER_DELAY_80MS);
+        } else {
+            this.increment(Metric.RESPONDER_DELAY_OVER_80MS);
+        }
+        this.add(Metric.RESPONDER_DELAY_TOTAL, Math.max(0, delay));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long get(Metric metric) {
+        switch (metric) {
+            case CACHE_SIZE:
+                return _dns.getCache().getEntryCount();
+            case CACHE_HITS:
+                return _dns.getCache().getHitCount();
+            case CACHE_MISSES:
+                return _dns.getCache().getMissCount();
+            case LISTENERS_QUEUED:
+                return _dns.getListenerBacklog();
+            case OUTGOING_QUEUED:
+                return _dns.getOutgoingQueueDepth();
+            default:
+                return _counters[metric.ordinal()].sum();
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. A name already taken, by an instance with the same name and address, is only logged.
+     */
+    void registerMBean() {
+        try {
+            final ObjectName objectName = new ObjectName("javax.jmdns:type=JmDNS,name=" + ObjectName.quote(String.valueOf(_dns.getName())) + ",address="
+                    + ObjectName.quote(String.valueOf(_dns.getLocalHost().getInetAddress() != null ? _dns.getLocalHost().getInetAddress().getHostAddress() : null)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), objectName);
+            _objectName = objectName;
+        } catch (JMException exception) {
+            logger.warn("registerMBean() metrics of {} not registered", _dns.getName(), exception);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if registered.
+     */
+    void unregisterMBean() {
+        final ObjectName objectName = _objectName;
+        if (objectName != null) {
+            _objectName = null;
+            try {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException exception) {
+                logger.debug("unregisterMBean() {}", objectName, exception);
+            }
+        }
+    }
+
+    /**
+     * @return name of the registered MBean, <code>null</code> if not registered
+     */
+    ObjectName getObjectName() {
+        return _objectName;
+    }
+
+    @Override
+    public String toString() {
+        return "Metrics of " + _dns.getName() + ": " + this.snapshot();
+    }
+
+    /**
+     * Read only MBean with an attribute of type long per metric.
+     */
+    private final class MetricsMBean implements DynamicMBean {
+
+        private final MBeanInfo _info;
+
+        MetricsMBean() {
+            super();
+            final Metric[] metrics = Metric.values();
+            final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[metrics.length];
+            for (int i = 0; i < metrics.length; i++) {
+                attributes[i] = new MBeanAttributeInfo(metrics[i].getKey(), "long", (metrics[i].isGauge() ? "Gauge " : "Counter ") + metrics[i].name(), true, false, false);
+            }
+            _info = new MBeanInfo(MetricsRegistry.class.getName(), "JmDNS metrics", attributes, null, null, null);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            for (Metric metric : Metric.values()) {
+                if (metric.getKey().equals(attribute)) {
+                    return Long.valueOf(MetricsRegistry.this.get(metric));
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            final AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, this.getAttribute(attribute)));
+                } catch (AttributeNotFoundException exception) {
+                    // Unknown attributes are left out of the list
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Read only attribute: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return _info;
+        }
+
+    }
+
+}
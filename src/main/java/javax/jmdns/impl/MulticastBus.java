@@ -0,0 +1,324 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.util.NamedThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A multicast network inside the JVM, to run many JmDNS instances without any network:
+ *
+ * <pre>
+ * MulticastBus bus = new MulticastBus();
+ * bus.setLatency(2, 5, TimeUnit.MILLISECONDS);
+ * bus.setLossRate(0.01);
+ * for (int i = 0; i &lt; 1000; i++) {
+ *     InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, (byte) (i &gt;&gt; 8), (byte) i });
+ *     instances.add(new JmDNSImpl(address, &quot;node&quot; + i, bus.newTransport()));
+ * }
+ * </pre>
+ *
+ * Each instance is known on the bus by the address it was created with, a message sent to the multicast group reaches every instance of the group, the
+ * sender included as with multicast loopback, and a unicast message reaches the instance with the destination address. Every delivery is delayed by the
+ * latency and lost with the loss rate, independently for each receiver. A receiver is handed its packets one at a time, in their delivery order.<br/>
+ * Give the instances a name, otherwise their host name is looked up from the address.
+ */
+public class MulticastBus {
+    private static Logger                  logger = LoggerFactory.getLogger(MulticastBus.class);
+
+    private final List<Endpoint>           _endpoints;
+
+    private final ScheduledExecutorService _executor;
+
+    private final Random                   _random;
+
+    private volatile long                  _minLatency;
+
+    private volatile long                  _maxLatency;
+
+    private volatile double                _lossRate;
+
+    private final AtomicLong               _sent;
+
+    private final AtomicLong               _delivered;
+
+    private final AtomicLong               _lost;
+
+    /**
+     * Creates a bus without latency nor loss, delivering on as many threads as there are processors.
+     */
+    public MulticastBus() {
+        this(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * @param threads
+     *            number of threads delivering the packets
+     * @param seed
+     *            seed of the latency and loss draws
+     */
+    public MulticastBus(int threads, long seed) {
+        super();
+        _endpoints = new CopyOnWriteArrayList<Endpoint>();
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), new NamedThreadFactory("MulticastBus", true));
+        executor.setRemoveOnCancelPolicy(true);
+        _executor = executor;
+        _random = new Random(seed);
+        _sent = new AtomicLong();
+        _delivered = new AtomicLong();
+        _lost = new AtomicLong();
+    }
+
+    /**
+     * Sets the time a packet takes to reach a receiver, drawn uniformly between the bounds for each delivery.
+     *
+     * @param min
+     *            shortest latency
+     * @param max
+     *            longest latency
+     * @param unit
+     *            unit of the bounds
+     */
+    public void setLatency(long min, long max, TimeUnit unit) {
+        if ((min < 0) || (max < min)) {
+            throw new IllegalArgumentException("Invalid latency: " + min + " to " + max);
+        }
+        _minLatency = unit.toNanos(min);
+        _maxLatency = unit.toNanos(max);
+    }
+
+    /**
+     * Sets the probability that a packet does not reach a receiver. May be changed at any time, a rate of 1 partitions the instances.
+     *
+     * @param lossRate
+     *            probability between 0 and 1
+     */
+    public void setLossRate(double lossRate) {
+        if (!(lossRate >= 0.0) || (lossRate > 1.0)) {
+            throw new IllegalArgumentException("Invalid loss rate: " + lossRate);
+        }
+        _lossRate = lossRate;
+    }
+
+    /**
+     * Returns a transport on the bus for one instance.
+     *
+     * @return new transport
+     */
+    public Transport newTransport() {
+        return new Endpoint();
+    }
+
+    /**
+     * @return number of instances on the bus
+     */
+    public int size() {
+        return _endpoints.size();
+    }
+
+    /**
+     * @return number of messages sent on the bus
+     */
+    public long getSentCount() {
+        return _sent.get();
+    }
+
+    /**
+     * @return number of packets handed to a receiver
+     */
+    public long getDeliveredCount() {
+        return _delivered.get();
+    }
+
+    /**
+     * @return number of packets lost on the way to a receiver
+     */
+    public long getLostCount() {
+        return _lost.get();
+    }
+
+    /**
+     * Stops delivering packets. The instances on the bus should be closed first.
+     */
+    public void close() {
+        _executor.shutdownNow();
+    }
+
+    void send(Endpoint sender, ByteBuffer message, InetSocketAddress target) {
+        final InetAddress source = sender.getAddress();
+        if (source == null) {
+            return;
+        }
+        _sent.incrementAndGet();
+        // Receivers only read the data, they can all share one copy
+        final byte[] data = new byte[message.remaining()];
+        message.duplicate().get(data);
+        final InetSocketAddress from = new InetSocketAddress(source, DNSConstants.MDNS_PORT);
+        final boolean multicast = target.getAddress().isMulticastAddress();
+        for (Endpoint endpoint : _endpoints) {
+            if (multicast ? target.getAddress().equals(endpoint.getGroup()) : target.getAddress().equals(endpoint.getAddress())) {
+                this.schedule(endpoint, new DatagramPacket(data, data.length, from));
+            }
+        }
+    }
+
+    private void schedule(final Endpoint endpoint, final DatagramPacket packet) {
+        final double lossRate = _lossRate;
+        final long minLatency = _minLatency;
+        final long maxLatency = _maxLatency;
+        if ((lossRate > 0.0) && (_random.nextDouble() < lossRate)) {
+            _lost.incrementAndGet();
+            return;
+        }
+        final long latency = (maxLatency > minLatency ? minLatency + (long) (_random.nextDouble() * (maxLatency - minLatency)) : minLatency);
+        final Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                endpoint.deliver(packet);
+            }
+        };
+        try {
+            if (latency > 0) {
+                _executor.schedule(delivery, latency, TimeUnit.NANOSECONDS);
+            } else {
+                _executor.execute(delivery);
+            }
+        } catch (RejectedExecutionException exception) {
+            logger.trace("schedule() bus closed, packet dropped");
+        }
+    }
+
+    /**
+     * An instance on the bus.
+     */
+    private final class Endpoint implements Transport {
+
+        private final Queue<DatagramPacket> _inbox;
+
+        private final AtomicBoolean         _draining;
+
+        private volatile JmDNSImpl          _dns;
+
+        private volatile InetAddress        _group;
+
+        private volatile SocketListener     _listener;
+
+        private volatile boolean            _started;
+
+        Endpoint() {
+            super();
+            _inbox = new ConcurrentLinkedQueue<DatagramPacket>();
+            _draining = new AtomicBoolean();
+        }
+
+        InetAddress getAddress() {
+            final JmDNSImpl dns = _dns;
+            return (dns != null ? dns.getLocalHost().getInetAddress() : null);
+        }
+
+        @Override
+        public void open(JmDNSImpl dns) throws IOException {
+            if (_dns != null) {
+                this.close();
+            }
+            _group = InetAddress.getByName(dns.getLocalHost().getInetAddress() instanceof Inet6Address ? DNSConstants.MDNS_GROUP_IPV6 : DNSConstants.MDNS_GROUP);
+            // Never started, the bus hands the packets over
+            _listener = new SocketListener(dns, "MulticastBus");
+            _dns = dns;
+            _endpoints.add(this);
+        }
+
+        @Override
+        public InetAddress getGroup() {
+            return _group;
+        }
+
+        @Override
+        public void start() {
+            _started = true;
+            this.drain();
+        }
+
+        @Override
+        public void send(ByteBuffer message, InetSocketAddress target) throws IOException {
+            if (_dns != null) {
+                MulticastBus.this.send(this, message, target);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return _dns != null;
+        }
+
+        @Override
+        public void close() {
+            _endpoints.remove(this);
+            _started = false;
+            _dns = null;
+            _inbox.clear();
+        }
+
+        void deliver(DatagramPacket packet) {
+            if (_dns == null) {
+                return;
+            }
+            _inbox.add(packet);
+            this.drain();
+        }
+
+        /**
+         * Hands the packets of the inbox to the instance, on one delivery thread at a time.
+         */
+        private void drain() {
+            while (_started && !_inbox.isEmpty() && _draining.compareAndSet(false, true)) {
+                try {
+                    DatagramPacket packet;
+                    while (_started && ((packet = _inbox.poll()) != null)) {
+                        final JmDNSImpl dns = _dns;
+                        final SocketListener listener = _listener;
+                        if ((dns == null) || dns.isCanceling() || dns.isCanceled() || dns.isClosing() || dns.isClosed()) {
+                            continue;
+                        }
+                        _delivered.incrementAndGet();
+                        listener.process(packet);
+                    }
+                } finally {
+                    _draining.set(false);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Transport on " + MulticastBus.this + " for " + this.getAddress();
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "MulticastBus[" + _endpoints.size() + " instances, sent: " + _sent + ", delivered: " + _delivered + ", lost: " + _lost + "]";
+    }
+
+}
@@ -0,0 +1,405 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.jmdns.impl.constants.DNSConstants;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One channel bound to the mDNS port and joined to the multicast group on the interfaces of several JmDNS instances.<br/>
+ * Java gives no access to the interface a datagram arrived on (<code>IP_PKTINFO</code>), so the receiving interface is told from the source address: a scoped
+ * IPv6 source names its interface, otherwise the source is matched against the subnets of the interfaces. Each packet is handed to the one instance whose
+ * subnet contains the source, or to every instance when the source is on none of the subnets. Sends select the outgoing interface of the instance before
+ * sending.
+ */
+class MulticastGroupChannel implements Runnable {
+    private static Logger                    logger = LoggerFactory.getLogger(MulticastGroupChannel.class);
+
+    private final InetAddress                _group;
+
+    private final DatagramChannel            _channel;
+
+    /**
+     * Group memberships by interface name.
+     */
+    private final Map<String, MembershipKey> _memberships;
+
+    private final List<Member>               _members;
+
+    private final Object                     _sendLock;
+
+    /**
+     * Outgoing interface currently set on the channel, guarded by {@link #_sendLock}.
+     */
+    private NetworkInterface                 _sendInterface;
+
+    private Thread                           _reader;
+
+    private MulticastGroupChannel(InetAddress group, DatagramChannel channel) {
+        super();
+        _group = group;
+        _channel = channel;
+        _memberships = new HashMap<String, MembershipKey>();
+        _members = new CopyOnWriteArrayList<Member>();
+        _sendLock = new Object();
+    }
+
+    /**
+     * Opens a channel for the mDNS group of the protocol family. No interface is joined yet.
+     *
+     * @param family
+     *            {@link StandardProtocolFamily#INET} or {@link StandardProtocolFamily#INET6}
+     * @return new channel
+     * @exception IOException
+     */
+    static MulticastGroupChannel open(StandardProtocolFamily family) throws IOException {
+        final InetAddress group = InetAddress.getByName(family == StandardProtocolFamily.INET6 ? DNSConstants.MDNS_GROUP_IPV6 : DNSConstants.MDNS_GROUP);
+        final DatagramChannel channel = DatagramChannel.open(family);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+            channel.bind(new InetSocketAddress(DNSConstants.MDNS_PORT));
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, Integer.valueOf(255));
+        } catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+        return new MulticastGroupChannel(group, channel);
+    }
+
+    /**
+     * @return multicast group
+     */
+    InetAddress getGroup() {
+        return _group;
+    }
+
+    /**
+     * Joins the group on the interface of the instance and starts handing it the packets received on that interface.
+     *
+     * @param dns
+     *            JmDNS instance
+     * @exception IOException
+     *                if the instance has no interface or the group cannot be joined
+     */
+    synchronized void join(JmDNSImpl dns) throws IOException {
+        final HostInfo localHost = dns.getLocalHost();
+        NetworkInterface networkInterface = localHost.getInterface();
+        if ((networkInterface == null) && (localHost.getInetAddress() != null)) {
+            networkInterface = NetworkInterface.getByInetAddress(localHost.getInetAddress());
+        }
+        if (networkInterface == null) {
+            throw new IOException("No network interface to join " + _group + " on for " + localHost.getInetAddress());
+        }
+        if (!_memberships.containsKey(networkInterface.getName())) {
+            logger.trace("Trying to join({}, {})", _group, networkInterface);
+            _memberships.put(networkInterface.getName(), _channel.join(_group, networkInterface));
+        }
+        _members.add(new Member(dns, networkInterface, localHost.getInetAddress()));
+        if (_reader == null) {
+            _reader = new Thread(this, "MulticastGroupChannel(" + _group.getHostAddress() + ")");
+            _reader.setDaemon(true);
+            _reader.start();
+        }
+    }
+
+    /**
+     * Stops handing packets to the instance. The group is left on its interface once no other instance uses it.
+     *
+     * @param dns
+     *            JmDNS instance
+     */
+    synchronized void leave(JmDNSImpl dns) {
+        for (Member member : _members) {
+            if (member.getDns() == dns) {
+                _members.remove(member);
+                final String name = member.getInterface().getName();
+                boolean used = false;
+                for (Member other : _members) {
+                    used |= name.equals(other.getInterface().getName());
+                }
+                if (!used) {
+                    final MembershipKey membership = _memberships.remove(name);
+                    if (membership != null) {
+                        membership.drop();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a message out of an interface.
+     *
+     * @param message
+     *            encoded message
+     * @param target
+     *            destination
+     * @param networkInterface
+     *            outgoing interface for multicast destinations
+     * @exception IOException
+     */
+    void send(ByteBuffer message, InetSocketAddress target, NetworkInterface networkInterface) throws IOException {
+        synchronized (_sendLock) {
+            if ((networkInterface != null) && !networkInterface.equals(_sendInterface)) {
+                _channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+                _sendInterface = networkInterface;
+            }
+            _channel.send(message, target);
+        }
+    }
+
+    /**
+     * Returns a transport for one instance: it joins the group on the interface of the instance and sends out of it.
+     *
+     * @return new transport
+     */
+    Transport newTransport() {
+        return new Transport() {
+            private volatile JmDNSImpl _dns;
+
+            @Override
+            public void open(JmDNSImpl dns) throws IOException {
+                _dns = dns;
+                MulticastGroupChannel.this.join(dns);
+            }
+
+            @Override
+            public InetAddress getGroup() {
+                return _group;
+            }
+
+            @Override
+            public void start() {
+                // The channel reader hands the packets over as soon as the instance has joined
+            }
+
+            @Override
+            public void send(ByteBuffer message, InetSocketAddress target) throws IOException {
+                final JmDNSImpl dns = _dns;
+                if ((dns != null) && MulticastGroupChannel.this.isOpen()) {
+                    MulticastGroupChannel.this.send(message, target, dns.getLocalHost().getInterface());
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return (_dns != null) && MulticastGroupChannel.this.isOpen();
+            }
+
+            @Override
+            public void close() {
+                final JmDNSImpl dns = _dns;
+                if (dns != null) {
+                    MulticastGroupChannel.this.leave(dns);
+                    _dns = null;
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "Transport on " + _group;
+            }
+        };
+    }
+
+    /**
+     * @return <code>true</code> while the channel is open
+     */
+    boolean isOpen() {
+        return _channel.isOpen();
+    }
+
+    /**
+     * Closes the channel, the reader thread stops.
+     */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException exception) {
+            logger.warn("close() Close channel exception ", exception);
+        }
+    }
+
+    @Override
+    public void run() {
+        final ByteBuffer buffer = ByteBuffer.allocate(DNSConstants.MAX_MSG_ABSOLUTE);
+        while (_channel.isOpen()) {
+            try {
+                buffer.clear();
+                final SocketAddress source = _channel.receive(buffer);
+                if (!(source instanceof InetSocketAddress)) {
+                    continue;
+                }
+                final InetSocketAddress from = (InetSocketAddress) source;
+                for (Member member : this.membersFor(from.getAddress())) {
+                    // The incoming message keeps a reference to the packet data, so each instance gets its own copy.
+                    final byte[] data = Arrays.copyOf(buffer.array(), buffer.position());
+                    member.process(new DatagramPacket(data, data.length, from));
+                }
+            } catch (IOException exception) {
+                if (_channel.isOpen()) {
+                    logger.warn(Thread.currentThread().getName() + ".run() exception ", exception);
+                }
+            } catch (RuntimeException exception) {
+                logger.warn(Thread.currentThread().getName() + ".run() exception ", exception);
+            }
+        }
+        logger.trace("{}.run() exiting.", Thread.currentThread().getName());
+    }
+
+    /**
+     * Returns the instances a packet from the source is handed to: the instance whose subnet contains the source, else an instance on the interface of the
+     * source, else all of them.
+     *
+     * @param source
+     *            source address of the packet
+     * @return instances
+     */
+    List<Member> membersFor(InetAddress source) {
+        final List<Member> members = new ArrayList<Member>(_members);
+        Member onLink = null;
+        for (Member member : members) {
+            if (member.owns(source)) {
+                return Collections.singletonList(member);
+            }
+            if ((onLink == null) && member.isOnLink(source)) {
+                onLink = member;
+            }
+        }
+        return (onLink != null ? Collections.singletonList(onLink) : members);
+    }
+
+    /**
+     * Tells if two addresses share their first bits.
+     *
+     * @param address
+     *            address
+     * @param other
+     *            other address
+     * @param prefixLength
+     *            number of bits to compare
+     * @return <code>true</code> if the addresses are of the same family and in the same subnet
+     */
+    static boolean sameSubnet(InetAddress address, InetAddress other, int prefixLength) {
+        final byte[] a = address.getAddress();
+        final byte[] b = other.getAddress();
+        if ((a.length != b.length) || (prefixLength < 0)) {
+            return false;
+        }
+        final int bits = Math.min(prefixLength, a.length * 8);
+        final int bytes = bits / 8;
+        for (int i = 0; i < bytes; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        final int rest = bits % 8;
+        if (rest == 0) {
+            return true;
+        }
+        final int mask = (0xFF << (8 - rest)) & 0xFF;
+        return (a[bytes] & mask) == (b[bytes] & mask);
+    }
+
+    /**
+     * A JmDNS instance receiving through the channel.
+     */
+    static final class Member {
+
+        private final JmDNSImpl              _dns;
+
+        private final NetworkInterface       _interface;
+
+        /**
+         * Subnet of the address of the instance, <code>null</code> if the interface does not list it.
+         */
+        private final InterfaceAddress       _address;
+
+        private final List<InterfaceAddress> _links;
+
+        private final SocketListener         _listener;
+
+        Member(JmDNSImpl dns, NetworkInterface networkInterface, InetAddress address) {
+            super();
+            _dns = dns;
+            _interface = networkInterface;
+            _links = new ArrayList<InterfaceAddress>(networkInterface.getInterfaceAddresses());
+            InterfaceAddress own = null;
+            for (InterfaceAddress link : _links) {
+                if (link.getAddress().equals(address)) {
+                    own = link;
+                }
+            }
+            _address = own;
+            // Never started, the channel reader decodes the packets
+            _listener = new SocketListener(dns, "MulticastGroupChannel");
+        }
+
+        JmDNSImpl getDns() {
+            return _dns;
+        }
+
+        NetworkInterface getInterface() {
+            return _interface;
+        }
+
+        boolean owns(InetAddress source) {
+            return (_address != null) && this.sameScope(source) && sameSubnet(_address.getAddress(), source, _address.getNetworkPrefixLength());
+        }
+
+        boolean isOnLink(InetAddress source) {
+            if (isScoped(source)) {
+                return this.sameScope(source);
+            }
+            for (InterfaceAddress link : _links) {
+                if (sameSubnet(link.getAddress(), source, link.getNetworkPrefixLength())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean sameScope(InetAddress source) {
+            return !isScoped(source) || (((Inet6Address) source).getScopeId() == _interface.getIndex());
+        }
+
+        private static boolean isScoped(InetAddress source) {
+            return (source instanceof Inet6Address) && (((Inet6Address) source).getScopeId() != 0);
+        }
+
+        void process(DatagramPacket packet) {
+            if (!_dns.isCanceling() && !_dns.isCanceled() && !_dns.isClosing() && !_dns.isClosed()) {
+                _listener.process(packet);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _dns.getName() + "@" + _interface.getName();
+        }
+
+    }
+
+}
@@ -0,0 +1,247 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+
+import javax.jmdns.impl.constants.DNSConstants;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport over the network interface of the instance: a multicast socket bound to the mDNS port, or a channel when
+ * {@link DNSConstants#CHANNEL_RECEIVE} is set.
+ */
+class NetworkTransport implements Transport {
+    private static Logger            logger = LoggerFactory.getLogger(NetworkTransport.class);
+
+    private JmDNSImpl                _dns;
+
+    private volatile InetAddress     _group;
+
+    /**
+     * This is our multicast socket.
+     */
+    private volatile MulticastSocket _socket;
+
+    /**
+     * This is our multicast channel, used instead of the socket when receiving with a channel.
+     *
+     * @see DNSConstants#CHANNEL_RECEIVE
+     */
+    private volatile DatagramChannel _channel;
+
+    /**
+     * Membership of the channel in the multicast group.
+     */
+    private volatile MembershipKey   _membershipKey;
+
+    private Thread                   _incomingListener;
+
+    NetworkTransport() {
+        super();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open(JmDNSImpl dns) throws IOException {
+        _dns = dns;
+        final HostInfo hostInfo = dns.getLocalHost();
+        if (_group == null) {
+            if (hostInfo.getInetAddress() instanceof Inet6Address) {
+                _group = InetAddress.getByName(DNSConstants.MDNS_GROUP_IPV6);
+            } else {
+                _group = InetAddress.getByName(DNSConstants.MDNS_GROUP);
+            }
+        }
+        if ((_socket != null) || (_channel != null)) {
+            this.close();
+        }
+        if (DNSConstants.CHANNEL_RECEIVE && this.openChannel(hostInfo)) {
+            return;
+        }
+        // SocketAddress address = new InetSocketAddress((hostInfo != null ? hostInfo.getInetAddress() : null), DNSConstants.MDNS_PORT);
+        // System.out.println("Socket Address: " + address);
+        // try {
+        // _socket = new MulticastSocket(address);
+        // } catch (Exception exception) {
+        // logger.warn("openMulticastSocket() Open socket exception Address: " + address + ", ", exception);
+        // // The most likely cause is a duplicate address lets open without specifying the address
+        // _socket = new MulticastSocket(DNSConstants.MDNS_PORT);
+        // }
+        _socket = new MulticastSocket(DNSConstants.MDNS_PORT);
+        if ((hostInfo != null) && (hostInfo.getInterface() != null)) {
+            final SocketAddress multicastAddr = new InetSocketAddress(_group, DNSConstants.MDNS_PORT);
+            _socket.setNetworkInterface(hostInfo.getInterface());
+
+            logger.trace("Trying to joinGroup({}, {})", multicastAddr, hostInfo.getInterface());
+
+            // this joinGroup() might be less surprisingly so this is the default
+            _socket.joinGroup(multicastAddr, hostInfo.getInterface());
+        } else {
+            logger.trace("Trying to joinGroup({})", _group);
+            _socket.joinGroup(_group);
+        }
+
+        _socket.setTimeToLive(255);
+    }
+
+    /**
+     * Opens a channel bound to the mDNS port and joins the multicast group on the interface of the host.
+     *
+     * @param hostInfo
+     * @return <code>false</code> if the channel could not be set up, in which case the multicast socket should be used
+     */
+    private boolean openChannel(HostInfo hostInfo) {
+        DatagramChannel channel = null;
+        try {
+            NetworkInterface networkInterface = (hostInfo != null ? hostInfo.getInterface() : null);
+            if ((networkInterface == null) && (hostInfo != null) && (hostInfo.getInetAddress() != null)) {
+                networkInterface = NetworkInterface.getByInetAddress(hostInfo.getInetAddress());
+            }
+            if (networkInterface == null) {
+                logger.warn("openChannel() no network interface to join the group on, using a multicast socket");
+                return false;
+            }
+            channel = DatagramChannel.open(_group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+            channel.bind(new InetSocketAddress(DNSConstants.MDNS_PORT));
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, Integer.valueOf(255));
+
+            logger.trace("Trying to join({}, {})", _group, networkInterface);
+            _membershipKey = channel.join(_group, networkInterface);
+            _channel = channel;
+            return true;
+        } catch (IOException exception) {
+            logger.warn("openChannel() Open channel exception, using a multicast socket ", exception);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Ignored
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InetAddress getGroup() {
+        return _group;
+    }
+
+    /**
+     * @return multicast socket, <code>null</code> when receiving with a channel or closed
+     */
+    MulticastSocket getSocket() {
+        return _socket;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() {
+        if (_incomingListener == null) {
+            final DatagramChannel channel = _channel;
+            _incomingListener = (channel != null ? new ChannelSocketListener(_dns, channel, DNSConstants.RECEIVE_BUFFER_COUNT, DNSConstants.RECEIVE_DECODER_THREADS, DNSConstants.RECEIVE_QUEUE_SIZE) : new SocketListener(_dns));
+            _incomingListener.start();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(ByteBuffer message, InetSocketAddress target) throws IOException {
+        final DatagramChannel channel = _channel;
+        final MulticastSocket ms = _socket;
+        if (channel != null) {
+            if (channel.isOpen()) {
+                channel.send(message, target);
+            }
+        } else if (ms != null && !ms.isClosed()) {
+            ms.send(new DatagramPacket(message.array(), message.arrayOffset() + message.position(), message.remaining(), target));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        final DatagramChannel channel = _channel;
+        final MulticastSocket ms = _socket;
+        return (channel != null ? channel.isOpen() : (ms != null) && !ms.isClosed());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if ((_socket != null) || (_channel != null)) {
+            // close socket
+            try {
+                if (_channel != null) {
+                    if (_membershipKey != null) {
+                        _membershipKey.drop();
+                    }
+                    _channel.close();
+                } else {
+                    try {
+                        _socket.leaveGroup(_group);
+                    } catch (SocketException exception) {
+                        //
+                    }
+                    _socket.close();
+                }
+                // jP: 20010-01-18. It isn't safe to join() on the listener
+                // thread - it attempts to lock the IoLock object, and deadlock
+                // ensues. Per issue #2933183, changed this to wait on the JmDNS
+                // monitor, checking on each notify (or timeout) that the
+                // listener thread has stopped.
+                //
+                while (_incomingListener != null && _incomingListener.isAlive()) {
+                    synchronized (_dns) {
+                        try {
+                            if (_incomingListener != null && _incomingListener.isAlive()) {
+                                // wait time is arbitrary, we're really expecting notification.
+                                logger.debug("close(): waiting for jmDNS monitor");
+                                _dns.wait(1000);
+                            }
+                        } catch (InterruptedException ignored) {
+                            // Ignored
+                        }
+                    }
+                }
+                _incomingListener = null;
+            } catch (final Exception exception) {
+                logger.warn("close() Close socket exception ", exception);
+            }
+            _socket = null;
+            _channel = null;
+            _membershipKey = null;
+        }
+    }
+
+}
@@ -0,0 +1,346 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jmdns.impl.util.NamedThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of outgoing messages written by one writer thread shared by all the queues.<br/>
+ * The writer waits for a short window after the first queued message. Responses queued during the window that go to the same destination with the same
+ * flags are aggregated, as allowed by RFC 6762 section 6, into as few packets as fit. Queries and responses carrying questions or authorities are sent as
+ * they are, in queue order.<br/>
+ * A message the writer fails to send is reported to the recovery, as a failed send used to be reported by the task sending it.
+ */
+class OutgoingQueue implements Runnable {
+    private static Logger logger = LoggerFactory.getLogger(OutgoingQueue.class);
+
+    /**
+     * Writes single messages to the network.
+     */
+    interface Sender {
+
+        /**
+         * Sends the message and releases its buffer.
+         *
+         * @param out
+         *            message to send
+         * @exception IOException
+         */
+        void send(DNSOutgoing out) throws IOException;
+
+    }
+
+    /**
+     * Writer flushing the queues of all the JmDNS instances once their window has passed.
+     */
+    private static final class Writer {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("JmDNS.Writer", true));
+
+    }
+
+    private final String                     _name;
+
+    private final DNSOutgoing.BufferPool     _bufferPool;
+
+    private final long                       _window;
+
+    private final Sender                     _sender;
+
+    private final Runnable                   _recovery;
+
+    private final BlockingQueue<DNSOutgoing> _queue     = new LinkedBlockingQueue<DNSOutgoing>();
+
+    private final AtomicLong                 _messages  = new AtomicLong();
+
+    private final AtomicLong                 _packets   = new AtomicLong();
+
+    private final AtomicLong                 _flushes   = new AtomicLong();
+
+    private final AtomicBoolean              _pending   = new AtomicBoolean();
+
+    private final ReentrantLock              _flushLock = new ReentrantLock();
+
+    private volatile int                     _lastFlushPackets;
+
+    private volatile boolean                 _started;
+
+    /**
+     * @param name
+     *            name of the JmDNS instance, used for logging
+     * @param bufferPool
+     *            pool the aggregated messages are encoded into
+     * @param window
+     *            aggregation window in milliseconds
+     * @param sender
+     *            sends the messages
+     * @param recovery
+     *            called when the writer fails to send a message
+     */
+    OutgoingQueue(String name, DNSOutgoing.BufferPool bufferPool, long window, Sender sender, Runnable recovery) {
+        super();
+        _name = name;
+        _bufferPool = bufferPool;
+        _window = window;
+        _sender = sender;
+        _recovery = recovery;
+    }
+
+    /**
+     * Starts handing the queued messages to the writer.
+     */
+    void start() {
+        _started = true;
+    }
+
+    /**
+     * Sends everything queued so far and stops handing messages to the writer. Until the queue is started again messages have to be sent directly.
+     *
+     * @param timeout
+     *            maximum time to wait for a flush in progress in milliseconds
+     */
+    void stop(long timeout) {
+        _started = false;
+        this.drain(timeout);
+    }
+
+    /**
+     * Queues a message for the writer.
+     *
+     * @param out
+     *            message to send
+     * @return <code>false</code> if the writer is not running, in which case the message was not queued
+     */
+    boolean offer(DNSOutgoing out) {
+        if (!_started) {
+            return false;
+        }
+        _messages.incrementAndGet();
+        _queue.add(out);
+        // The first message of a window schedules its flush
+        if (_pending.compareAndSet(false, true)) {
+            Writer.INSTANCE.schedule(this, _window, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        // Messages queued from now on schedule the next window
+        _pending.set(false);
+        this.drain(0);
+    }
+
+    /**
+     * Flushes the queued messages, one flush at a time.
+     *
+     * @param timeout
+     *            maximum time to wait for a flush in progress in milliseconds, 0 to wait as long as it takes
+     */
+    private void drain(long timeout) {
+        if (timeout > 0) {
+            try {
+                if (!_flushLock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("{}.drain() timed out waiting for the writer", _name);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        } else {
+            _flushLock.lock();
+        }
+        try {
+            final List<DNSOutgoing> batch = new ArrayList<DNSOutgoing>();
+            _queue.drainTo(batch);
+            this.flush(batch);
+        } finally {
+            _flushLock.unlock();
+        }
+    }
+
+    /**
+     * Aggregates and sends a batch of messages.
+     *
+     * @param batch
+     *            messages in queue order
+     */
+    void flush(List<DNSOutgoing> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int packets = 0;
+        final Map<String, Aggregate> aggregates = new LinkedHashMap<String, Aggregate>();
+        for (DNSOutgoing out : batch) {
+            if (out.isResponse() && (out.getNumberOfQuestions() == 0) && (out.getNumberOfAuthorities() == 0)) {
+                final String key = (out.getDestination() != null ? out.getDestination().toString() : "") + "|" + out.getFlags() + "|" + (out.isMulticast() ? 0 : out.getId()) + "|" + out.getMaxUDPPayload();
+                Aggregate aggregate = aggregates.get(key);
+                if (aggregate == null) {
+                    aggregate = new Aggregate();
+                    aggregates.put(key, aggregate);
+                }
+                aggregate.add(out);
+            } else {
+                packets += this.send(out);
+            }
+        }
+        for (Aggregate aggregate : aggregates.values()) {
+            packets += aggregate.send();
+        }
+        _flushes.incrementAndGet();
+        _packets.addAndGet(packets);
+        _lastFlushPackets = packets;
+    }
+
+    private int send(DNSOutgoing out) {
+        try {
+            _sender.send(out);
+            return 1;
+        } catch (IOException e) {
+            logger.warn("{}.send() exception ", _name, e);
+            _recovery.run();
+            return 0;
+        }
+    }
+
+    /**
+     * @return number of messages waiting for the writer
+     */
+    int getQueueDepth() {
+        return _queue.size();
+    }
+
+    /**
+     * @return number of messages queued since the creation of the queue
+     */
+    long getMessageCount() {
+        return _messages.get();
+    }
+
+    /**
+     * @return number of packets sent by the writer
+     */
+    long getPacketCount() {
+        return _packets.get();
+    }
+
+    /**
+     * @return number of batches flushed by the writer
+     */
+    long getFlushCount() {
+        return _flushes.get();
+    }
+
+    /**
+     * @return number of packets sent by the last flush
+     */
+    int getLastFlushPacketCount() {
+        return _lastFlushPackets;
+    }
+
+    /**
+     * @return average number of packets per flush
+     */
+    double getPacketsPerFlush() {
+        final long flushes = _flushes.get();
+        return (flushes > 0 ? (double) _packets.get() / flushes : 0);
+    }
+
+    /**
+     * Responses queued for the same destination and flags.<br/>
+     * A record queued again replaces the earlier copy, whose TTL may differ since records are equal regardless of their TTL, so a goodbye followed by an
+     * announcement of the same record sends the announcement and the other way around.
+     */
+    private final class Aggregate {
+
+        private final List<DNSOutgoing>         _sources     = new ArrayList<DNSOutgoing>();
+
+        private final Map<DNSRecord, DNSRecord> _answers     = new LinkedHashMap<DNSRecord, DNSRecord>();
+
+        private final Map<DNSRecord, DNSRecord> _additionals = new LinkedHashMap<DNSRecord, DNSRecord>();
+
+        Aggregate() {
+            super();
+        }
+
+        void add(DNSOutgoing out) {
+            _sources.add(out);
+            for (DNSRecord answer : out.getAnswers()) {
+                _answers.put(answer, answer);
+            }
+            for (DNSRecord additional : out.getAdditionals()) {
+                _additionals.put(additional, additional);
+            }
+        }
+
+        /**
+         * @return number of packets sent
+         */
+        int send() {
+            if (_sources.size() == 1) {
+                return OutgoingQueue.this.send(_sources.get(0));
+            }
+            int packets = 0;
+            try {
+                DNSOutgoing message = this.newMessage();
+                for (DNSRecord answer : _answers.values()) {
+                    try {
+                        message.addAnswer(answer, 0);
+                    } catch (final IOException e) {
+                        packets += OutgoingQueue.this.send(message);
+                        message = this.newMessage();
+                        message.addAnswer(answer, 0);
+                    }
+                }
+                for (DNSRecord additional : _additionals.values()) {
+                    if (_answers.containsKey(additional)) {
+                        continue;
+                    }
+                    try {
+                        message.addAdditionalAnswer(null, additional);
+                    } catch (final IOException e) {
+                        packets += OutgoingQueue.this.send(message);
+                        message = this.newMessage();
+                        message.addAdditionalAnswer(null, additional);
+                    }
+                }
+                if (!message.isEmpty()) {
+                    packets += OutgoingQueue.this.send(message);
+                }
+            } catch (final IOException e) {
+                logger.warn("{}.send() record does not fit in a message ", _name, e);
+            } finally {
+                for (DNSOutgoing source : _sources) {
+                    source.release();
+                }
+            }
+            return packets;
+        }
+
+        private DNSOutgoing newMessage() {
+            final DNSOutgoing template = _sources.get(0);
+            final DNSOutgoing message = new DNSOutgoing(template.getFlags(), template.isMulticast(), template.getMaxUDPPayload(), _bufferPool);
+            message.setId(template.getId());
+            message.setDestination(template.getDestination());
+            return message;
+        }
+
+    }
+
+}
@@ -0,0 +1,243 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceEventFlow;
+import javax.jmdns.ServiceEventFlow.Overflow;
+import javax.jmdns.ServiceListener;
+
+/**
+ * Publishes the service events of a type to demand driven subscribers.<br/>
+ * Each subscription listens to the type like a {@link ServiceListener}, so the events go through the usual {@link ListenerStatus} collapsing, then waits in a
+ * {@link ListenerMailbox} until the subscriber requests them. Posting to the mailbox never blocks, a slow subscriber only fills its own mailbox.<br/>
+ * The source only holds on to the publisher while it has subscriptions, so publishers nobody subscribes to any more can be collected.
+ */
+class ServiceEventPublisher implements ServiceEventFlow.Publisher {
+
+    /**
+     * Where the subscriptions listen for events.
+     */
+    interface Source {
+
+        /**
+         * Starts delivering the events of the type to the listener.
+         *
+         * @param type
+         *            service type
+         * @param listener
+         *            listener
+         */
+        void addServiceListener(String type, ServiceListener listener);
+
+        /**
+         * Stops delivering the events of the type to the listener.
+         *
+         * @param type
+         *            service type
+         * @param listener
+         *            listener
+         */
+        void removeServiceListener(String type, ServiceListener listener);
+
+        /**
+         * Keeps the publisher, which got its first subscription, to complete it on close.
+         *
+         * @param publisher
+         *            publisher
+         */
+        void addPublisher(ServiceEventPublisher publisher);
+
+        /**
+         * Forgets the publisher, whose last subscription ended.
+         *
+         * @param publisher
+         *            publisher
+         */
+        void removePublisher(ServiceEventPublisher publisher);
+
+    }
+
+    private final Source                  _source;
+
+    private final String                  _type;
+
+    private final Executor                _executor;
+
+    private final Overflow                _overflow;
+
+    private final int                     _capacity;
+
+    private final Set<SubscriptionImpl>   _subscriptions;
+
+    /**
+     * @param source
+     *            where the subscriptions listen for events
+     * @param type
+     *            service type
+     * @param executor
+     *            worker pool delivering the events
+     * @param overflow
+     *            overflow policy of the subscriptions
+     * @param capacity
+     *            number of events a subscription holds for its subscriber
+     */
+    ServiceEventPublisher(Source source, String type, Executor executor, Overflow overflow, int capacity) {
+        super();
+        _source = source;
+        _type = type;
+        _executor = executor;
+        _overflow = overflow;
+        _capacity = capacity;
+        _subscriptions = ConcurrentHashMap.newKeySet();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.ServiceEventFlow.Publisher#subscribe(javax.jmdns.ServiceEventFlow.Subscriber)
+     */
+    @Override
+    public void subscribe(ServiceEventFlow.Subscriber subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        final SubscriptionImpl subscription = new SubscriptionImpl(subscriber);
+        synchronized (this) {
+            if (_subscriptions.isEmpty()) {
+                _source.addPublisher(this);
+            }
+            _subscriptions.add(subscription);
+        }
+        // The cached services are replayed right away, they wait in the mailbox for the first request
+        _source.addServiceListener(_type, subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Completes all the subscriptions, when the source closes.
+     */
+    void complete() {
+        for (SubscriptionImpl subscription : _subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * @return number of active subscriptions
+     */
+    int getSubscriptionCount() {
+        return _subscriptions.size();
+    }
+
+    private final class SubscriptionImpl implements ServiceEventFlow.Subscription, ServiceListener, ListenerMailbox.Recipient {
+
+        private final ServiceEventFlow.Subscriber _subscriber;
+
+        private final ListenerMailbox             _mailbox;
+
+        SubscriptionImpl(ServiceEventFlow.Subscriber subscriber) {
+            super();
+            _subscriber = subscriber;
+            _mailbox = new ListenerMailbox(this, _executor, _capacity, _overflow);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.fail(new IllegalArgumentException("Non positive request: " + n));
+            } else {
+                _mailbox.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            this.terminate(new Runnable() {
+                @Override
+                public void run() {
+                    // Nothing to tell the subscriber
+                }
+            });
+        }
+
+        void complete() {
+            this.terminate(new Runnable() {
+                @Override
+                public void run() {
+                    _subscriber.onComplete();
+                }
+            });
+        }
+
+        private void fail(final Throwable throwable) {
+            this.terminate(new Runnable() {
+                @Override
+                public void run() {
+                    _subscriber.onError(throwable);
+                }
+            });
+        }
+
+        private void terminate(Runnable terminal) {
+            final boolean removed;
+            synchronized (ServiceEventPublisher.this) {
+                removed = _subscriptions.remove(this);
+                if (removed && _subscriptions.isEmpty()) {
+                    _source.removePublisher(ServiceEventPublisher.this);
+                }
+            }
+            if (removed) {
+                _source.removeServiceListener(_type, this);
+                _mailbox.terminate(terminal);
+            }
+        }
+
+        private void post(ListenerMailbox.Kind kind, ServiceEvent event) {
+            if (!_mailbox.post(event.getName() + "." + event.getType(), kind, event) && (_overflow == Overflow.BUFFER)) {
+                this.fail(new IllegalStateException("Subscriber fell behind by more than " + _capacity + " events of " + _type));
+            }
+        }
+
+        @Override
+        public void serviceAdded(ServiceEvent event) {
+            this.post(ListenerMailbox.Kind.ADDED, event);
+        }
+
+        @Override
+        public void serviceRemoved(ServiceEvent event) {
+            this.post(ListenerMailbox.Kind.REMOVED, event);
+        }
+
+        @Override
+        public void serviceResolved(ServiceEvent event) {
+            this.post(ListenerMailbox.Kind.RESOLVED, event);
+        }
+
+        @Override
+        public void deliver(ListenerMailbox.Kind kind, ServiceEvent event) {
+            switch (kind) {
+                case ADDED:
+                    _subscriber.onNext(ServiceEventFlow.Kind.ADDED, event);
+                    break;
+                case REMOVED:
+                    _subscriber.onNext(ServiceEventFlow.Kind.REMOVED, event);
+                    break;
+                case RESOLVED:
+                    _subscriber.onNext(ServiceEventFlow.Kind.RESOLVED, event);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "[Subscription to " + _type + " " + _mailbox + "]";
+        }
+
+    }
+
+}
@@ -21,6 +21,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,7 @@ import javax.jmdns.ServiceInfo;
 import javax.jmdns.impl.DNSRecord.Pointer;
 import javax.jmdns.impl.DNSRecord.Service;
 import javax.jmdns.impl.DNSRecord.Text;
+import javax.jmdns.impl.constants.DNSConstants;
 import javax.jmdns.impl.constants.DNSRecordClass;
 import javax.jmdns.impl.constants.DNSRecordType;
 import javax.jmdns.impl.constants.DNSState;
@@ -68,6 +71,16 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
 
     private Delegate                _delegate;
 
+    /**
+     * Answers built for the last host name the service was announced with, dropped when the service changes.
+     */
+    private volatile AnswerSet      _answerSet;
+
+    /**
+     * Pending future of {@link #whenResolved()}, completed once the service has data.
+     */
+    private final AtomicReference<CompletableFuture<ServiceInfo>> _resolved;
+
     public static interface Delegate {
 
         public void textValueUpdated(ServiceInfo target, byte[] value);
@@ -76,8 +89,6 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
 
     private final static class ServiceInfoState extends DNSStatefulObject.DefaultImplementation {
 
-        private static final long     serialVersionUID = 1104131034952196820L;
-
         private final ServiceInfoImpl _info;
 
         /**
@@ -89,23 +100,13 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
         }
 
         @Override
-        protected void setTask(DNSTask task) {
-            super.setTask(task);
-            if ((this._task == null) && _info.needTextAnnouncing()) {
-                this.lock();
-                try {
-                    if ((this._task == null) && _info.needTextAnnouncing()) {
-                        if (this._state.isAnnounced()) {
-                            this.setState(DNSState.ANNOUNCING_1);
-                            if (this.getDns() != null) {
-                                this.getDns().startAnnouncer();
-                            }
-                        }
-                        _info.setNeedTextAnnouncing(false);
-                    }
-                } finally {
-                    this.unlock();
+        protected void taskReleased() {
+            if (_info.needTextAnnouncing()) {
+                // Only one of the threads releasing a task wins the state change
+                if (this.compareAndSetState(DNSState.ANNOUNCED, DNSState.ANNOUNCING_1) && (this.getDns() != null)) {
+                    this.getDns().startAnnouncer();
                 }
+                _info.setNeedTextAnnouncing(false);
             }
         }
 
@@ -200,6 +201,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
         this._text = text;
         this.setNeedTextAnnouncing(false);
         this._state = new ServiceInfoState(this);
+        this._resolved = new AtomicReference<CompletableFuture<ServiceInfo>>();
         this._persistent = persistent;
         this._ipv4Addresses = Collections.synchronizedSet(new LinkedHashSet<Inet4Address>());
         this._ipv6Addresses = Collections.synchronizedSet(new LinkedHashSet<Inet6Address>());
@@ -234,6 +236,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
             }
         }
         this._state = new ServiceInfoState(this);
+        this._resolved = new AtomicReference<CompletableFuture<ServiceInfo>>();
     }
 
     static Map<Fields, String> createQualifiedMap(String instance, String application, String protocol, String domain, String subtype) {
@@ -354,6 +357,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
     void setName(String name) {
         this._name = name;
         this._key = null;
+        this._answerSet = null;
     }
 
     /**
@@ -768,12 +772,24 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
                 synchronized (this) {
                     this.notifyAll();
                 }
+                this.completeResolved();
             } else {
                 logger.debug("JmDNS not available.");
             }
         }
     }
 
+    /**
+     * Service infos listen to the SRV, TXT and PTR records of their qualified name and to the address records of their server.
+     *
+     * @see javax.jmdns.impl.DNSListener#getRecordNames()
+     */
+    @Override
+    public Collection<String> getRecordNames() {
+        final String server = _server;
+        return (server != null ? Arrays.asList(this.getQualifiedName(), server) : Collections.singletonList(this.getQualifiedName()));
+    }
+
     /**
      * Handles expired records insofar that it removes their content from this service.
      *
@@ -932,6 +948,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
      */
     @Override
     public boolean revertState() {
+        _answerSet = null;
         return _state.revertState();
     }
 
@@ -940,6 +957,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
      */
     @Override
     public boolean cancelState() {
+        _answerSet = null;
         return _state.cancelState();
     }
 
@@ -956,6 +974,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
      */
     @Override
     public boolean recoverState() {
+        _answerSet = null;
         return this._state.recoverState();
     }
 
@@ -975,6 +994,14 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
         _state.associateWithTask(task, state);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DNSState getState() {
+        return _state.getState();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1055,6 +1082,47 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
         return _state.waitForCanceled(timeout);
     }
 
+    /**
+     * Non blocking counterpart of waiting on the service info for its data.
+     *
+     * @return a future completed with this service info once it has data
+     */
+    CompletableFuture<ServiceInfo> whenResolved() {
+        CompletableFuture<ServiceInfo> future = _resolved.get();
+        while (future == null) {
+            _resolved.compareAndSet(null, new CompletableFuture<ServiceInfo>());
+            future = _resolved.get();
+        }
+        // The data may have arrived before the future was published
+        this.completeResolved();
+        return future;
+    }
+
+    private void completeResolved() {
+        if ((_resolved.get() != null) && this.hasData()) {
+            final CompletableFuture<ServiceInfo> future = _resolved.getAndSet(null);
+            if (future != null) {
+                future.complete(this);
+            }
+        }
+    }
+
+    /**
+     * @return a future completed once the service is announced
+     * @see DNSStatefulObject.DefaultImplementation#whenAnnounced()
+     */
+    CompletableFuture<Void> whenAnnounced() {
+        return _state.whenAnnounced();
+    }
+
+    /**
+     * @return a future completed once the service is canceled
+     * @see DNSStatefulObject.DefaultImplementation#whenCanceled()
+     */
+    CompletableFuture<Void> whenCanceled() {
+        return _state.whenCanceled();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1184,6 +1252,27 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
         return list;
     }
 
+    /**
+     * Returns the records of {@link #answers(DNSRecordClass, boolean, int, HostInfo)} for responses, built and encoded once. The set is rebuilt when the host
+     * name changes and dropped when the text or name changes, or when the service is re-announced or unregistered.
+     *
+     * @param localHost
+     *            local host
+     * @return the answer set
+     */
+    AnswerSet getAnswerSet(HostInfo localHost) {
+        AnswerSet answerSet = _answerSet;
+        if ((answerSet == null) || !answerSet.getHostName().equals(localHost.getName())) {
+            final List<String> names = new ArrayList<String>(3);
+            names.add(this.getQualifiedName());
+            names.add(this.getType());
+            names.add(this.getTypeWithSubtype());
+            answerSet = new AnswerSet(names, this.answers(DNSRecordClass.CLASS_IN, DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL, localHost), localHost.getName());
+            _answerSet = answerSet;
+        }
+        return answerSet;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1192,6 +1281,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
         synchronized (this) {
             this._text = text;
             this._props = null;
+            this._answerSet = null;
             this.setNeedTextAnnouncing(true);
         }
     }
@@ -1212,6 +1302,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
     void _setText(byte[] text) {
         this._text = text;
         this._props = null;
+        this._answerSet = null;
     }
 
     public void setDns(JmDNSImpl dns) {
@@ -1241,7 +1332,7 @@ public class ServiceInfoImpl extends ServiceInfo implements DNSListener, DNSStat
     public void setNeedTextAnnouncing(boolean needTextAnnouncing) {
         this._needTextAnnouncing = needTextAnnouncing;
         if (this._needTextAnnouncing) {
-            _state.setTask(null);
+            _state.releaseTask();
         }
     }
 
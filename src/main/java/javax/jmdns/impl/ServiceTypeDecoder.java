@@ -1,17 +1,77 @@
 package javax.jmdns.impl;
 
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static javax.jmdns.ServiceInfo.Fields;
 
+/**
+ * Splits qualified names into their {@link Fields}.<br/>
+ * Names are decoded by a single pass label scanner. As the same few hundred names keep coming back from the network the results are kept in a bounded,
+ * direct mapped cache, so decoding a known name does not allocate.
+ */
 class ServiceTypeDecoder {
 
-    private static final Pattern SUBTYPE_PATTERN = Pattern.compile("^((.*)\\._)?_?(.*)\\._sub\\._([^.]*)\\._([^.]*)\\.(.*)\\.?$", Pattern.CASE_INSENSITIVE);
-    private static final Pattern PATTERN = Pattern.compile("^((.*)?\\._)?([^.]*)\\._([^.]*)\\.(.*)\\.?$");
+    /**
+     * Number of cached names, must be a power of two.
+     */
+    private static final int           CACHE_SIZE = 1024;
 
-    private static final Pattern TYPE_A_PATTERN = Pattern.compile("^([^.]*)\\.(.*)\\.?$");
+    private static final String        SUBTYPE_SEPARATOR = "._sub._";
+
+    /**
+     * Cached results. Entries are immutable so reading and replacing them without synchronization is safe, a race merely decodes a name twice.
+     */
+    private static final DecodedName[] _cache     = new DecodedName[CACHE_SIZE];
+
+    /**
+     * Result of decoding a qualified name, shared by all the entries with the same name.
+     */
+    static final class DecodedName {
+
+        private final String              _name;
+
+        private final Map<Fields, String> _qualifiedNameMap;
+
+        private final String              _type;
+
+        private final String              _key;
+
+        DecodedName(String name, Map<Fields, String> qualifiedNameMap) {
+            super();
+            _name = name;
+            _qualifiedNameMap = Collections.unmodifiableMap(qualifiedNameMap);
+            String domain = qualifiedNameMap.get(Fields.Domain);
+            String protocol = qualifiedNameMap.get(Fields.Protocol);
+            String application = qualifiedNameMap.get(Fields.Application);
+            String instance = qualifiedNameMap.get(Fields.Instance).toLowerCase();
+            _type = buildType(application, protocol, domain);
+            _key = ((instance.length() > 0 ? instance + "." : "") + _type).toLowerCase();
+        }
+
+        /**
+         * @return unmodifiable qualified name map
+         */
+        Map<Fields, String> getQualifiedNameMap() {
+            return _qualifiedNameMap;
+        }
+
+        /**
+         * @return service type, i.e. the name without instance and subtype
+         */
+        String getType() {
+            return _type;
+        }
+
+        /**
+         * @return lower case name without subtype
+         */
+        String getKey() {
+            return _key;
+        }
+
+    }
 
     private ServiceTypeDecoder() {
     }
@@ -25,44 +85,97 @@ class ServiceTypeDecoder {
         return ServiceInfoImpl.checkQualifiedNameMap(qualifiedNameMap);
     }
 
+    /**
+     * Decodes a qualified name into a new modifiable map.
+     *
+     * @param type
+     *            qualified name
+     * @return qualified name map
+     */
     static Map<Fields, String> decodeQualifiedNameMapForType(String type) {
-        int index;
+        return new EnumMap<Fields, String>(decode(type).getQualifiedNameMap());
+    }
 
-        String casePreservedType = type;
+    /**
+     * Decodes a qualified name, reusing the cached result if the name was seen recently.
+     *
+     * @param name
+     *            qualified name
+     * @return decoded name
+     */
+    static DecodedName decode(String name) {
+        final int hash = name.hashCode();
+        final int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        DecodedName decoded = _cache[slot];
+        if ((decoded == null) || !decoded._name.equals(name)) {
+            decoded = new DecodedName(name, scan(name));
+            _cache[slot] = decoded;
+        }
+        return decoded;
+    }
 
-        String aType = type.toLowerCase();
-        String application = aType;
+    /**
+     * Splits the name into <code>[instance._][_]subtype._sub._application._protocol.domain</code>, <code>[instance._]application._protocol.domain</code> or
+     * <code>instance.domain</code>. The instance is the longest prefix leaving a valid remainder, application and protocol are single labels.
+     */
+    private static Map<Fields, String> scan(String type) {
+        String application = "";
         String protocol = "";
         String subtype = "";
         String name = "";
         String domain = "";
 
-        if (aType.contains("in-addr.arpa") || aType.contains("ip6.arpa")) {
-            index = (aType.contains("in-addr.arpa") ? aType.indexOf("in-addr.arpa") : aType.indexOf("ip6.arpa"));
-            name = ServiceInfoImpl.removeSeparators(casePreservedType.substring(0, index));
-            domain = casePreservedType.substring(index);
-            application = "";
+        int index = indexOfIgnoreCase(type, "in-addr.arpa");
+        if (index < 0) {
+            index = indexOfIgnoreCase(type, "ip6.arpa");
+        }
+        if (index >= 0) {
+            name = ServiceInfoImpl.removeSeparators(type.substring(0, index));
+            domain = type.substring(index);
         } else {
-            Matcher subType = SUBTYPE_PATTERN.matcher(casePreservedType);
-            if (subType.matches()) {
-                name = originalCase(casePreservedType, subType, 2);
-                subtype = originalCase(casePreservedType, subType, 3);
-                application = originalCase(casePreservedType, subType, 4);
-                protocol = originalCase(casePreservedType, subType, 5);
-                domain = originalCase(casePreservedType, subType, 6);
+            final int subtypeSeparator = lastSubtypeSeparator(type);
+            if (subtypeSeparator >= 0) {
+                final int applicationStart = subtypeSeparator + SUBTYPE_SEPARATOR.length();
+                final int applicationEnd = applicationEnd(type, applicationStart);
+                final int protocolEnd = type.indexOf('.', applicationEnd + 2);
+                final int nameEnd = type.lastIndexOf("._", subtypeSeparator - 2);
+                int subtypeStart = 0;
+                if (nameEnd >= 0) {
+                    name = type.substring(0, nameEnd);
+                    subtypeStart = nameEnd + 2;
+                }
+                if ((subtypeStart < subtypeSeparator) && (type.charAt(subtypeStart) == '_')) {
+                    subtypeStart++;
+                }
+                subtype = type.substring(subtypeStart, subtypeSeparator);
+                application = type.substring(applicationStart, applicationEnd);
+                protocol = type.substring(applicationEnd + 2, protocolEnd);
+                domain = type.substring(protocolEnd + 1);
             } else {
-                Matcher normalMatcher = PATTERN.matcher(casePreservedType);
-                if (normalMatcher.matches()) {
-                    name = originalCase(casePreservedType, normalMatcher, 2);
-                    application = originalCase(casePreservedType, normalMatcher, 3);
-                    protocol = originalCase(casePreservedType, normalMatcher, 4);
-                    domain = originalCase(casePreservedType, normalMatcher, 5);
+                int applicationStart = -1;
+                for (int nameEnd = type.lastIndexOf("._"); nameEnd >= 0; nameEnd = type.lastIndexOf("._", nameEnd - 1)) {
+                    if (applicationEnd(type, nameEnd + 2) >= 0) {
+                        name = type.substring(0, nameEnd);
+                        applicationStart = nameEnd + 2;
+                        break;
+                    }
+                }
+                if ((applicationStart < 0) && (applicationEnd(type, 0) >= 0)) {
+                    applicationStart = 0;
+                }
+                if (applicationStart >= 0) {
+                    final int applicationEnd = applicationEnd(type, applicationStart);
+                    final int protocolEnd = type.indexOf('.', applicationEnd + 2);
+                    application = type.substring(applicationStart, applicationEnd);
+                    protocol = type.substring(applicationEnd + 2, protocolEnd);
+                    domain = type.substring(protocolEnd + 1);
                 } else {
-                    Matcher aTypeMatcher = TYPE_A_PATTERN.matcher(casePreservedType);
-                    if (aTypeMatcher.matches()) {
-                        name = originalCase(casePreservedType, aTypeMatcher, 1);
-                        domain = originalCase(casePreservedType, aTypeMatcher, 2);
-                        application = "";
+                    final int nameEnd = type.indexOf('.');
+                    if (nameEnd >= 0) {
+                        name = type.substring(0, nameEnd);
+                        domain = type.substring(nameEnd + 1);
+                    } else {
+                        application = type.toLowerCase();
                     }
                 }
             }
@@ -71,11 +184,57 @@ class ServiceTypeDecoder {
         return ServiceInfoImpl.createQualifiedMap(name, ServiceInfoImpl.removeSeparators(application), protocol, ServiceInfoImpl.removeSeparators(domain), subtype);
     }
 
+    /**
+     * Checks that the name continues with <code>application._protocol.domain</code> at the given index.
+     *
+     * @return end of the application label, or -1 if the remainder does not match
+     */
+    private static int applicationEnd(String type, int start) {
+        final int applicationEnd = type.indexOf('.', start);
+        if ((applicationEnd < 0) || (applicationEnd + 1 >= type.length()) || (type.charAt(applicationEnd + 1) != '_')) {
+            return -1;
+        }
+        return (type.indexOf('.', applicationEnd + 2) >= 0 ? applicationEnd : -1);
+    }
+
+    /**
+     * @return the last <code>._sub._</code> separator followed by <code>application._protocol.domain</code>, or -1 if none
+     */
+    private static int lastSubtypeSeparator(String type) {
+        for (int index = type.length() - SUBTYPE_SEPARATOR.length(); index >= 0; index--) {
+            if (type.regionMatches(true, index, SUBTYPE_SEPARATOR, 0, SUBTYPE_SEPARATOR.length()) && (applicationEnd(type, index + SUBTYPE_SEPARATOR.length()) >= 0)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(String type, String part) {
+        for (int index = 0; index <= type.length() - part.length(); index++) {
+            if (type.regionMatches(true, index, part, 0, part.length())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static String buildType(String application, String protocol, String domain) {
+        if (application == null) {
+            application = "";
+        }
+
+        if (protocol == null) {
+            protocol = "";
+        }
+
+        if (domain == null) {
+            domain = "";
+        }
 
-    private static String originalCase(String casePreservedType, Matcher matcher, int group) {
-        if (matcher.start(group) != -1) {
-            return casePreservedType.substring(matcher.start(group), matcher.end(group));
+        String type = (!application.isEmpty() ? "_" + application + "." : "") + (!protocol.isEmpty() ? "_" + protocol + "." : "") + (!domain.isEmpty() ? domain + "." : "");
+        if (!type.endsWith(".")) {
+            type += ".";
         }
-        return "";
+        return type;
     }
 }
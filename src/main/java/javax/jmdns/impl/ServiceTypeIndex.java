@@ -0,0 +1,81 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registered services indexed on their lower case type and subtype.<br/>
+ * Browse queries name a type, the index hands out the services of the type instead of scanning all the registered services. Services keep their type when
+ * renamed, so the index only changes when services are registered or unregistered. Changes are serialized, lookups do not lock.
+ */
+final class ServiceTypeIndex {
+
+    private final ConcurrentMap<String, List<ServiceInfoImpl>> _byType;
+
+    ServiceTypeIndex() {
+        super();
+        _byType = new ConcurrentHashMap<String, List<ServiceInfoImpl>>();
+    }
+
+    /**
+     * Adds a service under its type, and its subtype if any.
+     *
+     * @param info
+     *            registered service
+     */
+    synchronized void add(ServiceInfoImpl info) {
+        this.add(info.getType().toLowerCase(), info);
+        if (info.getSubtype().length() > 0) {
+            this.add(info.getTypeWithSubtype().toLowerCase(), info);
+        }
+    }
+
+    private void add(String type, ServiceInfoImpl info) {
+        List<ServiceInfoImpl> services = _byType.get(type);
+        if (services == null) {
+            services = new CopyOnWriteArrayList<ServiceInfoImpl>();
+            _byType.put(type, services);
+        }
+        if (!services.contains(info)) {
+            services.add(info);
+        }
+    }
+
+    /**
+     * Removes a service.
+     *
+     * @param info
+     *            unregistered service
+     */
+    synchronized void remove(ServiceInfoImpl info) {
+        this.remove(info.getType().toLowerCase(), info);
+        if (info.getSubtype().length() > 0) {
+            this.remove(info.getTypeWithSubtype().toLowerCase(), info);
+        }
+    }
+
+    private void remove(String type, ServiceInfoImpl info) {
+        final List<ServiceInfoImpl> services = _byType.get(type);
+        if (services != null) {
+            services.remove(info);
+            if (services.isEmpty()) {
+                _byType.remove(type);
+            }
+        }
+    }
+
+    /**
+     * @param type
+     *            service type or subtype, in any case
+     * @return the services registered for the type, the list must not be modified
+     */
+    List<ServiceInfoImpl> servicesOfType(String type) {
+        final List<ServiceInfoImpl> services = _byType.get(type.toLowerCase());
+        return (services != null ? services : Collections.<ServiceInfoImpl> emptyList());
+    }
+
+}
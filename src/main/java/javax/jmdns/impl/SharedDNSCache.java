@@ -0,0 +1,237 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Cache shared by the JmDNS instances of a multihomed JmmDNS, each record is cached once whatever the number of interfaces it is seen on.<br/>
+ * The cache remembers on which interfaces each record was received. A goodbye or a cache flush received on one interface only drops the record once no other
+ * interface has it, and a record which expires is removed from every instance it was received by.
+ */
+class SharedDNSCache extends DNSCache {
+
+    private static final long                                           serialVersionUID = -3562401735613788451L;
+
+    /**
+     * Interfaces each cached record was received on.
+     */
+    private final transient ConcurrentMap<DNSEntry, Set<NetworkInterface>> _sources;
+
+    /**
+     * Record reapers of the instances sharing the cache.
+     */
+    private final transient Set<ExpiryListener>                         _expiryListeners;
+
+    /**
+     * Instances sharing the cache, by interface.
+     */
+    private final transient ConcurrentMap<NetworkInterface, JmDNSImpl>  _members;
+
+    /**
+     * @param initialCapacity
+     */
+    SharedDNSCache(int initialCapacity) {
+        super(initialCapacity);
+        _sources = new ConcurrentHashMap<DNSEntry, Set<NetworkInterface>>(initialCapacity);
+        _expiryListeners = new CopyOnWriteArraySet<ExpiryListener>();
+        _members = new ConcurrentHashMap<NetworkInterface, JmDNSImpl>();
+        super.setExpiryListener(new ExpiryListener() {
+            @Override
+            public void nextDeadlineChanged(long deadline) {
+                for (ExpiryListener listener : _expiryListeners) {
+                    listener.nextDeadlineChanged(deadline);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every instance sharing the cache has its record reaper, they are all notified. A due record is only handed to the first reaper polling it, which tells
+     * the {@link #getMembers(DNSEntry) instances the record was received by} of its expiry.
+     * </p>
+     */
+    @Override
+    public void setExpiryListener(ExpiryListener listener) {
+        if (listener != null) {
+            _expiryListeners.add(listener);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeExpiryListener(ExpiryListener listener) {
+        _expiryListeners.remove(listener);
+    }
+
+    /**
+     * Adds an instance sharing the cache.
+     *
+     * @param dns
+     *            instance
+     */
+    void addMember(JmDNSImpl dns) {
+        final NetworkInterface networkInterface = dns.getLocalHost().getInterface();
+        if (networkInterface != null) {
+            _members.put(networkInterface, dns);
+        }
+    }
+
+    /**
+     * Removes an instance which no longer shares the cache.
+     *
+     * @param dns
+     *            instance
+     */
+    void removeMember(JmDNSImpl dns) {
+        final NetworkInterface networkInterface = dns.getLocalHost().getInterface();
+        if (networkInterface != null) {
+            _members.remove(networkInterface, dns);
+        }
+    }
+
+    /**
+     * Returns the instances sharing the cache which received the entry.
+     *
+     * @param dnsEntry
+     *            cached entry
+     * @return instances, empty if the entry is not cached
+     */
+    Set<JmDNSImpl> getMembers(DNSEntry dnsEntry) {
+        final Set<NetworkInterface> sources = (dnsEntry != null ? _sources.get(dnsEntry) : null);
+        if (sources == null) {
+            return Collections.emptySet();
+        }
+        final Set<JmDNSImpl> members = new LinkedHashSet<JmDNSImpl>();
+        for (NetworkInterface networkInterface : sources) {
+            final JmDNSImpl dns = _members.get(networkInterface);
+            if (dns != null) {
+                members.add(dns);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Records that the entry was received on the interface.
+     *
+     * @param dnsEntry
+     *            cached entry
+     * @param networkInterface
+     *            receiving interface
+     * @return <code>true</code> if the entry had not been received on the interface yet
+     */
+    boolean addSource(DNSEntry dnsEntry, NetworkInterface networkInterface) {
+        if ((dnsEntry == null) || (networkInterface == null)) {
+            return false;
+        }
+        Set<NetworkInterface> sources = _sources.get(dnsEntry);
+        if (sources == null) {
+            final Set<NetworkInterface> newSources = new CopyOnWriteArraySet<NetworkInterface>();
+            sources = _sources.putIfAbsent(dnsEntry, newSources);
+            if (sources == null) {
+                sources = newSources;
+            }
+        }
+        return sources.add(networkInterface);
+    }
+
+    /**
+     * Records that the entry is no longer announced on the interface.
+     *
+     * @param dnsEntry
+     *            cached entry
+     * @param networkInterface
+     *            interface
+     * @return <code>true</code> if no other interface has the entry, so it can be dropped
+     */
+    boolean removeSource(DNSEntry dnsEntry, NetworkInterface networkInterface) {
+        if (dnsEntry == null) {
+            return true;
+        }
+        final Set<NetworkInterface> sources = _sources.get(dnsEntry);
+        if (sources == null) {
+            return true;
+        }
+        sources.remove(networkInterface);
+        if (sources.isEmpty()) {
+            _sources.remove(dnsEntry, sources);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the interfaces the entry was received on.
+     *
+     * @param dnsEntry
+     *            cached entry
+     * @return interfaces, empty if the entry is not cached
+     */
+    Set<NetworkInterface> getSources(DNSEntry dnsEntry) {
+        final Set<NetworkInterface> sources = (dnsEntry != null ? _sources.get(dnsEntry) : null);
+        return (sources != null ? Collections.unmodifiableSet(new HashSet<NetworkInterface>(sources)) : Collections.<NetworkInterface> emptySet());
+    }
+
+    /**
+     * Forgets everything received on the interface, the entries no other interface has are removed.
+     *
+     * @param networkInterface
+     *            interface
+     */
+    void clear(NetworkInterface networkInterface) {
+        for (Map.Entry<DNSEntry, Set<NetworkInterface>> entry : _sources.entrySet()) {
+            if (entry.getValue().contains(networkInterface) && this.removeSource(entry.getKey(), networkInterface)) {
+                this.removeDNSEntry(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeDNSEntry(DNSEntry dnsEntry) {
+        final boolean removed = super.removeDNSEntry(dnsEntry);
+        if (removed) {
+            _sources.remove(dnsEntry);
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The new entry has no source yet, the interfaces which had the replaced value have not announced the new one.
+     * </p>
+     */
+    @Override
+    public boolean replaceDNSEntry(DNSEntry newDNSEntry, DNSEntry existingDNSEntry) {
+        final boolean replaced = super.replaceDNSEntry(newDNSEntry, existingDNSEntry);
+        if (replaced) {
+            _sources.remove(existingDNSEntry);
+        }
+        return replaced;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        _sources.clear();
+    }
+
+}
@@ -7,6 +7,7 @@ package javax.jmdns.impl;
 import java.io.IOException;
 import java.net.DatagramPacket;
 
+import javax.jmdns.JmDNSMetrics;
 import javax.jmdns.impl.constants.DNSConstants;
 
 import org.slf4j.Logger;
@@ -27,7 +28,16 @@ class SocketListener extends Thread {
      * @param jmDNSImpl
      */
     SocketListener(JmDNSImpl jmDNSImpl) {
-        super("SocketListener(" + (jmDNSImpl != null ? jmDNSImpl.getName() : "") + ")");
+        this(jmDNSImpl, "SocketListener");
+    }
+
+    /**
+     * @param jmDNSImpl
+     * @param name
+     *            thread name, the name of the JmDNS instance is appended
+     */
+    SocketListener(JmDNSImpl jmDNSImpl, String name) {
+        super(name + "(" + (jmDNSImpl != null ? jmDNSImpl.getName() : "") + ")");
         this.setDaemon(true);
         this._jmDNSImpl = jmDNSImpl;
     }
@@ -58,36 +68,7 @@ class SocketListener extends Thread {
                 if (this._jmDNSImpl.isCanceling() || this._jmDNSImpl.isCanceled() || this._jmDNSImpl.isClosing() || this._jmDNSImpl.isClosed()) {
                     break;
                 }
-                try {
-                    if (this._jmDNSImpl.getLocalHost().shouldIgnorePacket(packet)) {
-                        continue;
-                    }
-
-                    DNSIncoming msg = new DNSIncoming(packet);
-                    if (msg.isValidResponseCode()) {
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("{}.run() JmDNS in:{}", this.getName(), msg.print(true));
-                        }
-                        if (msg.isQuery()) {
-                            // When we have a QUERY, unique means that QU is true and we should respond to the sender directly
-                            if (msg.getQuestions().stream().anyMatch(DNSEntry::isUnique)) {
-                                this._jmDNSImpl.handleQuery(msg, packet.getAddress(), packet.getPort());
-                            } else if (packet.getPort() != DNSConstants.MDNS_PORT) {
-                                this._jmDNSImpl.handleQuery(msg, packet.getAddress(), packet.getPort());
-                            } else {
-                                this._jmDNSImpl.handleQuery(msg, this._jmDNSImpl.getGroup(), DNSConstants.MDNS_PORT);
-                            }
-                        } else {
-                            this._jmDNSImpl.handleResponse(msg);
-                        }
-                    } else {
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("{}.run() JmDNS in message with error code: {}", this.getName(), msg.print(true));
-                        }
-                    }
-                } catch (IOException e) {
-                    logger.warn(this.getName() + ".run() exception ", e);
-                }
+                this.process(packet);
             }
         } catch (IOException e) {
             if (!this._jmDNSImpl.isCanceling() && !this._jmDNSImpl.isCanceled() && !this._jmDNSImpl.isClosing() && !this._jmDNSImpl.isClosed()) {
@@ -98,6 +79,79 @@ class SocketListener extends Thread {
         logger.trace("{}.run() exiting.", this.getName());
     }
 
+    /**
+     * Decodes a received packet and hands it to the query or response handling.
+     *
+     * @param packet
+     *            received packet
+     */
+    void process(DatagramPacket packet) {
+        final DNSIncoming msg = this.decode(packet);
+        if (msg != null) {
+            this.dispatch(msg, packet);
+        }
+    }
+
+    /**
+     * Decodes a received packet. This does not touch the state of the instance, so packets may be decoded on several threads.
+     *
+     * @param packet
+     *            received packet
+     * @return decoded message, <code>null</code> if the packet is ignored or malformed
+     */
+    DNSIncoming decode(DatagramPacket packet) {
+        try {
+            if (this._jmDNSImpl.getLocalHost().shouldIgnorePacket(packet)) {
+                return null;
+            }
+            return new DNSIncoming(packet, this._jmDNSImpl.getRecordFilter());
+        } catch (IOException e) {
+            this._jmDNSImpl.getMetrics().increment(JmDNSMetrics.Metric.PACKETS_IN_MALFORMED);
+            logger.warn(this.getName() + ".process() exception ", e);
+            return null;
+        }
+    }
+
+    /**
+     * Hands a decoded message to the query or response handling. The handling assumes a single receive thread, so messages must be dispatched one at a time.
+     *
+     * @param msg
+     *            decoded message
+     * @param packet
+     *            packet the message was decoded from
+     */
+    void dispatch(DNSIncoming msg, DatagramPacket packet) {
+        try {
+            if (msg.isValidResponseCode()) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("{}.process() JmDNS in:{}", this.getName(), msg.print(true));
+                }
+                if (msg.isQuery()) {
+                    this._jmDNSImpl.getMetrics().increment(JmDNSMetrics.Metric.PACKETS_IN_QUERY);
+                    // When we have a QUERY, unique means that QU is true and we should respond to the sender directly
+                    if (msg.getQuestions().stream().anyMatch(DNSEntry::isUnique)) {
+                        this._jmDNSImpl.handleQuery(msg, packet.getAddress(), packet.getPort());
+                    } else if (packet.getPort() != DNSConstants.MDNS_PORT) {
+                        this._jmDNSImpl.handleQuery(msg, packet.getAddress(), packet.getPort());
+                    } else {
+                        this._jmDNSImpl.handleQuery(msg, this._jmDNSImpl.getGroup(), DNSConstants.MDNS_PORT);
+                    }
+                } else {
+                    this._jmDNSImpl.getMetrics().increment(JmDNSMetrics.Metric.PACKETS_IN_RESPONSE);
+                    this._jmDNSImpl.handleResponse(msg);
+                }
+            } else {
+                this._jmDNSImpl.getMetrics().increment(JmDNSMetrics.Metric.PACKETS_IN_ERROR);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("{}.process() JmDNS in message with error code: {}", this.getName(), msg.print(true));
+                }
+            }
+        } catch (IOException e) {
+            this._jmDNSImpl.getMetrics().increment(JmDNSMetrics.Metric.PACKETS_IN_MALFORMED);
+            logger.warn(this.getName() + ".process() exception ", e);
+        }
+    }
+
     public JmDNSImpl getDns() {
         return _jmDNSImpl;
     }
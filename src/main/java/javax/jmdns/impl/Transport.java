@@ -0,0 +1,62 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries the messages of a JmDNS instance to and from the multicast group.<br/>
+ * {@link NetworkTransport} uses a multicast socket, or a channel when {@link javax.jmdns.impl.constants.DNSConstants#CHANNEL_RECEIVE} is set. The instances of
+ * a multihomed JmmDNS may share one channel, see {@link MulticastGroupChannel#newTransport()}. {@link MulticastBus} connects instances living in the same JVM
+ * without any network.
+ * <p>
+ * A transport serves one instance. It is opened when the instance starts and closed when it stops, and may be opened again when the instance recovers from a
+ * network error. Received packets are handed to the instance through {@link SocketListener#process(java.net.DatagramPacket)}.
+ * </p>
+ */
+public interface Transport {
+
+    /**
+     * Joins the multicast group for the instance.
+     *
+     * @param dns
+     *            JmDNS instance the transport carries the messages of
+     * @exception IOException
+     *                if the group cannot be joined
+     */
+    public void open(JmDNSImpl dns) throws IOException;
+
+    /**
+     * @return multicast group joined by {@link #open(JmDNSImpl)}, <code>null</code> before
+     */
+    public InetAddress getGroup();
+
+    /**
+     * Starts handing the received packets to the instance.
+     */
+    public void start();
+
+    /**
+     * Sends a message. Messages sent while the transport is closed are dropped.
+     *
+     * @param message
+     *            encoded message, from its position to its limit
+     * @param target
+     *            destination, the multicast group or a unicast address
+     * @exception IOException
+     */
+    public void send(ByteBuffer message, InetSocketAddress target) throws IOException;
+
+    /**
+     * @return <code>true</code> between {@link #open(JmDNSImpl)} and {@link #close()}
+     */
+    public boolean isOpen();
+
+    /**
+     * Leaves the multicast group and stops handing packets to the instance.
+     */
+    public void close();
+
+}
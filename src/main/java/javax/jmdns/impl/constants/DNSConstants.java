@@ -22,6 +22,22 @@ public final class DNSConstants {
 
     public static final int    MAX_MSG_TYPICAL                = 1460;
     public static final int    MAX_MSG_ABSOLUTE               = 8972;
+    public static final int    MESSAGE_BUFFER_POOL_SIZE       = 8;                                                            // Maximum number of idle buffers kept for encoding outgoing messages
+    public static final boolean CHANNEL_RECEIVE               = Boolean.getBoolean("net.mdns.channel");                       // Receive with a DatagramChannel and a pool of decoder threads instead of a MulticastSocket
+    public static final int    RECEIVE_BUFFER_COUNT           = Integer.getInteger("net.mdns.receiveBuffers", 64);            // Number of direct buffers in the channel receive ring
+    public static final int    RECEIVE_DECODER_THREADS        = Integer.getInteger("net.mdns.decoderThreads", 2);             // Number of threads decoding packets received on the channel, one more thread handles them
+    public static final int    RECEIVE_QUEUE_SIZE             = Integer.getInteger("net.mdns.receiveQueueSize", 1024);        // Maximum number of decoded messages waiting to be handled, further messages are dropped
+    public static final int    SEND_AGGREGATION_WINDOW        = Integer.getInteger("net.mdns.sendWindow", 10);                // milliseconds the outgoing queue waits to aggregate responses, 0 to send directly
+    public static final int    TASK_THREADS                   = Integer.getInteger("net.mdns.taskThreads", 2);                // Number of threads running the tasks of all JmDNS instances
+    public static final boolean TASK_TIMERS                   = Boolean.getBoolean("net.mdns.taskTimers");                    // Run the tasks of each JmDNS instance on its own timers instead of the shared threads
+    public static final boolean VIRTUAL_THREADS               = Boolean.getBoolean("net.mdns.virtualThreads");                // Dispatch listener events and run resolvers on virtual threads when running on JDK 21 or later
+    public static final int    LISTENER_THREADS               = Integer.getInteger("net.mdns.listenerThreads", 2);            // Number of threads delivering the listener events of all JmDNS instances
+    public static final int    LISTENER_QUEUE_SIZE            = Integer.getInteger("net.mdns.listenerQueueSize", 1024);       // Maximum number of events waiting for a listener, further events are dropped
+    public static final boolean SHARED_CHANNEL                = Boolean.getBoolean("net.mdns.sharedChannel");                 // Run the JmDNS instances of a JmmDNS on one channel per protocol family and one cache instead of a socket and a cache each
+    public static final boolean STATE_TASK_PER_STEP           = Boolean.getBoolean("net.mdns.stateTaskPerStep");              // Start a Prober, Announcer, Renewer or Canceler task per step instead of running all the steps of an instance on one state scheduler
+    public static final boolean JMX_METRICS                   = Boolean.getBoolean("net.mdns.jmx");                           // Register the metrics of each JmDNS instance with the platform MBean server
+    public static final String CACHE_SNAPSHOT_DIR             = System.getProperty("net.mdns.cacheSnapshotDir");              // Directory the cache of each JmDNS instance is saved to and restored from on start, unset to always start with an empty cache
+    public static final int    CACHE_SNAPSHOT_INTERVAL        = Integer.getInteger("net.mdns.cacheSnapshotInterval", 60);     // seconds between two saves of the cache snapshot, the cache is also saved on close, 0 or less only saves it on close
 
     public static final int    FLAGS_QR_MASK                  = 0x8000;                                                       // Query response mask
     public static final int    FLAGS_QR_QUERY                 = 0x0000;                                                       // Query
@@ -49,7 +65,8 @@ public final class DNSConstants {
     public static final int    PROBE_THROTTLE_COUNT           = 10;                                                           // After x tries go 1 time a sec. on probes.
     public static final int    PROBE_THROTTLE_COUNT_INTERVAL  = 5000;                                                         // We only increment the throttle count, if the previous increment is inside this interval.
     public static final int    ANNOUNCE_WAIT_INTERVAL         = 1000;                                                         // milliseconds between Announce loops.
-    public static final int    RECORD_REAPER_INTERVAL         = 10000;                                                        // milliseconds between cache cleanups.
+    public static final int    STATE_GROUPING_INTERVAL        = 125;                                                          // milliseconds a probe or announce may be delayed to go out with a later group.
+    public static final int    RECORD_REAPER_MIN_INTERVAL     = 1000;                                                         // minimal milliseconds between cache cleanups.
     public static final int    RECORD_EXPIRY_DELAY            = 1;                                                            // This is 1s delay used in ttl and therefore in seconds
     public static final int    KNOWN_ANSWER_TTL               = 120;
     public static final int    ANNOUNCED_RENEWAL_TTL_INTERVAL = DNS_TTL * 500;                                                // 50% of the TTL in milliseconds
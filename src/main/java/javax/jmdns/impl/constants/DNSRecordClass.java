@@ -65,6 +65,11 @@ public enum DNSRecordClass {
      */
     public static final boolean NOT_UNIQUE   = false;
 
+    /**
+     * Classes by wire code, so that parsing does not scan the values.
+     */
+    private static final DNSRecordClass[] CLASSES_BY_INDEX = indexClasses();
+
     private final String        _externalName;
 
     private final int           _index;
@@ -123,11 +128,25 @@ public enum DNSRecordClass {
      */
     public static DNSRecordClass classForIndex(int index) {
         int maskedIndex = index & CLASS_MASK;
+        final DNSRecordClass aClass = (maskedIndex < CLASSES_BY_INDEX.length ? CLASSES_BY_INDEX[maskedIndex] : null);
+        if (aClass != null) return aClass;
+        // The message parser reports unknown classes with their context
+        logger.debug("Could not find record class for index: {}", index);
+        return CLASS_UNKNOWN;
+    }
+
+    private static DNSRecordClass[] indexClasses() {
+        int maxIndex = 0;
         for (DNSRecordClass aClass : DNSRecordClass.values()) {
-            if (aClass._index == maskedIndex) return aClass;
+            maxIndex = Math.max(maxIndex, aClass._index);
         }
-        logger.warn("Could not find record class for index: {}", index);
-        return CLASS_UNKNOWN;
+        final DNSRecordClass[] classes = new DNSRecordClass[maxIndex + 1];
+        for (DNSRecordClass aClass : DNSRecordClass.values()) {
+            if (classes[aClass._index] == null) {
+                classes[aClass._index] = aClass;
+            }
+        }
+        return classes;
     }
 
     @Override
@@ -251,6 +251,11 @@ public enum DNSRecordType {
 
     private static Logger logger = LoggerFactory.getLogger(DNSRecordType.class);
 
+    /**
+     * Types by wire code, so that parsing does not scan the values.
+     */
+    private static final DNSRecordType[] TYPES_BY_INDEX = indexTypes();
+
     private final String  _externalName;
 
     private final int     _index;
@@ -298,11 +303,25 @@ public enum DNSRecordType {
      * @return type for name
      */
     public static DNSRecordType typeForIndex(int index) {
+        final DNSRecordType aType = ((index >= 0) && (index < TYPES_BY_INDEX.length) ? TYPES_BY_INDEX[index] : null);
+        if (aType != null) return aType;
+        // Unknown types are common on the wire, the message parser reports them with their context
+        logger.debug("Could not find record type for index: {}", index);
+        return TYPE_IGNORE;
+    }
+
+    private static DNSRecordType[] indexTypes() {
+        int maxIndex = 0;
         for (DNSRecordType aType : DNSRecordType.values()) {
-            if (aType._index == index) return aType;
+            maxIndex = Math.max(maxIndex, aType._index);
         }
-        logger.warn("Could not find record type for index: {}", index);
-        return TYPE_IGNORE;
+        final DNSRecordType[] types = new DNSRecordType[maxIndex + 1];
+        for (DNSRecordType aType : DNSRecordType.values()) {
+            if (types[aType._index] == null) {
+                types[aType._index] = aType;
+            }
+        }
+        return types;
     }
 
     @Override
@@ -0,0 +1,49 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl.tasks;
+
+import javax.jmdns.impl.JmDNSImpl;
+import javax.jmdns.impl.constants.DNSConstants;
+
+/**
+ * Saves the cache snapshot every {@link DNSConstants#CACHE_SNAPSHOT_INTERVAL} seconds, so a crash loses little of the cache. A value of 0 or less only saves it on close.
+ */
+public class CacheSnapshotter extends DNSTask {
+
+    /**
+     * @param jmDNSImpl
+     */
+    public CacheSnapshotter(JmDNSImpl jmDNSImpl) {
+        super(jmDNSImpl);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.impl.tasks.DNSTask#getName()
+     */
+    @Override
+    public String getName() {
+        return "CacheSnapshotter(" + (this.getDns() != null ? this.getDns().getName() : "") + ")";
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.impl.tasks.DNSTask#start(javax.jmdns.impl.tasks.DNSTaskScheduler)
+     */
+    @Override
+    public void start(DNSTaskScheduler scheduler) {
+        if ((DNSConstants.CACHE_SNAPSHOT_INTERVAL > 0) && !this.getDns().isCanceling() && !this.getDns().isCanceled()) {
+            final long interval = DNSConstants.CACHE_SNAPSHOT_INTERVAL * 1000L;
+            scheduler.schedule(this, interval, interval);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (this.getDns().isCanceling() || this.getDns().isCanceled()) {
+            this.cancel();
+        } else {
+            this.getDns().saveCacheSnapshot();
+        }
+    }
+
+}
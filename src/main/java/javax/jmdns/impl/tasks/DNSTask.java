@@ -4,7 +4,9 @@ package javax.jmdns.impl.tasks;
 import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Future;
 
+import javax.jmdns.JmDNSMetrics;
 import javax.jmdns.impl.DNSIncoming;
 import javax.jmdns.impl.DNSOutgoing;
 import javax.jmdns.impl.DNSQuestion;
@@ -24,6 +26,13 @@ public abstract class DNSTask extends TimerTask {
      */
     private final JmDNSImpl _jmDNSImpl;
 
+    /**
+     * Pending execution when the task runs on an executor.
+     */
+    private volatile Future<?> _future;
+
+    private volatile boolean   _cancelled;
+
     /**
      * @param jmDNSImpl
      */
@@ -47,7 +56,44 @@ public abstract class DNSTask extends TimerTask {
      * @param timer
      *            task timer.
      */
-    public abstract void start(Timer timer);
+    public void start(Timer timer) {
+        this.start(DNSTaskScheduler.forTimer(timer));
+    }
+
+    /**
+     * Start this task.
+     * 
+     * @param scheduler
+     *            task scheduler.
+     */
+    public abstract void start(DNSTaskScheduler scheduler);
+
+    /**
+     * Records the pending execution of this task on an executor so that it can be cancelled.
+     * 
+     * @param future
+     *            pending execution
+     */
+    void setFuture(Future<?> future) {
+        _future = future;
+        if (_cancelled) {
+            future.cancel(false);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.util.TimerTask#cancel()
+     */
+    @Override
+    public boolean cancel() {
+        _cancelled = true;
+        final Future<?> future = _future;
+        if (future != null) {
+            future.cancel(false);
+        }
+        return super.cancel();
+    }
 
     /**
      * Return this task name.
@@ -89,7 +135,7 @@ public abstract class DNSTask extends TimerTask {
             newOut.setId(id);
             this._jmDNSImpl.send(newOut);
 
-            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload);
+            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload, this._jmDNSImpl.getBufferPool());
             newOut.addQuestion(rec);
         }
         return newOut;
@@ -109,8 +155,9 @@ public abstract class DNSTask extends TimerTask {
      */
     public DNSOutgoing addAnswer(DNSOutgoing out, DNSIncoming in, DNSRecord rec) throws IOException {
         DNSOutgoing newOut = out;
+        boolean added;
         try {
-            newOut.addAnswer(in, rec);
+            added = newOut.addAnswer(in, rec);
         } catch (final IOException e) {
             int flags = newOut.getFlags();
             boolean multicast = newOut.isMulticast();
@@ -121,8 +168,11 @@ public abstract class DNSTask extends TimerTask {
             newOut.setId(id);
             this._jmDNSImpl.send(newOut);
 
-            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload);
-            newOut.addAnswer(in, rec);
+            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload, this._jmDNSImpl.getBufferPool());
+            added = newOut.addAnswer(in, rec);
+        }
+        if (!added) {
+            this._jmDNSImpl.getMetrics().increment(JmDNSMetrics.Metric.RESPONDER_SUPPRESSED);
         }
         return newOut;
     }
@@ -152,7 +202,7 @@ public abstract class DNSTask extends TimerTask {
             newOut.setId(id);
             this._jmDNSImpl.send(newOut);
 
-            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload);
+            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload, this._jmDNSImpl.getBufferPool());
             newOut.addAnswer(rec, now);
         }
         return newOut;
@@ -182,7 +232,7 @@ public abstract class DNSTask extends TimerTask {
             newOut.setId(id);
             this._jmDNSImpl.send(newOut);
 
-            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload);
+            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload, this._jmDNSImpl.getBufferPool());
             newOut.addAuthorativeAnswer(rec);
         }
         return newOut;
@@ -214,7 +264,7 @@ public abstract class DNSTask extends TimerTask {
             newOut.setId(id);
             this._jmDNSImpl.send(newOut);
 
-            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload);
+            newOut = new DNSOutgoing(flags, multicast, maxUDPPayload, this._jmDNSImpl.getBufferPool());
             newOut.addAdditionalAnswer(in, rec);
         }
         return newOut;
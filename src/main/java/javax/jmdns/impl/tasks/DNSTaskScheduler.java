@@ -0,0 +1,166 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl.tasks;
+
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks of a JmDNS instance, either on a dedicated {@link Timer} or on an executor shared between instances.<br/>
+ * Periodic tasks are run with a fixed delay between executions, as {@link Timer#schedule(TimerTask, long, long)} does. Once cancelled a scheduler ignores new
+ * tasks.
+ * <p>
+ * <b>Note: </b> This is not considered as part of the general public API of JmDNS.
+ * </p>
+ */
+public abstract class DNSTaskScheduler {
+
+    /**
+     * Schedules a task to run once.
+     *
+     * @param task
+     *            task to run
+     * @param delay
+     *            delay in milliseconds
+     */
+    public abstract void schedule(TimerTask task, long delay);
+
+    /**
+     * Schedules a task to run repeatedly until it is cancelled.
+     *
+     * @param task
+     *            task to run
+     * @param delay
+     *            delay before the first run in milliseconds
+     * @param period
+     *            delay between the end of a run and the start of the next one in milliseconds
+     */
+    public abstract void schedule(TimerTask task, long delay, long period);
+
+    /**
+     * Forgets about the tasks that have completed or were cancelled.
+     */
+    public abstract void purge();
+
+    /**
+     * Cancels all the scheduled tasks. Tasks scheduled afterwards are ignored.
+     */
+    public abstract void cancel();
+
+    /**
+     * @param timer
+     *            timer running the tasks
+     * @return scheduler running the tasks on the timer
+     */
+    public static DNSTaskScheduler forTimer(Timer timer) {
+        return new TimerScheduler(timer);
+    }
+
+    /**
+     * @param executor
+     *            executor running the tasks, it is not shut down when the scheduler is cancelled
+     * @return scheduler running the tasks on the executor
+     */
+    public static DNSTaskScheduler forExecutor(ScheduledExecutorService executor) {
+        return new ExecutorScheduler(executor);
+    }
+
+    private static final class TimerScheduler extends DNSTaskScheduler {
+
+        private final Timer _timer;
+
+        TimerScheduler(Timer timer) {
+            super();
+            _timer = timer;
+        }
+
+        @Override
+        public void schedule(TimerTask task, long delay) {
+            _timer.schedule(task, delay);
+        }
+
+        @Override
+        public void schedule(TimerTask task, long delay, long period) {
+            _timer.schedule(task, delay, period);
+        }
+
+        @Override
+        public void purge() {
+            _timer.purge();
+        }
+
+        @Override
+        public void cancel() {
+            _timer.cancel();
+        }
+
+    }
+
+    private static final class ExecutorScheduler extends DNSTaskScheduler {
+
+        /**
+         * Number of tracked futures above which completed ones are dropped when scheduling.
+         */
+        private static final int                 PURGE_THRESHOLD = 64;
+
+        private final ScheduledExecutorService   _executor;
+
+        private final Set<ScheduledFuture<?>>    _futures        = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean                 _cancelled;
+
+        ExecutorScheduler(ScheduledExecutorService executor) {
+            super();
+            _executor = executor;
+        }
+
+        @Override
+        public void schedule(TimerTask task, long delay) {
+            if (!_cancelled) {
+                this.track(task, _executor.schedule(task, delay, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        @Override
+        public void schedule(TimerTask task, long delay, long period) {
+            if (!_cancelled) {
+                this.track(task, _executor.scheduleWithFixedDelay(task, delay, period, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        private void track(TimerTask task, ScheduledFuture<?> future) {
+            if (task instanceof DNSTask) {
+                ((DNSTask) task).setFuture(future);
+            }
+            if (_futures.size() > PURGE_THRESHOLD) {
+                this.purge();
+            }
+            _futures.add(future);
+            if (_cancelled) {
+                // Raced with cancel()
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void purge() {
+            _futures.removeIf(Future::isDone);
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            for (ScheduledFuture<?> future : _futures) {
+                future.cancel(false);
+            }
+            _futures.clear();
+        }
+
+    }
+
+}
@@ -4,24 +4,40 @@
 
 package javax.jmdns.impl.tasks;
 
-import java.util.Timer;
+import java.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jmdns.impl.DNSCache;
 import javax.jmdns.impl.JmDNSImpl;
 import javax.jmdns.impl.constants.DNSConstants;
 
 /**
- * Periodically removes expired entries from the cache.
+ * Removes expired entries from the cache and triggers the refresh of stale ones.
+ * <p>
+ * The reaper does not poll: it sleeps until the earliest deadline of the expiry index of the {@link DNSCache} and is woken up earlier when a record is scheduled ahead of it.
+ * </p>
  */
-public class RecordReaper extends DNSTask {
+public class RecordReaper extends DNSTask implements DNSCache.ExpiryListener {
     static Logger logger = LoggerFactory.getLogger(RecordReaper.class);
 
+    private DNSTaskScheduler _scheduler;
+
+    /**
+     * The pending wake up, guarded by this.
+     */
+    private TimerTask        _wakeUp;
+
+    private long             _wakeUpTime;
+
+    private long             _lastRun;
+
     /**
      * @param jmDNSImpl
      */
     public RecordReaper(JmDNSImpl jmDNSImpl) {
         super(jmDNSImpl);
+        _wakeUpTime = Long.MAX_VALUE;
     }
 
     /*
@@ -35,17 +51,72 @@ public class RecordReaper extends DNSTask {
 
     /*
      * (non-Javadoc)
-     * @see javax.jmdns.impl.tasks.DNSTask#start(java.util.Timer)
+     * @see javax.jmdns.impl.tasks.DNSTask#start(javax.jmdns.impl.tasks.DNSTaskScheduler)
      */
     @Override
-    public void start(Timer timer) {
+    public void start(DNSTaskScheduler scheduler) {
         if (!this.getDns().isCanceling() && !this.getDns().isCanceled()) {
-            timer.schedule(this, DNSConstants.RECORD_REAPER_INTERVAL, DNSConstants.RECORD_REAPER_INTERVAL);
+            synchronized (this) {
+                _scheduler = scheduler;
+            }
+            this.getDns().getCache().setExpiryListener(this);
+            this.nextDeadlineChanged(this.getDns().getCache().getNextDeadline());
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.impl.DNSCache.ExpiryListener#nextDeadlineChanged(long)
+     */
+    @Override
+    public synchronized void nextDeadlineChanged(long deadline) {
+        if ((_scheduler == null) || (deadline == Long.MAX_VALUE)) {
+            return;
+        }
+        final long wakeUpTime = Math.max(deadline, _lastRun + DNSConstants.RECORD_REAPER_MIN_INTERVAL);
+        if (wakeUpTime >= _wakeUpTime) {
+            // We will be up in time
+            return;
+        }
+        if (_wakeUp != null) {
+            _wakeUp.cancel();
+        }
+        _wakeUpTime = wakeUpTime;
+        _wakeUp = new TimerTask() {
+            @Override
+            public void run() {
+                synchronized (RecordReaper.this) {
+                    // A cancelled wake up may still run on an executor
+                    if (_wakeUp != this) {
+                        return;
+                    }
+                }
+                RecordReaper.this.run();
+            }
+        };
+        _scheduler.schedule(_wakeUp, Math.max(0L, wakeUpTime - System.currentTimeMillis()));
+    }
+
+    @Override
+    public boolean cancel() {
+        synchronized (this) {
+            if (_wakeUp != null) {
+                _wakeUp.cancel();
+                _wakeUp = null;
+            }
+            _scheduler = null;
+        }
+        this.getDns().getCache().removeExpiryListener(this);
+        return super.cancel();
+    }
+
     @Override
     public void run() {
+        synchronized (this) {
+            _wakeUp = null;
+            _wakeUpTime = Long.MAX_VALUE;
+            _lastRun = System.currentTimeMillis();
+        }
         if (this.getDns().isCanceling() || this.getDns().isCanceled()) {
             return;
         }
@@ -54,6 +125,8 @@ public class RecordReaper extends DNSTask {
         // Remove expired answers from the cache
         // -------------------------------------
         this.getDns().cleanCache();
+
+        this.nextDeadlineChanged(this.getDns().getCache().getNextDeadline());
     }
 
-}
\ No newline at end of file
+}
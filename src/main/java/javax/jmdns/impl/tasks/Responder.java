@@ -7,16 +7,18 @@ package javax.jmdns.impl.tasks;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
-import java.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jmdns.JmDNSMetrics;
 import javax.jmdns.impl.DNSIncoming;
 import javax.jmdns.impl.DNSOutgoing;
 import javax.jmdns.impl.DNSQuestion;
 import javax.jmdns.impl.DNSRecord;
 import javax.jmdns.impl.JmDNSImpl;
+import javax.jmdns.impl.KnownAnswers;
 import javax.jmdns.impl.constants.DNSConstants;
 
 /**
@@ -69,10 +71,10 @@ public class Responder extends DNSTask {
 
     /*
      * (non-Javadoc)
-     * @see javax.jmdns.impl.tasks.DNSTask#start(java.util.Timer)
+     * @see javax.jmdns.impl.tasks.DNSTask#start(javax.jmdns.impl.tasks.DNSTaskScheduler)
      */
     @Override
-    public void start(Timer timer) {
+    public void start(DNSTaskScheduler scheduler) {
         // According to draft-cheshire-dnsext-multicastdns.txt chapter "7 Responding":
         // We respond immediately if we know for sure, that we are the only one who can respond to the query.
         // In all other cases, we respond within 20-120 ms.
@@ -95,7 +97,8 @@ public class Responder extends DNSTask {
         logger.trace("{}.start() Responder chosen delay={}", this.getName(), delay);
 
         if (!this.getDns().isCanceling() && !this.getDns().isCanceled()) {
-            timer.schedule(this, delay);
+            this.getDns().getMetrics().recordResponseDelay(delay);
+            scheduler.schedule(this, delay);
         }
     }
 
@@ -123,11 +126,15 @@ public class Responder extends DNSTask {
                 }
 
                 // remove known answers, if the TTL is at least half of the correct value. (See Draft Cheshire chapter 7.1.).
-                long now = System.currentTimeMillis();
-                for (DNSRecord knownAnswer : _in.getAnswers()) {
-                    if (knownAnswer.isStale(now)) {
-                        answers.remove(knownAnswer);
-                        logger.debug("{} - JmDNS Responder Known Answer Removed", this.getName());
+                if (!answers.isEmpty() && (_in.getNumberOfAnswers() > 0)) {
+                    final long now = System.currentTimeMillis();
+                    final KnownAnswers knownAnswers = _in.getKnownAnswers();
+                    for (Iterator<DNSRecord> i = answers.iterator(); i.hasNext();) {
+                        if (knownAnswers.isStale(i.next(), now)) {
+                            i.remove();
+                            this.getDns().getMetrics().increment(JmDNSMetrics.Metric.RESPONDER_SUPPRESSED);
+                            logger.debug("{} - JmDNS Responder Known Answer Removed", this.getName());
+                        }
                     }
                 }
 
@@ -135,7 +142,7 @@ public class Responder extends DNSTask {
                 if (!answers.isEmpty()) {
                     logger.debug("{}.run() JmDNS responding", this.getName());
 
-                    DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, !_unicast, _in.getSenderUDPPayload());
+                    DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, !_unicast, _in.getSenderUDPPayload(), this.getDns().getBufferPool());
                     out.setDestination(new InetSocketAddress(_addr, _port));
                     out.setId(_in.getId());
                     for (DNSQuestion question : questions) {
@@ -2,7 +2,6 @@
 package javax.jmdns.impl.tasks.resolver;
 
 import java.io.IOException;
-import java.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +9,7 @@ import javax.jmdns.impl.DNSOutgoing;
 import javax.jmdns.impl.JmDNSImpl;
 import javax.jmdns.impl.constants.DNSConstants;
 import javax.jmdns.impl.tasks.DNSTask;
+import javax.jmdns.impl.tasks.DNSTaskScheduler;
 
 /**
  * This is the root class for all resolver tasks.
@@ -42,12 +42,12 @@ public abstract class DNSResolverTask extends DNSTask {
 
     /*
      * (non-Javadoc)
-     * @see javax.jmdns.impl.tasks.DNSTask#start(java.util.Timer)
+     * @see javax.jmdns.impl.tasks.DNSTask#start(javax.jmdns.impl.tasks.DNSTaskScheduler)
      */
     @Override
-    public void start(Timer timer) {
+    public void start(DNSTaskScheduler scheduler) {
         if (!this.getDns().isCanceling() && !this.getDns().isCanceled()) {
-            timer.schedule(this, DNSConstants.QUERY_WAIT_INTERVAL, DNSConstants.QUERY_WAIT_INTERVAL);
+            scheduler.schedule(this, DNSConstants.QUERY_WAIT_INTERVAL, DNSConstants.QUERY_WAIT_INTERVAL);
         }
     }
 
@@ -64,7 +64,7 @@ public abstract class DNSResolverTask extends DNSTask {
                 if (_count++ < 3) {
                     logger.debug("{}.run() JmDNS {}",this.getName(), this.description());
 
-                    DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY);
+                    DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY, true, DNSConstants.MAX_MSG_TYPICAL, this.getDns().getBufferPool());
                     out = this.addQuestions(out);
                     if (this.getDns().isAnnounced()) {
                         out = this.addAnswers(out);
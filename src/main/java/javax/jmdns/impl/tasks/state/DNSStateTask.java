@@ -74,9 +74,7 @@ public abstract class DNSStateTask extends DNSTask {
      *            target state
      */
     protected void associate(DNSState state) {
-        synchronized (this.getDns()) {
-            this.getDns().associateWithTask(this, state);
-        }
+        this.getDns().associateWithTask(this, state);
         for (ServiceInfo serviceInfo : this.getDns().getServices().values()) {
             ((ServiceInfoImpl) serviceInfo).associateWithTask(this, state);
         }
@@ -87,9 +85,7 @@ public abstract class DNSStateTask extends DNSTask {
      */
     protected void removeAssociation() {
         // Remove association from host to this
-        synchronized (this.getDns()) {
-            this.getDns().removeAssociationWithTask(this);
-        }
+        this.getDns().removeAssociationWithTask(this);
 
         // Remove associations from services to this
         for (ServiceInfo serviceInfo : this.getDns().getServices().values()) {
@@ -107,23 +103,20 @@ public abstract class DNSStateTask extends DNSTask {
             }
             List<DNSStatefulObject> stateObjects = new ArrayList<DNSStatefulObject>();
             // send probes for JmDNS itself
-            synchronized (this.getDns()) {
-                if (this.getDns().isAssociatedWithTask(this, this.getTaskState())) {
-                    logger.debug("{}.run() JmDNS {} {}", this.getName(), this.getTaskDescription(), this.getDns().getName());
-                    stateObjects.add(this.getDns());
-                    out = this.buildOutgoingForDNS(out);
-                }
+            // The state objects are read without locking, their state and task change atomically
+            if (this.getDns().isAssociatedWithTask(this, this.getTaskState())) {
+                logger.debug("{}.run() JmDNS {} {}", this.getName(), this.getTaskDescription(), this.getDns().getName());
+                stateObjects.add(this.getDns());
+                out = this.buildOutgoingForDNS(out);
             }
             // send probes for services
             for (ServiceInfo serviceInfo : this.getDns().getServices().values()) {
                 ServiceInfoImpl info = (ServiceInfoImpl) serviceInfo;
 
-                synchronized (info) {
-                    if (info.isAssociatedWithTask(this, this.getTaskState())) {
-                        logger.debug("{}.run() JmDNS {} {}",this.getName(), this.getTaskDescription(), info.getQualifiedName());
-                        stateObjects.add(info);
-                        out = this.buildOutgoingForInfo(info, out);
-                    }
+                if (info.isAssociatedWithTask(this, this.getTaskState())) {
+                    logger.debug("{}.run() JmDNS {} {}",this.getName(), this.getTaskDescription(), info.getQualifiedName());
+                    stateObjects.add(info);
+                    out = this.buildOutgoingForInfo(info, out);
                 }
             }
             if (!out.isEmpty()) {
@@ -159,9 +152,7 @@ public abstract class DNSStateTask extends DNSTask {
     protected void advanceObjectsState(List<DNSStatefulObject> list) {
         if (list != null) {
             for (DNSStatefulObject object : list) {
-                synchronized (object) {
-                    object.advanceState(this);
-                }
+                object.advanceState(this);
             }
         }
     }
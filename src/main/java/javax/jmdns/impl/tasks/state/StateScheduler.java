@@ -0,0 +1,396 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl.tasks.state;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jmdns.ServiceInfo;
+import javax.jmdns.impl.DNSOutgoing;
+import javax.jmdns.impl.DNSQuestion;
+import javax.jmdns.impl.DNSRecord;
+import javax.jmdns.impl.DNSStatefulObject;
+import javax.jmdns.impl.JmDNSImpl;
+import javax.jmdns.impl.ServiceInfoImpl;
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+import javax.jmdns.impl.constants.DNSState;
+import javax.jmdns.impl.tasks.DNSTask;
+import javax.jmdns.impl.tasks.DNSTaskScheduler;
+
+/**
+ * Runs the probing, announcing, renewing and canceling of a JmDNS instance and of its services on one task, instead of a {@link Prober}, {@link Announcer},
+ * {@link Renewer} or {@link Canceler} per step.
+ * <p/>
+ * The objects waiting for their next step are grouped by deadline. A wakeup sends one probe query for the probing objects of the due groups and one response
+ * for the announcing, renewing and canceling ones, then advances their state and queues them again for their next step. A wakeup only touches the objects due
+ * at that time; the registered services are only scanned for objects without a task when a step is started.
+ */
+public class StateScheduler extends DNSTask {
+    static Logger logger = LoggerFactory.getLogger(StateScheduler.class);
+
+    /**
+     * An object waiting for a step.
+     */
+    private static final class Entry {
+
+        final DNSStatefulObject _object;
+
+        final DNSState          _state;
+
+        final long              _probeInterval;
+
+        Entry(DNSStatefulObject object, DNSState state, long probeInterval) {
+            super();
+            _object = object;
+            _state = state;
+            _probeInterval = probeInterval;
+        }
+
+    }
+
+    /**
+     * One shot task waking the scheduler up. Timer tasks cannot be scheduled twice, so each wakeup is a new task.
+     */
+    private final class Wakeup extends DNSTask {
+
+        Wakeup() {
+            super(StateScheduler.this.getDns());
+        }
+
+        @Override
+        public void start(DNSTaskScheduler scheduler) {
+            scheduler.schedule(this, 0);
+        }
+
+        @Override
+        public String getName() {
+            return StateScheduler.this.getName() + ".Wakeup";
+        }
+
+        @Override
+        public void run() {
+            synchronized (_wakeupLock) {
+                if (_wakeup == this) {
+                    _wakeup = null;
+                    _wakeupTime = Long.MAX_VALUE;
+                }
+            }
+            StateScheduler.this.run();
+        }
+
+    }
+
+    /**
+     * Objects waiting for a step by deadline.
+     */
+    private final TreeMap<Long, List<Entry>> _groups;
+
+    private final AtomicBoolean              _scanRequested;
+
+    private final Object                     _wakeupLock;
+
+    private volatile DNSTaskScheduler        _scheduler;
+
+    private Wakeup                           _wakeup;
+
+    private long                             _wakeupTime;
+
+    private volatile long                    _probeDelay;
+
+    private volatile long                    _probeInterval;
+
+    /**
+     * @param jmDNSImpl
+     */
+    public StateScheduler(JmDNSImpl jmDNSImpl) {
+        super(jmDNSImpl);
+        _groups = new TreeMap<Long, List<Entry>>();
+        _scanRequested = new AtomicBoolean();
+        _wakeupLock = new Object();
+        _wakeupTime = Long.MAX_VALUE;
+        _probeDelay = DNSConstants.PROBE_CONFLICT_INTERVAL;
+        _probeInterval = DNSConstants.PROBE_CONFLICT_INTERVAL;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.impl.tasks.DNSTask#getName()
+     */
+    @Override
+    public String getName() {
+        return "StateScheduler(" + (this.getDns() != null ? this.getDns().getName() : "") + ")";
+    }
+
+    /**
+     * Sets the scheduler running the wakeups. The state scheduler itself is never scheduled.
+     *
+     * @param scheduler
+     *            task scheduler
+     */
+    @Override
+    public void start(DNSTaskScheduler scheduler) {
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Starts probing the objects without a task, see {@link Prober#start(DNSTaskScheduler)} for the throttling.
+     */
+    public void startProbing() {
+        final JmDNSImpl dns = this.getDns();
+        long now = System.currentTimeMillis();
+        if (now - dns.getLastThrottleIncrement() < DNSConstants.PROBE_THROTTLE_COUNT_INTERVAL) {
+            dns.setThrottle(dns.getThrottle() + 1);
+        } else {
+            dns.setThrottle(1);
+        }
+        dns.setLastThrottleIncrement(now);
+
+        if (dns.isAnnounced() && dns.getThrottle() < DNSConstants.PROBE_THROTTLE_COUNT) {
+            _probeDelay = JmDNSImpl.getRandom().nextInt(1 + DNSConstants.PROBE_WAIT_INTERVAL);
+            _probeInterval = DNSConstants.PROBE_WAIT_INTERVAL;
+        } else {
+            _probeDelay = DNSConstants.PROBE_CONFLICT_INTERVAL;
+            _probeInterval = DNSConstants.PROBE_CONFLICT_INTERVAL;
+        }
+        this.requestScan();
+    }
+
+    /**
+     * Picks up the objects without a task on the next wakeup, which comes right away.
+     */
+    public void requestScan() {
+        _scanRequested.set(true);
+        this.wakeupAt(System.currentTimeMillis());
+    }
+
+    /**
+     * @return number of objects waiting for a step
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (List<Entry> group : _groups.values()) {
+            size += group.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return number of distinct deadlines the waiting objects are grouped on
+     */
+    public synchronized int groupCount() {
+        return _groups.size();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.util.TimerTask#run()
+     */
+    @Override
+    public synchronized void run() {
+        try {
+            final long now = System.currentTimeMillis();
+            if (_scanRequested.getAndSet(false)) {
+                this.scan(now);
+            }
+            final List<Entry> due = new ArrayList<Entry>();
+            for (Iterator<List<Entry>> i = _groups.headMap(Long.valueOf(now), true).values().iterator(); i.hasNext();) {
+                due.addAll(i.next());
+                i.remove();
+            }
+            if (!due.isEmpty()) {
+                this.step(due, now);
+            }
+        } catch (Throwable e) {
+            logger.warn("{}.run() exception ", this.getName(), e);
+            this.getDns().recover();
+        }
+        if (!_groups.isEmpty()) {
+            this.wakeupAt(_groups.firstKey().longValue());
+        }
+    }
+
+    /**
+     * Associates the objects without a task with this scheduler and queues them for the step of their state.
+     */
+    private void scan(long now) {
+        final JmDNSImpl dns = this.getDns();
+        this.adopt(dns, now);
+        for (ServiceInfo serviceInfo : dns.getServices().values()) {
+            this.adopt((ServiceInfoImpl) serviceInfo, now);
+        }
+    }
+
+    private void adopt(DNSStatefulObject object, long now) {
+        final boolean dnsCanceling = this.getDns().isCanceling() || this.getDns().isCanceled();
+        final DNSState state = object.getState();
+        // Objects owned by a task, this one included, are left alone
+        if (object.isAssociatedWithTask(null, state) && this.isActive(state) && (!dnsCanceling || state.isCanceling())) {
+            object.associateWithTask(this, state);
+            if (object.isAssociatedWithTask(this, state)) {
+                final long interval = _probeInterval;
+                final long delay = (state.isProbing() ? _probeDelay : (state.isCanceling() ? 0 : this.delayAfter(state, interval)));
+                this.enqueue(new Entry(object, state, interval), now + delay);
+            }
+        }
+    }
+
+    private boolean isActive(DNSState state) {
+        return state.isProbing() || state.isAnnouncing() || state.isAnnounced() || state.isCanceling();
+    }
+
+    /**
+     * @return the delay before the step of an object which reached the state
+     */
+    private long delayAfter(DNSState state, long probeInterval) {
+        if (state.isProbing()) {
+            return probeInterval;
+        }
+        if (state.isAnnounced()) {
+            return DNSConstants.ANNOUNCED_RENEWAL_TTL_INTERVAL;
+        }
+        return DNSConstants.ANNOUNCE_WAIT_INTERVAL;
+    }
+
+    /**
+     * Queues an object in the group of the deadline, or of a slightly later one so they share packets.
+     */
+    private void enqueue(Entry entry, long deadline) {
+        final Map.Entry<Long, List<Entry>> group = _groups.ceilingEntry(Long.valueOf(deadline));
+        if ((group != null) && (group.getKey().longValue() - deadline <= DNSConstants.STATE_GROUPING_INTERVAL)) {
+            group.getValue().add(entry);
+        } else {
+            final List<Entry> newGroup = new ArrayList<Entry>();
+            newGroup.add(entry);
+            _groups.put(Long.valueOf(deadline), newGroup);
+        }
+    }
+
+    /**
+     * Sends the packets of the due objects and moves them to their next state.
+     */
+    private void step(List<Entry> due, long now) throws IOException {
+        final JmDNSImpl dns = this.getDns();
+        final boolean dnsCanceling = dns.isCanceling() || dns.isCanceled();
+        final int ttl = DNSStateTask.defaultTTL();
+        final List<Entry> sent = new ArrayList<Entry>(due.size());
+        DNSOutgoing probe = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY, true, DNSConstants.MAX_MSG_TYPICAL, dns.getBufferPool());
+        DNSOutgoing response = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, true, DNSConstants.MAX_MSG_TYPICAL, dns.getBufferPool());
+        for (Entry entry : due) {
+            if (!entry._object.isAssociatedWithTask(this, entry._state)) {
+                // Reverted, canceled or re-announced since, a new step picks it up
+                continue;
+            }
+            if (dnsCanceling && !entry._state.isCanceling()) {
+                entry._object.removeAssociationWithTask(this);
+                continue;
+            }
+            if (entry._state.isProbing()) {
+                probe = this.addProbe(probe, entry._object);
+            } else {
+                response = this.addAnswers(response, entry._object, (entry._state.isCanceling() ? 0 : ttl));
+            }
+            sent.add(entry);
+        }
+        if (!probe.isEmpty()) {
+            logger.debug("{}.run() JmDNS probing #{}", this.getName(), Integer.valueOf(sent.size()));
+            dns.send(probe);
+        }
+        if (!response.isEmpty()) {
+            logger.debug("{}.run() JmDNS announcing #{}", this.getName(), Integer.valueOf(sent.size()));
+            dns.send(response);
+        }
+
+        for (Entry entry : sent) {
+            entry._object.advanceState(this);
+            final DNSState next = entry._state.advance();
+            if (!entry._object.isAssociatedWithTask(this, next)) {
+                continue;
+            }
+            if (this.isActive(next)) {
+                this.enqueue(new Entry(entry._object, next, entry._probeInterval), now + this.delayAfter(next, entry._probeInterval));
+            } else {
+                entry._object.removeAssociationWithTask(this);
+            }
+        }
+    }
+
+    private DNSOutgoing addProbe(DNSOutgoing out, DNSStatefulObject object) throws IOException {
+        final JmDNSImpl dns = this.getDns();
+        final int ttl = DNSStateTask.defaultTTL();
+        DNSOutgoing newOut = out;
+        if (object == dns) {
+            newOut = this.addQuestion(newOut, DNSQuestion.newQuestion(dns.getLocalHost().getName(), DNSRecordType.TYPE_ANY, DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE));
+            for (DNSRecord answer : dns.getLocalHost().answers(DNSRecordClass.CLASS_ANY, DNSRecordClass.NOT_UNIQUE, ttl)) {
+                newOut = this.addAuthoritativeAnswer(newOut, answer);
+            }
+        } else {
+            final ServiceInfoImpl info = (ServiceInfoImpl) object;
+            newOut = this.addQuestion(newOut, DNSQuestion.newQuestion(info.getQualifiedName(), DNSRecordType.TYPE_ANY, DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE));
+            // the "unique" flag should be not set here because these answers haven't been proven unique yet
+            newOut = this.addAuthoritativeAnswer(newOut, new DNSRecord.Service(info.getQualifiedName(), DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE, ttl, info.getPriority(), info.getWeight(), info.getPort(), dns.getLocalHost().getName()));
+        }
+        return newOut;
+    }
+
+    private DNSOutgoing addAnswers(DNSOutgoing out, DNSStatefulObject object, int ttl) throws IOException {
+        final JmDNSImpl dns = this.getDns();
+        DNSOutgoing newOut = out;
+        if (object == dns) {
+            for (DNSRecord answer : dns.getLocalHost().answers(DNSRecordClass.CLASS_ANY, DNSRecordClass.UNIQUE, ttl)) {
+                newOut = this.addAnswer(newOut, null, answer);
+            }
+        } else {
+            for (DNSRecord answer : ((ServiceInfoImpl) object).answers(DNSRecordClass.CLASS_ANY, DNSRecordClass.UNIQUE, ttl, dns.getLocalHost())) {
+                newOut = this.addAnswer(newOut, null, answer);
+            }
+        }
+        return newOut;
+    }
+
+    /**
+     * Makes sure a wakeup is scheduled at or before the time.
+     */
+    private void wakeupAt(long time) {
+        final DNSTaskScheduler scheduler = _scheduler;
+        if (scheduler == null) {
+            return;
+        }
+        synchronized (_wakeupLock) {
+            if ((_wakeup != null) && (_wakeupTime <= time)) {
+                return;
+            }
+            if (_wakeup != null) {
+                _wakeup.cancel();
+            }
+            _wakeup = new Wakeup();
+            _wakeupTime = time;
+            scheduler.schedule(_wakeup, Math.max(0, time - System.currentTimeMillis()));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.jmdns.impl.tasks.DNSTask#cancel()
+     */
+    @Override
+    public boolean cancel() {
+        synchronized (_wakeupLock) {
+            if (_wakeup != null) {
+                _wakeup.cancel();
+                _wakeup = null;
+                _wakeupTime = Long.MAX_VALUE;
+            }
+        }
+        return super.cancel();
+    }
+
+}
@@ -0,0 +1,63 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Completes futures with a fallback value when they time out, the Java 8 counterpart of <code>CompletableFuture.completeOnTimeout</code>.<br/>
+ * All the timeouts share one daemon thread which only completes futures, the dependent actions run on the thread completing the future.
+ */
+public final class FutureTimeouts {
+
+    private static final class Timer {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = newTimer();
+
+        private static ScheduledThreadPoolExecutor newTimer() {
+            final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("JmDNS.Timeouts", true));
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+
+    }
+
+    private FutureTimeouts() {
+        super();
+    }
+
+    /**
+     * Completes the future with the fallback value if it is not completed within the timeout.
+     *
+     * @param future
+     *            future to complete
+     * @param timeout
+     *            timeout in milliseconds
+     * @param fallback
+     *            supplies the value on timeout, called on the timeout thread
+     * @return the future
+     */
+    public static <T> CompletableFuture<T> completeAfter(final CompletableFuture<T> future, long timeout, final Supplier<? extends T> fallback) {
+        if (future.isDone()) {
+            return future;
+        }
+        final ScheduledFuture<?> timer = Timer.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.complete(fallback.get());
+            }
+        }, Math.max(0, timeout), TimeUnit.MILLISECONDS);
+        future.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable failure) {
+                timer.cancel(false);
+            }
+        });
+        return future;
+    }
+
+}
@@ -15,6 +15,7 @@ import java.util.concurrent.ThreadFactory;
 public class NamedThreadFactory implements ThreadFactory {
     private final ThreadFactory _delegate;
     private final String _namePrefix;
+    private final boolean _daemon;
 
     /**
      * Constructs the thread factory.
@@ -22,7 +23,18 @@ public class NamedThreadFactory implements ThreadFactory {
      * @param namePrefix a prefix to append to thread names (will be separated from the default thread name by a space.)
      */
     public NamedThreadFactory(String namePrefix) {
+        this(namePrefix, false);
+    }
+
+    /**
+     * Constructs the thread factory.
+     *
+     * @param namePrefix a prefix to append to thread names (will be separated from the default thread name by a space.)
+     * @param daemon whether the threads are daemon threads
+     */
+    public NamedThreadFactory(String namePrefix, boolean daemon) {
         this._namePrefix = namePrefix;
+        this._daemon = daemon;
         _delegate = Executors.defaultThreadFactory();
     }
 
@@ -30,6 +42,9 @@ public class NamedThreadFactory implements ThreadFactory {
     public Thread newThread(Runnable runnable) {
         Thread thread = _delegate.newThread(runnable);
         thread.setName(_namePrefix + ' ' + thread.getName());
+        if (_daemon) {
+            thread.setDaemon(true);
+        }
         return thread;
     }
 }
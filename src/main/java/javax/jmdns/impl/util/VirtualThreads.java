@@ -0,0 +1,157 @@
+// Licensed under Apache License version 2.0
+package javax.jmdns.impl.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.jmdns.impl.constants.DNSConstants;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the executors used for listener dispatch and parallel resolution.<br/>
+ * When enabled with {@link DNSConstants#VIRTUAL_THREADS} and running on JDK 21 or later the executors run their tasks on virtual threads, which are looked
+ * up reflectively as JmDNS is compiled for older JDKs. Otherwise they are the usual platform thread pools.
+ */
+public final class VirtualThreads {
+    private static Logger       logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    /**
+     * <code>Thread.ofVirtual()</code>
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * <code>Thread.Builder.name(String, long)</code>
+     */
+    private static final Method BUILDER_NAME;
+
+    /**
+     * <code>Thread.Builder.factory()</code>
+     */
+    private static final Method BUILDER_FACTORY;
+
+    /**
+     * <code>Executors.newThreadPerTaskExecutor(ThreadFactory)</code>
+     */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class, long.class);
+            builderFactory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException exception) {
+            ofVirtual = null;
+            if (DNSConstants.VIRTUAL_THREADS) {
+                logger.warn("Virtual threads require JDK 21 or later, using platform threads");
+            }
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return <code>true</code> if the JDK supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return <code>true</code> if virtual threads are enabled and supported
+     */
+    public static boolean isEnabled() {
+        return DNSConstants.VIRTUAL_THREADS && isSupported();
+    }
+
+    /**
+     * Returns a factory for threads named after the given prefix. The threads are virtual threads if enabled.
+     *
+     * @param namePrefix
+     *            thread name prefix
+     * @return thread factory
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        if (isEnabled()) {
+            try {
+                final Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix + ' ', Long.valueOf(0));
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (IllegalAccessException | InvocationTargetException exception) {
+                logger.warn("threadFactory() Virtual thread factory exception, using platform threads ", exception);
+            }
+        }
+        return new NamedThreadFactory(namePrefix);
+    }
+
+    /**
+     * Returns an executor for running up to <code>nThreads</code> tasks in parallel. With virtual threads enabled every task gets its own virtual thread.
+     *
+     * @param nThreads
+     *            number of platform threads
+     * @param namePrefix
+     *            thread name prefix
+     * @return executor
+     * @see Executors#newFixedThreadPool(int, ThreadFactory)
+     */
+    public static ExecutorService newFixedThreadPool(int nThreads, String namePrefix) {
+        return newFixedThreadPool(nThreads, namePrefix, false);
+    }
+
+    /**
+     * Returns an executor for running up to <code>nThreads</code> tasks in parallel. With virtual threads enabled every task gets its own virtual thread.
+     *
+     * @param nThreads
+     *            number of platform threads
+     * @param namePrefix
+     *            thread name prefix
+     * @param daemon
+     *            whether the platform threads are daemon threads, virtual threads always are
+     * @return executor
+     * @see Executors#newFixedThreadPool(int, ThreadFactory)
+     */
+    public static ExecutorService newFixedThreadPool(int nThreads, String namePrefix, boolean daemon) {
+        final ExecutorService executor = newThreadPerTaskExecutor(namePrefix);
+        return (executor != null ? executor : Executors.newFixedThreadPool(nThreads, new NamedThreadFactory(namePrefix, daemon)));
+    }
+
+    /**
+     * Returns an executor creating threads as needed. With virtual threads enabled every task gets its own virtual thread.
+     *
+     * @param namePrefix
+     *            thread name prefix
+     * @return executor
+     * @see Executors#newCachedThreadPool(ThreadFactory)
+     */
+    public static ExecutorService newCachedThreadPool(String namePrefix) {
+        final ExecutorService executor = newThreadPerTaskExecutor(namePrefix);
+        return (executor != null ? executor : Executors.newCachedThreadPool(new NamedThreadFactory(namePrefix)));
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        if (isEnabled()) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory(namePrefix));
+            } catch (IllegalAccessException | InvocationTargetException exception) {
+                logger.warn("newThreadPerTaskExecutor() Virtual thread executor exception, using platform threads ", exception);
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,123 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnswerSetTest {
+
+    private HostInfo        _localHost;
+
+    private ServiceInfoImpl _info;
+
+    @Before
+    public void setup() throws IOException {
+        _localHost = HostInfo.newHostInfo(InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 10 }), null, "answerhost");
+        _info = new ServiceInfoImpl("_http._tcp.local.", "Web Page", "printer", 80, 0, 0, false, "path=/index.html");
+    }
+
+    private static byte[] write(Collection<DNSRecord> records) throws IOException {
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA);
+        for (DNSRecord record : records) {
+            // Fresh records, plain records would lose a second of TTL otherwise
+            out.addAnswer(record, record.getCreated());
+        }
+        return out.data();
+    }
+
+    private List<DNSRecord> plainAnswers() {
+        final List<DNSRecord> records = new ArrayList<DNSRecord>();
+        records.addAll(_localHost.answers(DNSRecordClass.CLASS_IN, DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL));
+        records.addAll(_info.answers(DNSRecordClass.CLASS_IN, DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL, _localHost));
+        return records;
+    }
+
+    @Test
+    public void testEncodedRecordsWriteTheSameBytes() throws IOException {
+        final List<DNSRecord> encoded = new ArrayList<DNSRecord>(_localHost.getAnswerSet(DNSRecordClass.UNIQUE).getRecords());
+        encoded.addAll(_info.getAnswerSet(_localHost).getRecords());
+
+        assertArrayEquals(write(plainAnswers()), write(encoded));
+    }
+
+    @Test
+    public void testEncodedAndPlainNamesCompressTogether() throws IOException {
+        // Plain records first, then prebuilt ones pointing back at the plain names, and the other way round
+        final List<DNSRecord> mixed = new ArrayList<DNSRecord>(plainAnswers());
+        mixed.addAll(_info.getAnswerSet(_localHost).getRecords());
+        final List<DNSRecord> reversed = new ArrayList<DNSRecord>(_info.getAnswerSet(_localHost).getRecords());
+        reversed.addAll(plainAnswers());
+        final List<DNSRecord> reversedPlain = new ArrayList<DNSRecord>(_info.answers(DNSRecordClass.CLASS_IN, DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL, _localHost));
+        reversedPlain.addAll(plainAnswers());
+
+        final List<DNSRecord> doubled = new ArrayList<DNSRecord>(plainAnswers());
+        doubled.addAll(_info.answers(DNSRecordClass.CLASS_IN, DNSRecordClass.UNIQUE, DNSConstants.DNS_TTL, _localHost));
+        assertArrayEquals(write(doubled), write(mixed));
+        assertArrayEquals(write(reversedPlain), write(reversed));
+
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE);
+        for (DNSRecord record : mixed) {
+            out.addAnswer(record, 0);
+        }
+        final byte[] data = out.data();
+        final DNSIncoming in = new DNSIncoming(new DatagramPacket(data, data.length));
+        assertEquals(mixed.size(), in.getAnswers().size());
+        assertTrue(in.getAnswers().containsAll(plainAnswers()));
+    }
+
+    @Test
+    public void testEncodedRecordsKeepTheirFullTTL() {
+        final DNSRecord text = _info.getAnswerSet(_localHost).getRecord(DNSRecordType.TYPE_TXT);
+        assertEquals(DNSConstants.DNS_TTL, text.getRemainingTTL(text.getCreated() + DNSConstants.DNS_TTL * 1000L));
+    }
+
+    @Test
+    public void testAnswerSetIsIndexedOnQuestionNames() {
+        final AnswerSet answerSet = _info.getAnswerSet(_localHost);
+
+        assertTrue(answerSet.answers("web page._http._tcp.local."));
+        assertTrue(answerSet.answers("_HTTP._tcp.local."));
+        assertFalse(answerSet.answers("_ftp._tcp.local."));
+        assertEquals(DNSRecordType.TYPE_TXT, answerSet.getRecord(DNSRecordType.TYPE_TXT).getRecordType());
+        final Collection<DNSRecord> answers = new ArrayList<DNSRecord>();
+        answerSet.addAnswers(DNSRecordClass.CLASS_CS, answers);
+        assertTrue(answers.isEmpty());
+        answerSet.addAnswers(DNSRecordClass.CLASS_ANY, answers);
+        assertEquals(4, answers.size());
+    }
+
+    @Test
+    public void testAnswerSetIsDroppedOnChange() {
+        final AnswerSet answerSet = _info.getAnswerSet(_localHost);
+        assertSame(answerSet, _info.getAnswerSet(_localHost));
+
+        _info.setText(new byte[] { 4, 'a', '=', 'b', 'c' });
+        final AnswerSet changed = _info.getAnswerSet(_localHost);
+        assertNotSame(answerSet, changed);
+        assertArrayEquals(_info.getTextBytes(), ((DNSRecord.Text) changed.getRecord(DNSRecordType.TYPE_TXT)).getText());
+
+        _localHost.incrementHostName();
+        final AnswerSet renamed = _info.getAnswerSet(_localHost);
+        assertNotSame(changed, renamed);
+        assertEquals(_localHost.getName(), ((DNSRecord.Service) renamed.getRecord(DNSRecordType.TYPE_SRV)).getServer());
+        assertEquals(_localHost.getName(), _localHost.getAnswerSet(DNSRecordClass.UNIQUE).getRecord(DNSRecordType.TYPE_A).getName());
+    }
+
+}
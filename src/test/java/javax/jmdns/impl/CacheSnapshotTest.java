@@ -0,0 +1,166 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.ServiceInfo;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheSnapshotTest {
+
+    private static final String TYPE = "_http._tcp.local.";
+
+    @Rule
+    public TemporaryFolder      folder = new TemporaryFolder();
+
+    private static DNSRecord created(DNSRecord record, long created) {
+        record.setCreated(created);
+        return record;
+    }
+
+    private static List<DNSRecord> roundTrip(List<DNSRecord> records, long saved, long restored) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CacheSnapshot.write(records, saved, new DataOutputStream(bytes));
+        return CacheSnapshot.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), restored);
+    }
+
+    @Test
+    public void testRecordsKeepTheirCreationTimeAndTTL() throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<DNSRecord> records = Arrays.asList(
+                created(new DNSRecord.Pointer(TYPE, DNSRecordClass.CLASS_IN, false, 4500, "Printer." + TYPE), now - 60000),
+                created(new DNSRecord.Service("Printer." + TYPE, DNSRecordClass.CLASS_IN, true, 120, 0, 0, 631, "printer.local."), now - 1000),
+                created(new DNSRecord.Text("Printer." + TYPE, DNSRecordClass.CLASS_IN, true, 4500, new byte[] { 6, 'p', 'a', 't', 'h', '=', '/' }), now - 1000),
+                created(new DNSRecord.IPv4Address("printer.local.", DNSRecordClass.CLASS_IN, true, 120, InetAddress.getByAddress(new byte[] { 10, 0, 0, 9 })), now - 1000));
+
+        final List<DNSRecord> restored = roundTrip(records, now, now);
+
+        assertEquals(records.size(), restored.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertTrue(records.get(i).sameValue(restored.get(i)));
+            assertEquals(records.get(i).isUnique(), restored.get(i).isUnique());
+            assertEquals(records.get(i).getTTL(), restored.get(i).getTTL());
+            assertEquals(records.get(i).getCreated(), restored.get(i).getCreated());
+        }
+    }
+
+    @Test
+    public void testRecordsAgeWhileStopped() throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<DNSRecord> records = Arrays.asList(
+                created(new DNSRecord.Pointer(TYPE, DNSRecordClass.CLASS_IN, false, 4500, "Printer." + TYPE), now),
+                created(new DNSRecord.IPv4Address("printer.local.", DNSRecordClass.CLASS_IN, true, 120, InetAddress.getByAddress(new byte[] { 10, 0, 0, 9 })), now));
+
+        // Stopped for ten minutes, the address expired meanwhile
+        final List<DNSRecord> restored = roundTrip(records, now, now + 600000);
+
+        assertEquals(1, restored.size());
+        assertEquals(4500 - 600, restored.get(0).getRemainingTTL(now + 600000));
+    }
+
+    @Test
+    public void testManyRecordsSpanSeveralMessages() throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<DNSRecord> records = new ArrayList<DNSRecord>();
+        for (int i = 0; i < 2000; i++) {
+            records.add(created(new DNSRecord.Pointer(TYPE, DNSRecordClass.CLASS_IN, false, 4500, "Device " + i + "." + TYPE), now));
+        }
+
+        final List<DNSRecord> restored = roundTrip(records, now, now);
+
+        assertEquals(records.size(), restored.size());
+        assertTrue(records.get(1999).sameValue(restored.get(1999)));
+    }
+
+    @Test
+    public void testWarmRestartAnswersFromTheCache() throws IOException {
+        final CacheSnapshot snapshot = new CacheSnapshot(folder.newFile("node2.cache"));
+        final MulticastBus bus = new MulticastBus(2, 11L);
+        try {
+            final JmDNSImpl responder = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), "node1", bus.newTransport());
+            final JmDNSImpl browser = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), "node2", bus.newTransport());
+            final ServiceInfo registered = ServiceInfo.create(TYPE, "Responder", 8080, "path=/");
+            responder.registerService(registered);
+            assertTrue(((ServiceInfoImpl) registered).waitForAnnounced(10000));
+            assertNotNull(browser.getServiceInfo(TYPE, "Responder", true, 5000));
+            browser.saveCache(snapshot);
+            browser.close();
+
+            // Nothing gets through anymore, only the snapshot can answer
+            bus.setLossRate(1.0);
+            final JmDNSImpl restarted = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), "node2", bus.newTransport());
+            try {
+                restarted.restoreCache(snapshot);
+                final ServiceInfo info = restarted.getServiceInfo(TYPE, "Responder", 1);
+                assertNotNull("The service should be resolved from the restored cache", info);
+                assertEquals(8080, info.getPort());
+                assertEquals("10.0.0.1", info.getInet4Addresses()[0].getHostAddress());
+                assertEquals(1, restarted.list(TYPE, 1).length);
+            } finally {
+                restarted.close();
+                responder.close();
+            }
+        } finally {
+            bus.close();
+        }
+    }
+
+    @Test
+    public void testRestoredServicesAreRefreshed() throws IOException, InterruptedException {
+        final CacheSnapshot snapshot = new CacheSnapshot(folder.newFile("node2.cache"));
+        final MulticastBus bus = new MulticastBus(2, 12L);
+        try {
+            final JmDNSImpl responder = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), "node1", bus.newTransport());
+            final JmDNSImpl browser = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), "node2", bus.newTransport());
+            final ServiceInfo registered = ServiceInfo.create(TYPE, "Responder", 8080, "path=/");
+            responder.registerService(registered);
+            assertTrue(((ServiceInfoImpl) registered).waitForAnnounced(10000));
+            assertNotNull(browser.getServiceInfo(TYPE, "Responder", true, 5000));
+            browser.saveCache(snapshot);
+            browser.close();
+
+            // The text changes while the browser is stopped, the pointer it restores still suppresses the answer to its type query
+            final byte[] text = new byte[] { 6, 'p', 'a', 't', 'h', '=', '2' };
+            registered.setText(text);
+            assertTrue(((ServiceInfoImpl) registered).waitForAnnounced(10000));
+            final JmDNSImpl restarted = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), "node2", bus.newTransport());
+            try {
+                final CountDownLatch refreshed = new CountDownLatch(1);
+                restarted.addListener(new DNSListener() {
+                    @Override
+                    public void updateRecord(DNSCache dnsCache, long now, DNSEntry record) {
+                        if ((record instanceof DNSRecord.Text) && Arrays.equals(text, ((DNSRecord.Text) record).getText())) {
+                            refreshed.countDown();
+                        }
+                    }
+                }, DNSQuestion.newQuestion(registered.getQualifiedName(), DNSRecordType.TYPE_TXT, DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE));
+                restarted.restoreCache(snapshot);
+                assertTrue("The restored text record should be queried again", refreshed.await(10, TimeUnit.SECONDS));
+            } finally {
+                restarted.close();
+                responder.close();
+            }
+        } finally {
+            bus.close();
+        }
+    }
+
+}
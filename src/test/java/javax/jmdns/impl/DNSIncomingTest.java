@@ -0,0 +1,174 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.junit.Test;
+
+public class DNSIncomingTest {
+
+    private static final String HTTP_TYPE    = "_http._tcp.local.";
+
+    private static final String AIRPLAY_TYPE = "_airplay._tcp.local.";
+
+    private byte[] createResponse() throws IOException {
+        final long now = System.currentTimeMillis();
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA);
+        out.addAnswer(new DNSRecord.Pointer(AIRPLAY_TYPE, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Living Room." + AIRPLAY_TYPE), now);
+        out.addAnswer(new DNSRecord.Service("Living Room." + AIRPLAY_TYPE, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 0, 0, 7000, "appletv.local."), now);
+        out.addAnswer(new DNSRecord.Pointer(HTTP_TYPE, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Printer." + HTTP_TYPE), now);
+        out.addAnswer(new DNSRecord.Service("Printer." + HTTP_TYPE, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 0, 0, 80, "appletv.local."), now);
+        out.addAnswer(new DNSRecord.IPv4Address("appletv.local.", DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, new byte[] { 10, 0, 0, 1 }), now);
+        return out.data();
+    }
+
+    @Test
+    public void testRecordHeaders() throws IOException {
+        final byte[] data = this.createResponse();
+        final DNSIncoming in = new DNSIncoming(new DatagramPacket(data, data.length));
+        final List<DNSRecordType> types = new ArrayList<DNSRecordType>();
+        final List<Integer> hashes = new ArrayList<Integer>();
+        new DNSIncoming(new DatagramPacket(data, data.length), new DNSIncoming.RecordFilter() {
+            @Override
+            public boolean accept(DNSRecordHeader header) {
+                types.add(header.getRecordType());
+                hashes.add(Integer.valueOf(header.getServiceTypeHash()));
+                assertEquals(DNSRecordClass.CLASS_IN, header.getRecordClass());
+                assertEquals(DNSConstants.DNS_TTL, header.getTTL());
+                assertEquals(header.getRDataLength(), header.getRData().remaining());
+                return true;
+            }
+        });
+        assertEquals(in.getNumberOfAnswers(), types.size());
+        assertEquals(DNSRecordType.TYPE_PTR, types.get(0));
+        assertEquals(DNSRecordType.TYPE_SRV, types.get(1));
+        assertEquals(DNSRecordType.TYPE_A, types.get(4));
+
+        final int airplay = DNSRecordHeader.serviceTypeHash(AIRPLAY_TYPE);
+        final int http = DNSRecordHeader.serviceTypeHash("_HTTP._tcp.local");
+        assertNotEquals(airplay, http);
+        assertEquals(airplay, hashes.get(0).intValue());
+        assertEquals(airplay, hashes.get(1).intValue());
+        assertEquals(http, hashes.get(2).intValue());
+        assertEquals(http, DNSRecordHeader.serviceTypeHash("_printer._sub." + HTTP_TYPE));
+        assertEquals(0, hashes.get(4).intValue());
+        assertEquals(0, DNSRecordHeader.serviceTypeHash("appletv.local."));
+    }
+
+    @Test
+    public void testFilteredRecordsAreSkipped() throws IOException {
+        final byte[] data = this.createResponse();
+        final int http = DNSRecordHeader.serviceTypeHash(HTTP_TYPE);
+        final DNSIncoming in = new DNSIncoming(new DatagramPacket(data, data.length), new DNSIncoming.RecordFilter() {
+            @Override
+            public boolean accept(DNSRecordHeader header) {
+                final int hash = header.getServiceTypeHash();
+                return (hash == 0) || (hash == http);
+            }
+        });
+        assertEquals(2, in.getNumberOfSkippedRecords());
+        assertEquals(3, in.getNumberOfAnswers());
+        final List<DNSRecord> answers = new ArrayList<DNSRecord>(in.getAnswers());
+        for (DNSRecord record : answers) {
+            assertTrue("Unexpected record: " + record, !record.getName().contains(AIRPLAY_TYPE));
+        }
+        // Names compressed against skipped records must still be decoded.
+        final DNSRecord.Service service = (DNSRecord.Service) answers.get(1);
+        assertEquals("Printer." + HTTP_TYPE, service.getName());
+        assertEquals("appletv.local.", service.getServer());
+        assertEquals("appletv.local.", answers.get(2).getName());
+    }
+
+    @Test
+    public void testMetaQueryAnswersPassTheInterestFilter() throws IOException {
+        final MulticastBus bus = new MulticastBus(1, 3L);
+        final JmDNSImpl dns = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), "node1", bus.newTransport());
+        try {
+            final long now = System.currentTimeMillis();
+            final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA);
+            out.addAnswer(new DNSRecord.Pointer("_services._dns-sd._udp.local.", DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, AIRPLAY_TYPE), now);
+            out.addAnswer(new DNSRecord.Pointer(HTTP_TYPE, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Printer." + HTTP_TYPE), now);
+            final byte[] data = out.data();
+            final DNSIncoming in = new DNSIncoming(new DatagramPacket(data, data.length), dns.getRecordFilter());
+
+            // Nobody browses _http._tcp, its pointer is skipped
+            assertEquals(1, in.getNumberOfSkippedRecords());
+            dns.handleResponse(in);
+            assertTrue(dns.getServiceTypes().containsKey(AIRPLAY_TYPE));
+            assertFalse(dns.getServiceTypes().containsKey(HTTP_TYPE));
+        } finally {
+            dns.close();
+            bus.close();
+        }
+    }
+
+    @Test
+    public void testRecordHeaderOffsets() throws IOException {
+        final byte[] data = this.createResponse();
+        final byte[] shifted = new byte[data.length + 7];
+        System.arraycopy(data, 0, shifted, 7, data.length);
+        final ByteBuffer buffer = ByteBuffer.wrap(shifted, 7, data.length);
+        final DNSRecordHeader header = new DNSRecordHeader(buffer);
+        int offset = 12; // message header
+        int count = 0;
+        while (offset < data.length) {
+            offset = header.readAt(offset);
+            assertTrue("Malformed record " + count, offset > 0);
+            count++;
+        }
+        assertEquals(5, count);
+        assertEquals(7, buffer.position());
+    }
+
+    @Test
+    public void testWireCodeLookups() {
+        for (DNSRecordType type : DNSRecordType.values()) {
+            assertEquals(type.indexValue(), DNSRecordType.typeForIndex(type.indexValue()).indexValue());
+        }
+        assertEquals(DNSRecordType.TYPE_IGNORE, DNSRecordType.typeForIndex(65));
+        assertEquals(DNSRecordType.TYPE_IGNORE, DNSRecordType.typeForIndex(0xFFFF));
+        for (DNSRecordClass recordClass : DNSRecordClass.values()) {
+            assertEquals(recordClass, DNSRecordClass.classForIndex(recordClass.indexValue()));
+            assertEquals(recordClass, DNSRecordClass.classForIndex(recordClass.indexValue() | DNSRecordClass.CLASS_UNIQUE));
+        }
+        assertEquals(DNSRecordClass.CLASS_UNKNOWN, DNSRecordClass.classForIndex(0x7000));
+    }
+
+    @Test
+    public void testTruncatedQueryContinuationsAreAppendedToTheClone() throws IOException {
+        final long now = System.currentTimeMillis();
+        final DNSOutgoing first = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY | DNSConstants.FLAGS_TC);
+        first.addQuestion(DNSQuestion.newQuestion(HTTP_TYPE, DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN, false));
+        first.addAnswer(new DNSRecord.Pointer(HTTP_TYPE, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Printer." + HTTP_TYPE), now);
+        final DNSOutgoing next = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY);
+        next.addAnswer(new DNSRecord.Pointer(HTTP_TYPE, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Scanner." + HTTP_TYPE), now);
+        final byte[] firstData = first.data();
+        final byte[] nextData = next.data();
+
+        final DNSIncoming planned = new DNSIncoming(new DatagramPacket(firstData, firstData.length)).clone();
+        final Iterator<? extends DNSRecord> answers = planned.getAnswers().iterator();
+        planned.append(new DNSIncoming(new DatagramPacket(nextData, nextData.length)));
+
+        // An iteration started before the append is not disturbed by it
+        assertTrue(answers.hasNext());
+        answers.next();
+        assertFalse(answers.hasNext());
+        assertEquals(2, planned.getNumberOfAnswers());
+        assertEquals(2, planned.getKnownAnswers().size());
+    }
+
+}
@@ -0,0 +1,94 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+
+import org.junit.Test;
+
+public class DNSListenerIndexTest {
+
+    private static class NamedListener implements DNSListener {
+
+        Collection<String> _names;
+
+        NamedListener(String... names) {
+            super();
+            _names = (names != null ? Arrays.asList(names) : null);
+        }
+
+        @Override
+        public void updateRecord(DNSCache dnsCache, long now, DNSEntry record) {
+            // nothing to do
+        }
+
+        @Override
+        public Collection<String> getRecordNames() {
+            return _names;
+        }
+
+    }
+
+    private final DNSListenerIndex _index = new DNSListenerIndex();
+
+    private static DNSRecord address(String server) {
+        return new DNSRecord.IPv4Address(server, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, new byte[] { 10, 0, 0, 1 });
+    }
+
+    private static DNSRecord text(String name) {
+        return new DNSRecord.Text(name, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, new byte[] { 0 });
+    }
+
+    @Test
+    public void testRecordsOnlyReachListenersForTheirName() {
+        final NamedListener a = new NamedListener("a._http._tcp.local.", "host-a.local.");
+        final NamedListener b = new NamedListener("b._http._tcp.local.");
+        _index.add(a);
+        _index.add(b);
+
+        assertEquals(Collections.singletonList(a), _index.listenersFor(text("A._HTTP._tcp.local.")));
+        assertEquals(Collections.singletonList(a), _index.listenersFor(address("host-a.local.")));
+        assertEquals(Collections.singletonList(b), _index.listenersFor(new DNSRecord.Pointer("_http._tcp.local.", DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "b._http._tcp.local.")));
+        assertTrue(_index.listenersFor(text("c._http._tcp.local.")).isEmpty());
+    }
+
+    @Test
+    public void testUnnamedListenersGetEverything() {
+        final NamedListener all = new NamedListener((String[]) null);
+        _index.add(all);
+
+        assertEquals(Collections.singletonList(all), _index.listenersFor(text("c._http._tcp.local.")));
+        _index.remove(all);
+        assertTrue(_index.listenersFor(text("c._http._tcp.local.")).isEmpty());
+    }
+
+    @Test
+    public void testRekeyFollowsServerChanges() {
+        final NamedListener a = new NamedListener("a._http._tcp.local.", "host-a.local.");
+        _index.add(a);
+
+        a._names = Arrays.asList("a._http._tcp.local.", "host-b.local.");
+        _index.rekey(a);
+
+        assertTrue(_index.listenersFor(address("host-a.local.")).isEmpty());
+        assertEquals(Collections.singletonList(a), _index.listenersFor(address("host-b.local.")));
+        assertEquals(Collections.singletonList(a), _index.listenersFor(text("a._http._tcp.local.")));
+    }
+
+    @Test
+    public void testRemoveEqualServiceInfo() {
+        final ServiceInfoImpl resolving = new ServiceInfoImpl("_http._tcp.local.", "a", "", 0, 0, 0, false, new byte[0]);
+        _index.add(resolving);
+
+        _index.remove(new ServiceInfoImpl("_http._tcp.local.", "a", "", 0, 0, 0, false, new byte[0]));
+        assertTrue(_index.getListeners().isEmpty());
+        assertTrue(_index.listenersFor(text("a._http._tcp.local.")).isEmpty());
+    }
+
+}
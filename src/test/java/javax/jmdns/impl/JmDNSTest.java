@@ -10,9 +10,12 @@ import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.jmdns.JmDNS;
 import javax.jmdns.JmmDNS;
@@ -105,6 +108,33 @@ public class JmDNSTest {
         }
     }
 
+    @Test
+    public void testRegisterAndUnregisterServices() throws Exception {
+        System.out.println("Unit Test: testRegisterAndUnregisterServices()");
+        JmDNS registry = null;
+        try {
+            registry = JmDNS.create();
+            final List<ServiceInfo> batch = new ArrayList<ServiceInfo>();
+            for (int i = 0; i < 20; i++) {
+                batch.add(ServiceInfo.create("_html._tcp.local.", "apache-batch-" + i, 8000 + i, "batch"));
+            }
+            registry.registerServices(batch).get(30, TimeUnit.SECONDS);
+            for (ServiceInfo info : batch) {
+                assertTrue("The service should be announced: " + info, ((ServiceInfoImpl) info).isAnnounced());
+            }
+
+            ServiceInfo[] services = registry.list(service.getType());
+            assertEquals("We should see the services we just registered: ", batch.size(), services.length);
+
+            registry.unregisterServices(batch).get(30, TimeUnit.SECONDS);
+            for (ServiceInfo info : batch) {
+                assertTrue("The service should be canceled: " + info, ((ServiceInfoImpl) info).isCanceled());
+            }
+        } finally {
+            if (registry != null) registry.close();
+        }
+    }
+
     @Test
     public void testRegisterServiceTwice() throws IOException {
         System.out.println("Unit Test: testRegisterService()");
@@ -167,6 +197,27 @@ public class JmDNSTest {
         }
     }
 
+    @Test
+    public void testQueryAndListMyServiceAsync() throws Exception {
+        System.out.println("Unit Test: testQueryAndListMyServiceAsync()");
+        JmDNS registry = null;
+        try {
+            registry = JmDNS.create();
+            registry.registerServiceAsync(service).get(30, TimeUnit.SECONDS);
+
+            ServiceInfo queriedService = registry.resolveServiceInfoAsync(service.getType(), service.getName()).get(30, TimeUnit.SECONDS);
+            assertEquals(service, queriedService);
+
+            ServiceInfo[] services = registry.listAsync(service.getType()).get(30, TimeUnit.SECONDS);
+            assertEquals("We should see the service we just registered: ", 1, services.length);
+            assertEquals(service, services[0]);
+
+            assertNull("Unknown services resolve to null on timeout", registry.resolveServiceInfoAsync(service.getType(), "unknown-someuniqueid", false, 500).get(30, TimeUnit.SECONDS));
+        } finally {
+            if (registry != null) registry.close();
+        }
+    }
+
     @Test
     public void testListMyService() throws IOException {
         System.out.println("Unit Test: testListMyService()");
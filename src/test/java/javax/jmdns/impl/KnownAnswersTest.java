@@ -0,0 +1,85 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.junit.Test;
+
+public class KnownAnswersTest {
+
+    private static final String HTTP_TYPE     = "_http._tcp.local.";
+
+    private static final int    KNOWN_ANSWERS = 500;
+
+    private static DNSRecord.Pointer pointer(int index, int ttl) {
+        return new DNSRecord.Pointer(HTTP_TYPE, DNSRecordClass.CLASS_IN, false, ttl, "Service " + index + "." + HTTP_TYPE);
+    }
+
+    /**
+     * Encodes a browse query carrying known answers, split into truncated packets as a querier would.
+     */
+    private static List<DNSIncoming> browseQuery(int knownAnswers, int ttl) throws IOException {
+        final List<DNSIncoming> packets = new ArrayList<DNSIncoming>();
+        DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY);
+        out.addQuestion(DNSQuestion.newQuestion(HTTP_TYPE, DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN, false));
+        for (int i = 0; i < knownAnswers; i++) {
+            try {
+                out.addAnswer(pointer(i, ttl), 0);
+            } catch (IOException e) {
+                out.setFlags(out.getFlags() | DNSConstants.FLAGS_TC);
+                packets.add(parse(out));
+                out = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY);
+                out.addAnswer(pointer(i, ttl), 0);
+            }
+        }
+        packets.add(parse(out));
+        return packets;
+    }
+
+    private static DNSIncoming parse(DNSOutgoing out) throws IOException {
+        final byte[] data = out.data();
+        return new DNSIncoming(new DatagramPacket(data, data.length));
+    }
+
+    @Test
+    public void testSuppressionNeedsEnoughTTL() throws IOException {
+        final DNSIncoming in = browseQuery(2, DNSConstants.DNS_TTL).get(0);
+
+        assertTrue(pointer(0, DNSConstants.DNS_TTL).suppressedBy(in));
+        assertTrue(pointer(1, DNSConstants.DNS_TTL + 1).suppressedBy(in));
+        // The querier's copy is about to expire
+        assertFalse(pointer(1, 4 * DNSConstants.DNS_TTL).suppressedBy(in));
+        assertFalse(pointer(2, DNSConstants.DNS_TTL).suppressedBy(in));
+        assertFalse(new DNSRecord.Pointer("_ftp._tcp.local.", DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Service 0." + HTTP_TYPE).suppressedBy(in));
+    }
+
+    @Test
+    public void testTruncatedContinuationsAreIncluded() throws IOException {
+        final List<DNSIncoming> packets = browseQuery(KNOWN_ANSWERS, DNSConstants.DNS_TTL);
+        assertTrue("known answers should not fit in one packet", packets.size() > 1);
+        final DNSIncoming in = packets.get(0);
+        // Built before the continuations arrive
+        final int firstPacketAnswers = in.getKnownAnswers().size();
+        for (DNSIncoming continuation : packets.subList(1, packets.size())) {
+            in.append(continuation);
+        }
+
+        assertTrue(firstPacketAnswers < KNOWN_ANSWERS);
+        assertEquals(KNOWN_ANSWERS, in.getKnownAnswers().size());
+        for (int i = 0; i < KNOWN_ANSWERS; i++) {
+            assertTrue("Service " + i, pointer(i, DNSConstants.DNS_TTL).suppressedBy(in));
+        }
+        assertFalse(pointer(KNOWN_ANSWERS, DNSConstants.DNS_TTL).suppressedBy(in));
+    }
+
+}
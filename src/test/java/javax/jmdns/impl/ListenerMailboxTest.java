@@ -0,0 +1,170 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.easymock.EasyMock.createNiceMock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceEventFlow.Overflow;
+import javax.jmdns.impl.ListenerMailbox.Kind;
+
+import org.junit.Test;
+
+public class ListenerMailboxTest {
+
+    /**
+     * Worker pool running the mailboxes only when asked to.
+     */
+    private final List<Runnable>    _workers   = new ArrayList<Runnable>();
+
+    private final List<String>      _delivered = new ArrayList<String>();
+
+    private final ListenerMailbox   _mailbox   = new ListenerMailbox(new ListenerMailbox.Recipient() {
+        @Override
+        public void deliver(Kind kind, ServiceEvent event) {
+            _delivered.add(kind + " " + event.getName());
+        }
+    }, new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            _workers.add(command);
+        }
+    }, 4);
+
+    private final JmDNSImpl         _dns       = createNiceMock(JmDNSImpl.class);
+
+    private ServiceEvent event(String name) {
+        return new ServiceEventImpl(_dns, "_http._tcp.local.", name, null);
+    }
+
+    private void post(Kind kind, String name) {
+        _mailbox.post(name + "._http._tcp.local.", kind, event(name));
+    }
+
+    private void runWorkers() {
+        while (!_workers.isEmpty()) {
+            _workers.remove(0).run();
+        }
+    }
+
+    @Test
+    public void testEventsAreDeliveredInOrderByOneWorker() {
+        post(Kind.ADDED, "a");
+        post(Kind.ADDED, "b");
+        post(Kind.REMOVED, "a");
+
+        assertEquals(1, _workers.size());
+        assertEquals(3, _mailbox.getBacklog());
+        runWorkers();
+        assertEquals("[ADDED a, ADDED b, REMOVED a]", _delivered.toString());
+        assertEquals(0, _mailbox.getBacklog());
+        assertEquals(3, _mailbox.getDeliveredCount());
+    }
+
+    @Test
+    public void testSupersededEventsAreCoalesced() {
+        post(Kind.ADDED, "a");
+        post(Kind.RESOLVED, "a");
+        post(Kind.RESOLVED, "a");
+        post(Kind.RESOLVED, "b");
+        post(Kind.REMOVED, "b");
+        // Not merged with the first event as a removal is pending in between
+        post(Kind.REMOVED, "a");
+        post(Kind.ADDED, "a");
+
+        runWorkers();
+        assertEquals("[ADDED a, REMOVED b, REMOVED a, ADDED a]", _delivered.toString());
+        assertEquals(3, _mailbox.getCoalescedCount());
+    }
+
+    @Test
+    public void testFullMailboxDropsEvents() {
+        for (String name : new String[] { "a", "b", "c", "d" }) {
+            post(Kind.ADDED, name);
+        }
+        assertFalse(_mailbox.post("e._http._tcp.local.", Kind.ADDED, event("e")));
+        assertEquals(1, _mailbox.getDroppedCount());
+        assertEquals(4, _mailbox.getBacklog());
+
+        runWorkers();
+        assertTrue(_mailbox.post("e._http._tcp.local.", Kind.ADDED, event("e")));
+        runWorkers();
+        assertEquals(5, _delivered.size());
+    }
+
+    private ListenerMailbox subscriptionMailbox(Overflow overflow) {
+        return new ListenerMailbox(new ListenerMailbox.Recipient() {
+            @Override
+            public void deliver(Kind kind, ServiceEvent event) {
+                _delivered.add(kind + " " + event.getName());
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                _workers.add(command);
+            }
+        }, 3, overflow);
+    }
+
+    @Test
+    public void testSubscriptionMailboxWaitsForDemand() {
+        final ListenerMailbox mailbox = subscriptionMailbox(Overflow.LATEST_PER_SERVICE);
+        for (String name : new String[] { "a", "b", "c" }) {
+            mailbox.post(name + "._http._tcp.local.", Kind.ADDED, event(name));
+        }
+        assertTrue("Nothing is scheduled without demand", _workers.isEmpty());
+
+        mailbox.request(2);
+        runWorkers();
+        assertEquals("[ADDED a, ADDED b]", _delivered.toString());
+        assertEquals(1, mailbox.getBacklog());
+
+        mailbox.request(Long.MAX_VALUE);
+        runWorkers();
+        assertEquals("[ADDED a, ADDED b, ADDED c]", _delivered.toString());
+    }
+
+    @Test
+    public void testDropOldestKeepsTheNewestEvents() {
+        final ListenerMailbox mailbox = subscriptionMailbox(Overflow.DROP_OLDEST);
+        for (String name : new String[] { "a", "a", "b", "c", "d" }) {
+            assertTrue(mailbox.post(name + "._http._tcp.local.", Kind.RESOLVED, event(name)));
+        }
+        assertEquals(2, mailbox.getDroppedCount());
+
+        mailbox.request(10);
+        runWorkers();
+        assertEquals("[RESOLVED b, RESOLVED c, RESOLVED d]", _delivered.toString());
+    }
+
+    @Test
+    public void testBufferRefusesEventsWhenFull() {
+        final ListenerMailbox mailbox = subscriptionMailbox(Overflow.BUFFER);
+        for (String name : new String[] { "a", "a", "b" }) {
+            assertTrue(mailbox.post(name + "._http._tcp.local.", Kind.RESOLVED, event(name)));
+        }
+        assertFalse(mailbox.post("c._http._tcp.local.", Kind.RESOLVED, event("c")));
+    }
+
+    @Test
+    public void testTerminalCallReplacesPendingEvents() {
+        final ListenerMailbox mailbox = subscriptionMailbox(Overflow.LATEST_PER_SERVICE);
+        mailbox.post("a._http._tcp.local.", Kind.ADDED, event("a"));
+        mailbox.terminate(new Runnable() {
+            @Override
+            public void run() {
+                _delivered.add("terminated");
+            }
+        });
+        assertFalse(mailbox.post("b._http._tcp.local.", Kind.ADDED, event("b")));
+        mailbox.request(10);
+        runWorkers();
+        assertEquals("[terminated]", _delivered.toString());
+    }
+
+}
@@ -0,0 +1,143 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.JmDNSMetrics;
+import javax.jmdns.JmDNSMetrics.Metric;
+import javax.jmdns.ServiceInfo;
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    private static final String TYPE = "_http._tcp.local.";
+
+    private MulticastBus        bus;
+
+    private List<JmDNSImpl>     instances;
+
+    @Before
+    public void setup() {
+        bus = new MulticastBus(2, 7L);
+        instances = new ArrayList<JmDNSImpl>();
+    }
+
+    @After
+    public void teardown() {
+        for (JmDNSImpl dns : instances) {
+            dns.close();
+        }
+        bus.close();
+    }
+
+    private JmDNSImpl newInstance(int number) throws IOException {
+        final JmDNSImpl dns = new JmDNSImpl(InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) number }), "node" + number, bus.newTransport());
+        instances.add(dns);
+        return dns;
+    }
+
+    @Test
+    public void testResponseDelayBuckets() throws IOException {
+        final MetricsRegistry metrics = this.newInstance(1).getMetrics();
+        metrics.recordResponseDelay(0);
+        metrics.recordResponseDelay(20);
+        metrics.recordResponseDelay(40);
+        metrics.recordResponseDelay(41);
+        metrics.recordResponseDelay(120);
+
+        assertEquals(1, metrics.get(Metric.RESPONDER_DELAY_NONE));
+        assertEquals(2, metrics.get(Metric.RESPONDER_DELAY_40MS));
+        assertEquals(1, metrics.get(Metric.RESPONDER_DELAY_80MS));
+        assertEquals(1, metrics.get(Metric.RESPONDER_DELAY_OVER_80MS));
+        assertEquals(221, metrics.get(Metric.RESPONDER_DELAY_TOTAL));
+    }
+
+    @Test
+    public void testSnapshotListsEveryMetric() throws IOException {
+        final Map<String, Long> snapshot = this.newInstance(1).getMetrics().snapshot();
+
+        assertEquals(Metric.values().length, snapshot.size());
+        assertEquals("packets.in.query", snapshot.keySet().iterator().next());
+        assertTrue(snapshot.containsKey("cache.size"));
+    }
+
+    @Test
+    public void testResolutionIsCounted() throws IOException {
+        bus.setLatency(1, 5, TimeUnit.MILLISECONDS);
+        final JmDNSImpl responder = this.newInstance(1);
+        final JmDNSImpl browser = this.newInstance(2);
+        final ServiceInfo registered = ServiceInfo.create(TYPE, "Responder", 8080, "");
+        responder.registerService(registered);
+        assertTrue(((ServiceInfoImpl) registered).waitForAnnounced(10000));
+        assertNotNull(browser.getServiceInfo(TYPE, "Responder", 5000));
+
+        final JmDNSMetrics browserMetrics = browser.getMetrics();
+        final JmDNSMetrics responderMetrics = responder.getMetrics();
+        assertTrue(browserMetrics.get(Metric.PACKETS_OUT_QUERY) > 0);
+        assertTrue(browserMetrics.get(Metric.PACKETS_IN_RESPONSE) > 0);
+        assertTrue(responderMetrics.get(Metric.PACKETS_IN_QUERY) > 0);
+        assertTrue(responderMetrics.get(Metric.PACKETS_OUT_RESPONSE) > 0);
+        assertTrue(browserMetrics.get(Metric.CACHE_SIZE) > 0);
+        assertTrue(browserMetrics.get(Metric.CACHE_HITS) + browserMetrics.get(Metric.CACHE_MISSES) > 0);
+        assertEquals(0, browserMetrics.get(Metric.PACKETS_IN_MALFORMED));
+        assertEquals(0, responderMetrics.get(Metric.RECOVERIES));
+    }
+
+    @Test
+    public void testMBeanIsRegisteredUntilClose() throws Exception {
+        final JmDNSImpl dns = this.newInstance(1);
+        final MetricsRegistry metrics = dns.getMetrics();
+        metrics.registerMBean();
+        final ObjectName objectName = metrics.getObjectName();
+        assertNotNull(objectName);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(objectName));
+        assertEquals(Long.valueOf(0), server.getAttribute(objectName, "packets.in.malformed"));
+
+        dns.close();
+        assertNull(metrics.getObjectName());
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    @Test
+    public void testKnownAnswerSuppressionIsCounted() throws IOException, InterruptedException {
+        final JmDNSImpl responder = this.newInstance(1);
+        final JmDNSImpl browser = this.newInstance(2);
+        final ServiceInfo registered = ServiceInfo.create(TYPE, "Responder", 8080, "");
+        responder.registerService(registered);
+        assertTrue(((ServiceInfoImpl) registered).waitForAnnounced(10000));
+        assertEquals(0, responder.getMetrics().get(Metric.RESPONDER_SUPPRESSED));
+
+        // The browser already knows the pointer with its full TTL
+        final DNSOutgoing query = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY, true, DNSConstants.MAX_MSG_TYPICAL, browser.getBufferPool());
+        query.addQuestion(DNSQuestion.newQuestion(TYPE, DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE));
+        query.addAnswer(new DNSRecord.Pointer(TYPE, DNSRecordClass.CLASS_IN, DNSRecordClass.NOT_UNIQUE, DNSConstants.DNS_TTL, registered.getQualifiedName()), 0);
+        browser.send(query);
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while ((responder.getMetrics().get(Metric.RESPONDER_SUPPRESSED) == 0) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertTrue("The known answer should have been suppressed", responder.getMetrics().get(Metric.RESPONDER_SUPPRESSED) > 0);
+    }
+
+}
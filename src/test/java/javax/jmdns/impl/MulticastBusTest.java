@@ -0,0 +1,167 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceInfo;
+import javax.jmdns.ServiceListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MulticastBusTest {
+
+    private static final String TYPE = "_http._tcp.local.";
+
+    private MulticastBus        bus;
+
+    private List<JmDNSImpl>     instances;
+
+    @Before
+    public void setup() {
+        bus = new MulticastBus(2, 42L);
+        instances = new ArrayList<JmDNSImpl>();
+    }
+
+    @After
+    public void teardown() throws InterruptedException {
+        // Each instance says goodbye before closing, closing them one after the other would take seconds per instance
+        final ExecutorService closer = Executors.newFixedThreadPool(Math.max(1, instances.size()));
+        for (final JmDNSImpl dns : instances) {
+            closer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    dns.close();
+                }
+            });
+        }
+        closer.shutdown();
+        closer.awaitTermination(30, TimeUnit.SECONDS);
+        bus.close();
+    }
+
+    private JmDNSImpl newInstance(int number) throws IOException {
+        final InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, (byte) (number >> 8), (byte) number });
+        final JmDNSImpl dns = new JmDNSImpl(address, "node" + number, bus.newTransport());
+        instances.add(dns);
+        return dns;
+    }
+
+    @Test
+    public void testServiceIsResolvedAcrossTheBus() throws IOException, InterruptedException {
+        bus.setLatency(1, 5, TimeUnit.MILLISECONDS);
+        final JmDNSImpl responder = this.newInstance(1);
+        final JmDNSImpl browser = this.newInstance(2);
+        assertEquals(2, bus.size());
+        final ServiceInfo registered = ServiceInfo.create(TYPE, "Responder", 8080, "path=/");
+        responder.registerService(registered);
+        assertTrue(((ServiceInfoImpl) registered).waitForAnnounced(10000));
+
+        // The service resolves as soon as its service and address records are in, the text record may come later with a second resolution
+        final CountDownLatch resolved = new CountDownLatch(1);
+        final AtomicReference<ServiceInfo> resolvedInfo = new AtomicReference<ServiceInfo>();
+        browser.addServiceListener(TYPE, new ServiceListener() {
+            @Override
+            public void serviceAdded(ServiceEvent event) {
+                // Resolved below
+            }
+
+            @Override
+            public void serviceRemoved(ServiceEvent event) {
+                // Not removed
+            }
+
+            @Override
+            public void serviceResolved(ServiceEvent event) {
+                if ("/".equals(event.getInfo().getPropertyString("path"))) {
+                    resolvedInfo.set(event.getInfo());
+                    resolved.countDown();
+                }
+            }
+        });
+        assertTrue("The browser should resolve the service of the responder", resolved.await(5, TimeUnit.SECONDS));
+        final ServiceInfo info = resolvedInfo.get();
+        assertEquals(8080, info.getPort());
+        assertEquals("10.0.0.1", info.getInet4Addresses()[0].getHostAddress());
+        assertTrue(bus.getDeliveredCount() > 0);
+    }
+
+    @Test
+    public void testLossPartitionsTheInstances() throws IOException {
+        bus.setLossRate(1.0);
+        final JmDNSImpl responder = this.newInstance(1);
+        final JmDNSImpl browser = this.newInstance(2);
+        final ServiceInfo info = ServiceInfo.create(TYPE, "Responder", 8080, "");
+        responder.registerService(info);
+        assertTrue(((ServiceInfoImpl) info).waitForAnnounced(10000));
+
+        assertEquals(0, browser.list(TYPE, 1000).length);
+        assertTrue(bus.getLostCount() > 0);
+        assertEquals(0, bus.getDeliveredCount());
+    }
+
+    @Test
+    public void testProbingRenamesConflictingServices() throws IOException {
+        final JmDNSImpl first = this.newInstance(1);
+        final JmDNSImpl second = this.newInstance(2);
+        final ServiceInfo firstInfo = ServiceInfo.create(TYPE, "Printer", 631, "");
+        final ServiceInfo secondInfo = ServiceInfo.create(TYPE, "Printer", 631, "");
+        first.registerService(firstInfo);
+        second.registerService(secondInfo);
+        // Both probe the same name, the loser probes again under a new name
+        assertTrue(((ServiceInfoImpl) firstInfo).waitForAnnounced(30000));
+        assertTrue(((ServiceInfoImpl) secondInfo).waitForAnnounced(30000));
+
+        assertNotEquals(firstInfo.getQualifiedName(), secondInfo.getQualifiedName());
+    }
+
+    @Test
+    public void testFleetIsBrowsed() throws IOException {
+        final int fleet = 20;
+        final List<ServiceInfo> infos = new ArrayList<ServiceInfo>();
+        for (int i = 1; i <= fleet; i++) {
+            final ServiceInfo info = ServiceInfo.create(TYPE, "Device " + i, 80, "");
+            this.newInstance(i).registerService(info);
+            infos.add(info);
+        }
+        for (ServiceInfo info : infos) {
+            assertTrue(((ServiceInfoImpl) info).waitForAnnounced(10000));
+        }
+        final JmDNSImpl browser = this.newInstance(fleet + 1);
+
+        assertEquals(fleet, browser.list(TYPE, 3000).length);
+    }
+
+    @Test
+    public void testBatchWithADuplicateRegistersNothing() throws IOException {
+        final JmDNSImpl responder = this.newInstance(1);
+        final ServiceInfo info = ServiceInfo.create(TYPE, "Printer", 631, "");
+        final ServiceInfo sameName = ServiceInfo.create(TYPE, "printer", 632, "");
+        for (List<ServiceInfo> batch : Arrays.asList(Arrays.asList(info, info), Arrays.asList(info, sameName))) {
+            try {
+                responder.registerServices(batch);
+                fail("A batch registering a service twice should be rejected");
+            } catch (IllegalStateException exception) {
+                // expected
+            }
+            assertTrue(responder.getServices().isEmpty());
+            assertEquals("Printer." + TYPE, info.getQualifiedName());
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.junit.Test;
+
+public class MulticastGroupChannelTest {
+
+    private static InetAddress address(String literal) throws UnknownHostException {
+        return InetAddress.getByName(literal);
+    }
+
+    @Test
+    public void testSameSubnet() throws UnknownHostException {
+        assertTrue(MulticastGroupChannel.sameSubnet(address("192.168.1.10"), address("192.168.1.200"), 24));
+        assertFalse(MulticastGroupChannel.sameSubnet(address("192.168.1.10"), address("192.168.2.10"), 24));
+        assertTrue(MulticastGroupChannel.sameSubnet(address("10.1.2.3"), address("10.1.130.3"), 16));
+        assertTrue(MulticastGroupChannel.sameSubnet(address("172.16.5.1"), address("172.16.6.1"), 22));
+        assertFalse(MulticastGroupChannel.sameSubnet(address("172.16.5.1"), address("172.16.9.1"), 22));
+    }
+
+    @Test
+    public void testSubnetsOfDifferentFamiliesNeverMatch() throws UnknownHostException {
+        assertTrue(MulticastGroupChannel.sameSubnet(address("fe80::1"), address("fe80::abcd:1"), 64));
+        assertFalse(MulticastGroupChannel.sameSubnet(address("fe80::1"), address("192.168.1.10"), 0));
+    }
+
+}
@@ -0,0 +1,165 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
+
+import org.junit.Test;
+
+public class OutgoingQueueTest {
+
+    private final List<DNSOutgoing> _sent       = new ArrayList<DNSOutgoing>();
+
+    private final AtomicInteger     _recoveries = new AtomicInteger();
+
+    private volatile boolean        _failing;
+
+    private final OutgoingQueue     _queue      = new OutgoingQueue("test", new DNSOutgoing.BufferPool(DNSConstants.MAX_MSG_ABSOLUTE, 2), 10, new OutgoingQueue.Sender() {
+        @Override
+        public void send(DNSOutgoing out) throws IOException {
+            if (_failing) {
+                out.release();
+                throw new IOException("network is unreachable");
+            }
+            // keep a copy of the wire format, the buffer is released afterwards
+            out.data();
+            out.release();
+            _sent.add(out);
+        }
+    }, new Runnable() {
+        @Override
+        public void run() {
+            _recoveries.incrementAndGet();
+        }
+    });
+
+    private static DNSOutgoing announcement(String instance) throws IOException {
+        final String name = instance + "._http._tcp.local.";
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA);
+        out.addAnswer(new DNSRecord.Pointer("_http._tcp.local.", DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, name), 0);
+        out.addAnswer(new DNSRecord.Service(name, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 0, 0, 80, "host.local."), 0);
+        out.addAdditionalAnswer(null, new DNSRecord.IPv4Address("host.local.", DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, new byte[] { 10, 0, 0, 1 }));
+        return out;
+    }
+
+    private static DNSOutgoing pointer(int ttl) throws IOException {
+        final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA);
+        out.addAnswer(new DNSRecord.Pointer("_http._tcp.local.", DNSRecordClass.CLASS_IN, false, ttl, "a._http._tcp.local."), 0);
+        return out;
+    }
+
+    @Test
+    public void testResponsesAreAggregated() throws IOException {
+        _queue.flush(Arrays.asList(announcement("a"), announcement("b"), announcement("c")));
+
+        assertEquals(1, _sent.size());
+        final DNSOutgoing out = _sent.get(0);
+        assertEquals(6, out.getNumberOfAnswers());
+        // The shared address record is only sent once
+        assertEquals(1, out.getNumberOfAdditionals());
+        assertEquals(1, _queue.getLastFlushPacketCount());
+    }
+
+    @Test
+    public void testDestinationsAndQueriesAreKeptApart() throws IOException {
+        final DNSOutgoing unicast = announcement("a");
+        unicast.setDestination(new InetSocketAddress("10.0.0.2", 5353));
+        final DNSOutgoing query = new DNSOutgoing(DNSConstants.FLAGS_QR_QUERY);
+        query.addQuestion(DNSQuestion.newQuestion("_http._tcp.local.", DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN, false));
+        _queue.flush(Arrays.asList(unicast, query, announcement("b"), announcement("c")));
+
+        assertEquals(3, _sent.size());
+        assertTrue(_sent.get(0).isQuery());
+        assertEquals(unicast, _sent.get(1));
+        assertEquals(4, _sent.get(2).getNumberOfAnswers());
+        assertEquals(3, _queue.getLastFlushPacketCount());
+    }
+
+    @Test
+    public void testFullMessagesAreSplit() throws IOException {
+        final List<DNSOutgoing> batch = new ArrayList<DNSOutgoing>();
+        for (int i = 0; i < 40; i++) {
+            batch.add(announcement("service-with-a-rather-long-instance-name-" + i));
+        }
+        _queue.flush(batch);
+
+        assertTrue(_sent.size() > 1);
+        assertTrue(_sent.size() < batch.size());
+        int answers = 0;
+        for (DNSOutgoing out : _sent) {
+            answers += out.getNumberOfAnswers();
+            assertTrue(out.data().length <= DNSConstants.MAX_MSG_TYPICAL);
+        }
+        assertEquals(80, answers);
+    }
+
+    @Test
+    public void testWriterSendsQueuedMessagesOnStop() throws IOException {
+        _queue.start();
+        assertTrue(_queue.offer(announcement("a")));
+        assertTrue(_queue.offer(announcement("b")));
+        _queue.stop(DNSConstants.CLOSE_TIMEOUT);
+
+        assertEquals(0, _queue.getQueueDepth());
+        assertEquals(2, _queue.getMessageCount());
+        int answers = 0;
+        for (DNSOutgoing out : _sent) {
+            answers += out.getNumberOfAnswers();
+        }
+        assertEquals(4, answers);
+        assertTrue(!_queue.offer(announcement("c")));
+    }
+
+    @Test
+    public void testWriterFlushesTheWindow() throws IOException, InterruptedException {
+        _queue.start();
+        assertTrue(_queue.offer(announcement("a")));
+        assertTrue(_queue.offer(announcement("b")));
+        for (int i = 0; (i < 50) && (_queue.getFlushCount() == 0); i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(1, _queue.getFlushCount());
+        assertEquals(0, _queue.getQueueDepth());
+        // Both responses went out in one packet
+        assertEquals(1, _sent.size());
+        assertEquals(4, _sent.get(0).getNumberOfAnswers());
+        _queue.stop(DNSConstants.CLOSE_TIMEOUT);
+        assertEquals(1, _sent.size());
+    }
+
+    @Test
+    public void testLaterCopyOfARecordWins() throws IOException {
+        _queue.flush(Arrays.asList(pointer(0), pointer(DNSConstants.DNS_TTL)));
+        _queue.flush(Arrays.asList(pointer(DNSConstants.DNS_TTL), pointer(0)));
+
+        assertEquals(2, _sent.size());
+        // The announcement following the goodbye is not lost
+        assertEquals(1, _sent.get(0).getNumberOfAnswers());
+        assertEquals(DNSConstants.DNS_TTL, _sent.get(0).getAnswers().iterator().next().getTTL());
+        // Nor is the goodbye following the announcement
+        assertEquals(1, _sent.get(1).getNumberOfAnswers());
+        assertEquals(0, _sent.get(1).getAnswers().iterator().next().getTTL());
+    }
+
+    @Test
+    public void testFailedSendsAreRecovered() throws IOException {
+        _failing = true;
+        _queue.flush(Arrays.asList(announcement("a"), announcement("b")));
+
+        assertEquals(0, _sent.size());
+        assertEquals(0, _queue.getLastFlushPacketCount());
+        assertEquals(1, _recoveries.get());
+    }
+
+}
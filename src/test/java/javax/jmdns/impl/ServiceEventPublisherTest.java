@@ -0,0 +1,173 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.easymock.EasyMock.createNiceMock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceEventFlow;
+import javax.jmdns.ServiceEventFlow.Overflow;
+import javax.jmdns.ServiceListener;
+
+import org.junit.Test;
+
+public class ServiceEventPublisherTest {
+
+    /**
+     * Worker pool running the mailboxes only when asked to.
+     */
+    private final List<Runnable>         _workers  = new ArrayList<Runnable>();
+
+    private final List<String>           _received = new ArrayList<String>();
+
+    private ServiceListener              _listener;
+
+    private final List<ServiceEventPublisher> _publishers = new ArrayList<ServiceEventPublisher>();
+
+    private ServiceEventFlow.Subscription _subscription;
+
+    private final JmDNSImpl              _dns      = createNiceMock(JmDNSImpl.class);
+
+    private final ServiceEventPublisher.Source _source = new ServiceEventPublisher.Source() {
+        @Override
+        public void addServiceListener(String type, ServiceListener listener) {
+            _listener = listener;
+        }
+
+        @Override
+        public void removeServiceListener(String type, ServiceListener listener) {
+            if (_listener == listener) {
+                _listener = null;
+            }
+        }
+
+        @Override
+        public void addPublisher(ServiceEventPublisher publisher) {
+            _publishers.add(publisher);
+        }
+
+        @Override
+        public void removePublisher(ServiceEventPublisher publisher) {
+            _publishers.remove(publisher);
+        }
+    };
+
+    private final ServiceEventFlow.Subscriber _subscriber = new ServiceEventFlow.Subscriber() {
+        @Override
+        public void onSubscribe(ServiceEventFlow.Subscription subscription) {
+            _subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ServiceEventFlow.Kind kind, ServiceEvent event) {
+            _received.add(kind + " " + event.getName());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            _received.add("error " + throwable.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onComplete() {
+            _received.add("complete");
+        }
+    };
+
+    private ServiceEventPublisher publisher(Overflow overflow) {
+        return new ServiceEventPublisher(_source, "_http._tcp.local.", new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                _workers.add(command);
+            }
+        }, overflow, 2);
+    }
+
+    private ServiceEvent event(String name) {
+        return new ServiceEventImpl(_dns, "_http._tcp.local.", name, null);
+    }
+
+    private void runWorkers() {
+        while (!_workers.isEmpty()) {
+            _workers.remove(0).run();
+        }
+    }
+
+    @Test
+    public void testEventsFollowDemand() {
+        final ServiceEventPublisher publisher = publisher(Overflow.LATEST_PER_SERVICE);
+        publisher.subscribe(_subscriber);
+        _listener.serviceAdded(event("a"));
+        _listener.serviceResolved(event("a"));
+        runWorkers();
+        assertTrue("Nothing is delivered before a request", _received.isEmpty());
+
+        _subscription.request(1);
+        runWorkers();
+        assertEquals("[ADDED a]", _received.toString());
+
+        _subscription.request(5);
+        runWorkers();
+        _listener.serviceRemoved(event("a"));
+        runWorkers();
+        assertEquals("[ADDED a, RESOLVED a, REMOVED a]", _received.toString());
+    }
+
+    @Test
+    public void testCancelStopsListening() {
+        final ServiceEventPublisher publisher = publisher(Overflow.LATEST_PER_SERVICE);
+        publisher.subscribe(_subscriber);
+        _subscription.cancel();
+        runWorkers();
+        assertNull(_listener);
+        assertEquals(0, publisher.getSubscriptionCount());
+        assertTrue(_received.isEmpty());
+    }
+
+    @Test
+    public void testSourceHoldsPublishersWithSubscriptionsOnly() {
+        final ServiceEventPublisher publisher = publisher(Overflow.LATEST_PER_SERVICE);
+        assertTrue(_publishers.isEmpty());
+
+        publisher.subscribe(_subscriber);
+        final ServiceEventFlow.Subscription first = _subscription;
+        publisher.subscribe(_subscriber);
+        assertEquals(1, _publishers.size());
+
+        first.cancel();
+        assertEquals(1, _publishers.size());
+        _subscription.cancel();
+        assertTrue("The publisher is forgotten with its last subscription", _publishers.isEmpty());
+    }
+
+    @Test
+    public void testBufferOverflowFailsTheSubscription() {
+        final ServiceEventPublisher publisher = publisher(Overflow.BUFFER);
+        publisher.subscribe(_subscriber);
+        final ServiceListener listener = _listener;
+        listener.serviceAdded(event("a"));
+        listener.serviceAdded(event("b"));
+        listener.serviceAdded(event("c"));
+        runWorkers();
+        assertEquals("[error IllegalStateException]", _received.toString());
+        assertNull(_listener);
+    }
+
+    @Test
+    public void testCompleteEndsTheSubscriptions() {
+        final ServiceEventPublisher publisher = publisher(Overflow.DROP_OLDEST);
+        publisher.subscribe(_subscriber);
+        _subscription.request(Long.MAX_VALUE);
+        _listener.serviceAdded(event("a"));
+        runWorkers();
+        publisher.complete();
+        runWorkers();
+        assertEquals("[ADDED a, complete]", _received.toString());
+    }
+
+}
@@ -4,8 +4,11 @@ import org.junit.Test;
 
 import javax.jmdns.ServiceInfo;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class ServiceTypeDecoderTest {
 
@@ -256,7 +259,7 @@ public class ServiceTypeDecoderTest {
     public void testNameWithSpecialChar() {
         String type = "panoramİx.local.";
 
-        Map<ServiceInfo.Fields, String> map = ServiceTypeDecoderr.decodeQualifiedNameMapForType(type);
+        Map<ServiceInfo.Fields, String> map = ServiceTypeDecoder.decodeQualifiedNameMapForType(type);
 
         assertEquals("We did not get the right domain:", "local", map.get(ServiceInfo.Fields.Domain));
         assertEquals("We did not get the right protocol:", "", map.get(ServiceInfo.Fields.Protocol));
@@ -282,7 +285,7 @@ public class ServiceTypeDecoderTest {
     public void testCasePreservingSpecialChar() {
         String type = "aBcİ._Home-Sharing._TCP.Panoramix.local.";
 
-        Map<ServiceInfo.Fields, String> map = ServiceTypeDecoderr.decodeQualifiedNameMapForType(type);
+        Map<ServiceInfo.Fields, String> map = ServiceTypeDecoder.decodeQualifiedNameMapForType(type);
 
         assertEquals("We did not get the right domain:", "Panoramix.local", map.get(ServiceInfo.Fields.Domain));
         assertEquals("We did not get the right protocol:", "TCP", map.get(ServiceInfo.Fields.Protocol));
@@ -305,6 +308,81 @@ public class ServiceTypeDecoderTest {
 
     }
 
+    @Test
+    public void testDecodedNamesAreShared() {
+        String type = "Living Room._airplay._tcp.local.";
+        ServiceTypeDecoder.DecodedName decoded = ServiceTypeDecoder.decode(type);
+
+        assertSame(decoded, ServiceTypeDecoder.decode(new String(type)));
+        assertEquals("_airplay._tcp.local.", decoded.getType());
+        assertEquals("living room._airplay._tcp.local.", decoded.getKey());
+
+        // Callers get their own copy to modify
+        Map<ServiceInfo.Fields, String> map = ServiceTypeDecoder.decodeQualifiedNameMapForType(type);
+        map.put(ServiceInfo.Fields.Subtype, "printer");
+        assertEquals("", ServiceTypeDecoder.decode(type).getQualifiedNameMap().get(ServiceInfo.Fields.Subtype));
+    }
+
+    @Test
+    public void testScannerMatchesRegularExpressions() {
+        String[] types = { "_http._tcp.local.", "_http._tcp.local", "Printer._http._tcp.local.", "a.b.c._http._tcp.local.", "a._b._c._http._tcp.local.", "a._b._c._http._tcp.",
+                "_printer._sub._http._tcp.local.", "__printer._sub._http._tcp.local.", "x._printer._SUB._http._tcp.local.", "x._y._sub._z._sub._http._tcp.local.",
+                "x._sub._http._tcp", "x._sub._http.tcp.local.", "._sub._http._tcp.local.", "a._._sub._b._c.d", "host.local.", "host", "", ".", "..", "._", "._.", "_._._.",
+                "a._b.c", "a._b._c", "a._b._c.", "a.._b.c.", "1.0.0.127.in-addr.arpa.", "1.0.IP6.ARPA.", "My Service._music._udp.sub.example.com.",
+                "Panoramix.local._Home-Sharing._TCP.Panoramix.local.", "_services._dns-sd._udp.local.", "b._dns-sd._udp.0.0.168.192.in-addr.arpa." };
+        for (String type : types) {
+            assertEquals("Decoding " + type, regexDecode(type), ServiceTypeDecoder.decodeQualifiedNameMapForType(type));
+        }
+    }
+
+    private static final Pattern SUBTYPE_PATTERN = Pattern.compile("^((.*)\\._)?_?(.*)\\._sub\\._([^.]*)\\._([^.]*)\\.(.*)\\.?$", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern PATTERN         = Pattern.compile("^((.*)?\\._)?([^.]*)\\._([^.]*)\\.(.*)\\.?$");
+
+    private static final Pattern TYPE_A_PATTERN  = Pattern.compile("^([^.]*)\\.(.*)\\.?$");
+
+    /**
+     * The former regular expression based decoder, kept as reference for the scanner.
+     */
+    private static Map<ServiceInfo.Fields, String> regexDecode(String type) {
+        String aType = type.toLowerCase();
+        String application = aType;
+        String protocol = "";
+        String subtype = "";
+        String name = "";
+        String domain = "";
+
+        if (aType.contains("in-addr.arpa") || aType.contains("ip6.arpa")) {
+            int index = (aType.contains("in-addr.arpa") ? aType.indexOf("in-addr.arpa") : aType.indexOf("ip6.arpa"));
+            name = ServiceInfoImpl.removeSeparators(type.substring(0, index));
+            domain = type.substring(index);
+            application = "";
+        } else {
+            Matcher matcher = SUBTYPE_PATTERN.matcher(type);
+            if (matcher.matches()) {
+                name = group(matcher, 2);
+                subtype = group(matcher, 3);
+                application = group(matcher, 4);
+                protocol = group(matcher, 5);
+                domain = group(matcher, 6);
+            } else if ((matcher = PATTERN.matcher(type)).matches()) {
+                name = group(matcher, 2);
+                application = group(matcher, 3);
+                protocol = group(matcher, 4);
+                domain = group(matcher, 5);
+            } else if ((matcher = TYPE_A_PATTERN.matcher(type)).matches()) {
+                name = group(matcher, 1);
+                domain = group(matcher, 2);
+                application = "";
+            }
+        }
+        return ServiceInfoImpl.createQualifiedMap(name, ServiceInfoImpl.removeSeparators(application), protocol, ServiceInfoImpl.removeSeparators(domain), subtype);
+    }
+
+    private static String group(Matcher matcher, int group) {
+        return (matcher.start(group) != -1 ? matcher.group(group) : "");
+    }
+
     private void assertDecodeProperly(String type, String... qualifiedMap) {
         Map<ServiceInfo.Fields, String> actual = ServiceTypeDecoder.decodeQualifiedNameMapForType(type);
         Map<ServiceInfo.Fields, String> expected = ServiceInfoImpl.createQualifiedMap(qualifiedMap[0], qualifiedMap[1], qualifiedMap[2], qualifiedMap[3], qualifiedMap[4]);
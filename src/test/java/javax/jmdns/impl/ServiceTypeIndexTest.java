@@ -0,0 +1,46 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ServiceTypeIndexTest {
+
+    private final ServiceTypeIndex _index = new ServiceTypeIndex();
+
+    private static ServiceInfoImpl service(String type, String name, String subtype) {
+        return new ServiceInfoImpl(type, name, subtype, 80, 0, 0, false, new byte[0]);
+    }
+
+    @Test
+    public void testServicesAreIndexedOnTypeAndSubtype() {
+        final ServiceInfoImpl printer = service("_http._tcp.local.", "Printer", "printer");
+        final ServiceInfoImpl page = service("_http._tcp.local.", "Page", "");
+        final ServiceInfoImpl share = service("_ftp._tcp.local.", "Share", "");
+        _index.add(printer);
+        _index.add(page);
+        _index.add(share);
+
+        assertEquals(Arrays.asList(printer, page), _index.servicesOfType("_HTTP._tcp.local."));
+        assertEquals(Collections.singletonList(printer), _index.servicesOfType("_printer._sub._http._tcp.local."));
+        assertEquals(Collections.singletonList(share), _index.servicesOfType("_ftp._tcp.local."));
+        assertTrue(_index.servicesOfType("_ipp._tcp.local.").isEmpty());
+    }
+
+    @Test
+    public void testRemoveFollowsRename() {
+        final ServiceInfoImpl printer = service("_http._tcp.local.", "Printer", "printer");
+        _index.add(printer);
+
+        printer.setName("Printer (2)");
+        _index.remove(printer);
+
+        assertTrue(_index.servicesOfType("_http._tcp.local.").isEmpty());
+        assertTrue(_index.servicesOfType("_printer._sub._http._tcp.local.").isEmpty());
+    }
+
+}
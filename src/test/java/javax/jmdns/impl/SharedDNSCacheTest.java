@@ -0,0 +1,179 @@
+package javax.jmdns.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.ServiceEvent;
+import javax.jmdns.ServiceListener;
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSRecordClass;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedDNSCacheTest {
+
+    private SharedDNSCache   _cache;
+
+    private NetworkInterface _first;
+
+    private NetworkInterface _second;
+
+    @Before
+    public void setup() throws SocketException {
+        final List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>(Collections.list(NetworkInterface.getNetworkInterfaces()));
+        assumeTrue("Needs two network interfaces", interfaces.size() >= 2);
+        _first = interfaces.get(0);
+        _second = interfaces.get(1);
+        _cache = new SharedDNSCache(16);
+    }
+
+    private static InetAddress address(NetworkInterface networkInterface) {
+        final List<InetAddress> addresses = Collections.list(networkInterface.getInetAddresses());
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet4Address) {
+                return address;
+            }
+        }
+        return addresses.get(0);
+    }
+
+    private static ServiceListener removalListener(final CountDownLatch removed) {
+        return new ServiceListener() {
+            @Override
+            public void serviceAdded(ServiceEvent event) {
+                // Only the removal matters
+            }
+
+            @Override
+            public void serviceRemoved(ServiceEvent event) {
+                removed.countDown();
+            }
+
+            @Override
+            public void serviceResolved(ServiceEvent event) {
+                // Only the removal matters
+            }
+        };
+    }
+
+    private static DNSRecord service(int port) {
+        return new DNSRecord.Service("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 0, 0, port, "panoramix.local.");
+    }
+
+    @Test
+    public void testEntryIsDroppedWhenNoInterfaceHasItLeft() {
+        final DNSRecord record = service(80);
+        _cache.addDNSEntry(record);
+        _cache.addSource(record, _first);
+        _cache.addSource(service(80), _second);
+        assertEquals(new HashSet<NetworkInterface>(Arrays.asList(_first, _second)), _cache.getSources(record));
+
+        assertFalse("Still announced on the second interface", _cache.removeSource(record, _first));
+        assertTrue(_cache.removeSource(record, _second));
+        assertTrue(_cache.getSources(record).isEmpty());
+    }
+
+    @Test
+    public void testClearingAnInterfaceKeepsWhatOthersHave() {
+        final DNSRecord shared = service(80);
+        final DNSRecord local = new DNSRecord.Text("local._http._tcp.local.", DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, new byte[] { 0 });
+        _cache.addDNSEntry(shared);
+        _cache.addSource(shared, _first);
+        _cache.addSource(shared, _second);
+        _cache.addDNSEntry(local);
+        _cache.addSource(local, _first);
+
+        _cache.clear(_first);
+
+        assertNotNull(_cache.getDNSEntry(shared));
+        assertEquals(Collections.singleton(_second), _cache.getSources(shared));
+        assertNull(_cache.getDNSEntry(local));
+    }
+
+    @Test
+    public void testReplacedValueStartsWithoutSources() {
+        final DNSRecord record = service(80);
+        final DNSRecord moved = service(8080);
+        _cache.addDNSEntry(record);
+        _cache.addSource(record, _first);
+        _cache.addSource(record, _second);
+
+        _cache.replaceDNSEntry(moved, record);
+
+        assertTrue(_cache.getSources(record).isEmpty());
+        assertTrue(_cache.getSources(moved).isEmpty());
+    }
+
+    @Test
+    public void testEveryReaperIsNotified() {
+        final List<Long> deadlines = new ArrayList<Long>();
+        final DNSCache.ExpiryListener listener = new DNSCache.ExpiryListener() {
+            @Override
+            public void nextDeadlineChanged(long deadline) {
+                deadlines.add(Long.valueOf(deadline));
+            }
+        };
+        final DNSCache.ExpiryListener other = new DNSCache.ExpiryListener() {
+            @Override
+            public void nextDeadlineChanged(long deadline) {
+                deadlines.add(Long.valueOf(deadline));
+            }
+        };
+        _cache.setExpiryListener(listener);
+        _cache.setExpiryListener(other);
+        _cache.addDNSEntry(service(80));
+        assertEquals(2, deadlines.size());
+
+        _cache.removeExpiryListener(listener);
+        _cache.addDNSEntry(new DNSRecord.Text("text._http._tcp.local.", DNSRecordClass.CLASS_IN, true, 1, new byte[] { 0 }));
+        assertEquals(3, deadlines.size());
+    }
+
+    @Test
+    public void testExpiryReachesEveryInstance() throws IOException, InterruptedException {
+        final String type = "_http._tcp.local.";
+        final MulticastBus bus = new MulticastBus(2, 13L);
+        // Only the response handed to the instances below is received
+        bus.setLossRate(1.0);
+        final JmDNSImpl first = new JmDNSImpl(address(_first), "first", bus.newTransport(), _cache);
+        final JmDNSImpl second = new JmDNSImpl(address(_second), "second", bus.newTransport(), _cache);
+        try {
+            final CountDownLatch removed = new CountDownLatch(2);
+            first.addServiceListener(type, removalListener(removed));
+            second.addServiceListener(type, removalListener(removed));
+            final DNSRecord pointer = new DNSRecord.Pointer(type, DNSRecordClass.CLASS_IN, false, 2, "Expiring." + type);
+            final DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA);
+            out.addAnswer(pointer, 0);
+            final byte[] data = out.data();
+            first.handleResponse(new DNSIncoming(new DatagramPacket(data, data.length)));
+            second.handleResponse(new DNSIncoming(new DatagramPacket(data, data.length)));
+            assertEquals(new HashSet<JmDNSImpl>(Arrays.asList(first, second)), _cache.getMembers(pointer));
+
+            assertTrue("Both instances should see the service expire", removed.await(10, TimeUnit.SECONDS));
+        } finally {
+            first.close();
+            second.close();
+            bus.close();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package javax.jmdns.impl.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DNSTaskSchedulerTest {
+
+    private final ScheduledThreadPoolExecutor _executor = new ScheduledThreadPoolExecutor(1);
+
+    /**
+     * Runs a given number of times and then cancels itself, like the resolvers do.
+     */
+    private static final class CountingTask extends DNSTask {
+
+        final AtomicInteger  _runs = new AtomicInteger();
+
+        final CountDownLatch _done = new CountDownLatch(1);
+
+        private final int    _maxRuns;
+
+        CountingTask(int maxRuns) {
+            super(null);
+            _maxRuns = maxRuns;
+        }
+
+        @Override
+        public String getName() {
+            return "CountingTask";
+        }
+
+        @Override
+        public void start(DNSTaskScheduler scheduler) {
+            scheduler.schedule(this, 0, 5);
+        }
+
+        @Override
+        public void run() {
+            if (_runs.incrementAndGet() >= _maxRuns) {
+                this.cancel();
+                _done.countDown();
+            }
+        }
+
+    }
+
+    @After
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    public void testTaskCancelsItselfOnExecutor() throws InterruptedException {
+        final CountingTask task = new CountingTask(3);
+        task.start(DNSTaskScheduler.forExecutor(_executor));
+
+        assertTrue(task._done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(3, task._runs.get());
+    }
+
+    @Test
+    public void testCancelledSchedulerIgnoresTasks() throws InterruptedException {
+        final DNSTaskScheduler scheduler = DNSTaskScheduler.forExecutor(_executor);
+        final CountingTask running = new CountingTask(Integer.MAX_VALUE);
+        running.start(scheduler);
+        Thread.sleep(20);
+        scheduler.cancel();
+        // let a run in progress finish
+        Thread.sleep(10);
+        final int runs = running._runs.get();
+        Thread.sleep(50);
+        assertEquals(runs, running._runs.get());
+
+        final CountingTask late = new CountingTask(1);
+        late.start(scheduler);
+        Thread.sleep(50);
+        assertEquals(0, late._runs.get());
+        // The shared executor itself keeps running
+        assertTrue(!_executor.isShutdown());
+    }
+
+}
@@ -0,0 +1,115 @@
+package javax.jmdns.impl.tasks.state;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jmdns.ServiceInfo;
+import javax.jmdns.impl.DNSOutgoing;
+import javax.jmdns.impl.DNSRecord;
+import javax.jmdns.impl.HostInfo;
+import javax.jmdns.impl.JmDNSImpl;
+import javax.jmdns.impl.ServiceInfoImpl;
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.constants.DNSState;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateSchedulerTest {
+
+    private final JmDNSImpl                _dns      = createNiceMock(JmDNSImpl.class);
+
+    private final Map<String, ServiceInfo> _services = new HashMap<String, ServiceInfo>();
+
+    private final List<DNSOutgoing>        _sent     = new ArrayList<DNSOutgoing>();
+
+    private StateScheduler                 _scheduler;
+
+    @Before
+    public void setup() throws IOException {
+        final HostInfo localHost = HostInfo.newHostInfo(InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 10 }), null, "statehost");
+        for (int i = 0; i < 10; i++) {
+            final ServiceInfoImpl info = new ServiceInfoImpl("_http._tcp.local.", "Page " + i, "", 80, 0, 0, false, new byte[0]);
+            _services.put(info.getKey(), info);
+        }
+        expect(_dns.getServices()).andStubReturn(_services);
+        expect(_dns.getLocalHost()).andStubReturn(localHost);
+        _dns.send(anyObject(DNSOutgoing.class));
+        expectLastCall().andStubAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() {
+                _sent.add((DNSOutgoing) getCurrentArguments()[0]);
+                return null;
+            }
+        });
+        replay(_dns);
+        // Never started, the test runs the wakeups itself
+        _scheduler = new StateScheduler(_dns);
+    }
+
+    private ServiceInfoImpl service(int i) {
+        return (ServiceInfoImpl) _services.get("page " + i + "._http._tcp.local.");
+    }
+
+    @Test
+    public void testServicesStartedTogetherShareOneGroup() {
+        _scheduler.requestScan();
+        _scheduler.run();
+
+        assertEquals(10, _scheduler.size());
+        assertEquals(1, _scheduler.groupCount());
+        assertTrue(_sent.isEmpty());
+    }
+
+    @Test
+    public void testOneProbeForTheDueGroup() throws InterruptedException {
+        _scheduler.requestScan();
+        _scheduler.run();
+        this.service(0).revertState();
+
+        Thread.sleep(DNSConstants.PROBE_CONFLICT_INTERVAL + 50);
+        _scheduler.run();
+
+        assertEquals(1, _sent.size());
+        assertEquals(9, _sent.get(0).getNumberOfQuestions());
+        assertEquals(9, _scheduler.size());
+        assertTrue(this.service(1).isAssociatedWithTask(_scheduler, DNSState.PROBING_2));
+        assertTrue(this.service(0).isAssociatedWithTask(null, DNSState.PROBING_1));
+    }
+
+    @Test
+    public void testCancelingIsSentRightAway() {
+        _scheduler.requestScan();
+        _scheduler.run();
+        this.service(3).cancelState();
+
+        _scheduler.requestScan();
+        _scheduler.run();
+
+        assertEquals(1, _sent.size());
+        final DNSOutgoing goodbye = _sent.get(0);
+        assertTrue(goodbye.isResponse());
+        assertTrue(goodbye.getNumberOfAnswers() > 0);
+        for (DNSRecord answer : goodbye.getAnswers()) {
+            assertEquals(0, answer.getTTL());
+        }
+        assertTrue(this.service(3).isAssociatedWithTask(_scheduler, DNSState.CANCELING_2));
+        // The probing entry of the canceled service is only dropped when due
+        assertEquals(11, _scheduler.size());
+    }
+
+}
@@ -9,11 +9,17 @@ import javax.jmdns.impl.DNSCache;
 import javax.jmdns.impl.DNSEntry;
 import javax.jmdns.impl.DNSRecord;
 import javax.jmdns.impl.constants.DNSRecordClass;
+import javax.jmdns.impl.constants.DNSRecordType;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  *
@@ -56,4 +62,127 @@ public class DNSCacheTest {
         assertNull("Cache contains key with no entries", values);
     }
 
+    @Test
+    public void testCacheLookupByTypeAndClass() {
+        DNSCache cache = new DNSCache();
+
+        DNSEntry service = new DNSRecord.Service("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, 0, 0, 0, "panoramix.local.");
+        DNSEntry text = new DNSRecord.Text("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, new byte[] { 3, 'a', '=', 'b' });
+        cache.addDNSEntry(service);
+        cache.addDNSEntry(text);
+
+        assertEquals("Could not retrieve the service by type", service, cache.getDNSEntry("Pierre._home-sharing._tcp.local.", DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_IN));
+        assertEquals("Could not retrieve the text by type", text, cache.getDNSEntry("pierre._home-sharing._tcp.local.", DNSRecordType.TYPE_TXT, DNSRecordClass.CLASS_ANY));
+        assertNull("Found an entry for a type we did not insert", cache.getDNSEntry("pierre._home-sharing._tcp.local.", DNSRecordType.TYPE_A, DNSRecordClass.CLASS_IN));
+        assertNull("Found an entry for a class we did not insert", cache.getDNSEntry("pierre._home-sharing._tcp.local.", DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_CH));
+        assertEquals("Wrong number of entries for the name", 2, cache.getDNSEntryList("pierre._home-sharing._tcp.local.").size());
+    }
+
+    @Test
+    public void testCacheLookupByPointerAlias() {
+        DNSCache cache = new DNSCache();
+
+        DNSEntry pointer1 = new DNSRecord.Pointer("_home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, "pierre._home-sharing._tcp.local.");
+        DNSEntry pointer2 = new DNSRecord.Pointer("_home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, "paul._home-sharing._tcp.local.");
+        cache.addDNSEntry(pointer1);
+        cache.addDNSEntry(pointer2);
+
+        DNSEntry query = new DNSRecord.Pointer("_home-sharing._tcp.local.", DNSRecordClass.CLASS_ANY, false, 0, "paul._home-sharing._tcp.local.");
+        assertEquals("Could not retrieve the pointer by alias", pointer2, cache.getDNSEntry(query));
+        assertEquals("Wrong number of pointers", 2, cache.getDNSEntryList("_home-sharing._tcp.local.", DNSRecordType.TYPE_PTR, DNSRecordClass.CLASS_IN).size());
+    }
+
+    @Test
+    public void testCacheSnapshotIsStable() {
+        DNSCache cache = new DNSCache();
+
+        DNSEntry entry = new DNSRecord.Service("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, 0, 0, 0, "panoramix.local.");
+        DNSEntry replacement = new DNSRecord.Service("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, 0, 0, 0, "asterix.local.");
+        cache.addDNSEntry(entry);
+
+        Collection<? extends DNSEntry> snapshot = cache.getDNSEntryList("pierre._home-sharing._tcp.local.", DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_IN);
+        cache.replaceDNSEntry(replacement, entry);
+
+        assertEquals("The snapshot was modified", entry, snapshot.iterator().next());
+        assertEquals("Could not retrieve the replacement", replacement, cache.getDNSEntry("pierre._home-sharing._tcp.local.", DNSRecordType.TYPE_SRV, DNSRecordClass.CLASS_IN));
+        assertEquals("Wrong number of entries after replace", 1, cache.getDNSEntryList("pierre._home-sharing._tcp.local.").size());
+    }
+
+    @Test
+    public void testCacheExpiryIndex() {
+        DNSCache cache = new DNSCache();
+        final long[] notified = { Long.MAX_VALUE };
+        cache.setExpiryListener(new DNSCache.ExpiryListener() {
+            @Override
+            public void nextDeadlineChanged(long deadline) {
+                notified[0] = deadline;
+            }
+        });
+
+        DNSRecord live = new DNSRecord.Service("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 3600, 0, 0, 0, "panoramix.local.");
+        DNSRecord expired = new DNSRecord.Service("paul._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, 0, 0, 0, "panoramix.local.");
+        DNSRecord removed = new DNSRecord.Service("jacques._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, 0, 0, 0, "panoramix.local.");
+        cache.addDNSEntry(live);
+        assertTrue("Listener was not notified of the first deadline", notified[0] > System.currentTimeMillis());
+        cache.addDNSEntry(expired);
+        cache.addDNSEntry(removed);
+        cache.removeDNSEntry(removed);
+        assertEquals("Listener was not notified of the earlier deadline", expired.getCreated(), notified[0]);
+
+        long now = System.currentTimeMillis();
+        List<DNSRecord> due = cache.pollDueDNSEntries(now);
+        assertEquals("Wrong number of due records", 1, due.size());
+        assertSame("Wrong due record", expired, due.get(0));
+        assertTrue("Due records must only be returned once", cache.pollDueDNSEntries(now).isEmpty());
+        assertTrue("Next deadline should be the live record", cache.getNextDeadline() > now);
+
+        cache.removeDNSEntry(expired);
+        cache.rescheduleDNSEntry(expired);
+        assertTrue("Removed record was rescheduled", cache.pollDueDNSEntries(now).isEmpty());
+    }
+
+    @Test
+    public void testCacheMapMutatorsKeepTheIndexedLists() {
+        DNSCache cache = new DNSCache();
+
+        final DNSRecord service = new DNSRecord.Service("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, 0, 0, 0, "panoramix.local.");
+        final DNSRecord text = new DNSRecord.Text("pierre._home-sharing._tcp.local.", DNSRecordClass.CLASS_IN, false, 0, new byte[] { 3, 'a', '=', 'b' });
+        final String key = service.getKey();
+
+        cache.computeIfAbsent(key, new Function<String, List<DNSEntry>>() {
+            @Override
+            public List<DNSEntry> apply(String name) {
+                return new ArrayList<DNSEntry>(Collections.singletonList(service));
+            }
+        });
+        assertEquals("computeIfAbsent lost the entry", service, cache.getDNSEntry(service));
+
+        cache.merge(key, Collections.<DNSEntry> singletonList(text), new BiFunction<List<DNSEntry>, List<DNSEntry>, List<DNSEntry>>() {
+            @Override
+            public List<DNSEntry> apply(List<DNSEntry> oldValue, List<DNSEntry> value) {
+                List<DNSEntry> merged = new ArrayList<DNSEntry>(oldValue);
+                merged.addAll(value);
+                return merged;
+            }
+        });
+        assertEquals("merge lost the text", text, cache.getDNSEntry(text));
+        assertEquals("Wrong number of entries after merge", 2, cache.getDNSEntryList(key).size());
+
+        cache.replace(key, Collections.<DNSEntry> singletonList(text));
+        assertNull("replace kept the service", cache.getDNSEntry(service));
+
+        cache.compute(key, new BiFunction<String, List<DNSEntry>, List<DNSEntry>>() {
+            @Override
+            public List<DNSEntry> apply(String name, List<DNSEntry> value) {
+                return Collections.<DNSEntry> singletonList(service);
+            }
+        });
+        assertTrue("The computed list was not indexed", cache.addDNSEntry(text));
+        assertEquals("Wrong number of entries after compute", 2, cache.getDNSEntryList(key).size());
+
+        // Records dropped through the map no longer expire
+        cache.remove(key);
+        assertTrue("Removed records are still scheduled", cache.pollDueDNSEntries(System.currentTimeMillis() + 1000).isEmpty());
+    }
+
 }
@@ -98,6 +98,76 @@ public class DNSMessageTest {
         }
     }
 
+    @Test
+    public void testMessageFullRollback() throws IOException {
+        String serviceType = "_home-sharing._tcp.local.";
+        DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, true, 512, new DNSOutgoing.BufferPool(DNSConstants.MAX_MSG_ABSOLUTE, 2));
+        long now = (new Date()).getTime();
+        int count = 0;
+        try {
+            while (true) {
+                out.addAnswer(new DNSRecord.Pointer(serviceType, DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Service number " + count + "." + serviceType), now);
+                count++;
+            }
+        } catch (IOException exception) {
+            // Expected, the message is full
+        }
+        assertTrue("The message should hold a few answers.", count > 1);
+        assertEquals("Wrong number of answers.", count, out.getNumberOfAnswers());
+        byte[] data = out.data();
+        assertTrue("The message is too long.", data.length < 512);
+
+        DNSIncoming in = new DNSIncoming(new DatagramPacket(data, 0, data.length));
+        assertEquals("Wrong number of answers.", count, in.getNumberOfAnswers());
+        int index = 0;
+        for (DNSRecord record : in.getAnswers()) {
+            assertEquals("Wrong answer alias.", "Service number " + index, record.getServiceInfo().getName());
+            index++;
+        }
+    }
+
+    @Test
+    public void testOutOfOrderSections() throws IOException {
+        String serviceType = "_home-sharing._tcp.local.";
+        String serviceName = "Pierre." + serviceType;
+        DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, false);
+        out.addAuthorativeAnswer(new DNSRecord.Service(serviceName, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 1, 20, 8080, "panoramix.local."));
+        out.addAnswer(new DNSRecord.Pointer(serviceType, DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, serviceName), 0);
+        out.addQuestion(DNSQuestion.newQuestion(serviceName, DNSRecordType.TYPE_ANY, DNSRecordClass.CLASS_IN, true));
+        byte[] data = out.data();
+
+        DNSIncoming in = new DNSIncoming(new DatagramPacket(data, 0, data.length));
+        assertEquals("Wrong number of questions.", 1, in.getNumberOfQuestions());
+        assertEquals("Wrong number of answers.", 1, in.getNumberOfAnswers());
+        assertEquals("Wrong number of authorities.", 1, in.getNumberOfAuthorities());
+        assertEquals("Wrong question name.", serviceName, in.getQuestions().iterator().next().getName());
+        assertEquals("Wrong answer type.", DNSRecordType.TYPE_PTR, in.getAnswers().iterator().next().getRecordType());
+        assertEquals("Wrong authority type.", DNSRecordType.TYPE_SRV, in.getAuthorities().iterator().next().getRecordType());
+        assertArrayEquals("Encoding should be stable.", data, out.data());
+    }
+
+    @Test
+    public void testOutOfOrderSectionsStayWithinPayload() throws IOException {
+        DNSOutgoing out = new DNSOutgoing(DNSConstants.FLAGS_QR_RESPONSE | DNSConstants.FLAGS_AA, true, 512);
+        out.addAdditionalAnswer(null, new DNSRecord.Service("Service 0._http._tcp.local.", DNSRecordClass.CLASS_IN, true, DNSConstants.DNS_TTL, 0, 0, 80, "host.local."));
+        int answers = 0;
+        try {
+            while (true) {
+                out.addAnswer(new DNSRecord.Pointer("_http._tcp.local.", DNSRecordClass.CLASS_IN, false, DNSConstants.DNS_TTL, "Service " + answers + "._http._tcp.local."), 0);
+                answers++;
+            }
+        } catch (IOException exception) {
+            // The message is full
+        }
+        byte[] data = out.data();
+
+        assertTrue("The message is larger than the payload: " + data.length, data.length <= 512);
+        DNSIncoming in = new DNSIncoming(new DatagramPacket(data, 0, data.length));
+        assertEquals("Wrong number of answers.", answers, in.getNumberOfAnswers());
+        assertEquals("Wrong number of additionals.", 1, in.getNumberOfAdditionals());
+        assertFalse("The message should not be truncated.", in.isTruncated());
+    }
+
     protected void print(byte[] data) {
         System.out.print("{");
         for (int i = 0; i < data.length; i++) {
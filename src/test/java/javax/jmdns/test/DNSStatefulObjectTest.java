@@ -5,7 +5,15 @@ package javax.jmdns.test;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.jmdns.impl.DNSStatefulObject.DNSStatefulObjectSemaphore;
+import javax.jmdns.impl.DNSStatefulObject.DefaultImplementation;
+import javax.jmdns.impl.constants.DNSState;
+import javax.jmdns.impl.tasks.DNSTask;
+import javax.jmdns.impl.tasks.DNSTaskScheduler;
 
 import org.junit.After;
 import org.junit.Before;
@@ -45,6 +53,29 @@ public class DNSStatefulObjectTest {
 
     }
 
+    public static final class TestTask extends DNSTask {
+
+        public TestTask() {
+            super(null);
+        }
+
+        @Override
+        public void start(DNSTaskScheduler scheduler) {
+            // nothing to do
+        }
+
+        @Override
+        public String getName() {
+            return "TestTask";
+        }
+
+        @Override
+        public void run() {
+            // nothing to do
+        }
+
+    }
+
     DNSStatefulObjectSemaphore _semaphore;
 
     @Before
@@ -78,4 +109,108 @@ public class DNSStatefulObjectTest {
         assertTrue("The thread should have finished.", thread.hasFinished());
     }
 
+    @Test
+    public void testStateMachine() {
+        DefaultImplementation state = new DefaultImplementation();
+        DNSTask prober = new TestTask();
+        DNSTask other = new TestTask();
+
+        state.associateWithTask(prober, DNSState.PROBING_1);
+        state.associateWithTask(other, DNSState.PROBING_1);
+        assertTrue(state.isAssociatedWithTask(prober, DNSState.PROBING_1));
+        assertFalse(state.isAssociatedWithTask(other, DNSState.PROBING_1));
+
+        state.advanceState(other);
+        assertTrue("Only the owner advances the state.", state.isAssociatedWithTask(prober, DNSState.PROBING_1));
+        state.advanceState(prober);
+        assertTrue(state.isAssociatedWithTask(prober, DNSState.PROBING_2));
+
+        state.removeAssociationWithTask(prober);
+        assertTrue(state.isAssociatedWithTask(null, DNSState.PROBING_2));
+        assertTrue(state.cancelState());
+        assertFalse(state.cancelState());
+        assertTrue(state.isCanceling());
+    }
+
+    @Test
+    public void testConcurrentAssociation() throws InterruptedException {
+        final DefaultImplementation state = new DefaultImplementation();
+        final AtomicInteger owners = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread("Associating thread " + i) {
+                @Override
+                public void run() {
+                    DNSTask task = new TestTask();
+                    try {
+                        start.await();
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                    state.associateWithTask(task, DNSState.PROBING_1);
+                    if (state.isAssociatedWithTask(task, DNSState.PROBING_1)) {
+                        owners.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("Exactly one task should own the object.", 1, owners.get());
+    }
+
+    @Test
+    public void testAnnouncedSignalsWaiters() throws InterruptedException {
+        final DefaultImplementation state = new DefaultImplementation();
+        final DNSTask task = new TestTask();
+        state.associateWithTask(task, DNSState.PROBING_1);
+        Thread advancing = new Thread("Advancing thread") {
+            @Override
+            public void run() {
+                while (!state.isAnnounced()) {
+                    state.advanceState(task);
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+            }
+        };
+        advancing.start();
+        assertTrue("The object should be announced.", state.waitForAnnounced(5000));
+        advancing.join();
+    }
+
+    @Test
+    public void testCompletionFutures() {
+        DefaultImplementation state = new DefaultImplementation();
+        DNSTask task = new TestTask();
+        CompletableFuture<Void> announced = state.whenAnnounced();
+        CompletableFuture<Void> canceled = state.whenCanceled();
+        assertFalse(announced.isDone());
+
+        state.associateWithTask(task, DNSState.PROBING_1);
+        while (!state.isAnnounced()) {
+            state.advanceState(task);
+        }
+        assertTrue("The object should be announced.", announced.isDone());
+        assertFalse(announced.isCompletedExceptionally());
+        assertTrue("An announced object completes right away.", state.whenAnnounced().isDone());
+        assertFalse(canceled.isDone());
+
+        state.removeAssociationWithTask(task);
+        state.cancelState();
+        assertTrue("Canceling fails the pending announce.", state.whenAnnounced().isCompletedExceptionally());
+        state.associateWithTask(task, DNSState.CANCELING_1);
+        while (!state.isCanceled()) {
+            state.advanceState(task);
+        }
+        assertTrue("The object should be canceled.", canceled.isDone());
+    }
+
 }
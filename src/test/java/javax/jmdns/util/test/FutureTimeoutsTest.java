@@ -0,0 +1,38 @@
+package javax.jmdns.util.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.jmdns.impl.util.FutureTimeouts;
+
+import org.junit.Test;
+
+public class FutureTimeoutsTest {
+
+    private static Supplier<String> fallback(final String value) {
+        return new Supplier<String>() {
+            @Override
+            public String get() {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void testFallbackOnTimeout() throws Exception {
+        final CompletableFuture<String> future = FutureTimeouts.completeAfter(new CompletableFuture<String>(), 20, fallback("timeout"));
+        assertEquals("timeout", future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompletionWinsOverTimeout() throws Exception {
+        final CompletableFuture<String> future = FutureTimeouts.completeAfter(new CompletableFuture<String>(), 100, fallback("timeout"));
+        future.complete("value");
+        Thread.sleep(200);
+        assertEquals("value", future.get());
+    }
+
+}
@@ -0,0 +1,50 @@
+package javax.jmdns.util.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.jmdns.impl.constants.DNSConstants;
+import javax.jmdns.impl.util.VirtualThreads;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testEnabledOnlyWhenSupported() {
+        assertEquals("Enabled", DNSConstants.VIRTUAL_THREADS && VirtualThreads.isSupported(), VirtualThreads.isEnabled());
+    }
+
+    @Test
+    public void testThreadFactoryNamesThreads() {
+        final Thread thread = VirtualThreads.threadFactory("VirtualThreadsTest").newThread(new Runnable() {
+            @Override
+            public void run() {
+                // nothing to do
+            }
+        });
+        assertTrue("Thread name " + thread.getName(), thread.getName().startsWith("VirtualThreadsTest"));
+    }
+
+    @Test
+    public void testExecutorsRunTasks() throws Exception {
+        final Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        };
+        for (ExecutorService executor : new ExecutorService[] { VirtualThreads.newFixedThreadPool(2, "VirtualThreadsTest.fixed"), VirtualThreads.newCachedThreadPool("VirtualThreadsTest.cached") }) {
+            try {
+                assertTrue("Thread name", executor.submit(task).get(5, TimeUnit.SECONDS).startsWith("VirtualThreadsTest."));
+            } finally {
+                executor.shutdown();
+            }
+            assertTrue("Terminated", executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+}